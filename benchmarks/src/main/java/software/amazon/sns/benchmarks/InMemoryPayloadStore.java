@@ -0,0 +1,33 @@
+package software.amazon.sns.benchmarks;
+
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.PayloadStore;
+
+import java.util.UUID;
+
+/**
+ * A payload store that hands out S3 pointers the way the S3 backed store does, but neither encodes nor keeps the
+ * payload. Benchmark results therefore exclude the cost of the upload itself.
+ */
+class InMemoryPayloadStore implements PayloadStore {
+    static final String BUCKET_NAME = "benchmark-bucket";
+
+    @Override
+    public String storeOriginalPayload(String payload) {
+        return storeOriginalPayload(payload, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public String storeOriginalPayload(String payload, String s3Key) {
+        return new PayloadS3Pointer(BUCKET_NAME, s3Key).toJson();
+    }
+
+    @Override
+    public String getOriginalPayload(String payloadPointer) {
+        throw new UnsupportedOperationException("Payloads are not kept by the benchmark payload store.");
+    }
+
+    @Override
+    public void deleteOriginalPayload(String payloadPointer) {
+    }
+}
@@ -0,0 +1,34 @@
+package software.amazon.sns.benchmarks;
+
+import software.amazon.payloadoffloading.PayloadStoreAsync;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous counterpart of {@link InMemoryPayloadStore}, completing every call immediately.
+ */
+class InMemoryPayloadStoreAsync implements PayloadStoreAsync {
+    private final InMemoryPayloadStore payloadStore = new InMemoryPayloadStore();
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload) {
+        return CompletableFuture.completedFuture(payloadStore.storeOriginalPayload(payload));
+    }
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload, String s3Key) {
+        return CompletableFuture.completedFuture(payloadStore.storeOriginalPayload(payload, s3Key));
+    }
+
+    @Override
+    public CompletableFuture<String> getOriginalPayload(String payloadPointer) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException("Payloads are not kept by the benchmark payload store."));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteOriginalPayload(String payloadPointer) {
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,36 @@
+package software.amazon.sns.benchmarks;
+
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link SnsAsyncClient} that completes every publish immediately, without any I/O.
+ */
+class InMemorySnsAsyncClient implements SnsAsyncClient {
+    private static final CompletableFuture<PublishResponse> PUBLISH_RESPONSE = CompletableFuture.completedFuture(
+            PublishResponse.builder().messageId(InMemorySnsClient.MESSAGE_ID).build());
+
+    @Override
+    public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest) {
+        return PUBLISH_RESPONSE;
+    }
+
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest publishBatchRequest) {
+        return CompletableFuture.completedFuture(InMemorySnsClient.toPublishBatchResponse(publishBatchRequest));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
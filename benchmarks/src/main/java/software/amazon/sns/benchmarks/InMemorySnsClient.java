@@ -0,0 +1,48 @@
+package software.amazon.sns.benchmarks;
+
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link SnsClient} that accepts every publish without any I/O, so benchmarks only measure the extended client.
+ */
+class InMemorySnsClient implements SnsClient {
+    static final String MESSAGE_ID = "00000000-0000-0000-0000-000000000000";
+
+    private static final PublishResponse PUBLISH_RESPONSE = PublishResponse.builder().messageId(MESSAGE_ID).build();
+
+    @Override
+    public PublishResponse publish(PublishRequest publishRequest) {
+        return PUBLISH_RESPONSE;
+    }
+
+    @Override
+    public PublishBatchResponse publishBatch(PublishBatchRequest publishBatchRequest) {
+        return toPublishBatchResponse(publishBatchRequest);
+    }
+
+    static PublishBatchResponse toPublishBatchResponse(PublishBatchRequest publishBatchRequest) {
+        List<PublishBatchResultEntry> successful = new ArrayList<>(publishBatchRequest.publishBatchRequestEntries().size());
+        for (PublishBatchRequestEntry entry : publishBatchRequest.publishBatchRequestEntries()) {
+            successful.add(PublishBatchResultEntry.builder().id(entry.id()).messageId(MESSAGE_ID).build());
+        }
+        return PublishBatchResponse.builder().successful(successful).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,40 @@
+package software.amazon.sns.benchmarks;
+
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * S3 clients that only exist to enable payload support in the extended client configurations. The benchmarks pass
+ * their own payload stores, so these clients are never called.
+ */
+final class NoOpS3Clients {
+
+    private NoOpS3Clients() {
+    }
+
+    static S3Client s3Client() {
+        return new S3Client() {
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static S3AsyncClient s3AsyncClient() {
+        return new S3AsyncClient() {
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
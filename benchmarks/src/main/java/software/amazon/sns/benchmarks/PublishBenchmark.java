@@ -0,0 +1,130 @@
+package software.amazon.sns.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.sns.AmazonSNSExtendedAsyncClient;
+import software.amazon.sns.AmazonSNSExtendedClient;
+import software.amazon.sns.SNSExtendedAsyncClientConfiguration;
+import software.amazon.sns.SNSExtendedClientConfiguration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AmazonSNSExtendedClient#publish(PublishRequest)} and
+ * {@link AmazonSNSExtendedAsyncClient#publish(PublishRequest)} against in-memory SNS clients and payload stores.
+ * <p>
+ * With the default threshold of 256 KB, bodies of 1 KB and 64 KB are sent inline and larger bodies are offloaded,
+ * unless {@code alwaysThroughS3} forces every message through the payload store. Run through
+ * {@link BenchmarkRunner} to get the allocation rate next to the throughput.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PublishBenchmark {
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:123456789012:benchmark-topic";
+    private static final int ATTRIBUTE_VALUE_SIZE = 256;
+
+    @Param({"1024", "65536", "262144", "1048576", "16777216", "104857600"})
+    public int messageSize;
+
+    /**
+     * Nine is the most attributes an offloaded message can carry, next to the reserved payload size attribute.
+     */
+    @Param({"0", "9"})
+    public int messageAttributes;
+
+    @Param({"false", "true"})
+    public boolean alwaysThroughS3;
+
+    private AmazonSNSExtendedClient snsExtendedClient;
+    private AmazonSNSExtendedAsyncClient snsExtendedAsyncClient;
+    private PublishRequest publishRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SNSExtendedClientConfiguration clientConfiguration = new SNSExtendedClientConfiguration()
+                .withPayloadSupportEnabled(NoOpS3Clients.s3Client(), InMemoryPayloadStore.BUCKET_NAME)
+                .withAlwaysThroughS3(alwaysThroughS3);
+        snsExtendedClient = new AmazonSNSExtendedClient(new InMemorySnsClient(), clientConfiguration,
+                new InMemoryPayloadStore());
+
+        SNSExtendedAsyncClientConfiguration asyncClientConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(NoOpS3Clients.s3AsyncClient(), InMemoryPayloadStore.BUCKET_NAME)
+                .withAlwaysThroughS3(alwaysThroughS3);
+        snsExtendedAsyncClient = new AmazonSNSExtendedAsyncClient(new InMemorySnsAsyncClient(),
+                asyncClientConfiguration, new InMemoryPayloadStoreAsync());
+
+        publishRequest = PublishRequest.builder()
+                .topicArn(TOPIC_ARN)
+                .message(generateMessageBody(messageSize))
+                .messageAttributes(generateMessageAttributes(messageAttributes))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        snsExtendedClient.close();
+        snsExtendedAsyncClient.close();
+    }
+
+    @Benchmark
+    public PublishResponse publish() {
+        return snsExtendedClient.publish(publishRequest);
+    }
+
+    @Benchmark
+    public PublishResponse publishAsync() {
+        return snsExtendedAsyncClient.publish(publishRequest).join();
+    }
+
+    private static String generateMessageBody(int size) {
+        char[] body = new char[size];
+        Arrays.fill(body, 'x');
+        return new String(body);
+    }
+
+    // Cycles through the three attribute data types, so binary values are measured as well.
+    private static Map<String, MessageAttributeValue> generateMessageAttributes(int count) {
+        Map<String, MessageAttributeValue> attributes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            MessageAttributeValue value;
+            switch (i % 3) {
+                case 0:
+                    value = MessageAttributeValue.builder().dataType("String")
+                            .stringValue(generateMessageBody(ATTRIBUTE_VALUE_SIZE)).build();
+                    break;
+                case 1:
+                    value = MessageAttributeValue.builder().dataType("Number").stringValue(Integer.toString(i)).build();
+                    break;
+                default:
+                    value = MessageAttributeValue.builder().dataType("Binary")
+                            .binaryValue(SdkBytes.fromByteArray(new byte[ATTRIBUTE_VALUE_SIZE])).build();
+                    break;
+            }
+            attributes.put("attribute-" + i, value);
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,75 @@
+package software.amazon.sns.loadgen;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in microseconds, with a relative error below 1%. Values below 256 are counted
+ * exactly, and larger values are counted in buckets of 128 per power of two.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS + 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private volatile long maxMicros;
+
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        if (value > maxMicros) {
+            synchronized (this) {
+                if (value > maxMicros) {
+                    maxMicros = value;
+                }
+            }
+        }
+    }
+
+    long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the lowest value of the bucket holding the percentile, or 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        long total = getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(valueOf(index), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT * (shift + 1) + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long valueOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        return (long) (index - SUB_BUCKET_COUNT * (shift + 1) + SUB_BUCKET_COUNT) << shift;
+    }
+}
@@ -0,0 +1,284 @@
+package software.amazon.sns.loadgen;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClientBuilder;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.SnsClientBuilder;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.sns.AmazonSNSExtendedAsyncClient;
+import software.amazon.sns.AmazonSNSExtendedClient;
+import software.amazon.sns.ExtendedPublishResponse;
+import software.amazon.sns.SNSExtendedAsyncClientConfiguration;
+import software.amazon.sns.SNSExtendedClientConfiguration;
+import software.amazon.sns.testing.InMemoryS3;
+import software.amazon.sns.testing.InMemoryS3AsyncClient;
+import software.amazon.sns.testing.InMemoryS3Client;
+import software.amazon.sns.testing.InMemorySns;
+import software.amazon.sns.testing.InMemorySnsAsyncClient;
+import software.amazon.sns.testing.InMemorySnsClient;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes through {@link AmazonSNSExtendedClient} or {@link AmazonSNSExtendedAsyncClient} at a target rate or
+ * concurrency, and reports the throughput, the latency percentiles and the ratio of offloaded messages over time.
+ * <p>
+ * The latency of a publish counts from the time it was due to start at the target rate, so a client that cannot keep
+ * up shows in the latency rather than silently lowering the rate. Against the local stand-ins, the published messages
+ * and stored payloads are dropped after every report so that long runs do not run out of memory.
+ * </p>
+ */
+public final class LoadGenerator {
+    // Held so that the level is not lost when the logger is garbage collected.
+    private static final Logger CLIENT_LOGGER = Logger.getLogger("software.amazon.sns");
+
+    private final LoadGeneratorOptions options;
+    private final PrintStream out;
+    private final int[] payloadSizes;
+    private final PublishRequest[] publishRequests;
+    private InMemorySns localSns;
+    private InMemoryS3 localS3;
+    private S3AsyncClient s3AsyncClient;
+
+    LoadGenerator(LoadGeneratorOptions options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+        this.payloadSizes = options.payloadSizes.getSizes();
+        this.publishRequests = createPublishRequests();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGeneratorOptions options;
+        try {
+            options = LoadGeneratorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(LoadGeneratorOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.help) {
+            System.out.println(LoadGeneratorOptions.USAGE);
+            return;
+        }
+        // The clients log every offloaded payload, which would drown the reports.
+        CLIENT_LOGGER.setLevel(Level.WARNING);
+        new LoadGenerator(options, System.out).run();
+    }
+
+    /**
+     * Publishes for the configured duration, reporting every interval, then prints the statistics of the whole run.
+     */
+    LoadStatistics run() throws InterruptedException {
+        out.printf("Publishing through the %s client to %s for %ss, %s, with at most %d publishes in flight.%n",
+                options.asyncClient ? "async" : "sync", options.localEndpoint ? "local stand-ins" : options.topicArn,
+                options.duration.toMillis() / 1000.0,
+                (options.rate > 0) ? "at " + options.rate + " messages per second" : "as fast as possible",
+                options.concurrency);
+        out.printf("Payload sizes: %s bytes.%n%n", Arrays.toString(payloadSizes));
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + options.duration.toNanos();
+        LoadStatistics statistics = new LoadStatistics(startNanos);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-generator-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LoadStatistics.printHeader(out);
+        long reportIntervalNanos = options.reportInterval.toNanos();
+        reporter.scheduleAtFixedRate(() -> {
+            statistics.printInterval(out);
+            if (localSns != null) {
+                localSns.clear();
+                localS3.clear();
+            }
+        }, reportIntervalNanos, reportIntervalNanos, TimeUnit.NANOSECONDS);
+
+        Pacer pacer = new Pacer(options.rate, startNanos);
+        try {
+            if (options.asyncClient) {
+                AmazonSNSExtendedAsyncClient snsExtendedClient = createAsyncClient();
+                try {
+                    runAsync(snsExtendedClient, pacer, endNanos, statistics);
+                } finally {
+                    // Unlike the sync client, the async client does not close its S3 client.
+                    snsExtendedClient.close();
+                    s3AsyncClient.close();
+                }
+            } else {
+                try (AmazonSNSExtendedClient snsExtendedClient = createClient()) {
+                    runSync(snsExtendedClient, pacer, endNanos, statistics);
+                }
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+        statistics.printSummary(out);
+        return statistics;
+    }
+
+    /**
+     * Publishes from as many threads as the concurrency, each waiting for its publish to complete.
+     */
+    private void runSync(AmazonSNSExtendedClient snsExtendedClient, Pacer pacer, long endNanos,
+                         LoadStatistics statistics) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(options.concurrency);
+        for (int i = 0; i < options.concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                for (long dueNanos = pacer.awaitNextSlot(); dueNanos < endNanos; dueNanos = pacer.awaitNextSlot()) {
+                    int sizeIndex = options.payloadSizes.nextSizeIndex();
+                    PublishRequest publishRequest = publishRequests[sizeIndex];
+                    try {
+                        ExtendedPublishResponse response = snsExtendedClient.publishWithDetails(publishRequest);
+                        statistics.recordSuccess(System.nanoTime() - dueNanos, payloadSizes[sizeIndex],
+                                response.isOffloaded());
+                    } catch (RuntimeException e) {
+                        statistics.recordFailure(e);
+                    }
+                }
+            }, "load-generator-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Publishes from a single thread, which waits for a publish to complete once the concurrency is reached.
+     */
+    private void runAsync(AmazonSNSExtendedAsyncClient snsExtendedClient, Pacer pacer, long endNanos,
+                          LoadStatistics statistics) throws InterruptedException {
+        Semaphore inFlightPermits = new Semaphore(options.concurrency);
+        for (long dueNanos = pacer.awaitNextSlot(); dueNanos < endNanos; dueNanos = pacer.awaitNextSlot()) {
+            inFlightPermits.acquire();
+            int sizeIndex = options.payloadSizes.nextSizeIndex();
+            long publishDueNanos = dueNanos;
+            CompletableFuture<ExtendedPublishResponse> response;
+            try {
+                response = snsExtendedClient.publishWithDetails(publishRequests[sizeIndex]);
+            } catch (RuntimeException e) {
+                statistics.recordFailure(e);
+                inFlightPermits.release();
+                continue;
+            }
+            response.whenComplete((extendedPublishResponse, throwable) -> {
+                if (throwable != null) {
+                    statistics.recordFailure((throwable instanceof CompletionException && throwable.getCause() != null)
+                            ? throwable.getCause()
+                            : throwable);
+                } else {
+                    statistics.recordSuccess(System.nanoTime() - publishDueNanos, payloadSizes[sizeIndex],
+                            extendedPublishResponse.isOffloaded());
+                }
+                inFlightPermits.release();
+            });
+        }
+        if (!inFlightPermits.tryAcquire(options.concurrency, 5, TimeUnit.MINUTES)) {
+            out.println("Gave up waiting for the publishes in flight.");
+        }
+    }
+
+    private PublishRequest[] createPublishRequests() {
+        Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+        for (int i = 0; i < options.attributeCount; i++) {
+            messageAttributes.put("attribute-" + i, MessageAttributeValue.builder()
+                    .dataType("String")
+                    .stringValue(repeat('a', Math.max(1, options.attributeSize)))
+                    .build());
+        }
+
+        PublishRequest[] requests = new PublishRequest[payloadSizes.length];
+        for (int i = 0; i < payloadSizes.length; i++) {
+            requests[i] = PublishRequest.builder()
+                    .topicArn(options.topicArn)
+                    .message(repeat('x', payloadSizes[i]))
+                    .messageAttributes(messageAttributes)
+                    .build();
+        }
+        return requests;
+    }
+
+    private AmazonSNSExtendedClient createClient() {
+        SnsClient snsClient;
+        S3Client s3Client;
+        if (options.localEndpoint) {
+            localSns = new InMemorySns(options.snsConditions);
+            localS3 = new InMemoryS3(options.s3Conditions);
+            snsClient = new InMemorySnsClient(localSns);
+            s3Client = new InMemoryS3Client(localS3);
+        } else {
+            SnsClientBuilder snsClientBuilder = SnsClient.builder();
+            S3ClientBuilder s3ClientBuilder = S3Client.builder();
+            if (options.region != null) {
+                snsClientBuilder.region(Region.of(options.region));
+                s3ClientBuilder.region(Region.of(options.region));
+            }
+            snsClient = snsClientBuilder.build();
+            s3Client = s3ClientBuilder.build();
+        }
+
+        SNSExtendedClientConfiguration configuration = new SNSExtendedClientConfiguration()
+                .withPayloadSupportEnabled(s3Client, options.bucketName)
+                .withAlwaysThroughS3(options.alwaysThroughS3);
+        if (options.payloadSizeThreshold != null) {
+            configuration.setPayloadSizeThreshold(options.payloadSizeThreshold);
+        }
+        return new AmazonSNSExtendedClient(snsClient, configuration);
+    }
+
+    private AmazonSNSExtendedAsyncClient createAsyncClient() {
+        SnsAsyncClient snsClient;
+        if (options.localEndpoint) {
+            localSns = new InMemorySns(options.snsConditions);
+            localS3 = new InMemoryS3(options.s3Conditions);
+            snsClient = new InMemorySnsAsyncClient(localSns);
+            s3AsyncClient = new InMemoryS3AsyncClient(localS3);
+        } else {
+            SnsAsyncClientBuilder snsClientBuilder = SnsAsyncClient.builder();
+            S3AsyncClientBuilder s3ClientBuilder = S3AsyncClient.builder();
+            if (options.region != null) {
+                snsClientBuilder.region(Region.of(options.region));
+                s3ClientBuilder.region(Region.of(options.region));
+            }
+            snsClient = snsClientBuilder.build();
+            s3AsyncClient = s3ClientBuilder.build();
+        }
+
+        SNSExtendedAsyncClientConfiguration configuration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(s3AsyncClient, options.bucketName)
+                .withAlwaysThroughS3(options.alwaysThroughS3);
+        if (options.payloadSizeThreshold != null) {
+            configuration.setPayloadSizeThreshold(options.payloadSizeThreshold);
+        }
+        return new AmazonSNSExtendedAsyncClient(snsClient, configuration);
+    }
+
+    private static String repeat(char character, int count) {
+        char[] characters = new char[count];
+        Arrays.fill(characters, character);
+        return new String(characters);
+    }
+}
@@ -0,0 +1,224 @@
+package software.amazon.sns.loadgen;
+
+import software.amazon.sns.testing.LatencyDistribution;
+import software.amazon.sns.testing.ServiceConditions;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The options of the load generator, given on the command line as {@code --name=value}.
+ */
+final class LoadGeneratorOptions {
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar load-generator.jar [--name=value ...]",
+            "",
+            "  --client=async|sync            The extended client to drive (default: async).",
+            "  --endpoint=local|aws           Publish to in-memory stand-ins or to AWS (default: local).",
+            "  --topic-arn=<arn>              The topic to publish to, required with --endpoint=aws.",
+            "  --bucket=<name>                The bucket of offloaded payloads, required with --endpoint=aws.",
+            "  --region=<region>              The region of the AWS clients (default: from the environment).",
+            "  --rate=<messages per second>   The target publish rate, or 0 for as fast as the concurrency allows"
+                    + " (default: 0).",
+            "  --concurrency=<publishes>      The maximum number of publishes in flight (default: 64).",
+            "  --duration=<duration>          How long to publish, such as 60s or 10m (default: 60s).",
+            "  --report-interval=<duration>   How often to report the statistics (default: 5s).",
+            "  --payload-sizes=<sizes>        The body sizes, such as 80%=2KB,15%=300KB,5%=50MB (default: 100%=2KB).",
+            "  --attributes=<count>:<size>    The string attributes of each message, such as 3:64B (default: 0:0B).",
+            "  --payload-size-threshold=<size> The size above which payloads are offloaded (default: 256KB).",
+            "  --always-through-s3            Offload every payload.",
+            "",
+            "  With --endpoint=local:",
+            "  --sns-latency=<median>[,<p99>] The latency of SNS, fixed or log-normal, such as 5ms,40ms"
+                    + " (default: 0ms).",
+            "  --s3-latency=<median>[,<p99>]  The latency of S3 (default: 0ms).",
+            "  --s3-bandwidth=<size>          The bandwidth of S3 per second, such as 500MB, or 0 for unlimited"
+                    + " (default: 0).",
+            "  --sns-throttling-rate=<rate>   The fraction of throttled SNS requests (default: 0).",
+            "  --s3-throttling-rate=<rate>    The fraction of throttled S3 requests (default: 0).",
+            "  --sns-error-rate=<rate>        The fraction of failed SNS requests (default: 0).",
+            "  --s3-error-rate=<rate>         The fraction of failed S3 requests (default: 0).",
+            "  --help                         Print this message.");
+
+    private static final Set<String> OPTION_NAMES = new HashSet<>(Arrays.asList("client", "endpoint", "topic-arn",
+            "bucket", "region", "rate", "concurrency", "duration", "report-interval", "payload-sizes", "attributes",
+            "payload-size-threshold", "always-through-s3", "sns-latency", "s3-latency", "s3-bandwidth",
+            "sns-throttling-rate", "s3-throttling-rate", "sns-error-rate", "s3-error-rate", "help"));
+    private static final String LOCAL_TOPIC_ARN = "arn:aws:sns:us-east-1:000000000000:load-generator";
+    private static final String LOCAL_BUCKET_NAME = "load-generator";
+
+    boolean help;
+    boolean asyncClient = true;
+    boolean localEndpoint = true;
+    String topicArn = LOCAL_TOPIC_ARN;
+    String bucketName = LOCAL_BUCKET_NAME;
+    String region;
+    double rate;
+    int concurrency = 64;
+    Duration duration = Duration.ofSeconds(60);
+    Duration reportInterval = Duration.ofSeconds(5);
+    PayloadSizeDistribution payloadSizes = PayloadSizeDistribution.parse("100%=2KB");
+    int attributeCount;
+    int attributeSize;
+    Integer payloadSizeThreshold;
+    boolean alwaysThroughS3;
+    ServiceConditions snsConditions = new ServiceConditions();
+    ServiceConditions s3Conditions = new ServiceConditions();
+
+    static LoadGeneratorOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Invalid argument \"" + arg + "\", expected --name=value.");
+            }
+            int separator = arg.indexOf('=');
+            String name = (separator < 0) ? arg.substring(2) : arg.substring(2, separator);
+            if (!OPTION_NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + ".");
+            }
+            values.put(name, (separator < 0) ? "true" : arg.substring(separator + 1));
+        }
+
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        try {
+            options.apply(values);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage(), e);
+        }
+        return options;
+    }
+
+    private void apply(Map<String, String> values) {
+        help = Boolean.parseBoolean(values.getOrDefault("help", "false"));
+        asyncClient = oneOf("client", values.getOrDefault("client", "async"), "async", "sync");
+        localEndpoint = oneOf("endpoint", values.getOrDefault("endpoint", "local"), "local", "aws");
+        if (!localEndpoint && !help && (!values.containsKey("topic-arn") || !values.containsKey("bucket"))) {
+            throw new IllegalArgumentException("--topic-arn and --bucket are required with --endpoint=aws.");
+        }
+        topicArn = values.getOrDefault("topic-arn", topicArn);
+        bucketName = values.getOrDefault("bucket", bucketName);
+        region = values.get("region");
+
+        rate = Double.parseDouble(values.getOrDefault("rate", "0"));
+        if (rate < 0) {
+            throw new IllegalArgumentException("--rate must not be negative.");
+        }
+        concurrency = Integer.parseInt(values.getOrDefault("concurrency", Integer.toString(concurrency)));
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("--concurrency must be positive.");
+        }
+        duration = parseDuration(values.getOrDefault("duration", "60s"));
+        reportInterval = parseDuration(values.getOrDefault("report-interval", "5s"));
+        if (duration.isZero() || reportInterval.isZero()) {
+            throw new IllegalArgumentException("--duration and --report-interval must be positive.");
+        }
+        if (values.containsKey("payload-sizes")) {
+            payloadSizes = PayloadSizeDistribution.parse(values.get("payload-sizes"));
+        }
+        if (values.containsKey("attributes")) {
+            String[] attributes = values.get("attributes").split(":");
+            if (attributes.length != 2) {
+                throw new IllegalArgumentException("Invalid --attributes, expected <count>:<size>.");
+            }
+            attributeCount = Integer.parseInt(attributes[0]);
+            attributeSize = (int) parseSize(attributes[1]);
+            if (attributeCount < 0 || attributeCount > 10 || attributeSize < 0) {
+                throw new IllegalArgumentException("--attributes must have between 0 and 10 attributes.");
+            }
+        }
+        if (values.containsKey("payload-size-threshold")) {
+            payloadSizeThreshold = (int) parseSize(values.get("payload-size-threshold"));
+        }
+        alwaysThroughS3 = Boolean.parseBoolean(values.getOrDefault("always-through-s3", "false"));
+
+        snsConditions = new ServiceConditions()
+                .withLatencyDistribution(parseLatency(values.getOrDefault("sns-latency", "0ms")))
+                .withThrottlingRate(Double.parseDouble(values.getOrDefault("sns-throttling-rate", "0")))
+                .withErrorRate(Double.parseDouble(values.getOrDefault("sns-error-rate", "0")));
+        s3Conditions = new ServiceConditions()
+                .withLatencyDistribution(parseLatency(values.getOrDefault("s3-latency", "0ms")))
+                .withBandwidthBytesPerSecond(parseSize(values.getOrDefault("s3-bandwidth", "0")))
+                .withThrottlingRate(Double.parseDouble(values.getOrDefault("s3-throttling-rate", "0")))
+                .withErrorRate(Double.parseDouble(values.getOrDefault("s3-error-rate", "0")));
+    }
+
+    private static boolean oneOf(String name, String value, String first, String second) {
+        if (value.equals(first)) {
+            return true;
+        }
+        if (value.equals(second)) {
+            return false;
+        }
+        throw new IllegalArgumentException("--" + name + " must be " + first + " or " + second + ".");
+    }
+
+    /**
+     * @return the number of bytes of a size such as 512B, 2KB, 50MB or 1GB, in binary units.
+     */
+    static long parseSize(String size) {
+        String normalized = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (normalized.endsWith("KB")) {
+            unit = 1024;
+        } else if (normalized.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if (normalized.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        String number = normalized.replaceFirst("[KMG]?B$", "");
+        long value = Math.round(Double.parseDouble(number) * unit);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid size \"" + size + "\".");
+        }
+        return value;
+    }
+
+    /**
+     * @return the duration of a value such as 500us, 10ms, 30s or 5m.
+     */
+    static Duration parseDuration(String duration) {
+        String normalized = duration.trim().toLowerCase(Locale.ROOT);
+        double nanosPerUnit;
+        int unitLength = 2;
+        if (normalized.endsWith("us")) {
+            nanosPerUnit = 1e3;
+        } else if (normalized.endsWith("ms")) {
+            nanosPerUnit = 1e6;
+        } else if (normalized.endsWith("s")) {
+            nanosPerUnit = 1e9;
+            unitLength = 1;
+        } else if (normalized.endsWith("m")) {
+            nanosPerUnit = 60e9;
+            unitLength = 1;
+        } else {
+            throw new IllegalArgumentException("Invalid duration \"" + duration
+                    + "\", expected a unit of us, ms, s or m.");
+        }
+        double value = Double.parseDouble(normalized.substring(0, normalized.length() - unitLength));
+        Duration parsed = Duration.ofNanos(Math.round(value * nanosPerUnit));
+        if (parsed.isNegative()) {
+            throw new IllegalArgumentException("Invalid duration \"" + duration + "\".");
+        }
+        return parsed;
+    }
+
+    /**
+     * @return a fixed latency for a single duration, or a log-normal latency for a median and a 99th percentile.
+     */
+    static LatencyDistribution parseLatency(String latency) {
+        String[] durations = latency.split(",");
+        if (durations.length == 1) {
+            Duration fixed = parseDuration(durations[0]);
+            return fixed.isZero() ? LatencyDistribution.NONE : LatencyDistribution.fixed(fixed);
+        }
+        if (durations.length == 2) {
+            return LatencyDistribution.logNormal(parseDuration(durations[0]), parseDuration(durations[1]));
+        }
+        throw new IllegalArgumentException("Invalid latency \"" + latency + "\", expected <median>[,<p99>].");
+    }
+}
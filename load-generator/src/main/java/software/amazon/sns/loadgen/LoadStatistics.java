@@ -0,0 +1,115 @@
+package software.amazon.sns.loadgen;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outcomes of the publishes, counted both per reporting interval and over the whole run.
+ */
+final class LoadStatistics {
+    private static final double MEBIBYTE = 1024 * 1024;
+    private static final String HEADER_FORMAT = "%9s %10s %9s %9s %9s %9s %9s %8s %8s%n";
+    private static final String ROW_FORMAT = "%9.1f %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7.1f%% %8d%n";
+
+    private final long startNanos;
+    private final AtomicReference<Interval> interval;
+    private final Interval total;
+    private final Map<String, LongAdder> failuresByType = new ConcurrentHashMap<>();
+
+    LoadStatistics(long startNanos) {
+        this.startNanos = startNanos;
+        this.interval = new AtomicReference<>(new Interval(startNanos));
+        this.total = new Interval(startNanos);
+    }
+
+    /**
+     * @param latencyNanos the time from when the publish was due to start to when it completed, so that publishes
+     *                     delayed by a saturated client count as slow.
+     */
+    void recordSuccess(long latencyNanos, long payloadSize, boolean offloaded) {
+        interval.get().recordSuccess(latencyNanos, payloadSize, offloaded);
+        total.recordSuccess(latencyNanos, payloadSize, offloaded);
+    }
+
+    void recordFailure(Throwable failure) {
+        interval.get().failures.increment();
+        total.failures.increment();
+        failuresByType.computeIfAbsent(failure.getClass().getName(), type -> new LongAdder()).increment();
+    }
+
+    long getSuccessCount() {
+        return total.latencies.getTotalCount();
+    }
+
+    long getOffloadedCount() {
+        return total.offloaded.sum();
+    }
+
+    long getFailureCount() {
+        return total.failures.sum();
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf(HEADER_FORMAT, "time (s)", "msg/s", "MiB/s", "p50 (ms)", "p99 (ms)", "p999 (ms)", "max (ms)",
+                "offload", "errors");
+    }
+
+    /**
+     * Prints the statistics of the interval since the previous report, and starts a new interval.
+     */
+    void printInterval(PrintStream out) {
+        long nowNanos = System.nanoTime();
+        Interval previous = interval.getAndSet(new Interval(nowNanos));
+        previous.print(out, (nowNanos - startNanos) / 1e9, nowNanos);
+    }
+
+    void printSummary(PrintStream out) {
+        out.println();
+        out.println("Total:");
+        printHeader(out);
+        long nowNanos = System.nanoTime();
+        total.print(out, (nowNanos - startNanos) / 1e9, nowNanos);
+        if (!failuresByType.isEmpty()) {
+            out.println();
+            out.println("Failures:");
+            failuresByType.forEach((type, count) -> out.printf("%10d %s%n", count.sum(), type));
+        }
+    }
+
+    private static final class Interval {
+        private final long startNanos;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder offloaded = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        private Interval(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        private void recordSuccess(long latencyNanos, long payloadSize, boolean payloadOffloaded) {
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            bytes.add(payloadSize);
+            if (payloadOffloaded) {
+                offloaded.increment();
+            }
+        }
+
+        private void print(PrintStream out, double elapsedSeconds, long endNanos) {
+            double seconds = Math.max(1, endNanos - startNanos) / 1e9;
+            long successes = latencies.getTotalCount();
+            out.printf(ROW_FORMAT, elapsedSeconds, successes / seconds, bytes.sum() / MEBIBYTE / seconds,
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxMicros()),
+                    (successes > 0) ? 100.0 * offloaded.sum() / successes : 0.0, failures.sum());
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+}
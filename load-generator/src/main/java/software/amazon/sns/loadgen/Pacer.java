@@ -0,0 +1,38 @@
+package software.amazon.sns.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces the publishes at the target rate. Every publish gets the next slot of the schedule, which it waits for, so
+ * publishes that are late because the client is saturated keep their slot and their latency counts from it.
+ */
+final class Pacer {
+    private final long intervalNanos;
+    private final AtomicLong nextSlotNanos;
+
+    /**
+     * @param rate the target rate in publishes per second, or 0 to publish as soon as possible.
+     */
+    Pacer(double rate, long startNanos) {
+        this.intervalNanos = (rate > 0) ? Math.max(1, Math.round(1e9 / rate)) : 0;
+        this.nextSlotNanos = new AtomicLong(startNanos);
+    }
+
+    /**
+     * Waits for the slot of the next publish.
+     *
+     * @return the time the publish is due to start, in {@link System#nanoTime()} units.
+     */
+    long awaitNextSlot() {
+        if (intervalNanos == 0) {
+            return System.nanoTime();
+        }
+        long slotNanos = nextSlotNanos.getAndAdd(intervalNanos);
+        for (long remainingNanos = slotNanos - System.nanoTime(); remainingNanos > 0;
+             remainingNanos = slotNanos - System.nanoTime()) {
+            LockSupport.parkNanos(remainingNanos);
+        }
+        return slotNanos;
+    }
+}
@@ -0,0 +1,65 @@
+package software.amazon.sns.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distribution of the sizes of the published message bodies, given as weighted sizes such as
+ * {@code 80%=2KB,15%=300KB,5%=50MB}.
+ */
+final class PayloadSizeDistribution {
+    private final int[] sizes;
+    private final double[] cumulativeWeights;
+
+    private PayloadSizeDistribution(int[] sizes, double[] cumulativeWeights) {
+        this.sizes = sizes;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * @param specification comma separated percentages and sizes, whose percentages add up to 100.
+     */
+    static PayloadSizeDistribution parse(String specification) {
+        String[] entries = specification.split(",");
+        int[] sizes = new int[entries.length];
+        double[] cumulativeWeights = new double[entries.length];
+        double totalWeight = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String entry = entries[i].trim();
+            int separator = entry.indexOf("%=");
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid payload size \"" + entry
+                        + "\", expected <percentage>%=<size>.");
+            }
+            double weight = Double.parseDouble(entry.substring(0, separator));
+            long size = LoadGeneratorOptions.parseSize(entry.substring(separator + 2));
+            if (weight <= 0 || size <= 0 || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid payload size \"" + entry
+                        + "\", the percentage and the size must be positive and the size at most 2 GB.");
+            }
+            totalWeight += weight;
+            sizes[i] = (int) size;
+            cumulativeWeights[i] = totalWeight;
+        }
+        if (Math.abs(totalWeight - 100) > 1e-6) {
+            throw new IllegalArgumentException("The payload size percentages add up to " + totalWeight + ", not 100.");
+        }
+        return new PayloadSizeDistribution(sizes, cumulativeWeights);
+    }
+
+    int[] getSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * @return the index of the size of the next message in {@link #getSizes()}.
+     */
+    int nextSizeIndex() {
+        double random = ThreadLocalRandom.current().nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (random < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+}
@@ -0,0 +1,65 @@
+package software.amazon.sns.loadgen;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testHistogramPercentilesAreWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        Assert.assertEquals(100_000, histogram.getTotalCount());
+        Assert.assertEquals(100_000, histogram.getMaxMicros());
+        Assert.assertEquals(50_000, histogram.getValueAtPercentile(50), 500);
+        Assert.assertEquals(99_000, histogram.getValueAtPercentile(99), 990);
+        Assert.assertEquals(99_900, histogram.getValueAtPercentile(99.9), 999);
+        for (int index = 0; index < 4000; index++) {
+            Assert.assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.valueOf(index)));
+        }
+    }
+
+    @Test
+    public void testOptionsAreParsed() {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse("--client=sync", "--rate=500", "--duration=2m",
+                "--payload-sizes=80%=2KB,15%=300KB,5%=50MB", "--attributes=3:64B", "--always-through-s3",
+                "--s3-latency=5ms,40ms", "--s3-bandwidth=500MB");
+
+        Assert.assertFalse(options.asyncClient);
+        Assert.assertTrue(options.localEndpoint);
+        Assert.assertEquals(500, options.rate, 0);
+        Assert.assertEquals(Duration.ofMinutes(2), options.duration);
+        Assert.assertArrayEquals(new int[] {2048, 300 * 1024, 50 * 1024 * 1024}, options.payloadSizes.getSizes());
+        Assert.assertEquals(3, options.attributeCount);
+        Assert.assertEquals(64, options.attributeSize);
+        Assert.assertTrue(options.alwaysThroughS3);
+        Assert.assertEquals(500L * 1024 * 1024, options.s3Conditions.getBandwidthBytesPerSecond());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse("--payload-sizes=80%=2KB"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse("--endpoint=aws"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse("--unknown=1"));
+    }
+
+    @Test
+    public void testRunAgainstLocalStandInsReportsOffloadedMessages() throws InterruptedException {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse("--duration=2s", "--report-interval=500ms",
+                "--concurrency=8", "--payload-sizes=50%=1KB,50%=300KB", "--sns-latency=1ms");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        LoadStatistics statistics = new LoadGenerator(options, new PrintStream(output, true)).run();
+
+        Assert.assertTrue(statistics.getSuccessCount() > 0);
+        Assert.assertTrue(statistics.getOffloadedCount() > 0);
+        Assert.assertTrue(statistics.getOffloadedCount() < statistics.getSuccessCount());
+        Assert.assertEquals(0, statistics.getFailureCount());
+        Assert.assertTrue(new String(output.toByteArray(), StandardCharsets.UTF_8).contains("Total:"));
+    }
+}
@@ -0,0 +1,199 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.payloadoffloading.Util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many requests of one stage of the asynchronous extended client are in flight at once, and adapts the
+ * limit to how the service copes with them, additive increase and multiplicative decrease style.
+ * <p>
+ * The limit grows by one for every limit's worth of requests that complete while the limit is in use, and is halved
+ * when a request is throttled, or when the recent latency, a moving average of the latest requests, rises above
+ * twice the baseline latency, which follows the lowest latencies seen. Requests started before the last decrease do
+ * not decrease the limit again, so a burst of throttled requests halves it once. Requests over the limit wait in order
+ * of arrival, rather than being retried by the SDK against an overloaded service.
+ * </p>
+ * <p>
+ * The limiter only sees the outcome of a whole SDK call. A throttled attempt that the SDK retries successfully shows up
+ * as added latency, and a throttle only counts as one once the SDK has run out of retries. The clients should
+ * therefore be built without SDK retries, or with few of them, when the limits are enabled.
+ * </p>
+ */
+final class AdaptiveConcurrencyLimiter {
+    private static final Log LOGGER = LogFactory.getLog(AdaptiveConcurrencyLimiter.class);
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // How fast the recent latency follows new latencies.
+    private static final double RECENT_LATENCY_WEIGHT = 0.2;
+    // How fast the baseline latency follows latencies above it, so that it recovers from a lasting slowdown.
+    private static final double BASELINE_DRIFT = 0.01;
+    // The number of requests measured before latency is taken into account.
+    private static final int WARMUP_REQUESTS = 10;
+    private static final int SERVICE_UNAVAILABLE_STATUS_CODE = 503;
+
+    private final String stage;
+    private final int maxLimit;
+    private final Executor waiterExecutor;
+    private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long measuredRequests;
+    private double recentLatencyNanos;
+    private double baselineLatencyNanos;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    /**
+     * @param stage          the name of the stage, for logging.
+     * @param waiterExecutor runs the requests that waited for the limit, rather than the thread completing another one.
+     */
+    AdaptiveConcurrencyLimiter(String stage, int initialLimit, int maxLimit, Executor waiterExecutor) {
+        this.stage = stage;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.waiterExecutor = waiterExecutor;
+    }
+
+    /**
+     * @return the limiter of a stage, or null if adaptive concurrency limits are disabled.
+     */
+    static AdaptiveConcurrencyLimiter create(String stage,
+                                             SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration,
+                                             Executor waiterExecutor) {
+        if (!snsExtendedClientConfiguration.isAdaptiveConcurrencyLimitEnabled()) {
+            return null;
+        }
+        int maxLimit = snsExtendedClientConfiguration.getAdaptiveConcurrencyMaxLimit();
+        return new AdaptiveConcurrencyLimiter(stage,
+                Math.min(snsExtendedClientConfiguration.getAdaptiveConcurrencyInitialLimit(), maxLimit), maxLimit,
+                waiterExecutor);
+    }
+
+    /**
+     * Runs {@code request} once it fits in the limit, and adapts the limit to the outcome of the future it returns.
+     *
+     * @param size the size of the request relative to others of the stage, such as the number of mebibytes of a
+     *             payload, which its latency is divided by before being compared with the baseline.
+     */
+    <T> CompletableFuture<T> run(long size, Supplier<CompletableFuture<T>> request) {
+        return acquire().thenCompose(v -> {
+            long startNanos = System.nanoTime();
+            CompletableFuture<T> requestFuture;
+            try {
+                requestFuture = request.get();
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            return requestFuture.whenComplete((result, throwable) -> {
+                onComplete(startNanos, Math.max(1, size), throwable);
+                release();
+            });
+        });
+    }
+
+    /**
+     * @return the current limit.
+     */
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the number of requests in flight.
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    private void release() {
+        List<CompletableFuture<Void>> readyWaiters = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                readyWaiters.add(waiters.poll());
+            }
+        }
+
+        for (CompletableFuture<Void> waiter : readyWaiters) {
+            try {
+                waiterExecutor.execute(() -> waiter.complete(null));
+            } catch (RejectedExecutionException e) {
+                // The client is closing, so the waiting request is started on this thread instead.
+                waiter.complete(null);
+            }
+        }
+    }
+
+    private synchronized void onComplete(long startNanos, long size, Throwable throwable) {
+        long endNanos = System.nanoTime();
+        boolean throttled = throwable != null && isThrottling(throwable);
+        if (throwable != null && !throttled) {
+            // Other failures say nothing about the load of the service.
+            return;
+        }
+
+        if (!throttled) {
+            double latencyNanos = (double) (endNanos - startNanos) / size;
+            if (measuredRequests++ == 0) {
+                recentLatencyNanos = latencyNanos;
+                baselineLatencyNanos = latencyNanos;
+            } else {
+                recentLatencyNanos += (latencyNanos - recentLatencyNanos) * RECENT_LATENCY_WEIGHT;
+                baselineLatencyNanos = (latencyNanos < baselineLatencyNanos)
+                        ? latencyNanos
+                        : baselineLatencyNanos + (latencyNanos - baselineLatencyNanos) * BASELINE_DRIFT;
+            }
+        }
+        boolean overloaded = throttled || (measuredRequests >= WARMUP_REQUESTS
+                && recentLatencyNanos > LATENCY_TOLERANCE * baselineLatencyNanos);
+
+        if (overloaded) {
+            if (startNanos - lastDecreaseNanos > 0) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = endNanos;
+                LOGGER.debug("Decreased the " + stage + " concurrency limit to " + (int) limit + " after a "
+                        + (throttled ? "throttled request." : "slow request."));
+            }
+        } else if (inFlight >= (int) limit / 2) {
+            // Only grow a limit that is in use, so that it does not drift far above what was ever tested.
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    static boolean isThrottling(Throwable throwable) {
+        Throwable cause = Util.unwrapFutureException(throwable);
+        while (cause != null) {
+            if (cause instanceof SdkServiceException) {
+                SdkServiceException serviceException = (SdkServiceException) cause;
+                return serviceException.isThrottlingException()
+                        || serviceException.statusCode() == SERVICE_UNAVAILABLE_STATUS_CODE;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package software.amazon.sns;
+
+/**
+ * A snapshot of the adaptive concurrency limits of the asynchronous extended client, for the stage storing payloads
+ * in S3 and the stage publishing messages to Amazon SNS.
+ */
+public final class AdaptiveConcurrencyLimits {
+    private final int payloadUploadLimit;
+    private final int payloadUploadsInFlight;
+    private final int publishLimit;
+    private final int publishesInFlight;
+
+    AdaptiveConcurrencyLimits(int payloadUploadLimit, int payloadUploadsInFlight, int publishLimit,
+                              int publishesInFlight) {
+        this.payloadUploadLimit = payloadUploadLimit;
+        this.payloadUploadsInFlight = payloadUploadsInFlight;
+        this.publishLimit = publishLimit;
+        this.publishesInFlight = publishesInFlight;
+    }
+
+    /**
+     * @return how many payloads may currently be stored in S3 at once.
+     */
+    public int getPayloadUploadLimit() {
+        return payloadUploadLimit;
+    }
+
+    public int getPayloadUploadsInFlight() {
+        return payloadUploadsInFlight;
+    }
+
+    /**
+     * @return how many Publish and PublishBatch requests may currently be sent to Amazon SNS at once.
+     */
+    public int getPublishLimit() {
+        return publishLimit;
+    }
+
+    public int getPublishesInFlight() {
+        return publishesInFlight;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimits{payloadUploadLimit=" + payloadUploadLimit + ", payloadUploadsInFlight="
+                + payloadUploadsInFlight + ", publishLimit=" + publishLimit + ", publishesInFlight="
+                + publishesInFlight + "}";
+    }
+}
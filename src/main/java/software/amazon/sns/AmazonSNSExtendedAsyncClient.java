@@ -1,40 +1,81 @@
 package software.amazon.sns;
 
-import com.amazon.sqs.javamessaging.SQSExtendedClientConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.sns.SnsAsyncClient;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.utils.StringUtils;
+import software.amazon.awssdk.utils.ThreadFactoryBuilder;
 import software.amazon.payloadoffloading.PayloadStoreAsync;
-import software.amazon.payloadoffloading.S3AsyncDao;
-import software.amazon.payloadoffloading.S3BackedPayloadStoreAsync;
 import software.amazon.payloadoffloading.Util;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageAttributes;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkSizeOfMessageAttributes;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.getMessageAttributeSize;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageStructure;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkOffloadedMessageAttributes;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkStreamedPublishRequest;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.compressInline;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createPayloadEncodingAttribute;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createPayloadSizeAttribute;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createTopicPublishRequests;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getFailedEntriesRetryRequest;
 import static software.amazon.sns.AmazonSNSExtendedClientUtil.getMsgAttributesSize;
 import static software.amazon.sns.AmazonSNSExtendedClientUtil.getS3keyAttribute;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.isTotalMessageSizeLargerThanThreshold;
-import static software.amazon.sns.SNSExtendedClientConstants.MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isFifoTopic;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.mergeBatchResponses;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.mergeRetriedBatchResponse;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.putPayloadAttributes;
+import static software.amazon.sns.SNSExtendedClientConstants.OFFLOADED_MESSAGE_SIZE_ESTIMATE;
 import static software.amazon.sns.SNSExtendedClientConstants.USER_AGENT_HEADER_NAME;
 
 public class AmazonSNSExtendedAsyncClient extends AmazonSNSExtendedAsyncClientBase implements SnsAsyncClient {
 
     static final String USER_AGENT_HEADER = Util.getUserAgentHeader(AmazonSNSExtendedAsyncClient.class.getSimpleName());
+    private static final AwsRequestOverrideConfiguration USER_AGENT_OVERRIDE_CONFIGURATION =
+            AwsRequestOverrideConfiguration.builder().putHeader(USER_AGENT_HEADER_NAME, USER_AGENT_HEADER).build();
+    private static final long MEBIBYTE = 1024 * 1024;
     private static final Log LOGGER = LogFactory.getLog(AmazonSNSExtendedAsyncClient.class);
     private SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration;
     private PayloadStoreAsync payloadStore;
+    private final ExecutorService payloadStreamExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().threadNamePrefix("sns-extended-payload-stream").daemonThreads(true).build());
+    private ExtendedPayloadStoreAsync extendedPayloadStore;
+    private InFlightBytesBudget inFlightBytesBudget;
+    private FifoGroupScheduler fifoGroupScheduler;
+    private OrphanedPayloadCleaner orphanedPayloadCleaner;
+    private AdaptiveConcurrencyLimiter payloadUploadLimiter;
+    private AdaptiveConcurrencyLimiter publishLimiter;
+    // Names the codec of the payloads stored through payloadStore, or null if they are not compressed.
+    private MessageAttributeValue payloadEncodingAttribute;
+    private byte[] inlineCompressionDictionary;
+    private ScheduledExecutorService publishBufferScheduler;
+    private ScheduledExecutorService batchRetryScheduler;
+    private PublishBatchBuffer publishBatchBuffer;
 
     /**
      * Constructs a new Amazon SNS extended client to invoke service methods on
@@ -76,8 +117,18 @@ public class AmazonSNSExtendedAsyncClient extends AmazonSNSExtendedAsyncClientBa
     public AmazonSNSExtendedAsyncClient(SnsAsyncClient snsClient, SNSExtendedAsyncClientConfiguration clientConfig) {
         super(snsClient);
         this.snsExtendedClientConfiguration = new SNSExtendedAsyncClientConfiguration(clientConfig);
-        S3AsyncDao s3Dao = new S3AsyncDao(snsExtendedClientConfiguration.getS3AsyncClient());
-        this.payloadStore = new S3BackedPayloadStoreAsync(s3Dao, snsExtendedClientConfiguration.getS3BucketName());
+        this.extendedPayloadStore = ExtendedPayloadStoreAsync.create(snsExtendedClientConfiguration, payloadStreamExecutor);
+        this.inlineCompressionDictionary = snsExtendedClientConfiguration.getInlineCompressionDictionary();
+        this.inFlightBytesBudget = InFlightBytesBudget.create(snsExtendedClientConfiguration, payloadStreamExecutor);
+        this.fifoGroupScheduler = FifoGroupScheduler.create(snsExtendedClientConfiguration);
+        this.payloadUploadLimiter = AdaptiveConcurrencyLimiter.create("payload upload", snsExtendedClientConfiguration,
+                payloadStreamExecutor);
+        this.publishLimiter = AdaptiveConcurrencyLimiter.create("publish", snsExtendedClientConfiguration,
+                payloadStreamExecutor);
+        this.orphanedPayloadCleaner = OrphanedPayloadCleaner.create(snsExtendedClientConfiguration);
+        this.payloadStore = extendedPayloadStore;
+        this.payloadEncodingAttribute = createPayloadEncodingAttribute(extendedPayloadStore.getContentEncoding());
+        initPublishBuffer();
     }
 
     /**
@@ -95,7 +146,9 @@ public class AmazonSNSExtendedAsyncClient extends AmazonSNSExtendedAsyncClientBa
      * @param clientConfig The sns extended client configuration options controlling the
      *                                    functionality of this client.
      * @param payloadStore                The Payload Store that handles logic for saving to the desired
-     *                                    extended storage.
+     *                                    extended storage. Message bodies are stored through it uncompressed. With
+     *                                    orphaned payload cleanup enabled, the payloads it stored are deleted with
+     *                                    the configured S3 client, so its pointers must name S3 objects.
      */
     public AmazonSNSExtendedAsyncClient(SnsAsyncClient snsClient, SNSExtendedAsyncClientConfiguration clientConfig,
                                         PayloadStoreAsync payloadStore) {
@@ -103,10 +156,36 @@ public class AmazonSNSExtendedAsyncClient extends AmazonSNSExtendedAsyncClientBa
 
         this.snsExtendedClientConfiguration = clientConfig;
         this.payloadStore = payloadStore;
+        this.extendedPayloadStore = ExtendedPayloadStoreAsync.create(snsExtendedClientConfiguration, payloadStreamExecutor);
+        this.inlineCompressionDictionary = snsExtendedClientConfiguration.getInlineCompressionDictionary();
+        this.inFlightBytesBudget = InFlightBytesBudget.create(snsExtendedClientConfiguration, payloadStreamExecutor);
+        this.fifoGroupScheduler = FifoGroupScheduler.create(snsExtendedClientConfiguration);
+        this.payloadUploadLimiter = AdaptiveConcurrencyLimiter.create("payload upload", snsExtendedClientConfiguration,
+                payloadStreamExecutor);
+        this.publishLimiter = AdaptiveConcurrencyLimiter.create("publish", snsExtendedClientConfiguration,
+                payloadStreamExecutor);
+        this.orphanedPayloadCleaner = OrphanedPayloadCleaner.create(snsExtendedClientConfiguration);
+        // The payload store is handed message bodies as they are, so what it stores is never compressed.
+        this.payloadEncodingAttribute = null;
+        initPublishBuffer();
+    }
+
+    private void initPublishBuffer() {
+        if (!snsExtendedClientConfiguration.isPublishBufferingEnabled()) {
+            return;
+        }
+        this.publishBufferScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().threadNamePrefix("sns-extended-publish-buffer").daemonThreads(true).build());
+        this.publishBatchBuffer = new PublishBatchBuffer(this::publishBatch, publishBufferScheduler,
+                snsExtendedClientConfiguration.getPublishBufferLinger());
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * When buffered publishing is enabled, topic publishes are collected into PublishBatch requests. The returned
+     * future then completes once the batch containing the message has been sent.
+     * </p>
      */
     @Override
     public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest) throws S3Exception {
@@ -114,72 +193,725 @@ public class AmazonSNSExtendedAsyncClient extends AmazonSNSExtendedAsyncClientBa
             return super.publish(publishRequest);
         }
 
-        if (!StringUtils.isEmpty(publishRequest.messageStructure()) &&
-                publishRequest.messageStructure().equals(MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE)) {
-            String errorMessage = "SNS extended client does not support sending JSON messages.";
+        return publishWithDetails(publishRequest, false).thenApply(ExtendedPublishResponse::getResponse);
+    }
+
+    /**
+     * Publishes a message like {@link #publish(PublishRequest)}, and also returns whether its payload was offloaded,
+     * the S3 pointer of the payload if it was, the size of the payload and the duration of each stage of the publish.
+     * The pointer of a buffered message is not known, as its payload is stored when its batch is sent.
+     *
+     * @param publishRequest the request to publish.
+     * @return a future of the response of Amazon SNS with the details of the publish.
+     */
+    public CompletableFuture<ExtendedPublishResponse> publishWithDetails(PublishRequest publishRequest) {
+        if (publishRequest == null) {
+            String errorMessage = "publishRequest must not be null.";
             LOGGER.error(errorMessage);
             throw SdkClientException.create(errorMessage);
         }
 
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
-        publishRequestBuilder.overrideConfiguration(AwsRequestOverrideConfiguration.builder().putHeader(USER_AGENT_HEADER_NAME, USER_AGENT_HEADER).build());
-        publishRequest = publishRequestBuilder.build();
+        return publishWithDetails(publishRequest, true);
+    }
 
-        long messageAttributesSize = getMsgAttributesSize(publishRequest.messageAttributes());
-        long messageBodySize = Util.getStringSizeInBytes(publishRequest.message());
+    private CompletableFuture<ExtendedPublishResponse> publishWithDetails(PublishRequest publishRequest,
+                                                                          boolean detailsReturned) {
+        PublishMetricsRecorder metricsRecorder = new PublishMetricsRecorder(
+                snsExtendedClientConfiguration.getPublishMetricsReporter(), publishRequest.topicArn(),
+                detailsReturned);
+        CompletableFuture<PublishResponse> publishResponse;
+        try {
+            publishResponse = publish(publishRequest, metricsRecorder);
+        } catch (RuntimeException e) {
+            metricsRecorder.complete(e);
+            throw e;
+        }
+        return publishResponse.handle((response, throwable) -> {
+            PublishMetrics publishMetrics = metricsRecorder.complete(throwable);
+            if (throwable != null) {
+                throw new CompletionException(Util.unwrapFutureException(throwable));
+            }
+            return new ExtendedPublishResponse(response, publishMetrics, metricsRecorder.getPayloadPointer());
+        });
+    }
 
-        if (!shouldExtendedStoreBeUsed(messageAttributesSize + messageBodySize)) {
+    private CompletableFuture<PublishResponse> publish(PublishRequest publishRequest,
+                                                       PublishMetricsRecorder metricsRecorder) {
+        if (StringUtils.isEmpty(publishRequest.message())) {
+            // A request without a message body is sent as it is, like publish(PublishRequest) does.
+            metricsRecorder.publishStarted();
             return super.publish(publishRequest);
         }
 
-        checkMessageAttributes(publishRequest.messageAttributes());
-        checkSizeOfMessageAttributes(snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize);
+        checkMessageStructure(publishRequest.messageStructure());
+
+        long messageAttributesSize = getMsgAttributesSize(publishRequest.messageAttributes());
+        Utf8SizeCounter messageBodySize = new Utf8SizeCounter(publishRequest.message());
+        boolean useExtendedStore = shouldExtendedStoreBeUsed(messageAttributesSize, messageBodySize);
+        metricsRecorder.sizeChecked(messageBodySize::size);
+
+        if (useExtendedStore && isInlineCompressionUsed(messageBodySize)) {
+            PublishRequest inlineRequest = compressInline(publishRequest,
+                    snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize,
+                    inlineCompressionDictionary);
+            if (inlineRequest != null) {
+                metricsRecorder.compressedInline();
+                return publishInline(inlineRequest, metricsRecorder);
+            }
+        }
+
+        // Everything is validated before the upload, so a rejected message never leaves an object behind in S3.
+        MessageAttributeValue payloadSizeAttribute = null;
+        if (useExtendedStore) {
+            payloadSizeAttribute = createPayloadSizeAttribute(messageBodySize.size());
+            checkOffloadedMessageAttributes(publishRequest.messageAttributes(),
+                    snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize, payloadSizeAttribute,
+                    payloadEncodingAttribute);
+            publishRequest = MessageDeduplicationIds.withDerivedId(publishRequest);
+        }
+
+        if (publishBatchBuffer != null && PublishBatchBuffer.isBufferable(publishRequest)) {
+            // The payload of a buffered message is stored in S3 when its batch is sent.
+            if (useExtendedStore) {
+                metricsRecorder.offloaded();
+            }
+            metricsRecorder.publishStarted();
+            return publishBatchBuffer.publish(publishRequest, messageAttributesSize
+                    + (useExtendedStore ? OFFLOADED_MESSAGE_SIZE_ESTIMATE : messageBodySize.size()),
+                    messageBodySize.size());
+        }
+
+        if (!useExtendedStore) {
+            return publishInOrder(publishRequest, CompletableFuture.completedFuture(
+                    publishRequest.toBuilder().overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION).build()),
+                    metricsRecorder);
+        }
+
+        metricsRecorder.uploadStarted();
+        return publishInOrder(publishRequest, storeMessageInExtendedStore(publishRequest, payloadSizeAttribute)
+                .whenComplete((offloadedRequest, throwable) -> metricsRecorder.uploadCompleted(
+                        (offloadedRequest != null) ? offloadedRequest.message() : null)), metricsRecorder);
+    }
+
+    /**
+     * Publishes a message whose body is read from a stream and uploaded to S3 as it is read, without ever being held
+     * in memory as a whole. Only the S3 pointer is sent to Amazon SNS, whatever the size of the payload.
+     * <p>
+     * The message body is taken from {@code payload}, so the message of {@code publishRequest} must not be set.
+     * Every other field of the request is published as usual. The stream is read on a thread of the client and is
+     * not closed. Subscribers that read the payload as text, such as the Amazon SQS Extended Client, expect it to be
+     * UTF-8 encoded.
+     * </p>
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The message body.
+     * @param payloadLength  The number of bytes to read from {@code payload}.
+     * @return A future of the result of the Publish operation returned by the service.
+     */
+    public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest, InputStream payload, long payloadLength) {
+        return publishFromSource(publishRequest, PayloadSource.fromInputStream(payload, payloadLength));
+    }
+
+    /**
+     * Publishes a message whose body is the content of a file, which is uploaded to S3 without being loaded in memory.
+     * See {@link #publish(PublishRequest, InputStream, long)}.
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The file holding the message body.
+     * @return A future of the result of the Publish operation returned by the service.
+     */
+    public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest, Path payload) {
+        return publishFromSource(publishRequest, PayloadSource.fromPath(payload));
+    }
+
+    /**
+     * Publishes a message whose body is the remaining content of a buffer, which is uploaded to S3 without being
+     * copied. The buffer must not be modified until the returned future completes, and its position is left
+     * unchanged. See {@link #publish(PublishRequest, InputStream, long)}.
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The buffer holding the message body.
+     * @return A future of the result of the Publish operation returned by the service.
+     */
+    public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest, ByteBuffer payload) {
+        return publishFromSource(publishRequest, PayloadSource.fromByteBuffer(payload));
+    }
+
+    private CompletableFuture<PublishResponse> publishFromSource(PublishRequest publishRequest, PayloadSource payloadSource) {
+        PublishMetricsRecorder metricsRecorder = new PublishMetricsRecorder(
+                snsExtendedClientConfiguration.getPublishMetricsReporter(),
+                (publishRequest != null) ? publishRequest.topicArn() : null, false);
+        CompletableFuture<PublishResponse> publishResponse;
+        try {
+            publishResponse = publishFromSource(publishRequest, payloadSource, metricsRecorder);
+        } catch (RuntimeException e) {
+            metricsRecorder.complete(e);
+            throw e;
+        }
+        return publishResponse.whenComplete((response, throwable) -> metricsRecorder.complete(throwable));
+    }
+
+    private CompletableFuture<PublishResponse> publishFromSource(PublishRequest publishRequest, PayloadSource payloadSource,
+                                                                 PublishMetricsRecorder metricsRecorder) {
+        checkStreamedPublishRequest(publishRequest, snsExtendedClientConfiguration.isPayloadSupportEnabled());
+
+        // Streamed payloads are always stored through the extended payload store, even next to a custom one.
+        MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(payloadSource.contentLength());
+        MessageAttributeValue streamedPayloadEncodingAttribute =
+                createPayloadEncodingAttribute(extendedPayloadStore.getContentEncoding());
+        checkOffloadedMessageAttributes(publishRequest.messageAttributes(),
+                snsExtendedClientConfiguration.getPayloadSizeThreshold(),
+                getMsgAttributesSize(publishRequest.messageAttributes()), payloadSizeAttribute,
+                streamedPayloadEncodingAttribute);
+
+        metricsRecorder.sizeChecked(payloadSource::contentLength);
+        metricsRecorder.uploadStarted();
+        return publishInOrder(publishRequest, inFlightBytesBudget.runWithin(payloadSource.contentLength(),
+                        () -> uploadWithinLimit(payloadSource.contentLength(),
+                                () -> extendedPayloadStore.storeOriginalPayload(payloadSource,
+                                        getS3keyAttribute(publishRequest.messageAttributes()))))
+                .whenComplete((largeMessagePointer, throwable) -> metricsRecorder.uploadCompleted(largeMessagePointer))
+                .thenApply(largeMessagePointer -> createOffloadedPublishRequest(publishRequest, largeMessagePointer,
+                        payloadSizeAttribute, streamedPayloadEncodingAttribute)), metricsRecorder);
+    }
+
+    /**
+     * Publishes a request once it is prepared. With FIFO group ordering, it is also published after the requests
+     * issued earlier for the same message group, even if those took longer to prepare, and fails without being sent
+     * if one of those failed under {@link FifoGroupFailurePolicy#FAIL_GROUP}.
+     */
+    private CompletableFuture<PublishResponse> publishInOrder(PublishRequest publishRequest,
+                                                              CompletableFuture<PublishRequest> preparedRequest,
+                                                              PublishMetricsRecorder metricsRecorder) {
+        Function<PublishRequest, CompletableFuture<PublishResponse>> publish = request -> {
+            metricsRecorder.publishStarted();
+            return publishPreparedRequest(request);
+        };
+        if (fifoGroupScheduler == null || !FifoGroupScheduler.isOrdered(publishRequest)) {
+            return preparedRequest.thenCompose(publish);
+        }
+        return fifoGroupScheduler.sendInOrder(publishRequest.topicArn(), publishRequest.messageGroupId(),
+                () -> preparedRequest.thenCompose(publish),
+                previousFailure -> preparedRequest.thenCompose(request -> skipPublish(request, previousFailure)));
+    }
+
+    /**
+     * Fails a prepared request that is not sent because an earlier message of its group failed, and queues its
+     * payload for deletion if it is stored in S3.
+     */
+    private CompletableFuture<PublishResponse> skipPublish(PublishRequest preparedRequest, Throwable previousFailure) {
+        if (orphanedPayloadCleaner != null) {
+            orphanedPayloadCleaner.scheduleCleanup(preparedRequest.message(), preparedRequest.messageAttributes());
+        }
+        return FifoGroupScheduler.skip(previousFailure);
+    }
+
+    /**
+     * Publishes a prepared request, and queues its payload for deletion if it is stored in S3 and Amazon SNS rejects
+     * the request.
+     */
+    private CompletableFuture<PublishResponse> publishPreparedRequest(PublishRequest preparedRequest) {
+        CompletableFuture<PublishResponse> publishResponse = publishWithinLimit(() -> super.publish(preparedRequest));
+        if (orphanedPayloadCleaner == null) {
+            return publishResponse;
+        }
+        return publishResponse.whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                orphanedPayloadCleaner.scheduleCleanupIfRejected(preparedRequest.message(),
+                        preparedRequest.messageAttributes(), throwable);
+            }
+        });
+    }
+
+    /**
+     * Publishes a stream of messages, with the same offloading, inline compression and buffering as
+     * {@link #publish(PublishRequest)}. At most
+     * {@link SNSExtendedAsyncClientConfiguration#getPublishPipelineConcurrency()} messages are taken from
+     * {@code publishRequests} ahead of the responses emitted to the subscriber, so the source is slowed down when
+     * Amazon SNS or Amazon S3 cannot keep up, or when the subscriber does not request more responses.
+     * <p>
+     * The returned publisher emits the response of every message in the order of {@code publishRequests} and supports
+     * a single subscriber, which starts the publishing. The first message that cannot be published fails the stream
+     * and cancels {@code publishRequests}.
+     * </p>
+     *
+     * @param publishRequests The messages to publish.
+     * @return A publisher of the responses returned by the service.
+     */
+    public Publisher<PublishResponse> publishAll(Publisher<PublishRequest> publishRequests) {
+        if (publishRequests == null) {
+            throw SdkClientException.create("The publisher of publish requests must not be null.");
+        }
+        return new PublishPipeline(publishRequests, this::publish,
+                snsExtendedClientConfiguration.getPublishPipelineConcurrency());
+    }
+
+    /**
+     * Publishes one message to several topics. See
+     * {@link #publishToTopics(PublishRequest, List, Map)}.
+     *
+     * @param publishRequest Input for Publish action, whose topic ARN is replaced with each of the topics.
+     * @param topicArns      The topics to publish the message to.
+     * @return A future of the outcome of publishing the message to each topic, in the order of {@code topicArns}.
+     */
+    public CompletableFuture<List<PublishOutcome>> publishToTopics(PublishRequest publishRequest, List<String> topicArns) {
+        return publishToTopics(publishRequest, topicArns, Collections.emptyMap());
+    }
 
-        PublishRequest clonedPublishRequest = copyPublishRequest(publishRequest);
+    /**
+     * Publishes one message to several topics. If the message has to be stored in S3 for any of the topics, its
+     * payload is stored once and the same S3 pointer is published to every topic. The message is then published to
+     * all topics at the same time, without going through the publish buffer.
+     * <p>
+     * A failure to publish to one topic does not prevent the message from being published to the others, so the
+     * outcome of each topic should be checked. The returned future only fails if storing the payload in S3 fails, in
+     * which case the message is not published to any topic.
+     * </p>
+     *
+     * @param publishRequest         Input for Publish action, whose topic ARN is replaced with each of the topics.
+     * @param topicArns              The topics to publish the message to.
+     * @param topicMessageAttributes Message attributes added to the message for some of the topics, by topic ARN. They
+     *                               take precedence over the message attributes of {@code publishRequest}.
+     * @return A future of the outcome of publishing the message to each topic, in the order of {@code topicArns}.
+     */
+    public CompletableFuture<List<PublishOutcome>> publishToTopics(PublishRequest publishRequest, List<String> topicArns,
+                                                                   Map<String, Map<String, MessageAttributeValue>> topicMessageAttributes) {
+        List<PublishRequest> topicPublishRequests = createTopicPublishRequests(publishRequest, topicArns,
+                topicMessageAttributes);
 
-        return storeMessageInExtendedStore(clonedPublishRequest, messageAttributesSize).thenCompose(super::publish);
+        return rewriteTopicPublishRequests(topicPublishRequests).thenCompose(rewrittenRequests -> {
+            List<CompletableFuture<PublishOutcome>> publishes = new ArrayList<>(rewrittenRequests.size());
+            for (PublishRequest topicPublishRequest : rewrittenRequests) {
+                publishes.add(publishWithinLimit(() -> super.publish(topicPublishRequest)).handle((publishResponse, throwable) -> {
+                    if (throwable != null) {
+                        Throwable cause = Util.unwrapFutureException(throwable);
+                        LOGGER.warn("Failed to publish the message to the topic " + topicPublishRequest.topicArn()
+                                + ".", cause);
+                        return PublishOutcome.failure(topicPublishRequest.topicArn(), cause);
+                    }
+                    return PublishOutcome.success(topicPublishRequest.topicArn(), publishResponse);
+                }));
+            }
+
+            return CompletableFuture.allOf(publishes.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+                List<PublishOutcome> outcomes = new ArrayList<>(publishes.size());
+                for (CompletableFuture<PublishOutcome> publish : publishes) {
+                    outcomes.add(publish.join());
+                }
+                // The payload is only orphaned if every topic rejected the message.
+                if (orphanedPayloadCleaner != null && outcomes.stream()
+                        .allMatch(outcome -> OrphanedPayloadCleaner.isRejected(outcome.getFailure()))) {
+                    PublishRequest topicPublishRequest = rewrittenRequests.get(0);
+                    orphanedPayloadCleaner.scheduleCleanup(topicPublishRequest.message(),
+                            topicPublishRequest.messageAttributes());
+                }
+                return outcomes;
+            });
+        });
     }
 
-    private CompletableFuture<PublishRequest> storeMessageInExtendedStore(PublishRequest publishRequest, long messageAttributeSize) throws S3Exception {
+    /**
+     * Stores the payload in S3 once if the message is too large for any of the topics, and rewrites the request of
+     * each topic accordingly. The requests are validated before the returned future is created.
+     */
+    private CompletableFuture<List<PublishRequest>> rewriteTopicPublishRequests(List<PublishRequest> topicPublishRequests) {
+        PublishRequest publishRequest = topicPublishRequests.get(0);
+        if (StringUtils.isEmpty(publishRequest.message())) {
+            return CompletableFuture.completedFuture(topicPublishRequests);
+        }
+
+        checkMessageStructure(publishRequest.messageStructure());
+
+        long[] messageAttributesSizes = new long[topicPublishRequests.size()];
+        long maxMessageAttributesSize = 0;
+        for (int i = 0; i < topicPublishRequests.size(); i++) {
+            messageAttributesSizes[i] = getMsgAttributesSize(topicPublishRequests.get(i).messageAttributes());
+            maxMessageAttributesSize = Math.max(maxMessageAttributesSize, messageAttributesSizes[i]);
+        }
+
+        Utf8SizeCounter messageBodySize = new Utf8SizeCounter(publishRequest.message());
+        List<PublishRequest> rewrittenRequests = new ArrayList<>(topicPublishRequests.size());
+        if (!shouldExtendedStoreBeUsed(maxMessageAttributesSize, messageBodySize)) {
+            for (PublishRequest topicPublishRequest : topicPublishRequests) {
+                rewrittenRequests.add(topicPublishRequest.toBuilder()
+                        .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                        .build());
+            }
+            return CompletableFuture.completedFuture(rewrittenRequests);
+        }
+
+        // Every topic is validated before the upload, so a rejected message never leaves an object behind in S3.
+        MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(messageBodySize.size());
+        for (int i = 0; i < topicPublishRequests.size(); i++) {
+            checkOffloadedMessageAttributes(topicPublishRequests.get(i).messageAttributes(),
+                    snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSizes[i],
+                    payloadSizeAttribute, payloadEncodingAttribute);
+        }
+
         String messageContentStr = publishRequest.message();
-        long messageContentSize = Util.getStringSizeInBytes(messageContentStr);
         String s3Key = getS3keyAttribute(publishRequest.messageAttributes());
+        CompletableFuture<String> largeMessagePointerFuture = storeOriginalPayload(messageContentStr, s3Key,
+                messageBodySize.size());
 
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
+        boolean deduplicationIdDerived = topicPublishRequests.stream().anyMatch(topicPublishRequest ->
+                MessageDeduplicationIds.isDerived(topicPublishRequest.topicArn(),
+                        topicPublishRequest.messageDeduplicationId()));
+        String messageDeduplicationId = deduplicationIdDerived
+                ? MessageDeduplicationIds.derive(publishRequest.message())
+                : null;
+        return largeMessagePointerFuture.thenApply(largeMessagePointer -> {
+            for (PublishRequest topicPublishRequest : topicPublishRequests) {
+                rewrittenRequests.add(createOffloadedPublishRequest(
+                        MessageDeduplicationIds.withDerivedId(topicPublishRequest, messageDeduplicationId),
+                        largeMessagePointer, payloadSizeAttribute, payloadEncodingAttribute));
+            }
+            return rewrittenRequests;
+        });
+    }
 
-        MessageAttributeValue.Builder messageAttributeValueBuilder = MessageAttributeValue.builder();
-        messageAttributeValueBuilder.dataType("Number");
-        messageAttributeValueBuilder.stringValue(String.valueOf(messageContentSize));
-        MessageAttributeValue messageAttributeValue = messageAttributeValueBuilder.build();
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Entries whose payload and attribute size exceed the configured threshold are stored in S3 in parallel before
+     * the rewritten entries are sent in one or more <code>PublishBatch</code> calls, as decided by
+     * {@link SNSExtendedAsyncClientConfiguration#getPublishBatchPacking()}. With the default
+     * {@link PublishBatchPacking#NONE} packing, a single call is made and at most ten entries are accepted. Entries
+     * that fail on the service side are re-sent on their own after a growing random delay, up to
+     * {@link SNSExtendedAsyncClientConfiguration#getFailedBatchEntryRetries()} times. On a FIFO topic, a failed entry
+     * is no longer re-sent once a later entry of its message group was published, so that the group stays in order.
+     * </p>
+     */
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest publishBatchRequest) {
+        return publishBatch(publishBatchRequest, null);
+    }
 
-        Map<String, MessageAttributeValue> attributes = new HashMap<>(publishRequest.messageAttributes());
-        attributes.put(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, messageAttributeValue);
-        publishRequestBuilder.messageAttributes(attributes);
+    /**
+     * @param messageBodySizes the UTF-8 size of the message body of each entry, as already counted by the publish
+     *                         calls a buffered batch is made of, or null to count them.
+     */
+    private CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest publishBatchRequest,
+                                                                 long[] messageBodySizes) {
+        if (publishBatchRequest == null || !publishBatchRequest.hasPublishBatchRequestEntries()) {
+            return super.publishBatch(publishBatchRequest);
+        }
+
+        List<PublishBatchRequestEntry> entries = publishBatchRequest.publishBatchRequestEntries();
+        boolean fifoTopic = isFifoTopic(publishBatchRequest.topicArn());
+
+        // Validate every entry before anything is uploaded, so a rejected batch leaves nothing behind in S3.
+        PublishBatchPacker.PackedBatches packedBatches = PublishBatchPacker.pack(entries, snsExtendedClientConfiguration,
+                snsExtendedClientConfiguration.getPublishBatchPacking(), fifoTopic, payloadEncodingAttribute,
+                messageBodySizes);
+
+        List<CompletableFuture<PublishBatchRequestEntry>> rewrittenEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            rewrittenEntries.add(packedBatches.isOffloaded(i)
+                    ? storeBatchEntryInExtendedStore(entries.get(i), packedBatches.getPayloadSizeAttribute(i),
+                            packedBatches.getMessageDeduplicationId(i))
+                    : CompletableFuture.completedFuture(entries.get(i)));
+        }
+
+        return CompletableFuture.allOf(rewrittenEntries.toArray(new CompletableFuture<?>[0])).thenCompose(v -> {
+            List<PublishBatchRequestEntry> rewrittenEntryList = new ArrayList<>(rewrittenEntries.size());
+            for (CompletableFuture<PublishBatchRequestEntry> rewrittenEntry : rewrittenEntries) {
+                rewrittenEntryList.add(rewrittenEntry.join());
+            }
+
+            // Batches of a FIFO topic are sent one after the other to keep the order of the entries.
+            List<CompletableFuture<PublishBatchResponse>> responses = new ArrayList<>(packedBatches.getBatches().size());
+            CompletableFuture<PublishBatchResponse> previousResponse = CompletableFuture.completedFuture(null);
+            for (List<Integer> batch : packedBatches.getBatches()) {
+                PublishBatchRequest rewrittenRequest = rewriteBatchRequest(publishBatchRequest, rewrittenEntryList, batch);
+                CompletableFuture<PublishBatchResponse> response = fifoTopic
+                        ? previousResponse.handle((previous, previousFailure) -> previousFailure)
+                                .thenCompose(previousFailure -> previousFailure == null
+                                        ? publishBatchWithRetries(rewrittenRequest)
+                                        : skipBatch(rewrittenRequest, previousFailure))
+                        : publishBatchWithRetries(rewrittenRequest);
+                if (orphanedPayloadCleaner != null) {
+                    response = response.whenComplete((publishBatchResponse, throwable) -> {
+                        if (throwable == null) {
+                            orphanedPayloadCleaner.scheduleCleanupOfFailedEntries(
+                                    rewrittenRequest.publishBatchRequestEntries(), publishBatchResponse);
+                        }
+                    });
+                }
+                responses.add(response);
+                previousResponse = response;
+            }
+
+            return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).thenApply(allSent -> {
+                List<PublishBatchResponse> publishBatchResponses = new ArrayList<>(responses.size());
+                for (CompletableFuture<PublishBatchResponse> response : responses) {
+                    publishBatchResponses.add(response.join());
+                }
+                return mergeBatchResponses(publishBatchResponses);
+            });
+        });
+    }
+
+    private CompletableFuture<PublishBatchResponse> publishBatchWithRetries(PublishBatchRequest publishBatchRequest) {
+        CompletableFuture<PublishBatchResponse> response =
+                publishWithinLimit(() -> super.publishBatch(publishBatchRequest));
+        if (orphanedPayloadCleaner != null) {
+            // Once part of the batch is published, a failed retry leaves every payload in place.
+            response = response.whenComplete((publishBatchResponse, throwable) -> {
+                if (throwable != null) {
+                    orphanedPayloadCleaner.scheduleCleanupIfRejected(publishBatchRequest.publishBatchRequestEntries(),
+                            throwable);
+                }
+            });
+        }
+        return publishBatchWithRetries(publishBatchRequest, response,
+                snsExtendedClientConfiguration.getFailedBatchEntryRetries());
+    }
+
+    /**
+     * Fails a batch of a FIFO topic that is not sent because the batch before it failed, and queues its payloads for
+     * deletion.
+     */
+    private CompletableFuture<PublishBatchResponse> skipBatch(PublishBatchRequest publishBatchRequest,
+                                                              Throwable previousFailure) {
+        if (orphanedPayloadCleaner != null) {
+            for (PublishBatchRequestEntry entry : publishBatchRequest.publishBatchRequestEntries()) {
+                orphanedPayloadCleaner.scheduleCleanup(entry.message(), entry.messageAttributes());
+            }
+        }
+        CompletableFuture<PublishBatchResponse> skipped = new CompletableFuture<>();
+        skipped.completeExceptionally(Util.unwrapFutureException(previousFailure));
+        return skipped;
+    }
 
-        messageAttributeSize += getMessageAttributeSize(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, messageAttributeValue);
-        checkSizeOfMessageAttributes(snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributeSize);
+    private static PublishBatchRequest rewriteBatchRequest(PublishBatchRequest publishBatchRequest,
+                                                           List<PublishBatchRequestEntry> entries, List<Integer> batch) {
+        List<PublishBatchRequestEntry> batchEntries = new ArrayList<>(batch.size());
+        for (int entryIndex : batch) {
+            batchEntries.add(entries.get(entryIndex));
+        }
 
-        CompletableFuture<String> largeMessagePointerFuture = (s3Key != null)? payloadStore.storeOriginalPayload(messageContentStr, s3Key): payloadStore.storeOriginalPayload(messageContentStr);
+        return publishBatchRequest.toBuilder()
+                .publishBatchRequestEntries(batchEntries)
+                .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    private CompletableFuture<PublishBatchResponse> publishBatchWithRetries(PublishBatchRequest publishBatchRequest,
+                                                                            CompletableFuture<PublishBatchResponse> responseFuture,
+                                                                            int retriesLeft) {
+        if (retriesLeft == 0) {
+            return responseFuture;
+        }
+
+        return responseFuture.thenCompose(publishBatchResponse -> {
+            PublishBatchRequest retryRequest = getFailedEntriesRetryRequest(publishBatchRequest, publishBatchResponse);
+            if (retryRequest == null) {
+                return CompletableFuture.completedFuture(publishBatchResponse);
+            }
+
+            long retryDelayMillis = getFailedBatchEntryRetryDelayMillis(
+                    snsExtendedClientConfiguration.getFailedBatchEntryRetryBaseDelay(),
+                    snsExtendedClientConfiguration.getFailedBatchEntryRetries() - retriesLeft);
+            CompletableFuture<PublishBatchResponse> mergedResponse = delay(retryDelayMillis)
+                    .thenCompose(v -> publishWithinLimit(() -> super.publishBatch(retryRequest)))
+                    .thenApply(retryResponse -> mergeRetriedBatchResponse(publishBatchResponse, retryRequest,
+                            retryResponse));
+            return publishBatchWithRetries(publishBatchRequest, mergedResponse, retriesLeft - 1);
+        });
+    }
+
+    private CompletableFuture<Void> delay(long delayMillis) {
+        if (delayMillis == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> delayed = new CompletableFuture<>();
+        getBatchRetryScheduler().schedule(() -> delayed.complete(null), delayMillis, TimeUnit.MILLISECONDS);
+        return delayed;
+    }
+
+    private synchronized ScheduledExecutorService getBatchRetryScheduler() {
+        // Created on the first retry, since most clients never need one.
+        if (batchRetryScheduler == null) {
+            batchRetryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .threadNamePrefix("sns-extended-batch-retry").daemonThreads(true).build());
+        }
+        return batchRetryScheduler;
+    }
+
+    /**
+     * @param messageDeduplicationId the deduplication ID derived from the payload, or null to keep the one of the entry.
+     */
+    private CompletableFuture<PublishBatchRequestEntry> storeBatchEntryInExtendedStore(PublishBatchRequestEntry entry,
+                                                                                       MessageAttributeValue payloadSizeAttribute,
+                                                                                       String messageDeduplicationId) {
+        String messageContentStr = entry.message();
+        String s3Key = getS3keyAttribute(entry.messageAttributes());
+
+        Map<String, MessageAttributeValue> attributes = new HashMap<>(entry.messageAttributes());
+        putPayloadAttributes(attributes, payloadSizeAttribute, payloadEncodingAttribute);
+
+        CompletableFuture<String> largeMessagePointerFuture = storeOriginalPayload(messageContentStr, s3Key,
+                Long.parseLong(payloadSizeAttribute.stringValue()));
 
         return largeMessagePointerFuture.thenApply(largeMessagePointer -> {
-            publishRequestBuilder.message(largeMessagePointer);
-            return publishRequestBuilder.build();
+            PublishBatchRequestEntry.Builder offloadedEntry = entry.toBuilder()
+                    .message(largeMessagePointer)
+                    .messageAttributes(attributes);
+            if (messageDeduplicationId != null) {
+                offloadedEntry.messageDeduplicationId(messageDeduplicationId);
+            }
+            return offloadedEntry.build();
         });
     }
 
-    private PublishRequest copyPublishRequest(PublishRequest publishRequest) {
-        // We only modify Message and MessageAttributes, to avoid performance impact, let's shallow-copy
-        // the request and then copy the MessageAttributes map.
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
+    /**
+     * Sends all buffered messages without waiting for their batches to fill up. Does nothing unless buffered
+     * publishing is enabled.
+     *
+     * @return a future that completes once the buffered batches have been sent.
+     */
+    public CompletableFuture<Void> flush() {
+        if (publishBatchBuffer == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return publishBatchBuffer.flush();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (publishBatchBuffer != null) {
+                publishBatchBuffer.flush().join();
+            }
+        } finally {
+            if (publishBufferScheduler != null) {
+                publishBufferScheduler.shutdown();
+            }
+            synchronized (this) {
+                if (batchRetryScheduler != null) {
+                    batchRetryScheduler.shutdown();
+                }
+            }
+            if (orphanedPayloadCleaner != null) {
+                orphanedPayloadCleaner.close();
+            }
+            payloadStreamExecutor.shutdown();
+            super.close();
+        }
+    }
+
+    private CompletableFuture<PublishRequest> storeMessageInExtendedStore(PublishRequest publishRequest,
+                                                                          MessageAttributeValue payloadSizeAttribute) throws S3Exception {
+        String messageContentStr = publishRequest.message();
+        String s3Key = getS3keyAttribute(publishRequest.messageAttributes());
+
+        CompletableFuture<String> largeMessagePointerFuture = storeOriginalPayload(messageContentStr, s3Key,
+                Long.parseLong(payloadSizeAttribute.stringValue()));
+
+        return largeMessagePointerFuture.thenApply(largeMessagePointer ->
+                createOffloadedPublishRequest(publishRequest, largeMessagePointer, payloadSizeAttribute,
+                        payloadEncodingAttribute));
+    }
+
+    /**
+     * Stores a payload in S3 once it fits in the in-flight payload bytes budget.
+     */
+    private CompletableFuture<String> storeOriginalPayload(String messageContentStr, String s3Key, long payloadSize) {
+        return inFlightBytesBudget.runWithin(payloadSize, () -> uploadWithinLimit(payloadSize, () -> (s3Key != null)
+                ? payloadStore.storeOriginalPayload(messageContentStr, s3Key)
+                : payloadStore.storeOriginalPayload(messageContentStr)));
+    }
+
+    /**
+     * Stores a payload in S3 once it fits in the adaptive payload upload limit, if enabled.
+     */
+    private <T> CompletableFuture<T> uploadWithinLimit(long payloadSize, Supplier<CompletableFuture<T>> upload) {
+        // Latencies are compared per mebibyte, so that large payloads are not taken for a slow service.
+        return (payloadUploadLimiter != null)
+                ? payloadUploadLimiter.run(payloadSize / MEBIBYTE, upload)
+                : upload.get();
+    }
+
+    /**
+     * Sends a Publish or PublishBatch request once it fits in the adaptive publish limit, if enabled.
+     */
+    private <T> CompletableFuture<T> publishWithinLimit(Supplier<CompletableFuture<T>> publish) {
+        return (publishLimiter != null) ? publishLimiter.run(1, publish) : publish.get();
+    }
+
+    /**
+     * @return the current adaptive concurrency limits of the payload upload and publish stages, or null if they are
+     * disabled.
+     */
+    public AdaptiveConcurrencyLimits getAdaptiveConcurrencyLimits() {
+        if (payloadUploadLimiter == null) {
+            return null;
+        }
+        return new AdaptiveConcurrencyLimits(payloadUploadLimiter.getLimit(), payloadUploadLimiter.getInFlight(),
+                publishLimiter.getLimit(), publishLimiter.getInFlight());
+    }
+
+    /**
+     * @return the number of payload bytes currently held by the client while they are stored in S3, which the
+     * in-flight payload bytes limit of the configuration applies to.
+     */
+    public long getInFlightPayloadBytes() {
+        return inFlightBytesBudget.getUsedBytes();
+    }
+
+    /**
+     * @return the number of payload bytes held by the publishes waiting for the in-flight payload bytes limit, which
+     * the waiting payload bytes limit of the configuration applies to.
+     */
+    public long getWaitingPayloadBytes() {
+        return inFlightBytesBudget.getWaitingBytes();
+    }
+
+    /**
+     * @return the counters of the cleanup of orphaned payloads, or null if it is disabled.
+     */
+    public OrphanedPayloadCleanupMetrics getOrphanedPayloadCleanupMetrics() {
+        return orphanedPayloadCleaner == null ? null : orphanedPayloadCleaner.getMetrics();
+    }
+
+    private static PublishRequest createOffloadedPublishRequest(PublishRequest publishRequest, String largeMessagePointer,
+                                                                MessageAttributeValue payloadSizeAttribute,
+                                                                MessageAttributeValue payloadEncodingAttribute) {
         Map<String, MessageAttributeValue> attributes = new HashMap<>(publishRequest.messageAttributes());
-        publishRequestBuilder.messageAttributes(attributes);
-        return publishRequestBuilder.build();
+        putPayloadAttributes(attributes, payloadSizeAttribute, payloadEncodingAttribute);
+
+        // The outgoing request is built once, from the caller's request, which is left untouched.
+        return publishRequest.toBuilder()
+                .message(largeMessagePointer)
+                .messageAttributes(attributes)
+                .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    private CompletableFuture<PublishResponse> publishInline(PublishRequest inlineRequest,
+                                                             PublishMetricsRecorder metricsRecorder) {
+        if (publishBatchBuffer != null && PublishBatchBuffer.isBufferable(inlineRequest)) {
+            metricsRecorder.publishStarted();
+            // The compressed message is base64 encoded, so its length is its size.
+            long messageBodySize = inlineRequest.message().length();
+            return publishBatchBuffer.publish(inlineRequest,
+                    getMsgAttributesSize(inlineRequest.messageAttributes()) + messageBodySize, messageBodySize);
+        }
+        return publishInOrder(inlineRequest, CompletableFuture.completedFuture(
+                inlineRequest.toBuilder().overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION).build()),
+                metricsRecorder);
+    }
+
+    private boolean isInlineCompressionUsed(Utf8SizeCounter messageBodySize) {
+        return snsExtendedClientConfiguration.isInlineCompressionEnabled()
+                && !snsExtendedClientConfiguration.isAlwaysThroughS3()
+                && !messageBodySize.exceeds(snsExtendedClientConfiguration.getInlineCompressionMaxMessageSize());
     }
 
-    private boolean shouldExtendedStoreBeUsed(long totalMessageSize) {
+    private boolean shouldExtendedStoreBeUsed(long messageAttributesSize, Utf8SizeCounter messageBodySize) {
+        // The body is only counted up to the threshold here; the rest is counted if the message is offloaded.
         return snsExtendedClientConfiguration.isAlwaysThroughS3() ||
                 (snsExtendedClientConfiguration.isPayloadSupportEnabled() &&
-                        isTotalMessageSizeLargerThanThreshold(
-                                snsExtendedClientConfiguration.getPayloadSizeThreshold(),totalMessageSize));
+                        messageBodySize.exceeds(snsExtendedClientConfiguration.getPayloadSizeThreshold() - messageAttributesSize));
     }
 }
@@ -45,6 +45,8 @@ import software.amazon.awssdk.services.sns.model.ListTopicsRequest;
 import software.amazon.awssdk.services.sns.model.ListTopicsResponse;
 import software.amazon.awssdk.services.sns.model.OptInPhoneNumberRequest;
 import software.amazon.awssdk.services.sns.model.OptInPhoneNumberResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.services.sns.model.RemovePermissionRequest;
@@ -304,6 +306,14 @@ public abstract class AmazonSNSExtendedAsyncClientBase implements SnsAsyncClient
         return snsClientToBeExtended.publish(publishRequest);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest publishBatchRequest) {
+        return snsClientToBeExtended.publishBatch(publishBatchRequest);
+    }
+
     /**
      * {@inheritDoc}
      */
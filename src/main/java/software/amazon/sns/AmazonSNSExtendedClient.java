@@ -1,16 +1,20 @@
 package software.amazon.sns;
 
-import com.amazon.sqs.javamessaging.SQSExtendedClientConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.AbortedException;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.AuthorizationErrorException;
+import software.amazon.awssdk.services.sns.model.BatchEntryIdsNotDistinctException;
+import software.amazon.awssdk.services.sns.model.BatchRequestTooLongException;
+import software.amazon.awssdk.services.sns.model.EmptyBatchRequestException;
 import software.amazon.awssdk.services.sns.model.EndpointDisabledException;
 import software.amazon.awssdk.services.sns.model.InternalErrorException;
+import software.amazon.awssdk.services.sns.model.InvalidBatchEntryIdException;
 import software.amazon.awssdk.services.sns.model.InvalidParameterException;
 import software.amazon.awssdk.services.sns.model.InvalidParameterValueException;
 import software.amazon.awssdk.services.sns.model.InvalidSecurityException;
@@ -23,35 +27,77 @@ import software.amazon.awssdk.services.sns.model.KmsThrottlingException;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sns.model.NotFoundException;
 import software.amazon.awssdk.services.sns.model.PlatformApplicationDisabledException;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.awssdk.services.sns.model.TooManyEntriesInBatchRequestException;
+import software.amazon.awssdk.services.sns.model.ValidationException;
 import software.amazon.awssdk.utils.StringUtils;
+import software.amazon.awssdk.utils.ThreadFactoryBuilder;
 import software.amazon.payloadoffloading.PayloadStore;
-import software.amazon.payloadoffloading.S3BackedPayloadStore;
-import software.amazon.payloadoffloading.S3Dao;
 import software.amazon.payloadoffloading.Util;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageAttributes;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkSizeOfMessageAttributes;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.getMessageAttributeSize;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageStructure;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkOffloadedMessageAttributes;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkStreamedPublishRequest;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.compressInline;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createPayloadEncodingAttribute;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createPayloadSizeAttribute;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createTopicPublishRequests;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getFailedEntriesRetryRequest;
 import static software.amazon.sns.AmazonSNSExtendedClientUtil.getMsgAttributesSize;
 import static software.amazon.sns.AmazonSNSExtendedClientUtil.getS3keyAttribute;
-import static software.amazon.sns.AmazonSNSExtendedClientUtil.isTotalMessageSizeLargerThanThreshold;
-import static software.amazon.sns.SNSExtendedClientConstants.MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isFifoTopic;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.mergeBatchResponses;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.mergeRetriedBatchResponse;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.putPayloadAttributes;
+import static software.amazon.sns.SNSExtendedClientConstants.SNS_MAX_BATCH_ENTRIES;
 import static software.amazon.sns.SNSExtendedClientConstants.USER_AGENT_HEADER_NAME;
 
 public class AmazonSNSExtendedClient extends AmazonSNSExtendedClientBase implements SnsClient{
 
     static final String USER_AGENT_HEADER = Util.getUserAgentHeader(AmazonSNSExtendedClient.class.getSimpleName());
+    private static final AwsRequestOverrideConfiguration USER_AGENT_OVERRIDE_CONFIGURATION =
+            AwsRequestOverrideConfiguration.builder().putHeader(USER_AGENT_HEADER_NAME, USER_AGENT_HEADER).build();
     
     private static final Log LOGGER = LogFactory.getLog(AmazonSNSExtendedClient.class);
 
     private PayloadStore payloadStore;
     private SNSExtendedClientConfiguration snsExtendedClientConfiguration;
+    private ExtendedPayloadStore extendedPayloadStore;
+    // Names the codec of the payloads stored through payloadStore, or null if they are not compressed.
+    private MessageAttributeValue payloadEncodingAttribute;
+    private byte[] inlineCompressionDictionary;
+    private final ExecutorService batchUploadExecutor = createBatchUploadExecutor();
+    private final ExecutorService partUploadExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().threadNamePrefix("sns-extended-part-upload").daemonThreads(true).build());
+    private final ExecutorService fanOutPublishExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().threadNamePrefix("sns-extended-fan-out-publish").daemonThreads(true).build());
+    private ExecutorService bulkPublishExecutor;
+    private OrphanedPayloadCleaner orphanedPayloadCleaner;
 
     /**
      * Constructs a new Amazon SNS extended client to invoke service methods on
@@ -86,8 +132,12 @@ public class AmazonSNSExtendedClient extends AmazonSNSExtendedClientBase impleme
         super(snsClient);
 
         this.snsExtendedClientConfiguration = snsExtendedClientConfiguration;
-        S3Dao s3Dao = new S3Dao(this.snsExtendedClientConfiguration.getS3Client());
-        this.payloadStore = new S3BackedPayloadStore(s3Dao, this.snsExtendedClientConfiguration.getS3BucketName());
+        this.extendedPayloadStore = ExtendedPayloadStore.create(this.snsExtendedClientConfiguration, partUploadExecutor);
+        this.inlineCompressionDictionary = this.snsExtendedClientConfiguration.getInlineCompressionDictionary();
+        this.bulkPublishExecutor = BulkPublishExecutors.create(this.snsExtendedClientConfiguration.getBulkPublishParallelism());
+        this.payloadStore = extendedPayloadStore;
+        this.orphanedPayloadCleaner = OrphanedPayloadCleaner.create(this.snsExtendedClientConfiguration);
+        this.payloadEncodingAttribute = createPayloadEncodingAttribute(extendedPayloadStore.getContentEncoding());
     }
 
     /**
@@ -103,13 +153,21 @@ public class AmazonSNSExtendedClient extends AmazonSNSExtendedClientBase impleme
      * @param snsExtendedClientConfiguration The sns extended client configuration options controlling the
      *                                    functionality of this client.
      * @param payloadStore                The Payload Store that handles logic for saving to the desired
-     *                                    extended storage.
+     *                                    extended storage. Message bodies are stored through it uncompressed. With
+     *                                    orphaned payload cleanup enabled, the payloads it stored are deleted with
+     *                                    the configured S3 client, so its pointers must name S3 objects.
      */
     public AmazonSNSExtendedClient(SnsClient snsClient, SNSExtendedClientConfiguration snsExtendedClientConfiguration, PayloadStore payloadStore) {
         super(snsClient);
 
         this.snsExtendedClientConfiguration = snsExtendedClientConfiguration;
         this.payloadStore = payloadStore;
+        this.extendedPayloadStore = ExtendedPayloadStore.create(this.snsExtendedClientConfiguration, partUploadExecutor);
+        this.inlineCompressionDictionary = this.snsExtendedClientConfiguration.getInlineCompressionDictionary();
+        this.bulkPublishExecutor = BulkPublishExecutors.create(this.snsExtendedClientConfiguration.getBulkPublishParallelism());
+        this.orphanedPayloadCleaner = OrphanedPayloadCleaner.create(this.snsExtendedClientConfiguration);
+        // The payload store is handed message bodies as they are, so what it stores is never compressed.
+        this.payloadEncodingAttribute = null;
     }
 
     /**
@@ -181,76 +239,626 @@ public class AmazonSNSExtendedClient extends AmazonSNSExtendedClientBase impleme
             return super.publish(publishRequest);
         }
 
-        if (!StringUtils.isEmpty(publishRequest.messageStructure()) &&
-                publishRequest.messageStructure().equals(MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE)) {
-            String errorMessage = "SNS extended client does not support sending JSON messages.";
+        return publishWithDetails(publishRequest, false).getResponse();
+    }
+
+    /**
+     * Publishes a message like {@link #publish(PublishRequest)}, and also returns whether its payload was offloaded,
+     * the S3 pointer of the payload if it was, the size of the payload and the duration of each stage of the publish.
+     *
+     * @param publishRequest the request to publish.
+     * @return the response of Amazon SNS with the details of the publish.
+     */
+    public ExtendedPublishResponse publishWithDetails(PublishRequest publishRequest) {
+        if (publishRequest == null) {
+            String errorMessage = "publishRequest must not be null.";
             LOGGER.error(errorMessage);
             throw SdkClientException.create(errorMessage);
         }
 
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
-        publishRequestBuilder.overrideConfiguration(AwsRequestOverrideConfiguration.builder().putHeader(USER_AGENT_HEADER_NAME, USER_AGENT_HEADER).build());
-        publishRequest = publishRequestBuilder.build();
+        return publishWithDetails(publishRequest, true);
+    }
 
-        long messageAttributesSize = getMsgAttributesSize(publishRequest.messageAttributes());
-        long messageBodySize = Util.getStringSizeInBytes(publishRequest.message());
+    private ExtendedPublishResponse publishWithDetails(PublishRequest publishRequest, boolean detailsReturned) {
+        PublishMetricsRecorder metricsRecorder = new PublishMetricsRecorder(
+                snsExtendedClientConfiguration.getPublishMetricsReporter(), publishRequest.topicArn(),
+                detailsReturned);
+        PublishResponse publishResponse;
+        try {
+            publishResponse = publish(publishRequest, metricsRecorder);
+        } catch (RuntimeException e) {
+            metricsRecorder.complete(e);
+            throw e;
+        }
+        PublishMetrics publishMetrics = metricsRecorder.complete(null);
+        return new ExtendedPublishResponse(publishResponse, publishMetrics, metricsRecorder.getPayloadPointer());
+    }
 
-        if (!shouldExtendedStoreBeUsed(messageAttributesSize + messageBodySize)) {
+    private PublishResponse publish(PublishRequest publishRequest, PublishMetricsRecorder metricsRecorder) {
+        if (StringUtils.isEmpty(publishRequest.message())) {
+            // A request without a message body is sent as it is, like publish(PublishRequest) does.
+            metricsRecorder.publishStarted();
             return super.publish(publishRequest);
         }
 
-        checkMessageAttributes(publishRequest.messageAttributes());
-        checkSizeOfMessageAttributes(snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize);
+        checkMessageStructure(publishRequest.messageStructure());
+
+        long messageAttributesSize = getMsgAttributesSize(publishRequest.messageAttributes());
+        Utf8SizeCounter messageBodySize = new Utf8SizeCounter(publishRequest.message());
+
+        boolean useExtendedStore = shouldExtendedStoreBeUsed(messageAttributesSize, messageBodySize);
+        metricsRecorder.sizeChecked(messageBodySize::size);
+        if (!useExtendedStore) {
+            metricsRecorder.publishStarted();
+            return super.publish(publishRequest.toBuilder().overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION).build());
+        }
+
+        if (isInlineCompressionUsed(messageBodySize)) {
+            PublishRequest inlineRequest = compressInline(publishRequest,
+                    snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize,
+                    inlineCompressionDictionary);
+            if (inlineRequest != null) {
+                metricsRecorder.compressedInline();
+                metricsRecorder.publishStarted();
+                return super.publish(inlineRequest.toBuilder().overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION).build());
+            }
+        }
+
+        // Everything is validated before the upload, so a rejected message never leaves an object behind in S3.
+        MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(messageBodySize.size());
+        checkOffloadedMessageAttributes(publishRequest.messageAttributes(),
+                snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSize, payloadSizeAttribute,
+                payloadEncodingAttribute);
+
+        PublishRequest offloadedRequest = MessageDeduplicationIds.withDerivedId(publishRequest);
+        metricsRecorder.uploadStarted();
+        offloadedRequest = storeMessageInExtendedStore(offloadedRequest, payloadSizeAttribute);
+        metricsRecorder.uploadCompleted(offloadedRequest.message());
+        metricsRecorder.publishStarted();
+        return publishOffloadedRequest(offloadedRequest);
+    }
+
+    /**
+     * Publishes a message whose body is read from a stream and uploaded to S3 as it is read, without ever being held
+     * in memory as a whole. Only the S3 pointer is sent to Amazon SNS, whatever the size of the payload.
+     * <p>
+     * The message body is taken from {@code payload}, so the message of {@code publishRequest} must not be set.
+     * Every other field of the request is published as usual. The stream is not closed. Subscribers that read the
+     * payload as text, such as the Amazon SQS Extended Client, expect it to be UTF-8 encoded.
+     * </p>
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The message body.
+     * @param payloadLength  The number of bytes to read from {@code payload}.
+     * @return Result of the Publish operation returned by the service.
+     * @throws SdkClientException If payload support is disabled, the request cannot be sent through the extended client
+     *                            or storing the payload in S3 fails.
+     */
+    public PublishResponse publish(PublishRequest publishRequest, InputStream payload, long payloadLength) {
+        return publishFromSource(publishRequest, PayloadSource.fromInputStream(payload, payloadLength));
+    }
+
+    /**
+     * Publishes a message whose body is the content of a file, which is uploaded to S3 without being loaded in memory.
+     * See {@link #publish(PublishRequest, InputStream, long)}.
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The file holding the message body.
+     * @return Result of the Publish operation returned by the service.
+     */
+    public PublishResponse publish(PublishRequest publishRequest, Path payload) {
+        return publishFromSource(publishRequest, PayloadSource.fromPath(payload));
+    }
+
+    /**
+     * Publishes a message whose body is the remaining content of a buffer, which is uploaded to S3 without being
+     * copied. The position of the buffer is left unchanged. See {@link #publish(PublishRequest, InputStream, long)}.
+     *
+     * @param publishRequest Input for Publish action, without a message.
+     * @param payload        The buffer holding the message body.
+     * @return Result of the Publish operation returned by the service.
+     */
+    public PublishResponse publish(PublishRequest publishRequest, ByteBuffer payload) {
+        return publishFromSource(publishRequest, PayloadSource.fromByteBuffer(payload));
+    }
+
+    private PublishResponse publishFromSource(PublishRequest publishRequest, PayloadSource payloadSource) {
+        PublishMetricsRecorder metricsRecorder = new PublishMetricsRecorder(
+                snsExtendedClientConfiguration.getPublishMetricsReporter(),
+                (publishRequest != null) ? publishRequest.topicArn() : null, false);
+        try {
+            PublishResponse publishResponse = publishFromSource(publishRequest, payloadSource, metricsRecorder);
+            metricsRecorder.complete(null);
+            return publishResponse;
+        } catch (RuntimeException e) {
+            metricsRecorder.complete(e);
+            throw e;
+        }
+    }
+
+    private PublishResponse publishFromSource(PublishRequest publishRequest, PayloadSource payloadSource,
+                                              PublishMetricsRecorder metricsRecorder) {
+        checkStreamedPublishRequest(publishRequest, snsExtendedClientConfiguration.isPayloadSupportEnabled());
+
+        // Streamed payloads are always stored through the extended payload store, even next to a custom one.
+        MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(payloadSource.contentLength());
+        MessageAttributeValue streamedPayloadEncodingAttribute =
+                createPayloadEncodingAttribute(extendedPayloadStore.getContentEncoding());
+        checkOffloadedMessageAttributes(publishRequest.messageAttributes(),
+                snsExtendedClientConfiguration.getPayloadSizeThreshold(),
+                getMsgAttributesSize(publishRequest.messageAttributes()), payloadSizeAttribute,
+                streamedPayloadEncodingAttribute);
 
-        PublishRequest clonedPublishRequest = copyPublishRequest(publishRequest);
-        publishRequest = storeMessageInExtendedStore(clonedPublishRequest, messageAttributesSize);
+        metricsRecorder.sizeChecked(payloadSource::contentLength);
+        metricsRecorder.uploadStarted();
+        String largeMessagePointer = extendedPayloadStore.storeOriginalPayload(payloadSource,
+                getS3keyAttribute(publishRequest.messageAttributes()));
+        metricsRecorder.uploadCompleted(largeMessagePointer);
 
-        return super.publish(publishRequest);
+        metricsRecorder.publishStarted();
+        return publishOffloadedRequest(createOffloadedPublishRequest(publishRequest, largeMessagePointer, payloadSizeAttribute,
+                streamedPayloadEncodingAttribute));
     }
 
+    /**
+     * Publishes one message to several topics. See
+     * {@link #publishToTopics(PublishRequest, List, Map)}.
+     *
+     * @param publishRequest Input for Publish action, whose topic ARN is replaced with each of the topics.
+     * @param topicArns      The topics to publish the message to.
+     * @return The outcome of publishing the message to each topic, in the order of {@code topicArns}.
+     */
+    public List<PublishOutcome> publishToTopics(PublishRequest publishRequest, List<String> topicArns) {
+        return publishToTopics(publishRequest, topicArns, Collections.emptyMap());
+    }
+
+    /**
+     * Publishes one message to several topics. If the message has to be stored in S3 for any of the topics, its
+     * payload is stored once and the same S3 pointer is published to every topic. The message is then published to
+     * all topics at the same time.
+     * <p>
+     * A failure to publish to one topic does not prevent the message from being published to the others, so the
+     * outcome of each topic should be checked.
+     * </p>
+     *
+     * @param publishRequest         Input for Publish action, whose topic ARN is replaced with each of the topics.
+     * @param topicArns              The topics to publish the message to.
+     * @param topicMessageAttributes Message attributes added to the message for some of the topics, by topic ARN. They
+     *                               take precedence over the message attributes of {@code publishRequest}.
+     * @return The outcome of publishing the message to each topic, in the order of {@code topicArns}.
+     * @throws SdkClientException If the message cannot be sent through the extended client to one of the topics or
+     *                            storing the payload in S3 fails. The message is not published to any topic in that
+     *                            case.
+     */
+    public List<PublishOutcome> publishToTopics(PublishRequest publishRequest, List<String> topicArns,
+                                                Map<String, Map<String, MessageAttributeValue>> topicMessageAttributes) {
+        List<PublishRequest> topicPublishRequests = rewriteTopicPublishRequests(
+                createTopicPublishRequests(publishRequest, topicArns, topicMessageAttributes));
+
+        // The last topic is published to on the calling thread while the others are published to in parallel.
+        int lastPublish = topicPublishRequests.size() - 1;
+        List<CompletableFuture<PublishOutcome>> publishes = new ArrayList<>(lastPublish + 1);
+        for (int i = 0; i < lastPublish; i++) {
+            PublishRequest topicPublishRequest = topicPublishRequests.get(i);
+            publishes.add(CompletableFuture.supplyAsync(
+                    () -> publishToTopic(topicPublishRequest), fanOutPublishExecutor));
+        }
+        publishes.add(CompletableFuture.completedFuture(publishToTopic(topicPublishRequests.get(lastPublish))));
+
+        List<PublishOutcome> outcomes = new ArrayList<>(publishes.size());
+        for (CompletableFuture<PublishOutcome> publish : publishes) {
+            outcomes.add(publish.join());
+        }
+        // The payload is only orphaned if every topic rejected the message.
+        if (orphanedPayloadCleaner != null
+                && outcomes.stream().allMatch(outcome -> OrphanedPayloadCleaner.isRejected(outcome.getFailure()))) {
+            PublishRequest topicPublishRequest = topicPublishRequests.get(0);
+            orphanedPayloadCleaner.scheduleCleanup(topicPublishRequest.message(), topicPublishRequest.messageAttributes());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Stores the payload in S3 once if the message is too large for any of the topics, and rewrites the request of
+     * each topic accordingly.
+     */
+    private List<PublishRequest> rewriteTopicPublishRequests(List<PublishRequest> topicPublishRequests) {
+        PublishRequest publishRequest = topicPublishRequests.get(0);
+        if (StringUtils.isEmpty(publishRequest.message())) {
+            return topicPublishRequests;
+        }
+
+        checkMessageStructure(publishRequest.messageStructure());
+
+        long[] messageAttributesSizes = new long[topicPublishRequests.size()];
+        long maxMessageAttributesSize = 0;
+        for (int i = 0; i < topicPublishRequests.size(); i++) {
+            messageAttributesSizes[i] = getMsgAttributesSize(topicPublishRequests.get(i).messageAttributes());
+            maxMessageAttributesSize = Math.max(maxMessageAttributesSize, messageAttributesSizes[i]);
+        }
+
+        Utf8SizeCounter messageBodySize = new Utf8SizeCounter(publishRequest.message());
+        List<PublishRequest> rewrittenRequests = new ArrayList<>(topicPublishRequests.size());
+        if (!shouldExtendedStoreBeUsed(maxMessageAttributesSize, messageBodySize)) {
+            for (PublishRequest topicPublishRequest : topicPublishRequests) {
+                rewrittenRequests.add(topicPublishRequest.toBuilder()
+                        .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                        .build());
+            }
+            return rewrittenRequests;
+        }
+
+        // Every topic is validated before the upload, so a rejected message never leaves an object behind in S3.
+        MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(messageBodySize.size());
+        for (int i = 0; i < topicPublishRequests.size(); i++) {
+            checkOffloadedMessageAttributes(topicPublishRequests.get(i).messageAttributes(),
+                    snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributesSizes[i],
+                    payloadSizeAttribute, payloadEncodingAttribute);
+        }
 
-    private PublishRequest storeMessageInExtendedStore(PublishRequest publishRequest, long messageAttributeSize) {
         String messageContentStr = publishRequest.message();
-        long messageContentSize = Util.getStringSizeInBytes(messageContentStr);
         String s3Key = getS3keyAttribute(publishRequest.messageAttributes());
+        String largeMessagePointer = (s3Key != null)? payloadStore.storeOriginalPayload(messageContentStr, s3Key): payloadStore.storeOriginalPayload(messageContentStr);
+
+        boolean deduplicationIdDerived = topicPublishRequests.stream().anyMatch(topicPublishRequest ->
+                MessageDeduplicationIds.isDerived(topicPublishRequest.topicArn(),
+                        topicPublishRequest.messageDeduplicationId()));
+        String messageDeduplicationId = deduplicationIdDerived
+                ? MessageDeduplicationIds.derive(publishRequest.message())
+                : null;
+        for (PublishRequest topicPublishRequest : topicPublishRequests) {
+            rewrittenRequests.add(createOffloadedPublishRequest(
+                    MessageDeduplicationIds.withDerivedId(topicPublishRequest, messageDeduplicationId),
+                    largeMessagePointer, payloadSizeAttribute, payloadEncodingAttribute));
+        }
+        return rewrittenRequests;
+    }
+
+    /**
+     * Publishes several messages concurrently, each of them as with {@link #publish(PublishRequest)}. See
+     * {@link #publishAll(Iterable)}.
+     *
+     * @param publishRequests The messages to publish.
+     * @return The outcome of publishing each message, in the order of {@code publishRequests}.
+     */
+    public List<PublishOutcome> publishAll(Stream<PublishRequest> publishRequests) {
+        if (publishRequests == null) {
+            throw SdkClientException.create("The stream of publish requests must not be null.");
+        }
+        return publishAll(publishRequests.iterator());
+    }
 
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
+    /**
+     * Publishes several messages concurrently, each of them as with {@link #publish(PublishRequest)}, and waits until
+     * all of them are published. At most {@link SNSExtendedClientConfiguration#getBulkPublishParallelism()} messages
+     * are published at the same time, and the next messages are only taken from {@code publishRequests} as earlier
+     * ones complete. On Java 21 and later, each message is published on its own virtual thread.
+     * <p>
+     * Messages of the same message group of a FIFO topic are published one after the other, in the order of
+     * {@code publishRequests}, while other messages are published alongside them.
+     * </p>
+     * <p>
+     * A failure to publish one message does not prevent the others from being published, so the outcome of each
+     * message should be checked.
+     * </p>
+     *
+     * @param publishRequests The messages to publish.
+     * @return The outcome of publishing each message, in the order of {@code publishRequests}.
+     */
+    public List<PublishOutcome> publishAll(Iterable<PublishRequest> publishRequests) {
+        if (publishRequests == null) {
+            throw SdkClientException.create("The publish requests must not be null.");
+        }
+        return publishAll(publishRequests.iterator());
+    }
+
+    private List<PublishOutcome> publishAll(Iterator<PublishRequest> publishRequests) {
+        Semaphore publishPermits = new Semaphore(snsExtendedClientConfiguration.getBulkPublishParallelism());
+        // Every message gets its own outcome, so a failed message never holds back the rest of its group.
+        FifoGroupScheduler fifoGroupScheduler = new FifoGroupScheduler(FifoGroupFailurePolicy.CONTINUE);
+        List<CompletableFuture<PublishOutcome>> publishes = new ArrayList<>();
+        while (publishRequests.hasNext()) {
+            PublishRequest publishRequest = publishRequests.next();
+            try {
+                publishPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw AbortedException.create("Interrupted while waiting to publish the next message.", e);
+            }
+            CompletableFuture<PublishOutcome> publish;
+            if (FifoGroupScheduler.isOrdered(publishRequest)) {
+                // A message waits for the previous one of its group while holding its permit, which is fine since
+                // the previous one already holds its own.
+                publish = fifoGroupScheduler.sendInOrder(publishRequest.topicArn(), publishRequest.messageGroupId(),
+                        () -> CompletableFuture.supplyAsync(() -> publishMessage(publishRequest), bulkPublishExecutor));
+            } else {
+                publish = CompletableFuture.supplyAsync(() -> publishMessage(publishRequest), bulkPublishExecutor);
+            }
+            publish.whenComplete((outcome, throwable) -> publishPermits.release());
+            publishes.add(publish);
+        }
+
+        List<PublishOutcome> outcomes = new ArrayList<>(publishes.size());
+        for (CompletableFuture<PublishOutcome> publish : publishes) {
+            outcomes.add(publish.join());
+        }
+        return outcomes;
+    }
+
+    private PublishOutcome publishMessage(PublishRequest publishRequest) {
+        try {
+            return PublishOutcome.success(publishRequest.topicArn(), publish(publishRequest));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to publish a message of a bulk publish.", e);
+            return PublishOutcome.failure(publishRequest.topicArn(), e);
+        }
+    }
+
+    private PublishOutcome publishToTopic(PublishRequest topicPublishRequest) {
+        try {
+            return PublishOutcome.success(topicPublishRequest.topicArn(), super.publish(topicPublishRequest));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to publish the message to the topic " + topicPublishRequest.topicArn() + ".", e);
+            return PublishOutcome.failure(topicPublishRequest.topicArn(), e);
+        }
+    }
+
+    /**
+     * <p>
+     * Publishes messages to the specified topic. Entries whose payload and attribute size exceed the configured
+     * threshold are stored in S3 in parallel, and the rewritten entries are sent to Amazon SNS in one or more
+     * <code>PublishBatch</code> calls, as decided by {@link SNSExtendedClientConfiguration#getPublishBatchPacking()}.
+     * With the default {@link PublishBatchPacking#NONE} packing, a single call is made and at most ten entries are
+     * accepted. Entries that fail on the service side are re-sent on their own after a growing random delay, up to
+     * {@link SNSExtendedClientConfiguration#getFailedBatchEntryRetries()} times. On a FIFO topic, a failed entry is no
+     * longer re-sent once a later entry of its message group was published, so that the group stays in order.
+     * </p>
+     * <p>
+     * The result of publishing each message is reported individually in the response, so batch errors should be
+     * checked even when the call succeeds.
+     * </p>
+     *
+     * @param publishBatchRequest Input for PublishBatch action.
+     * @return Result of the PublishBatch operation returned by the service, including the outcome of retried entries.
+     * @throws SdkClientException If an entry cannot be sent through the extended client or storing a payload in S3
+     *                            fails. No entry is published in that case.
+     * @throws SnsException       Base class for all service exceptions. Unknown exceptions will be thrown as an instance of this type.
+     * @see <a href="http://docs.aws.amazon.com/goto/WebAPI/sns-2010-03-31/PublishBatch" target="_top">AWS API
+     * Documentation</a>
+     */
+    @Override
+    public PublishBatchResponse publishBatch(PublishBatchRequest publishBatchRequest) throws InvalidParameterException,
+            InvalidParameterValueException, InternalErrorException, NotFoundException, EndpointDisabledException,
+            PlatformApplicationDisabledException, AuthorizationErrorException, BatchEntryIdsNotDistinctException,
+            BatchRequestTooLongException, EmptyBatchRequestException, InvalidBatchEntryIdException,
+            TooManyEntriesInBatchRequestException, KmsDisabledException, KmsInvalidStateException, KmsNotFoundException,
+            KmsOptInRequiredException, KmsThrottlingException, KmsAccessDeniedException, InvalidSecurityException,
+            ValidationException, AwsServiceException, SdkClientException, SnsException {
+        if (publishBatchRequest == null || !publishBatchRequest.hasPublishBatchRequestEntries()) {
+            return super.publishBatch(publishBatchRequest);
+        }
+
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(publishBatchRequest.publishBatchRequestEntries());
+
+        // Validate every entry before anything is uploaded, so a rejected batch leaves nothing behind in S3.
+        PublishBatchPacker.PackedBatches packedBatches = PublishBatchPacker.pack(entries, snsExtendedClientConfiguration,
+                snsExtendedClientConfiguration.getPublishBatchPacking(),
+                isFifoTopic(publishBatchRequest.topicArn()), payloadEncodingAttribute, null);
+
+        List<Integer> offloadedEntryIndexes = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (packedBatches.isOffloaded(i)) {
+                offloadedEntryIndexes.add(i);
+            }
+        }
+
+        // The last payload is stored on the calling thread while the others are uploaded in parallel.
+        int lastUpload = offloadedEntryIndexes.size() - 1;
+        List<CompletableFuture<PublishBatchRequestEntry>> uploads = new ArrayList<>(lastUpload + 1);
+        for (int i = 0; i < lastUpload; i++) {
+            int entryIndex = offloadedEntryIndexes.get(i);
+            PublishBatchRequestEntry entry = entries.get(entryIndex);
+            MessageAttributeValue payloadSizeAttribute = packedBatches.getPayloadSizeAttribute(entryIndex);
+            String messageDeduplicationId = packedBatches.getMessageDeduplicationId(entryIndex);
+            uploads.add(CompletableFuture.supplyAsync(
+                    () -> storeBatchEntryInExtendedStore(entry, payloadSizeAttribute, messageDeduplicationId),
+                    batchUploadExecutor));
+        }
+        if (lastUpload >= 0) {
+            int entryIndex = offloadedEntryIndexes.get(lastUpload);
+            uploads.add(CompletableFuture.completedFuture(storeBatchEntryInExtendedStore(entries.get(entryIndex),
+                    packedBatches.getPayloadSizeAttribute(entryIndex),
+                    packedBatches.getMessageDeduplicationId(entryIndex))));
+        }
+
+        for (int i = 0; i < uploads.size(); i++) {
+            entries.set(offloadedEntryIndexes.get(i), joinUpload(uploads.get(i)));
+        }
+
+        List<List<Integer>> batches = packedBatches.getBatches();
+        List<PublishBatchResponse> publishBatchResponses = new ArrayList<>(batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            PublishBatchRequest batchRequest = rewriteBatchRequest(publishBatchRequest, entries, batches.get(i));
+            PublishBatchResponse publishBatchResponse;
+            try {
+                publishBatchResponse = publishBatchWithRetries(batchRequest);
+            } catch (RuntimeException e) {
+                // The batches after this one are never sent.
+                if (orphanedPayloadCleaner != null) {
+                    for (int unsentBatch = i + 1; unsentBatch < batches.size(); unsentBatch++) {
+                        for (int entryIndex : batches.get(unsentBatch)) {
+                            PublishBatchRequestEntry entry = entries.get(entryIndex);
+                            orphanedPayloadCleaner.scheduleCleanup(entry.message(), entry.messageAttributes());
+                        }
+                    }
+                }
+                throw e;
+            }
+            if (orphanedPayloadCleaner != null) {
+                orphanedPayloadCleaner.scheduleCleanupOfFailedEntries(batchRequest.publishBatchRequestEntries(),
+                        publishBatchResponse);
+            }
+            publishBatchResponses.add(publishBatchResponse);
+        }
+
+        return mergeBatchResponses(publishBatchResponses);
+    }
+
+    /**
+     * Publishes a request whose payload is stored in S3, and queues the payload for deletion if Amazon SNS rejects it.
+     */
+    private PublishResponse publishOffloadedRequest(PublishRequest offloadedRequest) {
+        try {
+            return super.publish(offloadedRequest);
+        } catch (RuntimeException e) {
+            if (orphanedPayloadCleaner != null) {
+                orphanedPayloadCleaner.scheduleCleanupIfRejected(offloadedRequest.message(),
+                        offloadedRequest.messageAttributes(), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the counters of the cleanup of orphaned payloads, or null if it is disabled.
+     */
+    public OrphanedPayloadCleanupMetrics getOrphanedPayloadCleanupMetrics() {
+        return orphanedPayloadCleaner == null ? null : orphanedPayloadCleaner.getMetrics();
+    }
+
+    private PublishBatchResponse publishBatchWithRetries(PublishBatchRequest publishBatchRequest) {
+        PublishBatchResponse publishBatchResponse;
+        try {
+            publishBatchResponse = super.publishBatch(publishBatchRequest);
+        } catch (RuntimeException e) {
+            // Once part of the batch is published, a failed retry leaves every payload in place.
+            if (orphanedPayloadCleaner != null) {
+                orphanedPayloadCleaner.scheduleCleanupIfRejected(publishBatchRequest.publishBatchRequestEntries(), e);
+            }
+            throw e;
+        }
+
+        for (int retry = 0; retry < snsExtendedClientConfiguration.getFailedBatchEntryRetries(); retry++) {
+            PublishBatchRequest retryRequest = getFailedEntriesRetryRequest(publishBatchRequest, publishBatchResponse);
+            if (retryRequest == null) {
+                break;
+            }
+            try {
+                Thread.sleep(getFailedBatchEntryRetryDelayMillis(
+                        snsExtendedClientConfiguration.getFailedBatchEntryRetryBaseDelay(), retry));
+            } catch (InterruptedException e) {
+                // The entries that are still failed are reported as such in the response.
+                Thread.currentThread().interrupt();
+                break;
+            }
+            publishBatchResponse = mergeRetriedBatchResponse(publishBatchResponse, retryRequest,
+                    super.publishBatch(retryRequest));
+        }
+
+        return publishBatchResponse;
+    }
+
+    private static PublishBatchRequest rewriteBatchRequest(PublishBatchRequest publishBatchRequest,
+                                                           List<PublishBatchRequestEntry> entries, List<Integer> batch) {
+        List<PublishBatchRequestEntry> batchEntries = new ArrayList<>(batch.size());
+        for (int entryIndex : batch) {
+            batchEntries.add(entries.get(entryIndex));
+        }
+
+        return publishBatchRequest.toBuilder()
+                .publishBatchRequestEntries(batchEntries)
+                .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    /**
+     * @param messageDeduplicationId the deduplication ID derived from the payload, or null to keep the one of the entry.
+     */
+    private PublishBatchRequestEntry storeBatchEntryInExtendedStore(PublishBatchRequestEntry entry,
+                                                                    MessageAttributeValue payloadSizeAttribute,
+                                                                    String messageDeduplicationId) {
+        String messageContentStr = entry.message();
+        String s3Key = getS3keyAttribute(entry.messageAttributes());
         String largeMessagePointer = (s3Key != null)? payloadStore.storeOriginalPayload(messageContentStr, s3Key): payloadStore.storeOriginalPayload(messageContentStr);
-        publishRequestBuilder.message(largeMessagePointer);
 
-        MessageAttributeValue.Builder messageAttributeValueBuilder = MessageAttributeValue.builder();
-        messageAttributeValueBuilder.dataType("Number");
-        messageAttributeValueBuilder.stringValue(String.valueOf(messageContentSize));
-        MessageAttributeValue messageAttributeValue = messageAttributeValueBuilder.build();
+        Map<String, MessageAttributeValue> attributes = new HashMap<>(entry.messageAttributes());
+        putPayloadAttributes(attributes, payloadSizeAttribute, payloadEncodingAttribute);
 
-        Map<String, MessageAttributeValue> attributes = new HashMap<>(publishRequest.messageAttributes());
-        attributes.put(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, messageAttributeValue);
-        publishRequestBuilder.messageAttributes(attributes);
+        PublishBatchRequestEntry.Builder offloadedEntry = entry.toBuilder()
+                .message(largeMessagePointer)
+                .messageAttributes(attributes);
+        if (messageDeduplicationId != null) {
+            offloadedEntry.messageDeduplicationId(messageDeduplicationId);
+        }
+        return offloadedEntry.build();
+    }
+
+    private static <T> T joinUpload(CompletableFuture<T> upload) {
+        try {
+            return upload.join();
+        } catch (CompletionException e) {
+            Throwable cause = Util.unwrapFutureException(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw SdkClientException.create("Failed to store the message content in an S3 object.", cause);
+        }
+    }
 
-        messageAttributeSize += getMessageAttributeSize(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, messageAttributeValue);
-        checkSizeOfMessageAttributes(snsExtendedClientConfiguration.getPayloadSizeThreshold(), messageAttributeSize);
+    private static ExecutorService createBatchUploadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(SNS_MAX_BATCH_ENTRIES, SNS_MAX_BATCH_ENTRIES,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().threadNamePrefix("sns-extended-batch-upload").daemonThreads(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private PublishRequest storeMessageInExtendedStore(PublishRequest publishRequest, MessageAttributeValue payloadSizeAttribute) {
+        String messageContentStr = publishRequest.message();
+        String s3Key = getS3keyAttribute(publishRequest.messageAttributes());
+        String largeMessagePointer = (s3Key != null)? payloadStore.storeOriginalPayload(messageContentStr, s3Key): payloadStore.storeOriginalPayload(messageContentStr);
 
-        return publishRequestBuilder.build();
+        return createOffloadedPublishRequest(publishRequest, largeMessagePointer, payloadSizeAttribute,
+                payloadEncodingAttribute);
     }
 
-    private PublishRequest copyPublishRequest(PublishRequest publishRequest) {
-        // We only modify Message and MessageAttributes, to avoid performance impact let's shallow-copy 
-        // the request and then copy the MessageAttributes map.
-        PublishRequest.Builder publishRequestBuilder = publishRequest.toBuilder();
+    private static PublishRequest createOffloadedPublishRequest(PublishRequest publishRequest, String largeMessagePointer,
+                                                                MessageAttributeValue payloadSizeAttribute,
+                                                                MessageAttributeValue payloadEncodingAttribute) {
         Map<String, MessageAttributeValue> attributes = new HashMap<>(publishRequest.messageAttributes());
-        publishRequestBuilder.messageAttributes(attributes);
-        return publishRequestBuilder.build();
+        putPayloadAttributes(attributes, payloadSizeAttribute, payloadEncodingAttribute);
+
+        // The outgoing request is built once, from the caller's request, which is left untouched.
+        return publishRequest.toBuilder()
+                .message(largeMessagePointer)
+                .messageAttributes(attributes)
+                .overrideConfiguration(USER_AGENT_OVERRIDE_CONFIGURATION)
+                .build();
     }
 
-    private boolean shouldExtendedStoreBeUsed(long totalMessageSize) {
+    private boolean shouldExtendedStoreBeUsed(long messageAttributesSize, Utf8SizeCounter messageBodySize) {
+        // The body is only counted up to the threshold here; the rest is counted if the message is offloaded.
         return snsExtendedClientConfiguration.isAlwaysThroughS3() ||
                 (snsExtendedClientConfiguration.isPayloadSupportEnabled() &&
-                        isTotalMessageSizeLargerThanThreshold(
-                                snsExtendedClientConfiguration.getPayloadSizeThreshold(),totalMessageSize));
+                        messageBodySize.exceeds(snsExtendedClientConfiguration.getPayloadSizeThreshold() - messageAttributesSize));
+    }
+
+    private boolean isInlineCompressionUsed(Utf8SizeCounter messageBodySize) {
+        return snsExtendedClientConfiguration.isInlineCompressionEnabled()
+                && !snsExtendedClientConfiguration.isAlwaysThroughS3()
+                && !messageBodySize.exceeds(snsExtendedClientConfiguration.getInlineCompressionMaxMessageSize());
     }
 
     @Override
     public void close() {
+        if (orphanedPayloadCleaner != null) {
+            orphanedPayloadCleaner.close();
+        }
+        batchUploadExecutor.shutdown();
+        partUploadExecutor.shutdown();
+        fanOutPublishExecutor.shutdown();
+        bulkPublishExecutor.shutdown();
         super.close();
         this.snsExtendedClientConfiguration.getS3Client().close();
     }
@@ -7,6 +7,8 @@ import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.AddPermissionRequest;
 import software.amazon.awssdk.services.sns.model.AddPermissionResponse;
 import software.amazon.awssdk.services.sns.model.AuthorizationErrorException;
+import software.amazon.awssdk.services.sns.model.BatchEntryIdsNotDistinctException;
+import software.amazon.awssdk.services.sns.model.BatchRequestTooLongException;
 import software.amazon.awssdk.services.sns.model.CheckIfPhoneNumberIsOptedOutRequest;
 import software.amazon.awssdk.services.sns.model.CheckIfPhoneNumberIsOptedOutResponse;
 import software.amazon.awssdk.services.sns.model.ConcurrentAccessException;
@@ -24,6 +26,7 @@ import software.amazon.awssdk.services.sns.model.DeletePlatformApplicationReques
 import software.amazon.awssdk.services.sns.model.DeletePlatformApplicationResponse;
 import software.amazon.awssdk.services.sns.model.DeleteTopicRequest;
 import software.amazon.awssdk.services.sns.model.DeleteTopicResponse;
+import software.amazon.awssdk.services.sns.model.EmptyBatchRequestException;
 import software.amazon.awssdk.services.sns.model.EndpointDisabledException;
 import software.amazon.awssdk.services.sns.model.FilterPolicyLimitExceededException;
 import software.amazon.awssdk.services.sns.model.GetEndpointAttributesRequest;
@@ -37,6 +40,7 @@ import software.amazon.awssdk.services.sns.model.GetSubscriptionAttributesRespon
 import software.amazon.awssdk.services.sns.model.GetTopicAttributesRequest;
 import software.amazon.awssdk.services.sns.model.GetTopicAttributesResponse;
 import software.amazon.awssdk.services.sns.model.InternalErrorException;
+import software.amazon.awssdk.services.sns.model.InvalidBatchEntryIdException;
 import software.amazon.awssdk.services.sns.model.InvalidParameterException;
 import software.amazon.awssdk.services.sns.model.InvalidParameterValueException;
 import software.amazon.awssdk.services.sns.model.InvalidSecurityException;
@@ -64,6 +68,8 @@ import software.amazon.awssdk.services.sns.model.NotFoundException;
 import software.amazon.awssdk.services.sns.model.OptInPhoneNumberRequest;
 import software.amazon.awssdk.services.sns.model.OptInPhoneNumberResponse;
 import software.amazon.awssdk.services.sns.model.PlatformApplicationDisabledException;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 import software.amazon.awssdk.services.sns.model.RemovePermissionRequest;
@@ -89,11 +95,13 @@ import software.amazon.awssdk.services.sns.model.TagPolicyException;
 import software.amazon.awssdk.services.sns.model.TagResourceRequest;
 import software.amazon.awssdk.services.sns.model.TagResourceResponse;
 import software.amazon.awssdk.services.sns.model.ThrottledException;
+import software.amazon.awssdk.services.sns.model.TooManyEntriesInBatchRequestException;
 import software.amazon.awssdk.services.sns.model.TopicLimitExceededException;
 import software.amazon.awssdk.services.sns.model.UnsubscribeRequest;
 import software.amazon.awssdk.services.sns.model.UnsubscribeResponse;
 import software.amazon.awssdk.services.sns.model.UntagResourceRequest;
 import software.amazon.awssdk.services.sns.model.UntagResourceResponse;
+import software.amazon.awssdk.services.sns.model.ValidationException;
 import software.amazon.awssdk.services.sns.paginators.ListEndpointsByPlatformApplicationIterable;
 import software.amazon.awssdk.services.sns.paginators.ListPlatformApplicationsIterable;
 import software.amazon.awssdk.services.sns.paginators.ListSubscriptionsByTopicIterable;
@@ -1354,6 +1362,60 @@ abstract class AmazonSNSExtendedClientBase implements SnsClient {
         return snsClientToBeExtended.publish(publishRequest);
     }
 
+    /**
+     * <p>
+     * Publishes up to ten messages to the specified topic. This is a batch version of <code>Publish</code>. For FIFO
+     * topics, multiple messages within a single batch are published in the order they are sent, and messages are
+     * deduplicated within the batch and across batches for 5 minutes.
+     * </p>
+     * <p>
+     * The result of publishing each message is reported individually in the response. Because the batch request can
+     * result in a combination of successful and unsuccessful actions, you should check for batch errors even when the
+     * call returns an HTTP status code of <code>200</code>.
+     * </p>
+     *
+     * @param publishBatchRequest Input for PublishBatch action.
+     * @return Result of the PublishBatch operation returned by the service.
+     * @throws InvalidParameterException              Indicates that a request parameter does not comply with the associated constraints.
+     * @throws InvalidParameterValueException         Indicates that a request parameter does not comply with the associated constraints.
+     * @throws InternalErrorException                 Indicates an internal service error.
+     * @throws NotFoundException                      Indicates that the requested resource does not exist.
+     * @throws EndpointDisabledException              Exception error indicating endpoint disabled.
+     * @throws PlatformApplicationDisabledException   Exception error indicating platform application disabled.
+     * @throws AuthorizationErrorException            Indicates that the user has been denied access to the requested resource.
+     * @throws BatchEntryIdsNotDistinctException      Two or more batch entries in the request have the same <code>Id</code>.
+     * @throws BatchRequestTooLongException           The length of all the batch messages put together is more than the limit.
+     * @throws EmptyBatchRequestException             The batch request doesn't contain any entries.
+     * @throws InvalidBatchEntryIdException           The <code>Id</code> of a batch entry in a batch request doesn't abide by the specification.
+     * @throws TooManyEntriesInBatchRequestException  The batch request contains more entries than permissible.
+     * @throws KmsDisabledException                   The request was rejected because the specified customer master key (CMK) isn't enabled.
+     * @throws KmsInvalidStateException               The request was rejected because the state of the specified resource isn't valid for this request.
+     * @throws KmsNotFoundException                   The request was rejected because the specified entity or resource can't be found.
+     * @throws KmsOptInRequiredException              The AWS access key ID needs a subscription for the service.
+     * @throws KmsThrottlingException                 The request was denied due to request throttling.
+     * @throws KmsAccessDeniedException               The ciphertext references a key that doesn't exist or that you don't have access to.
+     * @throws InvalidSecurityException               The credential signature isn't valid. You must use an HTTPS endpoint and sign your request using
+     *                                                Signature Version 4.
+     * @throws ValidationException                    Indicates that a parameter in the request is invalid.
+     * @throws SdkException                           Base class for all exceptions that can be thrown by the SDK (both service and client). Can be used for
+     *                                                catch all scenarios.
+     * @throws SdkClientException                     If any client side error occurs such as an IO related failure, failure to get credentials, etc.
+     * @throws SnsException                           Base class for all service exceptions. Unknown exceptions will be thrown as an instance of this type.
+     * @sample SnsClient.PublishBatch
+     * @see <a href="http://docs.aws.amazon.com/goto/WebAPI/sns-2010-03-31/PublishBatch" target="_top">AWS API
+     * Documentation</a>
+     */
+    @Override
+    public PublishBatchResponse publishBatch(PublishBatchRequest publishBatchRequest) throws InvalidParameterException,
+            InvalidParameterValueException, InternalErrorException, NotFoundException, EndpointDisabledException,
+            PlatformApplicationDisabledException, AuthorizationErrorException, BatchEntryIdsNotDistinctException,
+            BatchRequestTooLongException, EmptyBatchRequestException, InvalidBatchEntryIdException,
+            TooManyEntriesInBatchRequestException, KmsDisabledException, KmsInvalidStateException, KmsNotFoundException,
+            KmsOptInRequiredException, KmsThrottlingException, KmsAccessDeniedException, InvalidSecurityException,
+            ValidationException, AwsServiceException, SdkClientException, SnsException {
+        return snsClientToBeExtended.publishBatch(publishBatchRequest);
+    }
+
     /**
      * <p>
      * Removes a statement from a topic's access control policy.
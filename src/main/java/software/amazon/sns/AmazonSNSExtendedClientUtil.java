@@ -5,14 +5,37 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
-import software.amazon.payloadoffloading.Util;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.utils.StringUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static software.amazon.sns.SNSExtendedClientConstants.MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE;
 
 public class AmazonSNSExtendedClientUtil {
     private static final Log LOGGER = LogFactory.getLog(AmazonSNSExtendedClientUtil.class);
     private static final String S3_KEY = "S3Key";
+    private static final String FIFO_TOPIC_SUFFIX = ".fifo";
+    // Enough for any base delay of at least a millisecond to reach the maximum retry delay.
+    private static final int MAX_RETRY_DELAY_DOUBLINGS = 20;
+    private static final MessageAttributeValue INLINE_PAYLOAD_ENCODING_ATTRIBUTE = MessageAttributeValue.builder()
+            .dataType("String")
+            .stringValue(InlinePayloadCompression.ENCODING)
+            .build();
 
 
     public static void checkMessageAttributes(Map<String, MessageAttributeValue> messageAttributes) {
@@ -35,6 +58,34 @@ public class AmazonSNSExtendedClientUtil {
         }
     }
 
+    /**
+     * Checks the message attributes of a large-payload message, which must also leave room for the attribute naming
+     * the compression codec when the payload is compressed.
+     */
+    public static void checkMessageAttributes(Map<String, MessageAttributeValue> messageAttributes,
+                                              MessageAttributeValue payloadEncodingAttribute) {
+        checkMessageAttributes(messageAttributes);
+        if (payloadEncodingAttribute == null) {
+            return;
+        }
+
+        int messageAttributesNum = messageAttributes.size();
+        if (messageAttributesNum >= SQSExtendedClientConstants.MAX_ALLOWED_ATTRIBUTES) {
+            String errorMessage = "Number of message attributes [" + messageAttributesNum
+                    + "] exceeds the maximum allowed for compressed large-payload messages ["
+                    + (SQSExtendedClientConstants.MAX_ALLOWED_ATTRIBUTES - 1) + "].";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+
+        if (messageAttributes.containsKey(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME)) {
+            String errorMessage = "Message attribute name " + SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME
+                    + " is reserved for use by SNS extended client.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
     public static void checkSizeOfMessageAttributes(int payloadSizeThreshold, long messageAttributeSize) {
         if (messageAttributeSize > payloadSizeThreshold) {
             String errorMessage = "Total size of Message attributes is " + messageAttributeSize
@@ -45,6 +96,46 @@ public class AmazonSNSExtendedClientUtil {
         }
     }
 
+    /**
+     * Checks the message attributes of a message whose payload is stored in S3, which must leave room for the
+     * reserved attribute carrying the payload size and, for a compressed payload, the attribute naming the codec.
+     */
+    public static void checkOffloadedMessageAttributes(Map<String, MessageAttributeValue> messageAttributes,
+                                                       int payloadSizeThreshold, long messageAttributesSize,
+                                                       MessageAttributeValue payloadSizeAttribute,
+                                                       MessageAttributeValue payloadEncodingAttribute) {
+        checkMessageAttributes(messageAttributes, payloadEncodingAttribute);
+        checkSizeOfMessageAttributes(payloadSizeThreshold, messageAttributesSize);
+        checkSizeOfMessageAttributes(payloadSizeThreshold, messageAttributesSize
+                + getPayloadAttributesSize(payloadSizeAttribute, payloadEncodingAttribute));
+    }
+
+    /**
+     * @return the size of the attributes added to a message whose payload is stored in S3.
+     */
+    public static long getPayloadAttributesSize(MessageAttributeValue payloadSizeAttribute,
+                                                MessageAttributeValue payloadEncodingAttribute) {
+        long payloadAttributesSize = getMessageAttributeSize(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME,
+                payloadSizeAttribute);
+        if (payloadEncodingAttribute != null) {
+            payloadAttributesSize += getMessageAttributeSize(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME,
+                    payloadEncodingAttribute);
+        }
+        return payloadAttributesSize;
+    }
+
+    /**
+     * Adds the attributes of a message whose payload is stored in S3 to a copy of its message attributes.
+     */
+    public static void putPayloadAttributes(Map<String, MessageAttributeValue> messageAttributes,
+                                            MessageAttributeValue payloadSizeAttribute,
+                                            MessageAttributeValue payloadEncodingAttribute) {
+        messageAttributes.put(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, payloadSizeAttribute);
+        if (payloadEncodingAttribute != null) {
+            messageAttributes.put(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME, payloadEncodingAttribute);
+        }
+    }
+
     public static boolean isTotalMessageSizeLargerThanThreshold(int payloadSizeThreshold, long totalMessageSize) {
         return (totalMessageSize > payloadSizeThreshold);
     }
@@ -60,20 +151,21 @@ public class AmazonSNSExtendedClientUtil {
     }
 
     public static long getMessageAttributeSize(String MessageAttributeKey, MessageAttributeValue value) {
-        long messageAttributeSize = Util.getStringSizeInBytes(MessageAttributeKey);
+        long messageAttributeSize = Utf8SizeCounter.sizeOf(MessageAttributeKey);
 
         if (value.dataType() != null) {
-            messageAttributeSize += Util.getStringSizeInBytes(value.dataType());
+            messageAttributeSize += Utf8SizeCounter.sizeOf(value.dataType());
         }
 
         String stringVal = value.stringValue();
         if (stringVal != null) {
-            messageAttributeSize += Util.getStringSizeInBytes(stringVal);
+            messageAttributeSize += Utf8SizeCounter.sizeOf(stringVal);
         }
 
         SdkBytes binaryVal = value.binaryValue();
         if (binaryVal != null) {
-            messageAttributeSize += binaryVal.asByteArray().length;
+            // asByteBuffer() wraps the attribute bytes, unlike asByteArray() which copies them.
+            messageAttributeSize += binaryVal.asByteBuffer().remaining();
         }
 
         return messageAttributeSize;
@@ -86,4 +178,248 @@ public class AmazonSNSExtendedClientUtil {
         }
         return null;
     }
+
+    public static void checkMessageStructure(String messageStructure) {
+        if (!StringUtils.isEmpty(messageStructure) && messageStructure.equals(MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE)) {
+            String errorMessage = "SNS extended client does not support sending JSON messages.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Checks a request whose message body is given separately, as a stream, file or buffer, and always stored in S3.
+     */
+    public static void checkStreamedPublishRequest(PublishRequest publishRequest, boolean payloadSupportEnabled) {
+        if (publishRequest == null) {
+            throw SdkClientException.create("The publish request must not be null.");
+        }
+
+        checkMessageStructure(publishRequest.messageStructure());
+
+        if (!payloadSupportEnabled) {
+            String errorMessage = "Payload support must be enabled to publish a message body that is stored in S3.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+
+        if (publishRequest.message() != null) {
+            String errorMessage = "The message of the publish request must not be set when the message body is given separately.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+    }
+
+    /**
+     * Creates the requests of a fan-out publish: one per topic, with the message attributes of the request and those
+     * of the topic, which take precedence.
+     *
+     * @param topicMessageAttributes the message attributes specific to each topic, by topic ARN.
+     */
+    public static List<PublishRequest> createTopicPublishRequests(PublishRequest publishRequest, List<String> topicArns,
+                                                                  Map<String, Map<String, MessageAttributeValue>> topicMessageAttributes) {
+        if (publishRequest == null) {
+            throw SdkClientException.create("The publish request must not be null.");
+        }
+        if (topicArns == null || topicArns.isEmpty()) {
+            String errorMessage = "At least one topic ARN is required to publish a message to several topics.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+        if (publishRequest.targetArn() != null || publishRequest.phoneNumber() != null) {
+            String errorMessage = "A message published to several topics must not have a target ARN or a phone number.";
+            LOGGER.error(errorMessage);
+            throw SdkClientException.create(errorMessage);
+        }
+
+        List<PublishRequest> topicPublishRequests = new ArrayList<>(topicArns.size());
+        for (String topicArn : topicArns) {
+            Map<String, MessageAttributeValue> messageAttributes = publishRequest.messageAttributes();
+            Map<String, MessageAttributeValue> topicAttributes = topicMessageAttributes.get(topicArn);
+            if (topicAttributes != null && !topicAttributes.isEmpty()) {
+                messageAttributes = new HashMap<>(messageAttributes);
+                messageAttributes.putAll(topicAttributes);
+            }
+            topicPublishRequests.add(publishRequest.toBuilder()
+                    .topicArn(topicArn)
+                    .messageAttributes(messageAttributes)
+                    .build());
+        }
+        return topicPublishRequests;
+    }
+
+    public static MessageAttributeValue createPayloadSizeAttribute(long messageContentSize) {
+        return MessageAttributeValue.builder()
+                .dataType("Number")
+                .stringValue(String.valueOf(messageContentSize))
+                .build();
+    }
+
+    /**
+     * @return the attribute naming the codec of a compressed payload, or null if payloads are not compressed.
+     */
+    public static MessageAttributeValue createPayloadEncodingAttribute(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        return MessageAttributeValue.builder()
+                .dataType("String")
+                .stringValue(contentEncoding)
+                .build();
+    }
+
+    /**
+     * Compresses the message of a request so that it can be published inline rather than through S3.
+     *
+     * @param dictionary the preset dictionary to compress with, or null.
+     * @return the request with its message compressed and the inline encoding attribute added, or null if the
+     * compressed message still does not fit under the threshold.
+     */
+    public static PublishRequest compressInline(PublishRequest publishRequest, int payloadSizeThreshold,
+                                                long messageAttributesSize, byte[] dictionary) {
+        Map<String, MessageAttributeValue> messageAttributes = publishRequest.messageAttributes();
+        if (messageAttributes.size() > SQSExtendedClientConstants.MAX_ALLOWED_ATTRIBUTES
+                || messageAttributes.containsKey(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME)) {
+            return null;
+        }
+
+        long maxEncodedSize = payloadSizeThreshold - messageAttributesSize - getMessageAttributeSize(
+                SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME, INLINE_PAYLOAD_ENCODING_ATTRIBUTE);
+        String compressedMessage = InlinePayloadCompression.compress(publishRequest.message(), dictionary, maxEncodedSize);
+        if (compressedMessage == null) {
+            return null;
+        }
+
+        Map<String, MessageAttributeValue> attributes = new HashMap<>(messageAttributes);
+        attributes.put(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME, INLINE_PAYLOAD_ENCODING_ATTRIBUTE);
+        return publishRequest.toBuilder().message(compressedMessage).messageAttributes(attributes).build();
+    }
+
+    /**
+     * @return whether the topic is a FIFO topic, which keeps the order of the messages of each message group.
+     */
+    public static boolean isFifoTopic(String topicArn) {
+        return topicArn != null && topicArn.endsWith(FIFO_TOPIC_SUFFIX);
+    }
+
+    public static boolean isRetryableBatchError(BatchResultErrorEntry errorEntry) {
+        return !Boolean.TRUE.equals(errorEntry.senderFault());
+    }
+
+    /**
+     * @param retry the number of retries made so far.
+     * @return the delay before the next retry of failed batch entries: a random delay up to the base delay doubled
+     * for every retry made so far, capped at
+     * {@link SNSExtendedClientConstants#MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS}.
+     */
+    public static long getFailedBatchEntryRetryDelayMillis(Duration baseDelay, int retry) {
+        long maxDelayMillis = Math.min(MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS,
+                Math.min(baseDelay.toMillis(), MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS)
+                        << Math.min(retry, MAX_RETRY_DELAY_DOUBLINGS));
+        return ThreadLocalRandom.current().nextLong(maxDelayMillis + 1);
+    }
+
+    /**
+     * Builds a request that re-sends only the entries of {@code publishBatchRequest} which failed with a retryable
+     * error in {@code publishBatchResponse}.
+     * <p>
+     * On a FIFO topic, a failed entry is not re-sent once a later entry of its message group was published, since it
+     * would then be delivered out of order. Failed entries that are re-sent keep their order.
+     * </p>
+     *
+     * @return the retry request, or null if no entry needs to be retried.
+     */
+    public static PublishBatchRequest getFailedEntriesRetryRequest(PublishBatchRequest publishBatchRequest,
+                                                                   PublishBatchResponse publishBatchResponse) {
+        Set<String> retryableIds = new HashSet<>();
+        for (BatchResultErrorEntry errorEntry : publishBatchResponse.failed()) {
+            if (isRetryableBatchError(errorEntry)) {
+                retryableIds.add(errorEntry.id());
+            }
+        }
+
+        if (isFifoTopic(publishBatchRequest.topicArn())) {
+            Set<String> successfulIds = new HashSet<>();
+            for (PublishBatchResultEntry resultEntry : publishBatchResponse.successful()) {
+                successfulIds.add(resultEntry.id());
+            }
+            Set<String> groupsPublishedLater = new HashSet<>();
+            List<PublishBatchRequestEntry> entries = publishBatchRequest.publishBatchRequestEntries();
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                PublishBatchRequestEntry entry = entries.get(i);
+                if (successfulIds.contains(entry.id())) {
+                    groupsPublishedLater.add(entry.messageGroupId());
+                } else if (groupsPublishedLater.contains(entry.messageGroupId())) {
+                    retryableIds.remove(entry.id());
+                }
+            }
+        }
+
+        if (retryableIds.isEmpty()) {
+            return null;
+        }
+
+        List<PublishBatchRequestEntry> retryEntries = new ArrayList<>(retryableIds.size());
+        for (PublishBatchRequestEntry entry : publishBatchRequest.publishBatchRequestEntries()) {
+            if (retryableIds.contains(entry.id())) {
+                retryEntries.add(entry);
+            }
+        }
+
+        return publishBatchRequest.toBuilder().publishBatchRequestEntries(retryEntries).build();
+    }
+
+    /**
+     * Combines the response of a batch with the response of the retry of some of its failed entries. Entries
+     * that were not retried keep their original outcome.
+     */
+    public static PublishBatchResponse mergeRetriedBatchResponse(PublishBatchResponse publishBatchResponse,
+                                                                 PublishBatchRequest retryRequest,
+                                                                 PublishBatchResponse retryResponse) {
+        List<PublishBatchResultEntry> successful = new ArrayList<>(publishBatchResponse.successful());
+        successful.addAll(retryResponse.successful());
+
+        Set<String> retriedIds = new HashSet<>();
+        for (PublishBatchRequestEntry entry : retryRequest.publishBatchRequestEntries()) {
+            retriedIds.add(entry.id());
+        }
+        List<BatchResultErrorEntry> failed = new ArrayList<>(retryResponse.failed());
+        for (BatchResultErrorEntry errorEntry : publishBatchResponse.failed()) {
+            if (!retriedIds.contains(errorEntry.id())) {
+                failed.add(errorEntry);
+            }
+        }
+
+        return publishBatchResponse.toBuilder().successful(successful).failed(failed).build();
+    }
+
+    /**
+     * Tells whether a message may be stored in S3 without failing the checks applied to large-payload messages.
+     */
+    public static boolean canBeOffloaded(Map<String, MessageAttributeValue> messageAttributes, int payloadSizeThreshold,
+                                         long messageAttributeSizeWithPayloadSize,
+                                         MessageAttributeValue payloadEncodingAttribute) {
+        int maxAllowedAttributes = (payloadEncodingAttribute != null)
+                ? SQSExtendedClientConstants.MAX_ALLOWED_ATTRIBUTES - 1 : SQSExtendedClientConstants.MAX_ALLOWED_ATTRIBUTES;
+        return messageAttributes.size() <= maxAllowedAttributes
+                && !messageAttributes.containsKey(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME)
+                && (payloadEncodingAttribute == null
+                    || !messageAttributes.containsKey(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME))
+                && messageAttributeSizeWithPayloadSize <= payloadSizeThreshold;
+    }
+
+    public static PublishBatchResponse mergeBatchResponses(List<PublishBatchResponse> publishBatchResponses) {
+        if (publishBatchResponses.size() == 1) {
+            return publishBatchResponses.get(0);
+        }
+
+        List<PublishBatchResultEntry> successful = new ArrayList<>();
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (PublishBatchResponse publishBatchResponse : publishBatchResponses) {
+            successful.addAll(publishBatchResponse.successful());
+            failed.addAll(publishBatchResponse.failed());
+        }
+
+        return publishBatchResponses.get(0).toBuilder().successful(successful).failed(failed).build();
+    }
 }
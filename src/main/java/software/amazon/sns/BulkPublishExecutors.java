@@ -0,0 +1,26 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.utils.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executor that runs the publishes of a bulk publish. On Java 8 to 20 this is a pool of as many platform
+ * threads as the bulk publish parallelism. The multi-release JAR replaces this class on Java 21 and later with one
+ * that runs every publish on its own virtual thread.
+ */
+final class BulkPublishExecutors {
+    private BulkPublishExecutors() {
+    }
+
+    static ExecutorService create(int parallelism) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().threadNamePrefix("sns-extended-bulk-publish").daemonThreads(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
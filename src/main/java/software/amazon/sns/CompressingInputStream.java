@@ -0,0 +1,75 @@
+package software.amazon.sns;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses a stream as it is read. The source is read a chunk at a time and only the compressed output of the
+ * current chunk is buffered, so neither the original nor the compressed payload is ever held in memory as a whole.
+ */
+final class CompressingInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final ChunkBuffer compressedChunk = new ChunkBuffer();
+    private final OutputStream compressor;
+    private final byte[] sourceChunk = new byte[CHUNK_SIZE];
+    private int position;
+    private boolean finished;
+
+    CompressingInputStream(InputStream source, PayloadCompressionCodec codec) throws IOException {
+        this.source = source;
+        this.compressor = codec.compress(compressedChunk);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return (read(single, 0, 1) < 0) ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == compressedChunk.size()) {
+            if (finished) {
+                return -1;
+            }
+            compressedChunk.reset();
+            position = 0;
+
+            int count = source.read(sourceChunk);
+            if (count < 0) {
+                // Closing the compressor writes out whatever it still buffers.
+                compressor.close();
+                finished = true;
+            } else {
+                compressor.write(sourceChunk, 0, count);
+            }
+        }
+
+        int count = Math.min(length, compressedChunk.size() - position);
+        System.arraycopy(compressedChunk.buffer(), position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+        private ChunkBuffer() {
+            super(CHUNK_SIZE);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
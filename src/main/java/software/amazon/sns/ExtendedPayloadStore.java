@@ -0,0 +1,410 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.PayloadStore;
+import software.amazon.payloadoffloading.S3BackedPayloadStore;
+import software.amazon.payloadoffloading.S3Dao;
+import software.amazon.payloadoffloading.ServerSideEncryptionStrategy;
+import software.amazon.payloadoffloading.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stores message payloads in S3 from a {@link PayloadSource}, with the same object settings and pointer format as
+ * the S3 backed payload store of the payload offloading library.
+ * <p>
+ * Payloads larger than the multipart upload threshold are uploaded in parts, several at a time. A failed part is
+ * uploaded again on its own, and a multipart upload that cannot be completed is aborted. When a compression codec is
+ * configured, payloads are compressed while they are uploaded and the codec is recorded as the content encoding of
+ * the S3 object, which {@link #getOriginalPayload(String)} decompresses accordingly. When payload deduplication is
+ * enabled, payloads are stored under a key derived from their content, as described in {@link PayloadDeduplication}.
+ * </p>
+ */
+class ExtendedPayloadStore implements PayloadStore {
+    private static final Log LOGGER = LogFactory.getLog(ExtendedPayloadStore.class);
+
+    private final S3Client s3Client;
+    private final PayloadPlacement payloadPlacement;
+    private final ServerSideEncryptionStrategy serverSideEncryptionStrategy;
+    private final ObjectCannedACL objectCannedACL;
+    private final MultipartUploadSettings multipartUploadSettings;
+    private final PayloadCompressionCodec compressionCodec;
+    private final PayloadDeduplication payloadDeduplication;
+    private final ExecutorService partUploadExecutor;
+    private final PayloadStore s3BackedPayloadStore;
+
+    /**
+     * @param compressionCodec     the codec payloads are compressed with, or null to store them as they are.
+     * @param payloadDeduplication the deduplication of payloads, or null to store each payload under its own key.
+     * @param partUploadExecutor runs the part uploads of a multipart upload beyond the one run by the caller.
+     */
+    ExtendedPayloadStore(S3Client s3Client, PayloadPlacement payloadPlacement,
+                         ServerSideEncryptionStrategy serverSideEncryptionStrategy,
+                         ObjectCannedACL objectCannedACL, MultipartUploadSettings multipartUploadSettings,
+                         PayloadCompressionCodec compressionCodec, PayloadDeduplication payloadDeduplication,
+                         ExecutorService partUploadExecutor) {
+        this.s3Client = s3Client;
+        this.payloadPlacement = payloadPlacement;
+        this.serverSideEncryptionStrategy = serverSideEncryptionStrategy;
+        this.objectCannedACL = objectCannedACL;
+        this.multipartUploadSettings = multipartUploadSettings;
+        this.compressionCodec = compressionCodec;
+        this.payloadDeduplication = payloadDeduplication;
+        this.partUploadExecutor = partUploadExecutor;
+        this.s3BackedPayloadStore = new S3BackedPayloadStore(
+                new S3Dao(s3Client, serverSideEncryptionStrategy, objectCannedACL), payloadPlacement.getS3BucketName());
+    }
+
+    static ExtendedPayloadStore create(SNSExtendedClientConfiguration snsExtendedClientConfiguration,
+                                       ExecutorService partUploadExecutor) {
+        return new ExtendedPayloadStore(snsExtendedClientConfiguration.getS3Client(),
+                PayloadPlacement.create(snsExtendedClientConfiguration),
+                snsExtendedClientConfiguration.getServerSideEncryptionStrategy(),
+                snsExtendedClientConfiguration.getObjectCannedACL(),
+                MultipartUploadSettings.create(snsExtendedClientConfiguration),
+                snsExtendedClientConfiguration.getPayloadCompressionCodec(),
+                PayloadDeduplication.create(snsExtendedClientConfiguration), partUploadExecutor);
+    }
+
+    /**
+     * @return the name of the codec stored payloads are compressed with, or null if they are not compressed.
+     */
+    String getContentEncoding() {
+        return (compressionCodec != null) ? compressionCodec.getName() : null;
+    }
+
+    @Override
+    public String storeOriginalPayload(String payload) {
+        return storeOriginalPayload(PayloadSource.fromString(payload), null);
+    }
+
+    @Override
+    public String storeOriginalPayload(String payload, String s3Key) {
+        return storeOriginalPayload(PayloadSource.fromString(payload), s3Key);
+    }
+
+    @Override
+    public String getOriginalPayload(String payloadPointer) {
+        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(s3Pointer.getS3BucketName())
+                .key(s3Pointer.getS3Key())
+                .build();
+
+        ResponseInputStream<GetObjectResponse> s3Object;
+        try {
+            s3Object = s3Client.getObject(getObjectRequest);
+        } catch (SdkException e) {
+            String errorMessage = "Failed to get the S3 object which contains the payload.";
+            LOGGER.error(errorMessage, e);
+            throw SdkException.create(errorMessage, e);
+        }
+
+        try (InputStream payload = PayloadCompression.decompress(s3Object, s3Object.response().contentEncoding())) {
+            String originalPayload = IoUtils.toUtf8String(payload);
+            LOGGER.info("S3 object read, Bucket name: " + s3Pointer.getS3BucketName() + ", Object key: "
+                    + s3Pointer.getS3Key() + ".");
+            return originalPayload;
+        } catch (IOException e) {
+            String errorMessage = "Failure when handling the message which was read from S3 object.";
+            LOGGER.error(errorMessage, e);
+            throw SdkClientException.create(errorMessage, e);
+        }
+    }
+
+    @Override
+    public void deleteOriginalPayload(String payloadPointer) {
+        s3BackedPayloadStore.deleteOriginalPayload(payloadPointer);
+    }
+
+    /**
+     * @param s3Key the key of the S3 object, or null to use a random one, or one derived from the content of the
+     *              payload when payload deduplication is enabled.
+     * @return the S3 pointer to publish in place of the payload.
+     */
+    String storeOriginalPayload(PayloadSource payloadSource, String s3Key) {
+        if (s3Key != null || payloadDeduplication == null || !payloadSource.isRepeatable()) {
+            return store(payloadSource, (s3Key != null) ? s3Key : payloadPlacement.newKey(), false);
+        }
+
+        String key = payloadPlacement.keyOf(payloadDeduplication.keyOf(payloadSource));
+        String cachedPointer = payloadDeduplication.getCachedPointer(key);
+        if (cachedPointer != null) {
+            LOGGER.debug("S3 object already stored by this client, Bucket name: " + payloadPlacement.bucketOf(key)
+                    + ", Object key: " + key + ".");
+            return cachedPointer;
+        }
+
+        String pointer = storeDeduplicated(payloadSource, key);
+        payloadDeduplication.cachePointer(key, pointer);
+        return pointer;
+    }
+
+    /**
+     * Stores a payload under the key derived from its content, waiting for another upload of the same payload that
+     * is in progress.
+     */
+    private String storeDeduplicated(PayloadSource payloadSource, String key) {
+        for (int retry = 0; ; retry++) {
+            try {
+                return store(payloadSource, key, true);
+            } catch (RuntimeException e) {
+                if (!PayloadDeduplication.isConflictingWrite(e)) {
+                    throw e;
+                }
+                if (retry >= PayloadDeduplication.MAX_CONFLICT_RETRIES) {
+                    String errorMessage = "Failed to store the message content in an S3 object.";
+                    LOGGER.error(errorMessage, e);
+                    throw SdkException.create(errorMessage, e);
+                }
+                try {
+                    Thread.sleep(PayloadDeduplication.getConflictRetryDelayMillis(retry));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw SdkClientException.create(
+                            "Interrupted while waiting to store the message content in an S3 object.", interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ifNoneMatch whether the payload is only stored if no object exists under the key yet. An existing object
+     *                    is then taken to hold the same payload.
+     */
+    private String store(PayloadSource payloadSource, String key, boolean ifNoneMatch) {
+        String s3BucketName = payloadPlacement.bucketOf(key);
+        PayloadSource storedPayload = null;
+
+        try {
+            storedPayload = (compressionCodec != null)
+                    ? payloadSource.compress(compressionCodec,
+                            multipartUploadSettings.getCompressedPayloadBufferLimit())
+                    : payloadSource;
+            PutObjectRequest putObjectRequest = createPutObjectRequest(s3BucketName, key, storedPayload,
+                    serverSideEncryptionStrategy, objectCannedACL, getContentEncoding());
+            if (ifNoneMatch) {
+                putObjectRequest = putObjectRequest.toBuilder()
+                        .overrideConfiguration(PayloadDeduplication.ifNoneMatchOverrideConfiguration())
+                        .build();
+            }
+
+            if (multipartUploadSettings.isMultipartUpload(storedPayload.contentLength())) {
+                storeInParts(putObjectRequest, storedPayload);
+            } else {
+                s3Client.putObject(putObjectRequest, storedPayload.toRequestBody());
+            }
+        } catch (RuntimeException e) {
+            // Every upload failure, multipart or not, surfaces as the SdkException the S3Dao of the base library threw.
+            if (ifNoneMatch && PayloadDeduplication.isAlreadyStored(e)) {
+                LOGGER.info("S3 object already exists, Bucket name: " + s3BucketName + ", Object key: " + key + ".");
+                return new PayloadS3Pointer(s3BucketName, key).toJson();
+            }
+            if (ifNoneMatch && PayloadDeduplication.isConflictingWrite(e)) {
+                LOGGER.info("S3 object is being stored by another upload, Bucket name: " + s3BucketName
+                        + ", Object key: " + key + ".");
+                throw e;
+            }
+            String errorMessage = "Failed to store the message content in an S3 object.";
+            LOGGER.error(errorMessage, e);
+            throw SdkException.create(errorMessage, e);
+        } finally {
+            if (storedPayload != null) {
+                storedPayload.release();
+            }
+        }
+
+        LOGGER.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + key + ".");
+        return new PayloadS3Pointer(s3BucketName, key).toJson();
+    }
+
+    private void storeInParts(PutObjectRequest putObjectRequest, PayloadSource payloadSource) {
+        String uploadId = s3Client.createMultipartUpload(createMultipartUploadRequest(putObjectRequest)).uploadId();
+        MultipartUploadParts parts = multipartUploadSettings.partsOf(payloadSource);
+
+        try {
+            uploadParts(putObjectRequest, uploadId, parts);
+            s3Client.completeMultipartUpload(
+                    createCompleteMultipartUploadRequest(putObjectRequest, uploadId, parts.getCompletedParts()));
+        } catch (RuntimeException e) {
+            abortMultipartUpload(putObjectRequest, uploadId, e);
+            throw e;
+        }
+    }
+
+    private void uploadParts(PutObjectRequest putObjectRequest, String uploadId, MultipartUploadParts parts) {
+        int concurrentUploads = parts.getConcurrentUploads(multipartUploadSettings.getConcurrency());
+        List<CompletableFuture<Void>> otherUploads = new ArrayList<>(concurrentUploads - 1);
+        for (int i = 1; i < concurrentUploads; i++) {
+            otherUploads.add(CompletableFuture.runAsync(
+                    () -> uploadNextParts(putObjectRequest, uploadId, parts), partUploadExecutor));
+        }
+
+        RuntimeException failure = null;
+        try {
+            uploadNextParts(putObjectRequest, uploadId, parts);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        // Every part upload has to be over before the multipart upload is completed or aborted.
+        for (CompletableFuture<Void> otherUpload : otherUploads) {
+            try {
+                otherUpload.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    Throwable cause = Util.unwrapFutureException(e);
+                    failure = (cause instanceof RuntimeException) ? (RuntimeException) cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void uploadNextParts(PutObjectRequest putObjectRequest, String uploadId, MultipartUploadParts parts) {
+        try {
+            MultipartUploadParts.Part part;
+            while ((part = parts.next()) != null) {
+                parts.complete(part.partNumber, uploadPart(putObjectRequest, uploadId, part));
+            }
+        } catch (RuntimeException e) {
+            parts.cancel();
+            throw e;
+        }
+    }
+
+    private String uploadPart(PutObjectRequest putObjectRequest, String uploadId, MultipartUploadParts.Part part) {
+        UploadPartRequest uploadPartRequest = createUploadPartRequest(putObjectRequest, uploadId, part);
+        for (int retry = 0; ; retry++) {
+            try {
+                return s3Client.uploadPart(uploadPartRequest, PayloadSource.toRequestBody(part.data)).eTag();
+            } catch (SdkException e) {
+                if (retry >= multipartUploadSettings.getPartRetries()
+                        || !MultipartUploadSettings.isRetryablePartError(e)) {
+                    throw e;
+                }
+                LOGGER.warn("Failed to upload part " + part.partNumber + " of the multipart upload " + uploadId
+                        + ", retrying.", e);
+            }
+        }
+    }
+
+    private void abortMultipartUpload(PutObjectRequest putObjectRequest, String uploadId, RuntimeException failure) {
+        try {
+            s3Client.abortMultipartUpload(createAbortMultipartUploadRequest(putObjectRequest, uploadId));
+        } catch (SdkException e) {
+            LOGGER.warn("Failed to abort the multipart upload " + uploadId + ".", e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @param contentEncoding the codec the payload is compressed with, or null.
+     */
+    static PutObjectRequest createPutObjectRequest(String s3BucketName, String key, PayloadSource payloadSource,
+                                                   ServerSideEncryptionStrategy serverSideEncryptionStrategy,
+                                                   ObjectCannedACL objectCannedACL, String contentEncoding) {
+        PutObjectRequest.Builder putObjectRequestBuilder = PutObjectRequest.builder()
+                .bucket(s3BucketName)
+                .key(key)
+                .contentEncoding(contentEncoding);
+
+        if (payloadSource.contentLength() != PayloadSource.UNKNOWN_LENGTH) {
+            putObjectRequestBuilder.contentLength(payloadSource.contentLength());
+        }
+        if (objectCannedACL != null) {
+            putObjectRequestBuilder.acl(objectCannedACL);
+        }
+        if (serverSideEncryptionStrategy != null) {
+            serverSideEncryptionStrategy.decorate(putObjectRequestBuilder);
+        }
+
+        return putObjectRequestBuilder.build();
+    }
+
+    /**
+     * The encryption strategies only decorate PutObject requests, so the multipart upload requests take their object
+     * settings from the PutObject request the payload would have been stored with.
+     */
+    static CreateMultipartUploadRequest createMultipartUploadRequest(PutObjectRequest putObjectRequest) {
+        return CreateMultipartUploadRequest.builder()
+                .bucket(putObjectRequest.bucket())
+                .key(putObjectRequest.key())
+                .contentEncoding(putObjectRequest.contentEncoding())
+                .acl(putObjectRequest.aclAsString())
+                .serverSideEncryption(putObjectRequest.serverSideEncryptionAsString())
+                .ssekmsKeyId(putObjectRequest.ssekmsKeyId())
+                .ssekmsEncryptionContext(putObjectRequest.ssekmsEncryptionContext())
+                .bucketKeyEnabled(putObjectRequest.bucketKeyEnabled())
+                .sseCustomerAlgorithm(putObjectRequest.sseCustomerAlgorithm())
+                .sseCustomerKey(putObjectRequest.sseCustomerKey())
+                .sseCustomerKeyMD5(putObjectRequest.sseCustomerKeyMD5())
+                .build();
+    }
+
+    static UploadPartRequest createUploadPartRequest(PutObjectRequest putObjectRequest, String uploadId,
+                                                     MultipartUploadParts.Part part) {
+        return UploadPartRequest.builder()
+                .bucket(putObjectRequest.bucket())
+                .key(putObjectRequest.key())
+                .uploadId(uploadId)
+                .partNumber(part.partNumber)
+                .contentLength((long) part.data.remaining())
+                .sseCustomerAlgorithm(putObjectRequest.sseCustomerAlgorithm())
+                .sseCustomerKey(putObjectRequest.sseCustomerKey())
+                .sseCustomerKeyMD5(putObjectRequest.sseCustomerKeyMD5())
+                .build();
+    }
+
+    /**
+     * The multipart upload is completed under the conditions of the PutObject request, such as If-None-Match.
+     */
+    static CompleteMultipartUploadRequest createCompleteMultipartUploadRequest(PutObjectRequest putObjectRequest,
+                                                                               String uploadId,
+                                                                               List<CompletedPart> completedParts) {
+        return CompleteMultipartUploadRequest.builder()
+                .bucket(putObjectRequest.bucket())
+                .key(putObjectRequest.key())
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .sseCustomerAlgorithm(putObjectRequest.sseCustomerAlgorithm())
+                .sseCustomerKey(putObjectRequest.sseCustomerKey())
+                .sseCustomerKeyMD5(putObjectRequest.sseCustomerKeyMD5())
+                .overrideConfiguration(putObjectRequest.overrideConfiguration().orElse(null))
+                .build();
+    }
+
+    static AbortMultipartUploadRequest createAbortMultipartUploadRequest(PutObjectRequest putObjectRequest,
+                                                                         String uploadId) {
+        return AbortMultipartUploadRequest.builder()
+                .bucket(putObjectRequest.bucket())
+                .key(putObjectRequest.key())
+                .uploadId(uploadId)
+                .build();
+    }
+}
@@ -0,0 +1,315 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.PayloadStoreAsync;
+import software.amazon.payloadoffloading.S3AsyncDao;
+import software.amazon.payloadoffloading.S3BackedPayloadStoreAsync;
+import software.amazon.payloadoffloading.ServerSideEncryptionStrategy;
+import software.amazon.payloadoffloading.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * The asynchronous counterpart of {@link ExtendedPayloadStore}.
+ */
+class ExtendedPayloadStoreAsync implements PayloadStoreAsync {
+    private static final Log LOGGER = LogFactory.getLog(ExtendedPayloadStoreAsync.class);
+
+    private final S3AsyncClient s3AsyncClient;
+    private final PayloadPlacement payloadPlacement;
+    private final ServerSideEncryptionStrategy serverSideEncryptionStrategy;
+    private final ObjectCannedACL objectCannedACL;
+    private final MultipartUploadSettings multipartUploadSettings;
+    private final PayloadCompressionCodec compressionCodec;
+    private final PayloadDeduplication payloadDeduplication;
+    private final ExecutorService streamReadExecutor;
+    private final PayloadStoreAsync s3BackedPayloadStore;
+
+    /**
+     * @param compressionCodec     the codec payloads are compressed with, or null to store them as they are.
+     * @param payloadDeduplication the deduplication of payloads, or null to store each payload under its own key.
+     * @param streamReadExecutor   runs the blocking reads of payloads given as an input stream or a file, and the
+     *                             compression and hashing of payloads.
+     */
+    ExtendedPayloadStoreAsync(S3AsyncClient s3AsyncClient, PayloadPlacement payloadPlacement,
+                              ServerSideEncryptionStrategy serverSideEncryptionStrategy, ObjectCannedACL objectCannedACL,
+                              MultipartUploadSettings multipartUploadSettings, PayloadCompressionCodec compressionCodec,
+                              PayloadDeduplication payloadDeduplication, ExecutorService streamReadExecutor) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.payloadPlacement = payloadPlacement;
+        this.serverSideEncryptionStrategy = serverSideEncryptionStrategy;
+        this.objectCannedACL = objectCannedACL;
+        this.multipartUploadSettings = multipartUploadSettings;
+        this.compressionCodec = compressionCodec;
+        this.payloadDeduplication = payloadDeduplication;
+        this.streamReadExecutor = streamReadExecutor;
+        this.s3BackedPayloadStore = new S3BackedPayloadStoreAsync(
+                new S3AsyncDao(s3AsyncClient, serverSideEncryptionStrategy, objectCannedACL), payloadPlacement.getS3BucketName());
+    }
+
+    static ExtendedPayloadStoreAsync create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration,
+                                            ExecutorService streamReadExecutor) {
+        return new ExtendedPayloadStoreAsync(snsExtendedClientConfiguration.getS3AsyncClient(),
+                PayloadPlacement.create(snsExtendedClientConfiguration),
+                snsExtendedClientConfiguration.getServerSideEncryptionStrategy(),
+                snsExtendedClientConfiguration.getObjectCannedACL(),
+                MultipartUploadSettings.create(snsExtendedClientConfiguration),
+                snsExtendedClientConfiguration.getPayloadCompressionCodec(),
+                PayloadDeduplication.create(snsExtendedClientConfiguration), streamReadExecutor);
+    }
+
+    /**
+     * @return the name of the codec stored payloads are compressed with, or null if they are not compressed.
+     */
+    String getContentEncoding() {
+        return (compressionCodec != null) ? compressionCodec.getName() : null;
+    }
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload) {
+        return storeOriginalPayload(PayloadSource.fromString(payload), null);
+    }
+
+    @Override
+    public CompletableFuture<String> storeOriginalPayload(String payload, String s3Key) {
+        return storeOriginalPayload(PayloadSource.fromString(payload), s3Key);
+    }
+
+    @Override
+    public CompletableFuture<String> getOriginalPayload(String payloadPointer) {
+        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(s3Pointer.getS3BucketName())
+                .key(s3Pointer.getS3Key())
+                .build();
+
+        return s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBytes())
+                .handle((s3Object, throwable) -> {
+                    if (throwable != null) {
+                        String errorMessage = "Failed to get the S3 object which contains the payload.";
+                        LOGGER.error(errorMessage, throwable);
+                        throw new CompletionException(SdkException.create(errorMessage, Util.unwrapFutureException(throwable)));
+                    }
+
+                    try (InputStream payload = PayloadCompression.decompress(s3Object.asInputStream(),
+                            s3Object.response().contentEncoding())) {
+                        String originalPayload = IoUtils.toUtf8String(payload);
+                        LOGGER.info("S3 object read, Bucket name: " + s3Pointer.getS3BucketName() + ", Object key: "
+                                + s3Pointer.getS3Key() + ".");
+                        return originalPayload;
+                    } catch (IOException e) {
+                        String errorMessage = "Failure when handling the message which was read from S3 object.";
+                        LOGGER.error(errorMessage, e);
+                        throw new CompletionException(SdkClientException.create(errorMessage, e));
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteOriginalPayload(String payloadPointer) {
+        return s3BackedPayloadStore.deleteOriginalPayload(payloadPointer);
+    }
+
+    /**
+     * @param s3Key the key of the S3 object, or null to use a random one, or one derived from the content of the
+     *              payload when payload deduplication is enabled.
+     * @return a future of the S3 pointer to publish in place of the payload.
+     */
+    CompletableFuture<String> storeOriginalPayload(PayloadSource payloadSource, String s3Key) {
+        if (s3Key != null || payloadDeduplication == null || !payloadSource.isRepeatable()) {
+            return store(payloadSource, (s3Key != null) ? s3Key : payloadPlacement.newKey(), false);
+        }
+
+        // Hashing reads the whole payload, so it runs on the stream executor rather than on the caller's thread.
+        return CompletableFuture.supplyAsync(() -> payloadPlacement.keyOf(payloadDeduplication.keyOf(payloadSource)), streamReadExecutor)
+                .thenCompose(key -> {
+                    String cachedPointer = payloadDeduplication.getCachedPointer(key);
+                    if (cachedPointer != null) {
+                        LOGGER.debug("S3 object already stored by this client, Bucket name: " + payloadPlacement.bucketOf(key)
+                                + ", Object key: " + key + ".");
+                        return CompletableFuture.completedFuture(cachedPointer);
+                    }
+                    return storeDeduplicated(payloadSource, key, 0).thenApply(pointer -> {
+                        payloadDeduplication.cachePointer(key, pointer);
+                        return pointer;
+                    });
+                });
+    }
+
+    /**
+     * Stores a payload under the key derived from its content, waiting for another upload of the same payload that
+     * is in progress.
+     */
+    private CompletableFuture<String> storeDeduplicated(PayloadSource payloadSource, String key, int retry) {
+        CompletableFuture<String> stored = store(payloadSource, key, true);
+        return stored.handle((pointer, throwable) -> throwable).thenCompose(throwable -> {
+            if (throwable == null || !PayloadDeduplication.isConflictingWrite(throwable)) {
+                return stored;
+            }
+            if (retry >= PayloadDeduplication.MAX_CONFLICT_RETRIES) {
+                String errorMessage = "Failed to store the message content in an S3 object.";
+                LOGGER.error(errorMessage, throwable);
+                CompletableFuture<String> failed = new CompletableFuture<>();
+                failed.completeExceptionally(SdkException.create(errorMessage, Util.unwrapFutureException(throwable)));
+                return failed;
+            }
+            return PayloadDeduplication.delayConflictRetry(retry)
+                    .thenCompose(v -> storeDeduplicated(payloadSource, key, retry + 1));
+        });
+    }
+
+    /**
+     * @param ifNoneMatch whether the payload is only stored if no object exists under the key yet. An existing object
+     *                    is then taken to hold the same payload.
+     */
+    private CompletableFuture<String> store(PayloadSource payloadSource, String key, boolean ifNoneMatch) {
+        String s3BucketName = payloadPlacement.bucketOf(key);
+        // Compressing reads the payload, so it runs on the stream executor rather than on the caller's thread.
+        CompletableFuture<PayloadSource> storedPayloadFuture = (compressionCodec != null)
+                ? CompletableFuture.supplyAsync(() -> payloadSource.compress(compressionCodec,
+                        multipartUploadSettings.getCompressedPayloadBufferLimit()), streamReadExecutor)
+                : CompletableFuture.completedFuture(payloadSource);
+
+        return storedPayloadFuture
+                .thenCompose(storedPayload -> upload(storedPayload, s3BucketName, key, ifNoneMatch)
+                        .whenComplete((v, throwable) -> storedPayload.release()))
+                .handle((v, throwable) -> {
+                    if (throwable != null && ifNoneMatch && PayloadDeduplication.isAlreadyStored(throwable)) {
+                        LOGGER.info("S3 object already exists, Bucket name: " + s3BucketName + ", Object key: " + key + ".");
+                        return new PayloadS3Pointer(s3BucketName, key).toJson();
+                    }
+                    if (throwable != null && ifNoneMatch && PayloadDeduplication.isConflictingWrite(throwable)) {
+                        LOGGER.info("S3 object is being stored by another upload, Bucket name: " + s3BucketName
+                                + ", Object key: " + key + ".");
+                        throw new CompletionException(Util.unwrapFutureException(throwable));
+                    }
+                    if (throwable != null) {
+                        String errorMessage = "Failed to store the message content in an S3 object.";
+                        LOGGER.error(errorMessage, throwable);
+                        throw new CompletionException(SdkException.create(errorMessage, Util.unwrapFutureException(throwable)));
+                    }
+
+                    LOGGER.info("S3 object created, Bucket name: " + s3BucketName + ", Object key: " + key + ".");
+                    return new PayloadS3Pointer(s3BucketName, key).toJson();
+                });
+    }
+
+    private CompletableFuture<?> upload(PayloadSource storedPayload, String s3BucketName, String key,
+                                        boolean ifNoneMatch) {
+        PutObjectRequest putObjectRequest = ExtendedPayloadStore.createPutObjectRequest(s3BucketName, key,
+                storedPayload, serverSideEncryptionStrategy, objectCannedACL, getContentEncoding());
+        if (ifNoneMatch) {
+            putObjectRequest = putObjectRequest.toBuilder()
+                    .overrideConfiguration(PayloadDeduplication.ifNoneMatchOverrideConfiguration())
+                    .build();
+        }
+
+        if (multipartUploadSettings.isMultipartUpload(storedPayload.contentLength())) {
+            return storeInParts(putObjectRequest, storedPayload);
+        }
+        return s3AsyncClient.putObject(putObjectRequest, storedPayload.toAsyncRequestBody(streamReadExecutor));
+    }
+
+    private CompletableFuture<Void> storeInParts(PutObjectRequest putObjectRequest, PayloadSource payloadSource) {
+        return s3AsyncClient.createMultipartUpload(ExtendedPayloadStore.createMultipartUploadRequest(putObjectRequest))
+                .thenCompose(createMultipartUploadResponse -> {
+                    String uploadId = createMultipartUploadResponse.uploadId();
+                    MultipartUploadParts parts = multipartUploadSettings.partsOf(payloadSource);
+
+                    int concurrentUploads = parts.getConcurrentUploads(multipartUploadSettings.getConcurrency());
+                    CompletableFuture<?>[] uploads = new CompletableFuture<?>[concurrentUploads];
+                    for (int i = 0; i < concurrentUploads; i++) {
+                        uploads[i] = uploadNextParts(putObjectRequest, uploadId, parts);
+                    }
+
+                    // allOf only completes once every part upload is over, so none is left running on abort.
+                    return CompletableFuture.allOf(uploads)
+                            .thenCompose(v -> s3AsyncClient.completeMultipartUpload(
+                                    ExtendedPayloadStore.createCompleteMultipartUploadRequest(putObjectRequest,
+                                            uploadId, parts.getCompletedParts())))
+                            .handle((completeMultipartUploadResponse, throwable) -> {
+                                if (throwable == null) {
+                                    return CompletableFuture.<Void>completedFuture(null);
+                                }
+                                return abortMultipartUpload(putObjectRequest, uploadId,
+                                        Util.unwrapFutureException(throwable));
+                            })
+                            .thenCompose(Function.identity());
+                });
+    }
+
+    private CompletableFuture<Void> uploadNextParts(PutObjectRequest putObjectRequest, String uploadId,
+                                                    MultipartUploadParts parts) {
+        CompletableFuture<Void> uploadFuture = CompletableFuture.supplyAsync(parts::next, streamReadExecutor)
+                .thenCompose(part -> {
+                    if (part == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return uploadPart(putObjectRequest, uploadId, part, 0)
+                            .thenCompose(eTag -> {
+                                parts.complete(part.partNumber, eTag);
+                                return uploadNextParts(putObjectRequest, uploadId, parts);
+                            });
+                });
+        uploadFuture.whenComplete((v, throwable) -> {
+            if (throwable != null) {
+                parts.cancel();
+            }
+        });
+        return uploadFuture;
+    }
+
+    private CompletableFuture<String> uploadPart(PutObjectRequest putObjectRequest, String uploadId,
+                                                 MultipartUploadParts.Part part, int retry) {
+        return s3AsyncClient.uploadPart(ExtendedPayloadStore.createUploadPartRequest(putObjectRequest, uploadId, part),
+                        PayloadSource.toAsyncRequestBody(part.data))
+                .handle((uploadPartResponse, throwable) -> {
+                    if (throwable == null) {
+                        return CompletableFuture.completedFuture(uploadPartResponse.eTag());
+                    }
+
+                    Throwable cause = Util.unwrapFutureException(throwable);
+                    if (retry < multipartUploadSettings.getPartRetries()
+                            && MultipartUploadSettings.isRetryablePartError(cause)) {
+                        LOGGER.warn("Failed to upload part " + part.partNumber + " of the multipart upload " + uploadId
+                                + ", retrying.", cause);
+                        return uploadPart(putObjectRequest, uploadId, part, retry + 1);
+                    }
+                    CompletableFuture<String> failedFuture = new CompletableFuture<>();
+                    failedFuture.completeExceptionally(cause);
+                    return failedFuture;
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * @return a future that fails with {@code failure} once the multipart upload is aborted.
+     */
+    private CompletableFuture<Void> abortMultipartUpload(PutObjectRequest putObjectRequest, String uploadId,
+                                                         Throwable failure) {
+        return s3AsyncClient.abortMultipartUpload(
+                        ExtendedPayloadStore.createAbortMultipartUploadRequest(putObjectRequest, uploadId))
+                .handle((abortMultipartUploadResponse, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.warn("Failed to abort the multipart upload " + uploadId + ".", throwable);
+                        failure.addSuppressed(Util.unwrapFutureException(throwable));
+                    }
+                    throw new CompletionException(failure);
+                });
+    }
+}
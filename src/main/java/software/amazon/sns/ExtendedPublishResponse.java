@@ -0,0 +1,59 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+
+/**
+ * The response of Amazon SNS to a publish through the extended client, together with what the client did to publish
+ * the message: whether its payload was offloaded and where it was stored, its size, and how long each stage took.
+ */
+public final class ExtendedPublishResponse {
+    private final PublishResponse response;
+    private final PublishMetrics publishMetrics;
+    private final PayloadS3Pointer payloadS3Pointer;
+
+    ExtendedPublishResponse(PublishResponse response, PublishMetrics publishMetrics, String payloadPointer) {
+        this.response = response;
+        this.publishMetrics = publishMetrics;
+        this.payloadS3Pointer = (payloadPointer != null) ? PayloadS3Pointer.fromJson(payloadPointer) : null;
+    }
+
+    public PublishResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return whether the payload was stored in S3 and the message published with a pointer to it.
+     */
+    public boolean isOffloaded() {
+        return publishMetrics.isOffloaded();
+    }
+
+    /**
+     * @return the location of the payload in S3, or null if the message was published inline, or if it was buffered
+     * and its payload stored when its batch was sent.
+     */
+    public PayloadS3Pointer getPayloadS3Pointer() {
+        return payloadS3Pointer;
+    }
+
+    /**
+     * @return the size of the message body in bytes, before any compression.
+     */
+    public long getPayloadSize() {
+        return publishMetrics.getPayloadSize();
+    }
+
+    /**
+     * @return the size and the duration of each stage of the publish, as reported to the publish metrics reporter.
+     */
+    public PublishMetrics getPublishMetrics() {
+        return publishMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtendedPublishResponse{response=" + response + ", publishMetrics=" + publishMetrics
+                + ", payloadS3Pointer=" + ((payloadS3Pointer != null) ? payloadS3Pointer.toJson() : null) + "}";
+    }
+}
@@ -0,0 +1,22 @@
+package software.amazon.sns;
+
+/**
+ * Controls what the asynchronous extended client does with the publishes of a FIFO message group that are waiting for
+ * a publish of the same group that failed, when FIFO group ordering is enabled.
+ */
+public enum FifoGroupFailurePolicy {
+    /**
+     * The waiting publishes fail without being sent, with an
+     * {@link software.amazon.awssdk.core.exception.SdkClientException} caused by the earlier failure, so that no
+     * message is published after an earlier message of its group that was not. Their payloads are deleted from S3
+     * when the cleanup of orphaned payloads is enabled. Publishes made once the group has no publish waiting are sent
+     * again.
+     */
+    FAIL_GROUP,
+
+    /**
+     * The waiting publishes are sent as if the earlier publish had succeeded, so the rest of the group is published
+     * without the failed message.
+     */
+    CONTINUE
+}
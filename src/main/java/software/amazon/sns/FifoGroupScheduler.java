@@ -0,0 +1,98 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.payloadoffloading.Util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isFifoTopic;
+
+/**
+ * Sends the publishes of each message group of a FIFO topic to Amazon SNS in the order they were issued. Publishes of
+ * different groups are sent in parallel, and the preparation of a message, such as storing its payload in S3, starts
+ * as soon as it is issued, so only the final Publish calls of a group wait for each other.
+ * <p>
+ * What happens to the publishes waiting for one that fails is decided by the {@link FifoGroupFailurePolicy}.
+ * </p>
+ */
+final class FifoGroupScheduler {
+    private final FifoGroupFailurePolicy failurePolicy;
+    // The last publish issued for each topic and message group, until it is sent.
+    private final Map<List<String>, CompletableFuture<?>> groupTails = new ConcurrentHashMap<>();
+
+    FifoGroupScheduler(FifoGroupFailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+    }
+
+    static FifoGroupScheduler create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration) {
+        return snsExtendedClientConfiguration.isFifoGroupOrderingEnabled()
+                ? new FifoGroupScheduler(snsExtendedClientConfiguration.getFifoGroupFailurePolicy())
+                : null;
+    }
+
+    /**
+     * @return whether the order of the request within its message group must be kept.
+     */
+    static boolean isOrdered(PublishRequest publishRequest) {
+        return isFifoTopic(publishRequest.topicArn()) && publishRequest.messageGroupId() != null;
+    }
+
+    /**
+     * Runs {@code send} once the publishes issued earlier for the same topic and message group are sent.
+     */
+    <T> CompletableFuture<T> sendInOrder(String topicArn, String messageGroupId, Supplier<CompletableFuture<T>> send) {
+        return sendInOrder(topicArn, messageGroupId, send, FifoGroupScheduler::skip);
+    }
+
+    /**
+     * Runs {@code send} once the publishes issued earlier for the same topic and message group are sent, or
+     * {@code skip} with the failure of the previous one if it failed and the rest of the group must fail.
+     */
+    <T> CompletableFuture<T> sendInOrder(String topicArn, String messageGroupId, Supplier<CompletableFuture<T>> send,
+                                         Function<Throwable, CompletableFuture<T>> skip) {
+        List<String> group = Arrays.asList(topicArn, messageGroupId);
+        CompletableFuture<T> sent = new CompletableFuture<>();
+        CompletableFuture<?> previous = groupTails.put(group, sent);
+
+        CompletableFuture<Throwable> previousFailure = (previous == null)
+                ? CompletableFuture.completedFuture(null)
+                : previous.handle((result, throwable) -> throwable);
+        previousFailure
+                .thenCompose(failure -> failure == null || failurePolicy == FifoGroupFailurePolicy.CONTINUE
+                        ? send.get()
+                        : skip.apply(Util.unwrapFutureException(failure)))
+                .whenComplete((result, throwable) -> {
+                    groupTails.remove(group, sent);
+                    if (throwable != null) {
+                        sent.completeExceptionally(throwable);
+                    } else {
+                        sent.complete(result);
+                    }
+                });
+        return sent;
+    }
+
+    /**
+     * @return a future failed because of the failure of an earlier publish of the group.
+     */
+    static <T> CompletableFuture<T> skip(Throwable previousFailure) {
+        CompletableFuture<T> skipped = new CompletableFuture<>();
+        skipped.completeExceptionally(SdkClientException.create(
+                "The message was not published because an earlier message of its group failed.", previousFailure));
+        return skipped;
+    }
+
+    /**
+     * @return the number of message groups with publishes waiting to be sent.
+     */
+    int getPendingGroupCount() {
+        return groupTails.size();
+    }
+}
@@ -0,0 +1,41 @@
+package software.amazon.sns;
+
+/**
+ * Prefixes the key of each payload with hexadecimal digits derived from a hash of the key, such as
+ * {@code 7f/0b9c2f4e-...}, so that payloads are spread evenly over up to 16^{@code prefixLength} S3 prefixes.
+ */
+public class HashedPrefixPayloadKeyNamingStrategy implements PayloadKeyNamingStrategy {
+    private static final int DEFAULT_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_LENGTH = 8;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int prefixLength;
+
+    /**
+     * Creates a strategy with prefixes of two hexadecimal digits, that is 256 prefixes.
+     */
+    public HashedPrefixPayloadKeyNamingStrategy() {
+        this(DEFAULT_PREFIX_LENGTH);
+    }
+
+    /**
+     * @param prefixLength the number of hexadecimal digits of the prefix, from 1 to 8.
+     */
+    public HashedPrefixPayloadKeyNamingStrategy(int prefixLength) {
+        if (prefixLength < 1 || prefixLength > MAX_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("prefixLength must be between 1 and " + MAX_PREFIX_LENGTH + ".");
+        }
+        this.prefixLength = prefixLength;
+    }
+
+    @Override
+    public String keyOf(String baseKey) {
+        int hash = PayloadPlacement.mix(baseKey.hashCode());
+        StringBuilder key = new StringBuilder(prefixLength + 1 + baseKey.length());
+        for (int i = 0; i < prefixLength; i++) {
+            // The highest bits come first, the bucket of a striped payload is chosen from the lowest ones.
+            key.append(HEX_DIGITS[(hash >>> (28 - 4 * i)) & 0xF]);
+        }
+        return key.append('/').append(baseKey).toString();
+    }
+}
@@ -0,0 +1,148 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of payload bytes the asynchronous extended client holds while they are stored in S3. A payload
+ * larger than the whole budget is accounted as the whole budget, so that it can still be stored once nothing else is
+ * in flight.
+ * <p>
+ * Publishes that wait for the budget hold their payload too, so the bytes of the waiting payloads are bounded as
+ * well, the same way. A publish that cannot wait either fails right away.
+ * </p>
+ */
+final class InFlightBytesBudget {
+    private final long limit;
+    private final long waitingLimit;
+    private final InFlightBytesPolicy policy;
+    private final Executor waiterExecutor;
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+    private long usedBytes;
+    private long waitingBytes;
+
+    /**
+     * @param limit          the number of payload bytes that may be in flight, or 0 for no limit.
+     * @param waitingLimit   the number of payload bytes that may wait for the budget, with the {@code WAIT} policy.
+     * @param waiterExecutor runs the publishes that waited for the budget, rather than the thread releasing it.
+     */
+    InFlightBytesBudget(long limit, long waitingLimit, InFlightBytesPolicy policy, Executor waiterExecutor) {
+        this.limit = limit;
+        this.waitingLimit = waitingLimit;
+        this.policy = policy;
+        this.waiterExecutor = waiterExecutor;
+    }
+
+    static InFlightBytesBudget create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration,
+                                      Executor waiterExecutor) {
+        long limit = snsExtendedClientConfiguration.getInFlightPayloadBytesLimit();
+        long waitingLimit = snsExtendedClientConfiguration.getWaitingPayloadBytesLimit();
+        return new InFlightBytesBudget(limit, (waitingLimit == 0) ? limit : waitingLimit,
+                snsExtendedClientConfiguration.getInFlightBytesPolicy(), waiterExecutor);
+    }
+
+    /**
+     * Runs {@code work} once {@code bytes} fit in the budget, and gives them back when the future it returns
+     * completes.
+     */
+    <T> CompletableFuture<T> runWithin(long bytes, Supplier<CompletableFuture<T>> work) {
+        if (limit == 0) {
+            return work.get();
+        }
+
+        long acquiredBytes = Math.min(bytes, limit);
+        return acquire(acquiredBytes, Math.min(bytes, waitingLimit)).thenCompose(v -> {
+            CompletableFuture<T> workFuture;
+            try {
+                workFuture = work.get();
+            } catch (RuntimeException e) {
+                release(acquiredBytes);
+                throw e;
+            }
+            return workFuture.whenComplete((result, throwable) -> release(acquiredBytes));
+        });
+    }
+
+    /**
+     * @return the number of payload bytes currently in flight.
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return the number of payload bytes of the publishes waiting for the budget.
+     */
+    synchronized long getWaitingBytes() {
+        return waitingBytes;
+    }
+
+    private CompletableFuture<Void> acquire(long bytes, long waitingBytesOfPayload) {
+        String failure;
+        synchronized (this) {
+            // Waiting publishes go first, so that a large payload is not starved by a stream of small ones.
+            if (waiters.isEmpty() && usedBytes + bytes <= limit) {
+                usedBytes += bytes;
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (policy == InFlightBytesPolicy.WAIT && waitingBytes + waitingBytesOfPayload <= waitingLimit) {
+                Waiter waiter = new Waiter(bytes, waitingBytesOfPayload);
+                waiters.add(waiter);
+                waitingBytes += waitingBytesOfPayload;
+                return waiter.future;
+            }
+
+            failure = (policy == InFlightBytesPolicy.WAIT)
+                    ? "The payload of " + bytes + " bytes cannot wait for the budget of in-flight payload bytes, "
+                            + "since " + waitingBytes + " of the " + waitingLimit + " bytes allowed to wait are in use."
+                    : "The payload of " + bytes + " bytes does not fit in the budget of " + limit
+                            + " in-flight payload bytes, of which " + usedBytes + " are in use.";
+        }
+
+        CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(SdkClientException.create(failure));
+        return failedFuture;
+    }
+
+    private void release(long bytes) {
+        List<Waiter> readyWaiters = new ArrayList<>();
+        synchronized (this) {
+            usedBytes -= bytes;
+            while (!waiters.isEmpty() && usedBytes + waiters.peek().bytes <= limit) {
+                Waiter waiter = waiters.poll();
+                usedBytes += waiter.bytes;
+                waitingBytes -= waiter.waitingBytes;
+                readyWaiters.add(waiter);
+            }
+        }
+
+        for (Waiter waiter : readyWaiters) {
+            try {
+                waiterExecutor.execute(() -> waiter.future.complete(null));
+            } catch (RejectedExecutionException e) {
+                // The client is closing, so the waiting publish is started on this thread instead.
+                waiter.future.complete(null);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final long bytes;
+        private final long waitingBytes;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Waiter(long bytes, long waitingBytes) {
+            this.bytes = bytes;
+            this.waitingBytes = waitingBytes;
+        }
+    }
+}
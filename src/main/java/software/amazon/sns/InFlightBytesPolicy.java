@@ -0,0 +1,21 @@
+package software.amazon.sns;
+
+/**
+ * Controls what the asynchronous extended client does with a publish whose payload does not fit in the budget of
+ * in-flight payload bytes.
+ */
+public enum InFlightBytesPolicy {
+    /**
+     * The publish waits, without blocking the caller, until enough in-flight payloads have been stored in S3. Waiting
+     * publishes are started in the order they were made. Once the payloads waiting reach
+     * {@link SNSExtendedAsyncClientConfiguration#getWaitingPayloadBytesLimit()}, further publishes fail right away as
+     * with {@link #FAIL_FAST}.
+     */
+    WAIT,
+
+    /**
+     * The returned future fails right away with an {@link software.amazon.awssdk.core.exception.SdkClientException},
+     * and nothing is stored or published.
+     */
+    FAIL_FAST
+}
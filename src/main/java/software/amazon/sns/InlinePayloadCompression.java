@@ -0,0 +1,120 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses messages that are slightly above the payload size threshold so that they can still be published inline,
+ * without going through S3. A message compressed inline is the base64 encoding of the zlib-deflated UTF-8 message
+ * body, and carries the {@link SNSExtendedClientConstants#INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME} attribute.
+ * <p>
+ * Consumers decode such messages with {@link #decompress(String, byte[])}, using the same dictionary as the publisher.
+ * </p>
+ */
+public final class InlinePayloadCompression {
+    /**
+     * The value of the {@link SNSExtendedClientConstants#INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME} attribute.
+     */
+    public static final String ENCODING = "deflate;base64";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private InlinePayloadCompression() {
+    }
+
+    /**
+     * @param dictionary     the preset dictionary, or null.
+     * @param maxEncodedSize the largest number of bytes the encoded message may take.
+     * @return the compressed and base64 encoded message, or null if it does not fit in {@code maxEncodedSize}.
+     */
+    static String compress(String message, byte[] dictionary, long maxEncodedSize) {
+        // Base64 takes 4 bytes for every 3 bytes of compressed data.
+        long maxCompressedSize = maxEncodedSize / 4 * 3;
+        if (maxCompressedSize <= 0) {
+            return null;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            // The message is encoded a chunk at a time as the deflater needs it, rather than copied as a whole, and
+            // malformed surrogates are replaced like String.getBytes does.
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer unencoded = CharBuffer.wrap(message);
+            ByteBuffer encoded = ByteBuffer.allocate(CHUNK_SIZE);
+            boolean encodedAll = false;
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(CHUNK_SIZE);
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (!deflater.finished()) {
+                if (deflater.needsInput() && !encodedAll) {
+                    encoded.clear();
+                    encoder.encode(unencoded, encoded, true);
+                    encodedAll = !unencoded.hasRemaining();
+                    if (encodedAll) {
+                        encoder.flush(encoded);
+                        deflater.finish();
+                    }
+                    deflater.setInput(encoded.array(), 0, encoded.position());
+                }
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+                // Give up as soon as the message cannot fit, rather than compressing the rest of it for nothing.
+                if (compressed.size() > maxCompressedSize) {
+                    return null;
+                }
+            }
+            return Base64.getEncoder().encodeToString(compressed.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decodes a message that was compressed inline by the publisher.
+     *
+     * @param message    the published message body.
+     * @param dictionary the preset dictionary the message was compressed with, or null.
+     * @return the original message body.
+     * @throws SdkClientException if the message is not a valid inline compressed message, or needs another dictionary.
+     */
+    public static String decompress(String message, byte[] dictionary) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(Base64.getDecoder().decode(message));
+
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream(CHUNK_SIZE);
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && inflater.needsDictionary()) {
+                    if (dictionary == null) {
+                        throw SdkClientException.create("The message was compressed with a dictionary, but none was given.");
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (count == 0 && inflater.needsInput()) {
+                    throw SdkClientException.create("The compressed message is truncated.");
+                }
+                decompressed.write(chunk, 0, count);
+            }
+            return new String(decompressed.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | DataFormatException e) {
+            throw SdkClientException.create("Failed to decompress the message.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package software.amazon.sns;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.Util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Records the stages of each publish as Java Flight Recorder events, in the "Amazon SNS Extended Client" category.
+ * Only loaded by {@link PublishTracer#get()} when the runtime has the {@code jdk.jfr} module.
+ */
+final class JfrPublishTracer extends PublishTracer {
+    private static final String CATEGORY = "Amazon SNS Extended Client";
+
+    @Override
+    Object sizeComputationStarted() {
+        SizeComputationEvent event = new SizeComputationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void sizeComputationEnded(Object event, String topicArn, LongSupplier payloadSize) {
+        if (event == null) {
+            return;
+        }
+        SizeComputationEvent sizeComputationEvent = (SizeComputationEvent) event;
+        sizeComputationEvent.end();
+        if (sizeComputationEvent.shouldCommit()) {
+            sizeComputationEvent.topicArn = topicArn;
+            sizeComputationEvent.payloadSize = payloadSize.getAsLong();
+            sizeComputationEvent.commit();
+        }
+    }
+
+    @Override
+    void offloadDecided(String topicArn, LongSupplier payloadSize, boolean offloaded, boolean compressedInline) {
+        OffloadDecisionEvent event = new OffloadDecisionEvent();
+        if (event.shouldCommit()) {
+            event.topicArn = topicArn;
+            event.payloadSize = payloadSize.getAsLong();
+            event.offloaded = offloaded;
+            event.compressedInline = compressedInline;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object s3UploadStarted() {
+        S3UploadEvent event = new S3UploadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void s3UploadEnded(Object event, LongSupplier payloadSize, String payloadPointer) {
+        if (event == null) {
+            return;
+        }
+        S3UploadEvent s3UploadEvent = (S3UploadEvent) event;
+        s3UploadEvent.end();
+        if (s3UploadEvent.shouldCommit()) {
+            s3UploadEvent.payloadSize = payloadSize.getAsLong();
+            s3UploadEvent.successful = payloadPointer != null;
+            if (payloadPointer != null) {
+                PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(payloadPointer);
+                s3UploadEvent.bucketName = s3Pointer.getS3BucketName();
+                s3UploadEvent.key = s3Pointer.getS3Key();
+            }
+            s3UploadEvent.commit();
+        }
+    }
+
+    @Override
+    Object snsPublishStarted() {
+        SnsPublishEvent event = new SnsPublishEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void snsPublishEnded(Object event, String topicArn, Throwable failure) {
+        if (event == null) {
+            return;
+        }
+        SnsPublishEvent snsPublishEvent = (SnsPublishEvent) event;
+        snsPublishEvent.end();
+        if (snsPublishEvent.shouldCommit()) {
+            snsPublishEvent.topicArn = topicArn;
+            snsPublishEvent.successful = failure == null;
+            if (failure != null) {
+                snsPublishEvent.failure = Util.unwrapFutureException(failure).getClass().getName();
+            }
+            snsPublishEvent.commit();
+        }
+    }
+
+    @Name("software.amazon.sns.SizeComputation")
+    @Label("Message Size Computation")
+    @Description("Computing the size of a message to decide whether its payload is offloaded to S3")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class SizeComputationEvent extends Event {
+        @Label("Topic ARN")
+        String topicArn;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+    }
+
+    @Name("software.amazon.sns.OffloadDecision")
+    @Label("Offload Decision")
+    @Description("Whether the payload of a message is offloaded to S3 or published inline")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class OffloadDecisionEvent extends Event {
+        @Label("Topic ARN")
+        String topicArn;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+
+        @Label("Offloaded")
+        boolean offloaded;
+
+        @Label("Compressed Inline")
+        boolean compressedInline;
+    }
+
+    @Name("software.amazon.sns.S3Upload")
+    @Label("S3 Payload Upload")
+    @Description("Storing the payload of a message in S3")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class S3UploadEvent extends Event {
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+
+        @Label("Bucket Name")
+        String bucketName;
+
+        @Label("Key")
+        String key;
+
+        @Label("Successful")
+        boolean successful;
+    }
+
+    @Name("software.amazon.sns.SnsPublish")
+    @Label("SNS Publish")
+    @Description("Publishing a message to Amazon SNS")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class SnsPublishEvent extends Event {
+        @Label("Topic ARN")
+        String topicArn;
+
+        @Label("Successful")
+        boolean successful;
+
+        @Label("Failure")
+        String failure;
+    }
+}
@@ -0,0 +1,54 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.utils.BinaryUtils;
+
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isFifoTopic;
+
+/**
+ * Derives the deduplication ID of messages offloaded to S3 on FIFO topics. Content-based deduplication hashes the
+ * message body, which is a pointer to a new S3 object every time a payload is offloaded, so retries of the same
+ * payload would not be deduplicated. Such messages get the hex encoded SHA-256 hash of their original body as
+ * deduplication ID instead, which is what content-based deduplication would have derived from it.
+ */
+final class MessageDeduplicationIds {
+    private MessageDeduplicationIds() {
+    }
+
+    /**
+     * @return whether a deduplication ID is derived for an offloaded message to the topic.
+     */
+    static boolean isDerived(String topicArn, String messageDeduplicationId) {
+        return isFifoTopic(topicArn) && messageDeduplicationId == null;
+    }
+
+    /**
+     * Hashes the message body in a second pass over it, once it is known to be offloaded, so that messages sent
+     * inline are never hashed.
+     *
+     * @return the hex encoded SHA-256 hash of the UTF-8 encoding of the message body.
+     */
+    static String derive(String message) {
+        return BinaryUtils.toHex(new Utf8SizeCounter(message, PayloadDeduplication.newSha256Digest()).digest());
+    }
+
+    /**
+     * @return the request with a deduplication ID derived from its message if it needs one, or the request itself.
+     */
+    static PublishRequest withDerivedId(PublishRequest publishRequest) {
+        return isDerived(publishRequest.topicArn(), publishRequest.messageDeduplicationId())
+                ? withDerivedId(publishRequest, derive(publishRequest.message()))
+                : publishRequest;
+    }
+
+    /**
+     * @return the request with the derived deduplication ID if it needs one, or the request itself.
+     */
+    static PublishRequest withDerivedId(PublishRequest publishRequest, String messageDeduplicationId) {
+        if (messageDeduplicationId == null
+                || !isDerived(publishRequest.topicArn(), publishRequest.messageDeduplicationId())) {
+            return publishRequest;
+        }
+        return publishRequest.toBuilder().messageDeduplicationId(messageDeduplicationId).build();
+    }
+}
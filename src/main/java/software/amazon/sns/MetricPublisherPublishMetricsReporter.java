@@ -0,0 +1,61 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.metrics.MetricCategory;
+import software.amazon.awssdk.metrics.MetricCollector;
+import software.amazon.awssdk.metrics.MetricLevel;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+
+/**
+ * Reports the metrics of each publish to an SDK {@link MetricPublisher}, as a metric collection named
+ * {@value #COLLECTION_NAME} holding the metrics below. The metric publisher is not closed by the reporter.
+ */
+public class MetricPublisherPublishMetricsReporter implements PublishMetricsReporter {
+    public static final String COLLECTION_NAME = "SnsExtendedPublish";
+
+    public static final SdkMetric<String> TOPIC_ARN = SdkMetric.create("SnsExtendedTopicArn", String.class,
+            MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Boolean> OFFLOADED = SdkMetric.create("SnsExtendedOffloaded", Boolean.class,
+            MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Long> PAYLOAD_SIZE = SdkMetric.create("SnsExtendedPayloadSize", Long.class,
+            MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Duration> SIZE_CHECK_DURATION = SdkMetric.create("SnsExtendedSizeCheckDuration",
+            Duration.class, MetricLevel.TRACE, MetricCategory.CUSTOM);
+    public static final SdkMetric<Duration> S3_UPLOAD_DURATION = SdkMetric.create("SnsExtendedS3UploadDuration",
+            Duration.class, MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Duration> SNS_PUBLISH_DURATION = SdkMetric.create("SnsExtendedSnsPublishDuration",
+            Duration.class, MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Duration> TOTAL_DURATION = SdkMetric.create("SnsExtendedTotalDuration",
+            Duration.class, MetricLevel.INFO, MetricCategory.CUSTOM);
+    public static final SdkMetric<Boolean> SUCCESSFUL = SdkMetric.create("SnsExtendedSuccessful", Boolean.class,
+            MetricLevel.INFO, MetricCategory.CUSTOM);
+
+    private final MetricPublisher metricPublisher;
+
+    public MetricPublisherPublishMetricsReporter(MetricPublisher metricPublisher) {
+        if (metricPublisher == null) {
+            throw new IllegalArgumentException("metricPublisher must not be null.");
+        }
+        this.metricPublisher = metricPublisher;
+    }
+
+    @Override
+    public void report(PublishMetrics publishMetrics) {
+        MetricCollector metricCollector = MetricCollector.create(COLLECTION_NAME);
+        if (publishMetrics.getTopicArn() != null) {
+            metricCollector.reportMetric(TOPIC_ARN, publishMetrics.getTopicArn());
+        }
+        metricCollector.reportMetric(OFFLOADED, publishMetrics.isOffloaded());
+        metricCollector.reportMetric(PAYLOAD_SIZE, publishMetrics.getPayloadSize());
+        metricCollector.reportMetric(SIZE_CHECK_DURATION, Duration.ofNanos(publishMetrics.getSizeCheckNanos()));
+        if (publishMetrics.isOffloaded()) {
+            metricCollector.reportMetric(S3_UPLOAD_DURATION, Duration.ofNanos(publishMetrics.getS3UploadNanos()));
+        }
+        metricCollector.reportMetric(SNS_PUBLISH_DURATION, Duration.ofNanos(publishMetrics.getSnsPublishNanos()));
+        metricCollector.reportMetric(TOTAL_DURATION, Duration.ofNanos(publishMetrics.getTotalNanos()));
+        metricCollector.reportMetric(SUCCESSFUL, publishMetrics.isSuccessful());
+        metricPublisher.publish(metricCollector.collect());
+    }
+}
@@ -0,0 +1,90 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Hands out the parts of a payload to the concurrent uploads of a multipart upload and collects the uploaded parts.
+ * <p>
+ * Parts are read from the payload only when they are handed out, so at most one part per concurrent upload is held in
+ * memory. A payload of unknown length is read until it ends. Once cancelled, no further part is handed out.
+ * </p>
+ */
+final class MultipartUploadParts {
+    private final PayloadSource payloadSource;
+    private final int partSize;
+    private final int partCount;
+    private final List<CompletedPart> completedParts = new ArrayList<>();
+    private int nextPartNumber = 1;
+    private long nextPartOffset;
+    private boolean exhausted;
+    private boolean cancelled;
+
+    MultipartUploadParts(PayloadSource payloadSource, int partSize) {
+        long contentLength = payloadSource.contentLength();
+        this.payloadSource = payloadSource;
+        this.partSize = partSize;
+        this.partCount = (contentLength == PayloadSource.UNKNOWN_LENGTH)
+                ? -1 : (int) ((contentLength + partSize - 1) / partSize);
+    }
+
+    /**
+     * @return how many parts may be uploaded at the same time, given the configured concurrency.
+     */
+    int getConcurrentUploads(int concurrency) {
+        return (partCount < 0) ? concurrency : Math.min(concurrency, partCount);
+    }
+
+    /**
+     * @return the next part to upload, or null once every part was handed out or the upload was cancelled.
+     */
+    synchronized Part next() {
+        if (cancelled || exhausted || (partCount >= 0 && nextPartNumber > partCount)) {
+            return null;
+        }
+
+        int length = (partCount < 0) ? partSize : (int) Math.min(partSize, payloadSource.contentLength() - nextPartOffset);
+        ByteBuffer data = payloadSource.readPart(nextPartOffset, length);
+        if (data.remaining() < length) {
+            exhausted = true;
+            // A payload of unknown length may end right after the previous part.
+            if (!data.hasRemaining() && nextPartNumber > 1) {
+                return null;
+            }
+        }
+
+        nextPartOffset += data.remaining();
+        return new Part(nextPartNumber++, data);
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+    }
+
+    synchronized void complete(int partNumber, String eTag) {
+        completedParts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+    }
+
+    /**
+     * @return the uploaded parts, ordered by part number.
+     */
+    synchronized List<CompletedPart> getCompletedParts() {
+        List<CompletedPart> parts = new ArrayList<>(completedParts);
+        parts.sort(Comparator.comparing(CompletedPart::partNumber));
+        return parts;
+    }
+
+    static final class Part {
+        final int partNumber;
+        final ByteBuffer data;
+
+        private Part(int partNumber, ByteBuffer data) {
+            this.partNumber = partNumber;
+            this.data = data;
+        }
+    }
+}
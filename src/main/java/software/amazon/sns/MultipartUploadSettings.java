@@ -0,0 +1,83 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import static software.amazon.sns.SNSExtendedClientConstants.MAX_BUFFERED_COMPRESSED_PAYLOAD_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.MAX_MULTIPART_UPLOAD_PARTS;
+
+/**
+ * The multipart upload settings of a payload store, taken from the extended client configuration.
+ */
+final class MultipartUploadSettings {
+    private final long threshold;
+    private final int partSize;
+    private final int concurrency;
+    private final int partRetries;
+
+    MultipartUploadSettings(long threshold, int partSize, int concurrency, int partRetries) {
+        this.threshold = threshold;
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+        this.partRetries = partRetries;
+    }
+
+    static MultipartUploadSettings create(SNSExtendedClientConfiguration snsExtendedClientConfiguration) {
+        return new MultipartUploadSettings(snsExtendedClientConfiguration.getMultipartUploadThreshold(),
+                snsExtendedClientConfiguration.getMultipartUploadPartSize(),
+                snsExtendedClientConfiguration.getMultipartUploadConcurrency(),
+                snsExtendedClientConfiguration.getMultipartUploadPartRetries());
+    }
+
+    static MultipartUploadSettings create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration) {
+        return new MultipartUploadSettings(snsExtendedClientConfiguration.getMultipartUploadThreshold(),
+                snsExtendedClientConfiguration.getMultipartUploadPartSize(),
+                snsExtendedClientConfiguration.getMultipartUploadConcurrency(),
+                snsExtendedClientConfiguration.getMultipartUploadPartRetries());
+    }
+
+    /**
+     * @return how much of a compressed payload is held in memory to upload it in one request. A compressed payload
+     *         longer than that has an unknown length and is uploaded in parts.
+     */
+    long getCompressedPayloadBufferLimit() {
+        return Math.min(threshold, MAX_BUFFERED_COMPRESSED_PAYLOAD_SIZE);
+    }
+
+    /**
+     * @return whether a payload of that length is uploaded in parts, which payloads of unknown length always are.
+     */
+    boolean isMultipartUpload(long contentLength) {
+        return contentLength == PayloadSource.UNKNOWN_LENGTH || contentLength > threshold;
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    int getPartRetries() {
+        return partRetries;
+    }
+
+    /**
+     * Splits the payload into parts of the configured size, or into larger parts if the payload would otherwise need
+     * more parts than S3 allows. Payloads of unknown length are always split into parts of the configured size.
+     */
+    MultipartUploadParts partsOf(PayloadSource payloadSource) {
+        long contentLength = payloadSource.contentLength();
+        long minPartSize = (contentLength == PayloadSource.UNKNOWN_LENGTH)
+                ? 0 : (contentLength + MAX_MULTIPART_UPLOAD_PARTS - 1) / MAX_MULTIPART_UPLOAD_PARTS;
+        return new MultipartUploadParts(payloadSource, (int) Math.max(partSize, minPartSize));
+    }
+
+    /**
+     * @return whether a part upload that failed with {@code throwable} may succeed when uploaded again.
+     */
+    static boolean isRetryablePartError(Throwable throwable) {
+        if (throwable instanceof SdkServiceException) {
+            SdkServiceException serviceException = (SdkServiceException) throwable;
+            return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+        }
+        return throwable instanceof SdkClientException;
+    }
+}
@@ -0,0 +1,299 @@
+package software.amazon.sns;
+
+import com.amazon.sqs.javamessaging.SQSExtendedClientConstants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.utils.ThreadFactoryBuilder;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.Util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getS3keyAttribute;
+
+/**
+ * Deletes the payloads stored in S3 for messages that could not be published, which nothing points to. Payloads are
+ * deleted in the background once the cleanup delay has passed, with DeleteObjects requests of up to 1000 keys.
+ * Only messages that Amazon SNS rejected, or never received, count as not published: after a timeout or a server
+ * error the message may have been delivered, and its subscribers may still read the payload.
+ * <p>
+ * The queue of pending payloads is bounded, and payloads that do not fit are left in the bucket. Deduplicated payloads
+ * and payloads stored under a key chosen by the caller are never deleted, since other messages or retries may point
+ * to them. Closing the cleaner deletes every pending payload right away.
+ * </p>
+ */
+final class OrphanedPayloadCleaner {
+    private static final Log LOGGER = LogFactory.getLog(OrphanedPayloadCleaner.class);
+    // The largest number of keys a DeleteObjects request accepts.
+    private static final int MAX_DELETE_OBJECTS_KEYS = 1000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    private static final int MIN_CLIENT_ERROR_STATUS_CODE = 400;
+    private static final int MIN_SERVER_ERROR_STATUS_CODE = 500;
+
+    private final Function<DeleteObjectsRequest, DeleteObjectsResponse> deleteObjects;
+    private final long delayNanos;
+    private final int queueSize;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Queue<OrphanedPayload> pendingPayloads = new ArrayDeque<>();
+    private final AtomicLong queuedPayloads = new AtomicLong();
+    private final AtomicLong deletedPayloads = new AtomicLong();
+    private final AtomicLong failedDeletions = new AtomicLong();
+    private final AtomicLong droppedPayloads = new AtomicLong();
+    private boolean sweepScheduled;
+    private boolean closed;
+
+    OrphanedPayloadCleaner(Function<DeleteObjectsRequest, DeleteObjectsResponse> deleteObjects, long delayNanos,
+                           int queueSize) {
+        this.deleteObjects = deleteObjects;
+        this.delayNanos = delayNanos;
+        this.queueSize = queueSize;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .threadNamePrefix("sns-extended-orphaned-payload-cleanup").daemonThreads(true).build());
+        // Pending payloads are deleted by close() itself, without waiting for their delay.
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * @return the cleaner of the configuration, or null if orphaned payload cleanup or payload support is disabled.
+     */
+    static OrphanedPayloadCleaner create(SNSExtendedClientConfiguration snsExtendedClientConfiguration) {
+        if (!snsExtendedClientConfiguration.isOrphanedPayloadCleanupEnabled()
+                || !snsExtendedClientConfiguration.isPayloadSupportEnabled()) {
+            return null;
+        }
+        return new OrphanedPayloadCleaner(snsExtendedClientConfiguration.getS3Client()::deleteObjects,
+                snsExtendedClientConfiguration.getOrphanedPayloadCleanupDelay().toNanos(),
+                snsExtendedClientConfiguration.getOrphanedPayloadCleanupQueueSize());
+    }
+
+    static OrphanedPayloadCleaner create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration) {
+        if (!snsExtendedClientConfiguration.isOrphanedPayloadCleanupEnabled()
+                || !snsExtendedClientConfiguration.isPayloadSupportEnabled()) {
+            return null;
+        }
+        S3AsyncClient s3AsyncClient = snsExtendedClientConfiguration.getS3AsyncClient();
+        return new OrphanedPayloadCleaner(request -> s3AsyncClient.deleteObjects(request).join(),
+                snsExtendedClientConfiguration.getOrphanedPayloadCleanupDelay().toNanos(),
+                snsExtendedClientConfiguration.getOrphanedPayloadCleanupQueueSize());
+    }
+
+    /**
+     * Queues the payload of a message that could not be published, if it was stored in S3 by this client.
+     *
+     * @param message           the published message body, which is the S3 pointer of an offloaded message.
+     * @param messageAttributes the published message attributes.
+     */
+    void scheduleCleanup(String message, Map<String, MessageAttributeValue> messageAttributes) {
+        if (messageAttributes == null
+                || !messageAttributes.containsKey(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME)
+                || getS3keyAttribute(messageAttributes) != null) {
+            return;
+        }
+
+        PayloadS3Pointer payloadPointer;
+        try {
+            payloadPointer = PayloadS3Pointer.fromJson(message);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to read the S3 pointer of a message that could not be published.", e);
+            return;
+        }
+        if (PayloadDeduplication.isDeduplicatedKey(payloadPointer.getS3Key())) {
+            return;
+        }
+
+        synchronized (this) {
+            if (closed || pendingPayloads.size() >= queueSize) {
+                droppedPayloads.incrementAndGet();
+                LOGGER.warn("Leaving the orphaned payload " + payloadPointer.getS3Key() + " in S3, since "
+                        + (closed ? "the client is closed." : "the cleanup queue is full."));
+                return;
+            }
+            pendingPayloads.add(new OrphanedPayload(payloadPointer.getS3BucketName(), payloadPointer.getS3Key(),
+                    System.nanoTime() + delayNanos));
+            queuedPayloads.incrementAndGet();
+            if (!sweepScheduled) {
+                sweepScheduled = true;
+                scheduler.schedule(this::sweep, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Queues the payload of a message whose publish failed, if Amazon SNS rejected it. After any other failure the
+     * message may have been published all the same, and its payload is left in place.
+     */
+    void scheduleCleanupIfRejected(String message, Map<String, MessageAttributeValue> messageAttributes,
+                                   Throwable failure) {
+        if (isRejected(failure)) {
+            scheduleCleanup(message, messageAttributes);
+        }
+    }
+
+    /**
+     * Queues the payloads of the entries of a PublishBatch request that failed, if Amazon SNS rejected it.
+     */
+    void scheduleCleanupIfRejected(Collection<PublishBatchRequestEntry> entries, Throwable failure) {
+        if (isRejected(failure)) {
+            for (PublishBatchRequestEntry entry : entries) {
+                scheduleCleanup(entry.message(), entry.messageAttributes());
+            }
+        }
+    }
+
+    /**
+     * @return whether Amazon SNS answered the request with a client error, so the message was definitely not accepted.
+     *         A client-side failure, such as a timeout, or a server error leaves it unknown whether the message was
+     *         published.
+     */
+    static boolean isRejected(Throwable failure) {
+        Throwable cause = Util.unwrapFutureException(failure);
+        if (!(cause instanceof SdkServiceException)) {
+            return false;
+        }
+        int statusCode = ((SdkServiceException) cause).statusCode();
+        return statusCode >= MIN_CLIENT_ERROR_STATUS_CODE && statusCode < MIN_SERVER_ERROR_STATUS_CODE;
+    }
+
+    /**
+     * Queues the payloads of the entries of a PublishBatch request that failed.
+     */
+    void scheduleCleanupOfFailedEntries(Collection<PublishBatchRequestEntry> entries,
+                                        PublishBatchResponse publishBatchResponse) {
+        if (!publishBatchResponse.hasFailed() || publishBatchResponse.failed().isEmpty()) {
+            return;
+        }
+
+        Set<String> failedIds = new HashSet<>();
+        for (BatchResultErrorEntry failedEntry : publishBatchResponse.failed()) {
+            failedIds.add(failedEntry.id());
+        }
+        for (PublishBatchRequestEntry entry : entries) {
+            if (failedIds.contains(entry.id())) {
+                scheduleCleanup(entry.message(), entry.messageAttributes());
+            }
+        }
+    }
+
+    OrphanedPayloadCleanupMetrics getMetrics() {
+        int pending;
+        synchronized (this) {
+            pending = pendingPayloads.size();
+        }
+        return new OrphanedPayloadCleanupMetrics(queuedPayloads.get(), deletedPayloads.get(), failedDeletions.get(),
+                droppedPayloads.get(), pending);
+    }
+
+    /**
+     * Deletes every pending payload on the calling thread, and waits for a sweep that is already deleting payloads.
+     */
+    void close() {
+        List<OrphanedPayload> remainingPayloads;
+        synchronized (this) {
+            closed = true;
+            remainingPayloads = new ArrayList<>(pendingPayloads);
+            pendingPayloads.clear();
+        }
+        scheduler.shutdown();
+        delete(remainingPayloads);
+        try {
+            if (!scheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Orphaned payloads were still being deleted when the client was closed.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sweep() {
+        List<OrphanedPayload> duePayloads = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            // Every payload waits for the same delay, so the queue is ordered by due time.
+            while (!pendingPayloads.isEmpty() && pendingPayloads.peek().dueNanos - now <= 0) {
+                duePayloads.add(pendingPayloads.poll());
+            }
+        }
+
+        try {
+            delete(duePayloads);
+        } finally {
+            synchronized (this) {
+                if (pendingPayloads.isEmpty() || closed) {
+                    sweepScheduled = false;
+                } else {
+                    scheduler.schedule(this::sweep, Math.max(0, pendingPayloads.peek().dueNanos - System.nanoTime()),
+                            TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    private void delete(List<OrphanedPayload> payloads) {
+        Map<String, List<ObjectIdentifier>> keysByBucket = new LinkedHashMap<>();
+        for (OrphanedPayload payload : payloads) {
+            keysByBucket.computeIfAbsent(payload.bucketName, bucketName -> new ArrayList<>())
+                    .add(ObjectIdentifier.builder().key(payload.key).build());
+        }
+
+        for (Map.Entry<String, List<ObjectIdentifier>> bucketKeys : keysByBucket.entrySet()) {
+            List<ObjectIdentifier> keys = bucketKeys.getValue();
+            for (int start = 0; start < keys.size(); start += MAX_DELETE_OBJECTS_KEYS) {
+                deleteObjects(bucketKeys.getKey(), keys.subList(start, Math.min(start + MAX_DELETE_OBJECTS_KEYS, keys.size())));
+            }
+        }
+    }
+
+    private void deleteObjects(String bucketName, List<ObjectIdentifier> keys) {
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(keys).quiet(true).build())
+                .build();
+        try {
+            DeleteObjectsResponse response = deleteObjects.apply(deleteObjectsRequest);
+            int failures = response.hasErrors() ? response.errors().size() : 0;
+            if (failures > 0) {
+                LOGGER.warn("Failed to delete " + failures + " orphaned payloads from the bucket " + bucketName
+                        + ", first error: " + response.errors().get(0));
+            }
+            failedDeletions.addAndGet(failures);
+            deletedPayloads.addAndGet(keys.size() - failures);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to delete " + keys.size() + " orphaned payloads from the bucket " + bucketName + ".", e);
+            failedDeletions.addAndGet(keys.size());
+        }
+    }
+
+    private static final class OrphanedPayload {
+        private final String bucketName;
+        private final String key;
+        private final long dueNanos;
+
+        private OrphanedPayload(String bucketName, String key, long dueNanos) {
+            this.bucketName = bucketName;
+            this.key = key;
+            this.dueNanos = dueNanos;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package software.amazon.sns;
+
+/**
+ * A snapshot of the counters of the cleanup of payloads left in S3 by messages that could not be published.
+ */
+public final class OrphanedPayloadCleanupMetrics {
+    private final long queuedPayloads;
+    private final long deletedPayloads;
+    private final long failedDeletions;
+    private final long droppedPayloads;
+    private final int pendingPayloads;
+
+    OrphanedPayloadCleanupMetrics(long queuedPayloads, long deletedPayloads, long failedDeletions,
+                                  long droppedPayloads, int pendingPayloads) {
+        this.queuedPayloads = queuedPayloads;
+        this.deletedPayloads = deletedPayloads;
+        this.failedDeletions = failedDeletions;
+        this.droppedPayloads = droppedPayloads;
+        this.pendingPayloads = pendingPayloads;
+    }
+
+    /**
+     * @return the number of payloads queued for deletion since the client was created.
+     */
+    public long getQueuedPayloads() {
+        return queuedPayloads;
+    }
+
+    /**
+     * @return the number of payloads deleted from S3.
+     */
+    public long getDeletedPayloads() {
+        return deletedPayloads;
+    }
+
+    /**
+     * @return the number of payloads S3 failed to delete. They are not retried and are left in the bucket.
+     */
+    public long getFailedDeletions() {
+        return failedDeletions;
+    }
+
+    /**
+     * @return the number of payloads that were not queued because the queue was full. They are left in the bucket.
+     */
+    public long getDroppedPayloads() {
+        return droppedPayloads;
+    }
+
+    /**
+     * @return the number of payloads currently waiting for their deletion.
+     */
+    public int getPendingPayloads() {
+        return pendingPayloads;
+    }
+
+    @Override
+    public String toString() {
+        return "OrphanedPayloadCleanupMetrics{queuedPayloads=" + queuedPayloads + ", deletedPayloads=" + deletedPayloads
+                + ", failedDeletions=" + failedDeletions + ", droppedPayloads=" + droppedPayloads
+                + ", pendingPayloads=" + pendingPayloads + "}";
+    }
+}
@@ -0,0 +1,63 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ServiceLoader;
+
+/**
+ * Reads back payloads compressed by the extended clients.
+ * <p>
+ * A consumer that downloads an offloaded payload itself passes the object content and either the content encoding
+ * of the S3 object or the value of the {@link SNSExtendedClientConstants#PAYLOAD_ENCODING_ATTRIBUTE_NAME} message
+ * attribute to {@link #decompress(InputStream, String)}.
+ * </p>
+ */
+public final class PayloadCompression {
+    private static final Log LOGGER = LogFactory.getLog(PayloadCompression.class);
+    private static final String IDENTITY_ENCODING = "identity";
+
+    private PayloadCompression() {
+    }
+
+    /**
+     * @param name the name of a codec, as recorded on a compressed payload.
+     * @return the built-in gzip codec or the codec of that name registered with {@link ServiceLoader}.
+     * @throws SdkClientException if no codec has that name.
+     */
+    public static PayloadCompressionCodec getCodec(String name) {
+        if (GzipPayloadCompressionCodec.NAME.equalsIgnoreCase(name)) {
+            return new GzipPayloadCompressionCodec();
+        }
+        for (PayloadCompressionCodec codec : ServiceLoader.load(PayloadCompressionCodec.class)) {
+            if (codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+
+        String errorMessage = "No payload compression codec is registered under the name " + name + ".";
+        LOGGER.error(errorMessage);
+        throw SdkClientException.create(errorMessage);
+    }
+
+    /**
+     * @param payload  the stored payload.
+     * @param encoding the codec name recorded with the payload, or null if the payload is not compressed.
+     * @return a stream of the original payload, which closes {@code payload} when closed.
+     * @throws SdkClientException if no codec has that name or the payload cannot be read.
+     */
+    public static InputStream decompress(InputStream payload, String encoding) {
+        if (encoding == null || encoding.isEmpty() || IDENTITY_ENCODING.equalsIgnoreCase(encoding)) {
+            return payload;
+        }
+
+        try {
+            return getCodec(encoding).decompress(payload);
+        } catch (IOException e) {
+            throw SdkClientException.create("Failed to decompress the payload with the " + encoding + " codec.", e);
+        }
+    }
+}
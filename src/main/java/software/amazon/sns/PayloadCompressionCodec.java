@@ -0,0 +1,36 @@
+package software.amazon.sns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses the payloads the extended clients store in S3.
+ * <p>
+ * The name of the codec is recorded as the content encoding of the S3 object and in the
+ * {@link SNSExtendedClientConstants#PAYLOAD_ENCODING_ATTRIBUTE_NAME} message attribute, so that consumers can find the
+ * codec to decompress the payload with through {@link PayloadCompression#decompress(InputStream, String)}. Codecs
+ * other than the built-in {@link GzipPayloadCompressionCodec} are found by name among the codecs registered with
+ * {@link java.util.ServiceLoader}, and must be registered on the consumer side as well.
+ * </p>
+ */
+public interface PayloadCompressionCodec {
+
+    /**
+     * @return the name of the codec, used as a Content-Encoding token, such as "gzip".
+     */
+    String getName();
+
+    /**
+     * @param output the stream the compressed bytes are written to.
+     * @return a stream compressing what is written to it into {@code output}. Closing it finishes the compressed
+     * data and closes {@code output}.
+     */
+    OutputStream compress(OutputStream output) throws IOException;
+
+    /**
+     * @param input the compressed bytes.
+     * @return a stream of the decompressed bytes, which closes {@code input} when closed.
+     */
+    InputStream decompress(InputStream input) throws IOException;
+}
@@ -0,0 +1,170 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.awssdk.utils.ThreadFactoryBuilder;
+import software.amazon.payloadoffloading.Util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed storage of payloads: the S3 key of a payload is derived from the SHA-256 hash of its content, so
+ * that identical payloads are stored once. The pointers of the payloads this client stored are kept in a bounded
+ * least recently used cache, and a payload found in the cache is not uploaded again.
+ * <p>
+ * Uploads are conditional on the key not existing yet, so that publishers racing to store the same content do not
+ * overwrite each other, and a payload another publisher already stored is not written again. While another publisher
+ * is still writing the same payload, S3 rejects the upload as conflicting, and it is retried after a short delay
+ * until that write is over.
+ * </p>
+ */
+final class PayloadDeduplication {
+    static final String KEY_PREFIX = "sha256-";
+    // The prefix followed by the 64 hexadecimal digits of the hash.
+    private static final int KEY_LENGTH = KEY_PREFIX.length() + 64;
+    // S3 rejects a conditional write with this status code when an object already exists under the key.
+    private static final int PRECONDITION_FAILED_STATUS_CODE = 412;
+    // S3 rejects a conditional write with this status code while another conditional write to the key is in progress.
+    private static final int CONDITIONAL_REQUEST_CONFLICT_STATUS_CODE = 409;
+    static final int MAX_CONFLICT_RETRIES = 5;
+    private static final long CONFLICT_RETRY_BASE_DELAY_MILLIS = 50;
+    private static final AwsRequestOverrideConfiguration IF_NONE_MATCH_OVERRIDE_CONFIGURATION =
+            AwsRequestOverrideConfiguration.builder().putHeader("If-None-Match", "*").build();
+
+    private final Map<String, String> pointerCache;
+
+    PayloadDeduplication(int cacheSize) {
+        this.pointerCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return the payload deduplication of the configuration, or null if it is disabled.
+     */
+    static PayloadDeduplication create(SNSExtendedClientConfiguration snsExtendedClientConfiguration) {
+        return snsExtendedClientConfiguration.isPayloadDeduplicationEnabled()
+                ? new PayloadDeduplication(snsExtendedClientConfiguration.getPayloadDeduplicationCacheSize())
+                : null;
+    }
+
+    static PayloadDeduplication create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration) {
+        return snsExtendedClientConfiguration.isPayloadDeduplicationEnabled()
+                ? new PayloadDeduplication(snsExtendedClientConfiguration.getPayloadDeduplicationCacheSize())
+                : null;
+    }
+
+    /**
+     * Reads the whole payload to derive its S3 key, so the payload must be {@link PayloadSource#isRepeatable()}.
+     */
+    String keyOf(PayloadSource payloadSource) {
+        MessageDigest messageDigest = newSha256Digest();
+        payloadSource.digest(messageDigest);
+        return KEY_PREFIX + BinaryUtils.toHex(messageDigest.digest());
+    }
+
+    /**
+     * @return whether the key names a deduplicated payload, which other messages may point to. The key may have been
+     * prefixed by a {@link PayloadKeyNamingStrategy}.
+     */
+    static boolean isDeduplicatedKey(String key) {
+        int baseKeyStart = key.length() - KEY_LENGTH;
+        return baseKeyStart >= 0 && key.startsWith(KEY_PREFIX, baseKeyStart);
+    }
+
+    static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw SdkClientException.create("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * @return the pointer of the payload stored under the key by this client, or null if it is not cached.
+     */
+    String getCachedPointer(String key) {
+        synchronized (pointerCache) {
+            return pointerCache.get(key);
+        }
+    }
+
+    void cachePointer(String key, String pointer) {
+        synchronized (pointerCache) {
+            pointerCache.put(key, pointer);
+        }
+    }
+
+    /**
+     * @return the override configuration that makes a PutObject or CompleteMultipartUpload request fail if an object
+     * already exists under its key.
+     */
+    static AwsRequestOverrideConfiguration ifNoneMatchOverrideConfiguration() {
+        return IF_NONE_MATCH_OVERRIDE_CONFIGURATION;
+    }
+
+    /**
+     * @return whether a conditional upload failed because the payload was already stored under its key.
+     */
+    static boolean isAlreadyStored(Throwable throwable) {
+        return hasStatusCode(throwable, PRECONDITION_FAILED_STATUS_CODE);
+    }
+
+    /**
+     * @return whether a conditional upload failed because another conditional upload to its key was in progress. The
+     * upload is retried once the other one may be over: it then either finds the payload stored, or stores it itself
+     * if the other one failed.
+     */
+    static boolean isConflictingWrite(Throwable throwable) {
+        return hasStatusCode(throwable, CONDITIONAL_REQUEST_CONFLICT_STATUS_CODE);
+    }
+
+    /**
+     * @return the delay before the given retry of a conflicting upload, counting from 0, which doubles with every
+     * retry.
+     */
+    static long getConflictRetryDelayMillis(int retry) {
+        return CONFLICT_RETRY_BASE_DELAY_MILLIS << retry;
+    }
+
+    /**
+     * @return a future that completes on a shared daemon thread once the delay before the given retry of a conflicting
+     * upload has passed.
+     */
+    static CompletableFuture<Void> delayConflictRetry(int retry) {
+        CompletableFuture<Void> delay = new CompletableFuture<>();
+        ConflictRetryScheduler.SCHEDULER.schedule(() -> delay.complete(null), getConflictRetryDelayMillis(retry),
+                TimeUnit.MILLISECONDS);
+        return delay;
+    }
+
+    private static boolean hasStatusCode(Throwable throwable, int statusCode) {
+        Throwable cause = Util.unwrapFutureException(throwable);
+        while (cause != null) {
+            if (cause instanceof SdkServiceException && ((SdkServiceException) cause).statusCode() == statusCode) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    // Only started by the first conflicting upload of an asynchronous client.
+    private static final class ConflictRetryScheduler {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().threadNamePrefix("sns-extended-payload-conflict-retry").daemonThreads(true)
+                        .build());
+    }
+}
@@ -0,0 +1,21 @@
+package software.amazon.sns;
+
+/**
+ * Names the S3 keys the extended clients store payloads under.
+ * <p>
+ * S3 scales its request rate per key prefix, so payloads stored under flat random keys of a single prefix can be
+ * throttled with 503 Slow Down errors at high publish rates. A strategy such as
+ * {@link HashedPrefixPayloadKeyNamingStrategy} spreads the keys over many prefixes instead. Keys chosen by the caller
+ * through the S3 key message attribute are used as they are.
+ * </p>
+ */
+public interface PayloadKeyNamingStrategy {
+
+    /**
+     * @param baseKey a random UUID, or the key derived from the content of the payload when payload deduplication is
+     *                enabled.
+     * @return the key to store the payload under. It must end with {@code baseKey}, and be the same every time for the
+     * same {@code baseKey}, so that deduplicated payloads keep being found under their key.
+     */
+    String keyOf(String baseKey);
+}
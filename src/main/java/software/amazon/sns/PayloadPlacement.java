@@ -0,0 +1,77 @@
+package software.amazon.sns;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Chooses where a payload is stored in S3: the key, named by the configured {@link PayloadKeyNamingStrategy}, and the
+ * bucket, which is either the payload bucket of the configuration or, when striping is configured, one of the striped
+ * buckets chosen from the key. The same key always goes to the same bucket, so that deduplicated payloads are found
+ * again. Pointers name the bucket and key of each payload, so they resolve whatever bucket the payload went to.
+ */
+final class PayloadPlacement {
+    private final String s3BucketName;
+    private final List<String> stripedBucketNames;
+    private final PayloadKeyNamingStrategy keyNamingStrategy;
+
+    /**
+     * @param stripedBucketNames the buckets payloads are spread over, or an empty list to store them all in
+     *                           {@code s3BucketName}.
+     * @param keyNamingStrategy  the naming of the keys, or null to store payloads under their base key.
+     */
+    PayloadPlacement(String s3BucketName, List<String> stripedBucketNames, PayloadKeyNamingStrategy keyNamingStrategy) {
+        this.s3BucketName = s3BucketName;
+        this.stripedBucketNames = stripedBucketNames;
+        this.keyNamingStrategy = keyNamingStrategy;
+    }
+
+    static PayloadPlacement create(SNSExtendedClientConfiguration snsExtendedClientConfiguration) {
+        return new PayloadPlacement(snsExtendedClientConfiguration.getS3BucketName(),
+                snsExtendedClientConfiguration.getStripedBucketNames(),
+                snsExtendedClientConfiguration.getPayloadKeyNamingStrategy());
+    }
+
+    static PayloadPlacement create(SNSExtendedAsyncClientConfiguration snsExtendedClientConfiguration) {
+        return new PayloadPlacement(snsExtendedClientConfiguration.getS3BucketName(),
+                snsExtendedClientConfiguration.getStripedBucketNames(),
+                snsExtendedClientConfiguration.getPayloadKeyNamingStrategy());
+    }
+
+    /**
+     * @return the payload bucket of the configuration.
+     */
+    String getS3BucketName() {
+        return s3BucketName;
+    }
+
+    /**
+     * @return the key of a payload that is not deduplicated.
+     */
+    String newKey() {
+        return keyOf(UUID.randomUUID().toString());
+    }
+
+    String keyOf(String baseKey) {
+        return (keyNamingStrategy != null) ? keyNamingStrategy.keyOf(baseKey) : baseKey;
+    }
+
+    String bucketOf(String key) {
+        if (stripedBucketNames.isEmpty()) {
+            return s3BucketName;
+        }
+        return stripedBucketNames.get(Integer.remainderUnsigned(mix(key.hashCode()), stripedBucketNames.size()));
+    }
+
+    /**
+     * Spreads the bits of a string hash code, which differ little between keys that only differ in their last
+     * characters, over the whole integer.
+     */
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,394 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A message payload that is uploaded to S3 straight from where it lives, without being turned into a String first.
+ */
+abstract class PayloadSource {
+    static final long UNKNOWN_LENGTH = -1;
+
+    private static final String OCTET_STREAM_CONTENT_TYPE = "application/octet-stream";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+
+    private final long contentLength;
+
+    private PayloadSource(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @return the number of bytes of the payload, or {@link #UNKNOWN_LENGTH} for a payload compressed on the fly,
+     * which can only be read part by part.
+     */
+    long contentLength() {
+        return contentLength;
+    }
+
+    abstract RequestBody toRequestBody();
+
+    /**
+     * @param executor runs the blocking reads of sources that can only be read as a stream.
+     */
+    abstract AsyncRequestBody toAsyncRequestBody(ExecutorService executor);
+
+    /**
+     * Reads the {@code length} bytes of the payload that start at {@code offset}, for one part of a multipart upload.
+     * Parts are read one at a time and in order, so that sources that can only be read as a stream are supported.
+     * The returned buffer may share its content with the source. For a payload of unknown length, the last part is
+     * shorter than requested, possibly empty.
+     */
+    abstract ByteBuffer readPart(long offset, int length);
+
+    /**
+     * @return a stream of the whole payload, which must be read only once.
+     */
+    abstract InputStream openStream() throws IOException;
+
+    /**
+     * @return whether the payload can be read more than once, as it must be to derive its S3 key from its content.
+     * Payloads given as an input stream can only be read once.
+     */
+    boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Updates the digest with the whole payload.
+     */
+    void digest(MessageDigest messageDigest) {
+        byte[] chunk = new byte[8192];
+        try (InputStream payloadStream = openStream()) {
+            int count;
+            while ((count = payloadStream.read(chunk)) >= 0) {
+                messageDigest.update(chunk, 0, count);
+            }
+        } catch (IOException e) {
+            throw SdkClientException.create("Failed to read the payload.", e);
+        }
+    }
+
+    /**
+     * Releases what the source opened itself, such as the file read by a compressed payload. Streams given by the
+     * caller are never closed.
+     */
+    void release() {
+    }
+
+    /**
+     * Compresses the payload. The compressed payload is buffered as long as it is at most {@code bufferLimit} bytes
+     * long, so that its length is known and it can be uploaded in one request. Beyond that, the rest of the payload
+     * is compressed part by part as it is read, and its length is unknown.
+     */
+    PayloadSource compress(PayloadCompressionCodec codec, long bufferLimit) {
+        InputStream compressedStream = null;
+        try {
+            compressedStream = new CompressingInputStream(openStream(), codec);
+            ExposedByteArrayOutputStream compressedHead = new ExposedByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int count;
+            while (compressedHead.size() <= bufferLimit && (count = compressedStream.read(chunk)) >= 0) {
+                compressedHead.write(chunk, 0, count);
+            }
+
+            if (compressedHead.size() <= bufferLimit) {
+                compressedStream.close();
+                return fromByteBuffer(compressedHead.toByteBuffer(), OCTET_STREAM_CONTENT_TYPE);
+            }
+            return fromCompressedStream(new SequenceInputStream(
+                    new ByteArrayInputStream(compressedHead.buffer(), 0, compressedHead.size()), compressedStream));
+        } catch (IOException e) {
+            closeQuietly(compressedStream);
+            throw SdkClientException.create("Failed to compress the payload with the " + codec.getName() + " codec.", e);
+        } catch (RuntimeException e) {
+            closeQuietly(compressedStream);
+            throw e;
+        }
+    }
+
+    /**
+     * The stream is read once, as the payload is uploaded, and is not closed.
+     */
+    static PayloadSource fromInputStream(InputStream inputStream, long contentLength) {
+        if (inputStream == null) {
+            throw SdkClientException.create("The payload input stream must not be null.");
+        }
+        if (contentLength < 0) {
+            throw SdkClientException.create("The payload length must not be negative, but was " + contentLength + ".");
+        }
+
+        return new PayloadSource(contentLength) {
+            @Override
+            RequestBody toRequestBody() {
+                return RequestBody.fromInputStream(inputStream, contentLength);
+            }
+
+            @Override
+            AsyncRequestBody toAsyncRequestBody(ExecutorService executor) {
+                return AsyncRequestBody.fromInputStream(inputStream, contentLength, executor);
+            }
+
+            @Override
+            ByteBuffer readPart(long offset, int length) {
+                byte[] part = new byte[length];
+                int read = 0;
+                try {
+                    while (read < length) {
+                        int count = inputStream.read(part, read, length - read);
+                        if (count < 0) {
+                            throw SdkClientException.create("The payload input stream ended after " + (offset + read)
+                                    + " bytes, but the payload length is " + contentLength + ".");
+                        }
+                        read += count;
+                    }
+                } catch (IOException e) {
+                    throw SdkClientException.create("Failed to read the payload input stream.", e);
+                }
+                return ByteBuffer.wrap(part);
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            InputStream openStream() {
+                // The stream belongs to the caller, who closes it.
+                return new FilterInputStream(inputStream) {
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+
+    static PayloadSource fromPath(Path path) {
+        if (path == null) {
+            throw SdkClientException.create("The payload path must not be null.");
+        }
+
+        long contentLength;
+        try {
+            contentLength = Files.size(path);
+        } catch (IOException e) {
+            throw SdkClientException.create("Failed to read the size of the payload file " + path + ".", e);
+        }
+
+        return new PayloadSource(contentLength) {
+            @Override
+            RequestBody toRequestBody() {
+                return RequestBody.fromFile(path);
+            }
+
+            @Override
+            AsyncRequestBody toAsyncRequestBody(ExecutorService executor) {
+                return AsyncRequestBody.fromFile(path);
+            }
+
+            @Override
+            ByteBuffer readPart(long offset, int length) {
+                ByteBuffer part = ByteBuffer.allocate(length);
+                try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    while (part.hasRemaining()) {
+                        if (fileChannel.read(part, offset + part.position()) < 0) {
+                            throw SdkClientException.create("The payload file " + path + " is shorter than "
+                                    + contentLength + " bytes.");
+                        }
+                    }
+                } catch (IOException e) {
+                    throw SdkClientException.create("Failed to read the payload file " + path + ".", e);
+                }
+                part.flip();
+                return part;
+            }
+
+            @Override
+            InputStream openStream() throws IOException {
+                return Files.newInputStream(path);
+            }
+        };
+    }
+
+    /**
+     * The payload is made of the remaining bytes of the buffer. The buffer itself is neither copied nor modified.
+     */
+    static PayloadSource fromByteBuffer(ByteBuffer byteBuffer) {
+        if (byteBuffer == null) {
+            throw SdkClientException.create("The payload buffer must not be null.");
+        }
+        return fromByteBuffer(byteBuffer.asReadOnlyBuffer(), OCTET_STREAM_CONTENT_TYPE);
+    }
+
+    /**
+     * The payload is the UTF-8 encoding of the string, which is encoded once and shared by every upload attempt.
+     */
+    static PayloadSource fromString(String payload) {
+        return fromByteBuffer(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)), TEXT_CONTENT_TYPE);
+    }
+
+    private static PayloadSource fromByteBuffer(ByteBuffer payload, String contentType) {
+        return new PayloadSource(payload.remaining()) {
+            @Override
+            RequestBody toRequestBody() {
+                return PayloadSource.toRequestBody(payload, contentType);
+            }
+
+            @Override
+            AsyncRequestBody toAsyncRequestBody(ExecutorService executor) {
+                return PayloadSource.toAsyncRequestBody(payload);
+            }
+
+            @Override
+            ByteBuffer readPart(long offset, int length) {
+                ByteBuffer part = payload.duplicate();
+                part.position(payload.position() + (int) offset);
+                part.limit(part.position() + length);
+                return part.slice();
+            }
+
+            @Override
+            InputStream openStream() {
+                return new ByteBufferInputStream(payload.duplicate());
+            }
+
+            @Override
+            void digest(MessageDigest messageDigest) {
+                messageDigest.update(payload.duplicate());
+            }
+        };
+    }
+
+    private static PayloadSource fromCompressedStream(InputStream compressedStream) {
+        return new PayloadSource(UNKNOWN_LENGTH) {
+            @Override
+            RequestBody toRequestBody() {
+                throw new IllegalStateException("A payload of unknown length can only be uploaded in parts.");
+            }
+
+            @Override
+            AsyncRequestBody toAsyncRequestBody(ExecutorService executor) {
+                throw new IllegalStateException("A payload of unknown length can only be uploaded in parts.");
+            }
+
+            @Override
+            ByteBuffer readPart(long offset, int length) {
+                byte[] part = new byte[length];
+                int read = 0;
+                try {
+                    int count;
+                    while (read < length && (count = compressedStream.read(part, read, length - read)) >= 0) {
+                        read += count;
+                    }
+                } catch (IOException e) {
+                    throw SdkClientException.create("Failed to compress the payload.", e);
+                }
+                return ByteBuffer.wrap(part, 0, read);
+            }
+
+            @Override
+            boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            InputStream openStream() {
+                return compressedStream;
+            }
+
+            @Override
+            void release() {
+                closeQuietly(compressedStream);
+            }
+        };
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        if (inputStream == null) {
+            return;
+        }
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Nothing was left to read from the stream.
+        }
+    }
+
+    /**
+     * @return a request body made of the remaining bytes of the buffer, which can be sent again on retries.
+     */
+    static RequestBody toRequestBody(ByteBuffer byteBuffer) {
+        return toRequestBody(byteBuffer, OCTET_STREAM_CONTENT_TYPE);
+    }
+
+    private static RequestBody toRequestBody(ByteBuffer byteBuffer, String contentType) {
+        return RequestBody.fromContentProvider(() -> new ByteBufferInputStream(byteBuffer.duplicate()),
+                byteBuffer.remaining(), contentType);
+    }
+
+    /**
+     * @return an async request body made of the remaining bytes of the buffer, which is not copied.
+     */
+    static AsyncRequestBody toAsyncRequestBody(ByteBuffer byteBuffer) {
+        return AsyncRequestBody.fromRemainingByteBufferUnsafe(byteBuffer.duplicate());
+    }
+
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        private byte[] buffer() {
+            return buf;
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer byteBuffer;
+
+        private ByteBufferInputStream(ByteBuffer byteBuffer) {
+            this.byteBuffer = byteBuffer;
+        }
+
+        @Override
+        public int read() {
+            return byteBuffer.hasRemaining() ? byteBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!byteBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, byteBuffer.remaining());
+            byteBuffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return byteBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+import software.amazon.payloadoffloading.Util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isFifoTopic;
+import static software.amazon.sns.SNSExtendedClientConstants.SNS_MAX_BATCH_ENTRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.SNS_MAX_BATCH_SIZE;
+
+/**
+ * Collects single publish calls into per-topic buffers and sends them as PublishBatch requests, either when a batch
+ * is full (ten entries or the PublishBatch size limit) or when the first buffered entry has waited for the linger
+ * time. Every caller gets its own future, completed from the matching entry of the batch response.
+ * <p>
+ * Batches of a FIFO topic are sent one after the other, so messages keep the order in which they were buffered.
+ * </p>
+ */
+class PublishBatchBuffer {
+    private static final Log LOGGER = LogFactory.getLog(PublishBatchBuffer.class);
+
+    private final BiFunction<PublishBatchRequest, long[], CompletableFuture<PublishBatchResponse>> batchPublisher;
+    private final ScheduledExecutorService scheduler;
+    private final long lingerNanos;
+    private final Map<String, TopicBuffer> topicBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * @param batchPublisher sends a batch, given the message body size of each of its entries as counted on publish.
+     */
+    PublishBatchBuffer(BiFunction<PublishBatchRequest, long[], CompletableFuture<PublishBatchResponse>> batchPublisher,
+                       ScheduledExecutorService scheduler, Duration linger) {
+        this.batchPublisher = batchPublisher;
+        this.scheduler = scheduler;
+        this.lingerNanos = linger.toNanos();
+    }
+
+    /**
+     * Only plain topic publishes can be batched. Requests with their own override configuration are sent on their
+     * own, since a batch carries a single one.
+     */
+    static boolean isBufferable(PublishRequest publishRequest) {
+        return publishRequest.topicArn() != null
+                && publishRequest.targetArn() == null
+                && publishRequest.phoneNumber() == null
+                && !publishRequest.overrideConfiguration().isPresent();
+    }
+
+    /**
+     * @param publishRequest the request to buffer, which must be {@link #isBufferable(PublishRequest) bufferable}.
+     * @param entrySize      the number of bytes the entry adds to the batch once its payload is offloaded, if needed.
+     * @param messageBodySize the UTF-8 size of the message body, so that it is not counted again when the batch is
+     *                        sent.
+     */
+    CompletableFuture<PublishResponse> publish(PublishRequest publishRequest, long entrySize, long messageBodySize) {
+        TopicBuffer topicBuffer = topicBuffers.computeIfAbsent(publishRequest.topicArn(), TopicBuffer::new);
+        return topicBuffer.add(publishRequest, entrySize, messageBodySize);
+    }
+
+    /**
+     * Sends everything that is currently buffered, without waiting for the batches to be full.
+     */
+    CompletableFuture<Void> flush() {
+        List<CompletableFuture<?>> flushes = new ArrayList<>();
+        for (TopicBuffer topicBuffer : topicBuffers.values()) {
+            flushes.add(topicBuffer.flush());
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static PublishResponse toPublishResponse(PublishBatchResultEntry resultEntry) {
+        return PublishResponse.builder()
+                .messageId(resultEntry.messageId())
+                .sequenceNumber(resultEntry.sequenceNumber())
+                .build();
+    }
+
+    private static SnsException toException(BatchResultErrorEntry errorEntry) {
+        return (SnsException) SnsException.builder()
+                .message(errorEntry.code() + ": " + errorEntry.message())
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode(errorEntry.code())
+                        .errorMessage(errorEntry.message())
+                        .serviceName("Sns")
+                        .build())
+                .build();
+    }
+
+    private static final class BufferedEntry {
+        private final PublishBatchRequestEntry entry;
+        private final long messageBodySize;
+        private final CompletableFuture<PublishResponse> responseFuture = new CompletableFuture<>();
+
+        private BufferedEntry(PublishBatchRequestEntry entry, long messageBodySize) {
+            this.entry = entry;
+            this.messageBodySize = messageBodySize;
+        }
+    }
+
+    private final class TopicBuffer {
+        private final String topicArn;
+        private final boolean fifo;
+        private List<BufferedEntry> entries = new ArrayList<>(SNS_MAX_BATCH_ENTRIES);
+        private long batchSize;
+        private ScheduledFuture<?> lingerTimeout;
+        private CompletableFuture<?> lastBatch = CompletableFuture.completedFuture(null);
+        // The batches taken but not sent yet, whatever their topic type, so that a flush can wait for all of them.
+        private final Set<CompletableFuture<Void>> outstandingBatches = ConcurrentHashMap.newKeySet();
+
+        private TopicBuffer(String topicArn) {
+            this.topicArn = topicArn;
+            this.fifo = isFifoTopic(topicArn);
+        }
+
+        private CompletableFuture<PublishResponse> add(PublishRequest publishRequest, long entrySize,
+                                                       long messageBodySize) {
+            Runnable sendFullBatch = null;
+            BufferedEntry bufferedEntry;
+
+            synchronized (this) {
+                if (!entries.isEmpty() && batchSize + entrySize > SNS_MAX_BATCH_SIZE) {
+                    sendFullBatch = takeBatch();
+                }
+
+                bufferedEntry = new BufferedEntry(PublishBatchRequestEntry.builder()
+                        .id(Integer.toString(entries.size()))
+                        .message(publishRequest.message())
+                        .subject(publishRequest.subject())
+                        .messageStructure(publishRequest.messageStructure())
+                        .messageAttributes(publishRequest.messageAttributes())
+                        .messageDeduplicationId(publishRequest.messageDeduplicationId())
+                        .messageGroupId(publishRequest.messageGroupId())
+                        .build(), messageBodySize);
+                entries.add(bufferedEntry);
+                batchSize += entrySize;
+
+                if (entries.size() == SNS_MAX_BATCH_ENTRIES) {
+                    // Only happens if no batch was taken above: a single new entry cannot overfill two batches.
+                    sendFullBatch = takeBatch();
+                } else if (entries.size() == 1) {
+                    lingerTimeout = scheduler.schedule(() -> { flush(); }, lingerNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            if (sendFullBatch != null) {
+                sendFullBatch.run();
+            }
+            return bufferedEntry.responseFuture;
+        }
+
+        /**
+         * @return a future that completes once every batch taken so far is sent, including the one taken now.
+         */
+        private CompletableFuture<Void> flush() {
+            Runnable sendBatch = null;
+            synchronized (this) {
+                if (!entries.isEmpty()) {
+                    sendBatch = takeBatch();
+                }
+            }
+            if (sendBatch != null) {
+                sendBatch.run();
+            }
+            return CompletableFuture.allOf(outstandingBatches.toArray(new CompletableFuture<?>[0]));
+        }
+
+        private List<BufferedEntry> takeEntries() {
+            List<BufferedEntry> batch = entries;
+            entries = new ArrayList<>(SNS_MAX_BATCH_ENTRIES);
+            batchSize = 0;
+            if (lingerTimeout != null) {
+                lingerTimeout.cancel(false);
+                lingerTimeout = null;
+            }
+            return batch;
+        }
+
+        /**
+         * Takes the buffered entries as a batch, to be sent by running the returned task once the lock is released, so
+         * that a slow publisher does not block the callers adding to this buffer. Must be called while holding the
+         * lock, so that batches of a FIFO topic are chained in the order they were taken, and a flush sees every batch
+         * taken before it.
+         */
+        private Runnable takeBatch() {
+            List<BufferedEntry> batch = takeEntries();
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            outstandingBatches.add(sent);
+            sent.whenComplete((result, throwable) -> outstandingBatches.remove(sent));
+
+            CompletableFuture<?> previous = fifo ? lastBatch : CompletableFuture.completedFuture(null);
+            if (fifo) {
+                lastBatch = sent;
+            }
+            // The failures of a batch are reported through the futures of its entries, so the batch itself is only
+            // ever sent, and the next batch of a FIFO topic follows it either way.
+            return () -> previous.handle((response, throwable) -> null)
+                    .thenCompose(v -> sendBatch(batch))
+                    .whenComplete((result, throwable) -> sent.complete(null));
+        }
+
+        private CompletableFuture<Void> sendBatch(List<BufferedEntry> batch) {
+            List<PublishBatchRequestEntry> requestEntries = new ArrayList<>(batch.size());
+            long[] messageBodySizes = new long[batch.size()];
+            for (BufferedEntry bufferedEntry : batch) {
+                messageBodySizes[requestEntries.size()] = bufferedEntry.messageBodySize;
+                requestEntries.add(bufferedEntry.entry);
+            }
+            PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+                    .topicArn(topicArn)
+                    .publishBatchRequestEntries(requestEntries)
+                    .build();
+
+            CompletableFuture<PublishBatchResponse> responseFuture;
+            try {
+                responseFuture = batchPublisher.apply(publishBatchRequest, messageBodySizes);
+            } catch (RuntimeException e) {
+                responseFuture = new CompletableFuture<>();
+                responseFuture.completeExceptionally(e);
+            }
+
+            return responseFuture.handle((publishBatchResponse, throwable) -> {
+                if (throwable != null) {
+                    Throwable cause = Util.unwrapFutureException(throwable);
+                    LOGGER.error("Failed to publish a buffered batch of " + batch.size() + " messages to " + topicArn + ".", cause);
+                    for (BufferedEntry bufferedEntry : batch) {
+                        bufferedEntry.responseFuture.completeExceptionally(cause);
+                    }
+                } else {
+                    completeEntries(batch, publishBatchResponse);
+                }
+                return null;
+            });
+        }
+
+        private void completeEntries(List<BufferedEntry> batch, PublishBatchResponse publishBatchResponse) {
+            for (PublishBatchResultEntry resultEntry : publishBatchResponse.successful()) {
+                batch.get(Integer.parseInt(resultEntry.id())).responseFuture.complete(toPublishResponse(resultEntry));
+            }
+            for (BatchResultErrorEntry errorEntry : publishBatchResponse.failed()) {
+                batch.get(Integer.parseInt(errorEntry.id())).responseFuture.completeExceptionally(toException(errorEntry));
+            }
+            for (BufferedEntry bufferedEntry : batch) {
+                bufferedEntry.responseFuture.completeExceptionally(
+                        SdkClientException.create("No result was returned for the buffered message."));
+            }
+        }
+    }
+}
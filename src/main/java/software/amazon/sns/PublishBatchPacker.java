@@ -0,0 +1,270 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.utils.StringUtils;
+import software.amazon.payloadoffloading.PayloadStorageConfigurationBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.canBeOffloaded;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageAttributes;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkMessageStructure;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.checkSizeOfMessageAttributes;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.createPayloadSizeAttribute;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getMsgAttributesSize;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.getPayloadAttributesSize;
+import static software.amazon.sns.AmazonSNSExtendedClientUtil.isTotalMessageSizeLargerThanThreshold;
+import static software.amazon.sns.SNSExtendedClientConstants.OFFLOADED_MESSAGE_SIZE_ESTIMATE;
+import static software.amazon.sns.SNSExtendedClientConstants.SNS_MAX_BATCH_ENTRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.SNS_MAX_BATCH_SIZE;
+
+/**
+ * Decides which entries of a PublishBatch request are stored in S3 and how the entries are grouped into PublishBatch
+ * calls, according to a {@link PublishBatchPacking} strategy.
+ */
+final class PublishBatchPacker {
+
+    private PublishBatchPacker() {
+    }
+
+    static final class PackedBatches {
+        private final boolean[] offloaded;
+        private final List<List<Integer>> batches;
+        private MessageAttributeValue[] payloadSizeAttributes;
+        private String[] messageDeduplicationIds;
+
+        private PackedBatches(boolean[] offloaded, List<List<Integer>> batches) {
+            this.offloaded = offloaded;
+            this.batches = batches;
+        }
+
+        boolean isOffloaded(int entryIndex) {
+            return offloaded[entryIndex];
+        }
+
+        /**
+         * @return the reserved attribute carrying the original payload size of an offloaded entry.
+         */
+        MessageAttributeValue getPayloadSizeAttribute(int entryIndex) {
+            return payloadSizeAttributes[entryIndex];
+        }
+
+        /**
+         * @return the deduplication ID derived from the payload of an entry to a FIFO topic that has none, or null.
+         */
+        String getMessageDeduplicationId(int entryIndex) {
+            return messageDeduplicationIds[entryIndex];
+        }
+
+        /**
+         * @return the entry indexes of every PublishBatch call to make, in the order the calls should be made.
+         */
+        List<List<Integer>> getBatches() {
+            return batches;
+        }
+    }
+
+    /**
+     * Validates the entries of a PublishBatch request and packs them. Entries above the payload size threshold go
+     * through the same checks as a single large publish, so an invalid entry fails the request before anything is
+     * uploaded.
+     *
+     * @param entries       the entries of the PublishBatch request.
+     * @param configuration the payload storage configuration of the client.
+     * @param packing       the configured packing strategy.
+     * @param fifoTopic     whether the entries are published to a FIFO topic, where entries must not be reordered.
+     * @param payloadEncodingAttribute the attribute naming the codec offloaded payloads are compressed with, or null.
+     * @param messageBodySizes the UTF-8 size of the message body of each entry if it is already known, or null.
+     */
+    static PackedBatches pack(List<PublishBatchRequestEntry> entries, PayloadStorageConfigurationBase configuration,
+                              PublishBatchPacking packing, boolean fifoTopic,
+                              MessageAttributeValue payloadEncodingAttribute, long[] messageBodySizes) {
+        int entryCount = entries.size();
+        int payloadSizeThreshold = configuration.getPayloadSizeThreshold();
+        long[] inlineSizes = new long[entryCount];
+        long[] offloadedSizes = new long[entryCount];
+        boolean[] offloadRequired = new boolean[entryCount];
+        boolean[] offloadAllowed = new boolean[entryCount];
+        MessageAttributeValue[] payloadSizeAttributes = new MessageAttributeValue[entryCount];
+        String[] messageDeduplicationIds = new String[entryCount];
+
+        for (int i = 0; i < entryCount; i++) {
+            PublishBatchRequestEntry entry = entries.get(i);
+            if (entry == null || StringUtils.isEmpty(entry.message())) {
+                continue;
+            }
+
+            checkMessageStructure(entry.messageStructure());
+
+            long messageAttributesSize = getMsgAttributesSize(entry.messageAttributes());
+            long messageBodySize = messageBodySizes != null
+                    ? messageBodySizes[i]
+                    : Utf8SizeCounter.sizeOf(entry.message());
+            MessageAttributeValue payloadSizeAttribute = createPayloadSizeAttribute(messageBodySize);
+            long offloadedAttributesSize = messageAttributesSize
+                    + getPayloadAttributesSize(payloadSizeAttribute, payloadEncodingAttribute);
+
+            inlineSizes[i] = messageAttributesSize + messageBodySize;
+            offloadedSizes[i] = offloadedAttributesSize + OFFLOADED_MESSAGE_SIZE_ESTIMATE;
+            payloadSizeAttributes[i] = payloadSizeAttribute;
+            offloadRequired[i] = configuration.isAlwaysThroughS3() || (configuration.isPayloadSupportEnabled()
+                    && isTotalMessageSizeLargerThanThreshold(payloadSizeThreshold, inlineSizes[i]));
+
+            if (offloadRequired[i]) {
+                checkMessageAttributes(entry.messageAttributes(), payloadEncodingAttribute);
+                checkSizeOfMessageAttributes(payloadSizeThreshold, offloadedAttributesSize);
+            } else {
+                offloadAllowed[i] = configuration.isPayloadSupportEnabled()
+                        && canBeOffloaded(entry.messageAttributes(), payloadSizeThreshold, offloadedAttributesSize,
+                        payloadEncodingAttribute);
+            }
+        }
+
+        PublishBatchPacking effectivePacking = (fifoTopic && packing == PublishBatchPacking.SIZE_AWARE)
+                ? PublishBatchPacking.ORDERED : packing;
+        PackedBatches packedBatches = pack(effectivePacking, inlineSizes, offloadedSizes, offloadRequired, offloadAllowed);
+        // Only the bodies that end up in S3 are hashed, as inline bodies are deduplicated by their content.
+        for (int i = 0; i < entryCount; i++) {
+            if (fifoTopic && packedBatches.isOffloaded(i) && entries.get(i).messageDeduplicationId() == null) {
+                messageDeduplicationIds[i] = MessageDeduplicationIds.derive(entries.get(i).message());
+            }
+        }
+        packedBatches.payloadSizeAttributes = payloadSizeAttributes;
+        packedBatches.messageDeduplicationIds = messageDeduplicationIds;
+        return packedBatches;
+    }
+
+    /**
+     * @param packing         the packing strategy, which must already account for FIFO topics.
+     * @param inlineSizes     the size of each entry when its payload is sent inline.
+     * @param offloadedSizes  the size of each entry once its payload is replaced by an S3 pointer.
+     * @param offloadRequired whether each entry exceeds the payload size threshold and has to be stored in S3.
+     * @param offloadAllowed  whether each entry may be stored in S3 even though it is below the threshold.
+     */
+    static PackedBatches pack(PublishBatchPacking packing, long[] inlineSizes, long[] offloadedSizes,
+                              boolean[] offloadRequired, boolean[] offloadAllowed) {
+        int entryCount = inlineSizes.length;
+        switch (packing) {
+            case ORDERED:
+                return new PackedBatches(offloadRequired.clone(),
+                        packOrdered(entrySizes(inlineSizes, offloadedSizes, offloadRequired)));
+            case SIZE_AWARE:
+                return packSizeAware(inlineSizes, offloadedSizes, offloadRequired, offloadAllowed);
+            case NONE:
+            default:
+                List<Integer> allEntries = new ArrayList<>(entryCount);
+                for (int i = 0; i < entryCount; i++) {
+                    allEntries.add(i);
+                }
+                return new PackedBatches(offloadRequired.clone(), Collections.singletonList(allEntries));
+        }
+    }
+
+    private static PackedBatches packSizeAware(long[] inlineSizes, long[] offloadedSizes,
+                                               boolean[] offloadRequired, boolean[] offloadAllowed) {
+        int entryCount = inlineSizes.length;
+        int requiredOffloads = 0;
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < entryCount; i++) {
+            if (offloadRequired[i]) {
+                requiredOffloads++;
+            } else if (offloadAllowed[i] && offloadedSizes[i] < inlineSizes[i]) {
+                candidates.add(i);
+            }
+        }
+        // Offloading the entries that shrink the most is the most likely to save a PublishBatch call.
+        candidates.sort(Comparator.comparingLong((Integer i) -> offloadedSizes[i] - inlineSizes[i]));
+
+        int minimumBatches = (entryCount + SNS_MAX_BATCH_ENTRIES - 1) / SNS_MAX_BATCH_ENTRIES;
+        boolean[] offloaded = offloadRequired.clone();
+        boolean[] bestOffloaded = null;
+        List<List<Integer>> bestBatches = null;
+        int bestCost = Integer.MAX_VALUE;
+
+        // Each additional offload costs one S3 upload, so it only pays off if it saves at least one SNS call.
+        for (int extraOffloads = 0; extraOffloads <= candidates.size(); extraOffloads++) {
+            if (extraOffloads > 0) {
+                offloaded[candidates.get(extraOffloads - 1)] = true;
+            }
+
+            List<List<Integer>> batches = packFirstFitDecreasing(entrySizes(inlineSizes, offloadedSizes, offloaded));
+            int cost = requiredOffloads + extraOffloads + batches.size();
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestOffloaded = offloaded.clone();
+                bestBatches = batches;
+            }
+            if (batches.size() == minimumBatches) {
+                break;
+            }
+        }
+
+        return new PackedBatches(bestOffloaded, bestBatches);
+    }
+
+    private static long[] entrySizes(long[] inlineSizes, long[] offloadedSizes, boolean[] offloaded) {
+        long[] sizes = new long[inlineSizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = offloaded[i] ? offloadedSizes[i] : inlineSizes[i];
+        }
+        return sizes;
+    }
+
+    private static List<List<Integer>> packOrdered(long[] sizes) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>(SNS_MAX_BATCH_ENTRIES);
+        long batchSize = 0;
+
+        for (int i = 0; i < sizes.length; i++) {
+            if (!batch.isEmpty() && (batch.size() == SNS_MAX_BATCH_ENTRIES || batchSize + sizes[i] > SNS_MAX_BATCH_SIZE)) {
+                batches.add(batch);
+                batch = new ArrayList<>(SNS_MAX_BATCH_ENTRIES);
+                batchSize = 0;
+            }
+            batch.add(i);
+            batchSize += sizes[i];
+        }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static List<List<Integer>> packFirstFitDecreasing(long[] sizes) {
+        List<Integer> bySizeDescending = new ArrayList<>(sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            bySizeDescending.add(i);
+        }
+        bySizeDescending.sort(Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Long> batchSizes = new ArrayList<>();
+        for (int entryIndex : bySizeDescending) {
+            int target = -1;
+            for (int b = 0; b < batches.size(); b++) {
+                if (batches.get(b).size() < SNS_MAX_BATCH_ENTRIES && batchSizes.get(b) + sizes[entryIndex] <= SNS_MAX_BATCH_SIZE) {
+                    target = b;
+                    break;
+                }
+            }
+            if (target < 0) {
+                batches.add(new ArrayList<>(SNS_MAX_BATCH_ENTRIES));
+                batchSizes.add(0L);
+                target = batches.size() - 1;
+            }
+            batches.get(target).add(entryIndex);
+            batchSizes.set(target, batchSizes.get(target) + sizes[entryIndex]);
+        }
+
+        // Keep the caller's order inside each batch.
+        for (List<Integer> batch : batches) {
+            Collections.sort(batch);
+        }
+        return batches;
+    }
+}
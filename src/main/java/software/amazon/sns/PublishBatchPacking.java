@@ -0,0 +1,26 @@
+package software.amazon.sns;
+
+/**
+ * Controls how the extended clients turn the entries of a PublishBatch request into the PublishBatch calls that are
+ * sent to Amazon SNS.
+ */
+public enum PublishBatchPacking {
+    /**
+     * Entries are sent as a single PublishBatch call, exactly as they were given. Only entries above the payload
+     * size threshold are stored in S3.
+     */
+    NONE,
+
+    /**
+     * Entries are split, in their original order, into as many PublishBatch calls as needed to respect the limits of
+     * ten entries and 256 KB per call. Only entries above the payload size threshold are stored in S3.
+     */
+    ORDERED,
+
+    /**
+     * Entries are packed into as few PublishBatch calls as possible, and entries below the payload size threshold
+     * may additionally be stored in S3 when that saves more SNS calls than it adds S3 uploads. Entries of a batch
+     * may be reordered, so FIFO topics are always packed as {@link #ORDERED}.
+     */
+    SIZE_AWARE
+}
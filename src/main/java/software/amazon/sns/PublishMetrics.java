@@ -0,0 +1,89 @@
+package software.amazon.sns;
+
+/**
+ * What the extended client did to publish one message: whether its payload was offloaded to S3, how large it was, and
+ * how long each stage of the publish took. Stages that did not run, such as the S3 upload of a message published
+ * inline, take 0 nanoseconds.
+ */
+public final class PublishMetrics {
+    private final String topicArn;
+    private final boolean offloaded;
+    private final long payloadSize;
+    private final long sizeCheckNanos;
+    private final long s3UploadNanos;
+    private final long snsPublishNanos;
+    private final long totalNanos;
+    private final boolean successful;
+
+    PublishMetrics(String topicArn, boolean offloaded, long payloadSize, long sizeCheckNanos, long s3UploadNanos,
+                   long snsPublishNanos, long totalNanos, boolean successful) {
+        this.topicArn = topicArn;
+        this.offloaded = offloaded;
+        this.payloadSize = payloadSize;
+        this.sizeCheckNanos = sizeCheckNanos;
+        this.s3UploadNanos = s3UploadNanos;
+        this.snsPublishNanos = snsPublishNanos;
+        this.totalNanos = totalNanos;
+        this.successful = successful;
+    }
+
+    /**
+     * @return the topic the message was published to, or null if it was published to a target ARN or phone number.
+     */
+    public String getTopicArn() {
+        return topicArn;
+    }
+
+    /**
+     * @return whether the payload was stored in S3 and the message published with a pointer to it.
+     */
+    public boolean isOffloaded() {
+        return offloaded;
+    }
+
+    /**
+     * @return the size of the message body in bytes, before any compression.
+     */
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * @return how long measuring and validating the message took.
+     */
+    public long getSizeCheckNanos() {
+        return sizeCheckNanos;
+    }
+
+    /**
+     * @return how long storing the payload in S3 took, including waiting for the client's in-flight limits.
+     */
+    public long getS3UploadNanos() {
+        return s3UploadNanos;
+    }
+
+    /**
+     * @return how long the Publish request to Amazon SNS took, including waiting for the client's in-flight limits.
+     */
+    public long getSnsPublishNanos() {
+        return snsPublishNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return whether the message was published, rather than failing at any of the stages.
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishMetrics{topicArn=" + topicArn + ", offloaded=" + offloaded + ", payloadSize=" + payloadSize
+                + ", sizeCheckNanos=" + sizeCheckNanos + ", s3UploadNanos=" + s3UploadNanos + ", snsPublishNanos="
+                + snsPublishNanos + ", totalNanos=" + totalNanos + ", successful=" + successful + "}";
+    }
+}
@@ -0,0 +1,138 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the stages of one publish, emits their events through the {@link PublishTracer}, and reports the
+ * {@link PublishMetrics} of the publish once it completes. The stages are marked in order, possibly from different
+ * threads, each mark happening before the next through the futures of the publish. A stage that was started but not
+ * completed, because the publish failed, lasts until the publish completes.
+ * <p>
+ * The payload size is only counted in full when the metrics are received, by a reporter or by the caller of
+ * {@code publishWithDetails}, or when a recorded event carries it. Otherwise, the size of a message sent inline is
+ * only counted as far as the offload decision needs.
+ * </p>
+ */
+final class PublishMetricsRecorder {
+    private static final Log LOGGER = LogFactory.getLog(PublishMetricsRecorder.class);
+
+    private final PublishMetricsReporter reporter;
+    private final PublishTracer tracer = PublishTracer.get();
+    private final String topicArn;
+    private final boolean metricsReceived;
+    private final long startNanos = System.nanoTime();
+    private LongSupplier payloadSize = () -> 0;
+    private boolean sizeChecked;
+    private long sizeCheckedNanos;
+    private final Object sizeComputationEvent;
+    private boolean offloaded;
+    private boolean compressedInline;
+    private Object s3UploadEvent;
+    private String payloadPointer;
+    private Object snsPublishEvent;
+    private boolean uploadStarted;
+    private long uploadStartedNanos;
+    private boolean uploadCompleted;
+    private long uploadCompletedNanos;
+    private boolean publishStarted;
+    private long publishStartedNanos;
+
+    /**
+     * @param detailsReturned whether the metrics are returned to the caller of the publish.
+     */
+    PublishMetricsRecorder(PublishMetricsReporter reporter, String topicArn, boolean detailsReturned) {
+        this.reporter = reporter;
+        this.topicArn = topicArn;
+        this.metricsReceived = detailsReturned || reporter != PublishMetricsReporter.NO_OP;
+        this.sizeComputationEvent = tracer.sizeComputationStarted();
+    }
+
+    /**
+     * @param payloadSize counts the size of the message body in bytes, which is only called if the size is needed.
+     */
+    void sizeChecked(LongSupplier payloadSize) {
+        this.payloadSize = payloadSize;
+        sizeChecked = true;
+        sizeCheckedNanos = System.nanoTime();
+        tracer.sizeComputationEnded(sizeComputationEvent, topicArn, payloadSize);
+    }
+
+    void compressedInline() {
+        compressedInline = true;
+    }
+
+    /**
+     * Marks the message as offloaded when its payload is stored in S3 outside of the publish, such as when the batch
+     * of a buffered publish is sent.
+     */
+    void offloaded() {
+        offloaded = true;
+    }
+
+    void uploadStarted() {
+        offloaded = true;
+        uploadStarted = true;
+        uploadStartedNanos = System.nanoTime();
+        s3UploadEvent = tracer.s3UploadStarted();
+    }
+
+    /**
+     * @param payloadPointer the S3 pointer of the stored payload, or null if storing it failed.
+     */
+    void uploadCompleted(String payloadPointer) {
+        this.payloadPointer = payloadPointer;
+        uploadCompleted = true;
+        uploadCompletedNanos = System.nanoTime();
+        tracer.s3UploadEnded(s3UploadEvent, payloadSize, payloadPointer);
+    }
+
+    void publishStarted() {
+        publishStarted = true;
+        publishStartedNanos = System.nanoTime();
+        tracer.offloadDecided(topicArn, payloadSize, offloaded, compressedInline);
+        snsPublishEvent = tracer.snsPublishStarted();
+    }
+
+    /**
+     * @return the S3 pointer of the payload stored by the publish, or null if none was.
+     */
+    String getPayloadPointer() {
+        return payloadPointer;
+    }
+
+    /**
+     * Reports the metrics of the publish.
+     *
+     * @param failure the failure of the publish, or null if the message was published.
+     * @return the metrics of the publish, or null if they are neither reported nor returned to the caller.
+     */
+    PublishMetrics complete(Throwable failure) {
+        long endNanos = System.nanoTime();
+        if (uploadStarted && !uploadCompleted) {
+            tracer.s3UploadEnded(s3UploadEvent, payloadSize, null);
+        }
+        if (publishStarted) {
+            tracer.snsPublishEnded(snsPublishEvent, topicArn, failure);
+        }
+
+        if (!metricsReceived) {
+            return null;
+        }
+
+        long sizeCheckNanos = (sizeChecked ? sizeCheckedNanos : endNanos) - startNanos;
+        long uploadNanos = uploadStarted ? (uploadCompleted ? uploadCompletedNanos : endNanos) - uploadStartedNanos : 0;
+        long publishNanos = publishStarted ? endNanos - publishStartedNanos : 0;
+
+        PublishMetrics publishMetrics = new PublishMetrics(topicArn, offloaded, payloadSize.getAsLong(),
+                sizeCheckNanos, uploadNanos, publishNanos, endNanos - startNanos, failure == null);
+        try {
+            reporter.report(publishMetrics);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to report the metrics of a publish.", e);
+        }
+        return publishMetrics;
+    }
+}
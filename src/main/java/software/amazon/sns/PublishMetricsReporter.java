@@ -0,0 +1,25 @@
+package software.amazon.sns;
+
+/**
+ * Receives the {@link PublishMetrics} of every message the extended clients publish, to count offloaded and inline
+ * publishes, record the distribution of payload sizes and the latency of each stage, by topic. Only the single
+ * message publishes are measured, including the messages of {@code publishAll}; the messages sent with
+ * {@code publishBatch} or {@code publishToTopics} are not.
+ * <p>
+ * Reporters are called on the thread completing the publish, which may be an SDK thread, so they must be thread-safe
+ * and should not block. Exceptions thrown by a reporter are logged and do not fail the publish. Use
+ * {@link MetricPublisherPublishMetricsReporter} to report to an SDK {@link software.amazon.awssdk.metrics.MetricPublisher},
+ * such as the CloudWatch metric publisher.
+ * </p>
+ */
+@FunctionalInterface
+public interface PublishMetricsReporter {
+
+    /**
+     * The reporter of the extended clients by default, which ignores the metrics.
+     */
+    PublishMetricsReporter NO_OP = publishMetrics -> {
+    };
+
+    void report(PublishMetrics publishMetrics);
+}
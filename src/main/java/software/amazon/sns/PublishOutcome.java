@@ -0,0 +1,58 @@
+package software.amazon.sns;
+
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+/**
+ * The outcome of publishing a message to one of the topics of a fan-out publish, or of one of the messages of a bulk
+ * publish: either the response of Amazon SNS or the failure that prevented the message from being published.
+ */
+public final class PublishOutcome {
+    private final String topicArn;
+    private final PublishResponse response;
+    private final Throwable failure;
+
+    private PublishOutcome(String topicArn, PublishResponse response, Throwable failure) {
+        this.topicArn = topicArn;
+        this.response = response;
+        this.failure = failure;
+    }
+
+    static PublishOutcome success(String topicArn, PublishResponse response) {
+        return new PublishOutcome(topicArn, response, null);
+    }
+
+    static PublishOutcome failure(String topicArn, Throwable failure) {
+        return new PublishOutcome(topicArn, null, failure);
+    }
+
+    /**
+     * @return the topic the message was published to, or null if it was published to a target ARN or phone number.
+     */
+    public String getTopicArn() {
+        return topicArn;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * @return the response of Amazon SNS, or null if publishing to the topic failed.
+     */
+    public PublishResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the failure, or null if the message was published to the topic.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishOutcome{topicArn=" + topicArn + ", "
+                + (isSuccessful() ? "response=" + response : "failure=" + failure) + "}";
+    }
+}
@@ -0,0 +1,217 @@
+package software.amazon.sns;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.payloadoffloading.Util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Publishes the requests of a source publisher and emits their responses, in the order of the requests.
+ * <p>
+ * At most {@code concurrency} requests are taken from the source without their response having been emitted, so a
+ * slow publish, or a subscriber that does not request more responses, stops the source from producing more requests.
+ * The first failed publish fails the pipeline and cancels the source.
+ * </p>
+ */
+final class PublishPipeline implements Publisher<PublishResponse> {
+    private final Publisher<PublishRequest> source;
+    private final Function<PublishRequest, CompletableFuture<PublishResponse>> publishFunction;
+    private final int concurrency;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    PublishPipeline(Publisher<PublishRequest> source,
+                    Function<PublishRequest, CompletableFuture<PublishResponse>> publishFunction, int concurrency) {
+        this.source = source;
+        this.publishFunction = publishFunction;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super PublishResponse> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null.");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            // The source can only be published once.
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A publish pipeline only supports a single subscriber."));
+            return;
+        }
+        source.subscribe(new PipelineSubscriber(subscriber));
+    }
+
+    /**
+     * Subscribes to the source on behalf of the downstream subscriber. All signals to the downstream subscriber are
+     * sent from {@link #drain()}, which only runs on one thread at a time.
+     */
+    private final class PipelineSubscriber implements Subscriber<PublishRequest>, Subscription {
+        private final Subscriber<? super PublishResponse> downstream;
+        private final Queue<CompletableFuture<PublishResponse>> inFlight = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private volatile Subscription upstream;
+        private volatile boolean sourceDone;
+        private volatile Throwable sourceFailure;
+        private volatile Throwable invalidRequest;
+        private volatile boolean cancelled;
+        private volatile boolean terminated;
+
+        private PipelineSubscriber(Subscriber<? super PublishResponse> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(this);
+            if (!cancelled) {
+                subscription.request(concurrency);
+            }
+        }
+
+        @Override
+        public void onNext(PublishRequest publishRequest) {
+            if (cancelled || terminated) {
+                return;
+            }
+
+            CompletableFuture<PublishResponse> responseFuture;
+            try {
+                responseFuture = publishFunction.apply(publishRequest);
+            } catch (RuntimeException e) {
+                responseFuture = new CompletableFuture<>();
+                responseFuture.completeExceptionally(e);
+            }
+            inFlight.add(responseFuture);
+            responseFuture.whenComplete((response, throwable) -> drain());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            sourceFailure = throwable;
+            sourceDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            sourceDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("The number of requested responses must be positive, but was "
+                        + n + ".");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                long emitted = drainResponses();
+                if (emitted > 0 && !terminated) {
+                    upstream.request(emitted);
+                }
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Emits the responses that are ready, in order, and terminates the downstream subscriber once there is nothing
+         * left to emit.
+         *
+         * @return the number of emitted responses, which are replaced with as many requests from the source.
+         */
+        private long drainResponses() {
+            long emitted = 0;
+            while (!terminated) {
+                if (cancelled) {
+                    terminate();
+                    break;
+                }
+                if (invalidRequest != null) {
+                    terminate();
+                    downstream.onError(invalidRequest);
+                    break;
+                }
+
+                CompletableFuture<PublishResponse> head = inFlight.peek();
+                if (head == null) {
+                    if (sourceDone) {
+                        terminated = true;
+                        if (sourceFailure != null) {
+                            downstream.onError(sourceFailure);
+                        } else {
+                            downstream.onComplete();
+                        }
+                    }
+                    break;
+                }
+                if (!head.isDone()) {
+                    break;
+                }
+                if (head.isCompletedExceptionally()) {
+                    terminate();
+                    downstream.onError(Util.unwrapFutureException(head.handle((response, throwable) -> throwable).join()));
+                    break;
+                }
+                if (demand.get() == 0) {
+                    break;
+                }
+
+                inFlight.poll();
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                downstream.onNext(head.join());
+                emitted++;
+            }
+            return emitted;
+        }
+
+        private void terminate() {
+            terminated = true;
+            inFlight.clear();
+            if (!sourceDone) {
+                upstream.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package software.amazon.sns;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Emits events for the stages of each publish to an event recorder, which is Java Flight Recorder when the
+ * {@code jdk.jfr} module is available, see {@link JfrPublishTracer}. On runtimes without it, the tracer does nothing.
+ * <p>
+ * A stage is started by a method returning an event handle, and ended by passing the handle back, possibly from
+ * another thread. A null handle means that the event is not recorded, so that a disabled event costs no more than
+ * the check of whether it is enabled. Payload sizes are passed as suppliers, so that the size of a message is only
+ * counted in full when an event carrying it is recorded.
+ * </p>
+ */
+abstract class PublishTracer {
+    private static final Log LOGGER = LogFactory.getLog(PublishTracer.class);
+    private static final String JFR_PUBLISH_TRACER_CLASS_NAME = "software.amazon.sns.JfrPublishTracer";
+
+    static final PublishTracer NO_OP = new PublishTracer() {
+    };
+
+    private static final PublishTracer INSTANCE = load();
+
+    static PublishTracer get() {
+        return INSTANCE;
+    }
+
+    private static PublishTracer load() {
+        try {
+            // The JFR tracer is only loaded when the runtime has jdk.jfr, since its events extend jdk.jfr.Event.
+            Class.forName("jdk.jfr.Event");
+            return (PublishTracer) Class.forName(JFR_PUBLISH_TRACER_CLASS_NAME).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Java Flight Recorder is not available, publish events are not recorded.", e);
+            return NO_OP;
+        }
+    }
+
+    Object sizeComputationStarted() {
+        return null;
+    }
+
+    void sizeComputationEnded(Object event, String topicArn, LongSupplier payloadSize) {
+    }
+
+    void offloadDecided(String topicArn, LongSupplier payloadSize, boolean offloaded, boolean compressedInline) {
+    }
+
+    Object s3UploadStarted() {
+        return null;
+    }
+
+    /**
+     * @param payloadPointer the S3 pointer of the stored payload, or null if the upload failed.
+     */
+    void s3UploadEnded(Object event, LongSupplier payloadSize, String payloadPointer) {
+    }
+
+    Object snsPublishStarted() {
+        return null;
+    }
+
+    /**
+     * @param failure the failure of the publish, or null if the message was published.
+     */
+    void snsPublishEnded(Object event, String topicArn, Throwable failure) {
+    }
+}
@@ -5,17 +5,98 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.payloadoffloading.PayloadStorageAsyncConfiguration;
 import software.amazon.payloadoffloading.ServerSideEncryptionStrategy;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ADAPTIVE_CONCURRENCY_INITIAL_LIMIT;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ADAPTIVE_CONCURRENCY_MAX_LIMIT;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_FAILED_BATCH_ENTRY_RETRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_FAILED_BATCH_ENTRY_RETRY_BASE_DELAY_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_INLINE_COMPRESSION_MAX_MESSAGE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_CONCURRENCY;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_PART_RETRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_PART_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ORPHANED_PAYLOAD_CLEANUP_DELAY_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ORPHANED_PAYLOAD_CLEANUP_QUEUE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_PAYLOAD_DEDUPLICATION_CACHE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.MIN_MULTIPART_UPLOAD_PART_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_PUBLISH_BUFFER_LINGER_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_PUBLISH_PIPELINE_CONCURRENCY;
 import static software.amazon.sns.SNSExtendedClientConstants.SNS_DEFAULT_MESSAGE_SIZE;
 
 @NotThreadSafe
 public class SNSExtendedAsyncClientConfiguration extends PayloadStorageAsyncConfiguration {
 
+    private int failedBatchEntryRetries = DEFAULT_FAILED_BATCH_ENTRY_RETRIES;
+    private Duration failedBatchEntryRetryBaseDelay = Duration.ofMillis(DEFAULT_FAILED_BATCH_ENTRY_RETRY_BASE_DELAY_MILLIS);
+    private PublishBatchPacking publishBatchPacking = PublishBatchPacking.NONE;
+    private long multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+    private int multipartUploadPartSize = DEFAULT_MULTIPART_UPLOAD_PART_SIZE;
+    private int multipartUploadConcurrency = DEFAULT_MULTIPART_UPLOAD_CONCURRENCY;
+    private int multipartUploadPartRetries = DEFAULT_MULTIPART_UPLOAD_PART_RETRIES;
+    private PayloadCompressionCodec payloadCompressionCodec;
+    private boolean inlineCompressionEnabled;
+    private byte[] inlineCompressionDictionary;
+    private int inlineCompressionMaxMessageSize = DEFAULT_INLINE_COMPRESSION_MAX_MESSAGE_SIZE;
+    private boolean payloadDeduplicationEnabled;
+    private int payloadDeduplicationCacheSize = DEFAULT_PAYLOAD_DEDUPLICATION_CACHE_SIZE;
+    private boolean orphanedPayloadCleanupEnabled;
+    private Duration orphanedPayloadCleanupDelay = Duration.ofMillis(DEFAULT_ORPHANED_PAYLOAD_CLEANUP_DELAY_MILLIS);
+    private int orphanedPayloadCleanupQueueSize = DEFAULT_ORPHANED_PAYLOAD_CLEANUP_QUEUE_SIZE;
+    private PayloadKeyNamingStrategy payloadKeyNamingStrategy;
+    private List<String> stripedBucketNames = Collections.emptyList();
+    private PublishMetricsReporter publishMetricsReporter = PublishMetricsReporter.NO_OP;
+    private boolean adaptiveConcurrencyLimitEnabled;
+    private int adaptiveConcurrencyInitialLimit = DEFAULT_ADAPTIVE_CONCURRENCY_INITIAL_LIMIT;
+    private int adaptiveConcurrencyMaxLimit = DEFAULT_ADAPTIVE_CONCURRENCY_MAX_LIMIT;
+    private long inFlightPayloadBytesLimit;
+    private InFlightBytesPolicy inFlightBytesPolicy = InFlightBytesPolicy.WAIT;
+    private long waitingPayloadBytesLimit;
+    private int publishPipelineConcurrency = DEFAULT_PUBLISH_PIPELINE_CONCURRENCY;
+    private boolean fifoGroupOrderingEnabled;
+    private FifoGroupFailurePolicy fifoGroupFailurePolicy = FifoGroupFailurePolicy.FAIL_GROUP;
+    private boolean publishBufferingEnabled = false;
+    private Duration publishBufferLinger = Duration.ofMillis(DEFAULT_PUBLISH_BUFFER_LINGER_MILLIS);
+
     public SNSExtendedAsyncClientConfiguration() {
         this.setPayloadSizeThreshold(SNS_DEFAULT_MESSAGE_SIZE);
     }
 
     public SNSExtendedAsyncClientConfiguration(SNSExtendedAsyncClientConfiguration clientConfiguration) {
         super(clientConfiguration);
+        this.failedBatchEntryRetries = clientConfiguration.failedBatchEntryRetries;
+        this.failedBatchEntryRetryBaseDelay = clientConfiguration.failedBatchEntryRetryBaseDelay;
+        this.publishBatchPacking = clientConfiguration.publishBatchPacking;
+        this.multipartUploadThreshold = clientConfiguration.multipartUploadThreshold;
+        this.multipartUploadPartSize = clientConfiguration.multipartUploadPartSize;
+        this.multipartUploadConcurrency = clientConfiguration.multipartUploadConcurrency;
+        this.multipartUploadPartRetries = clientConfiguration.multipartUploadPartRetries;
+        this.payloadCompressionCodec = clientConfiguration.payloadCompressionCodec;
+        this.inlineCompressionEnabled = clientConfiguration.inlineCompressionEnabled;
+        this.inlineCompressionDictionary = clientConfiguration.inlineCompressionDictionary;
+        this.inlineCompressionMaxMessageSize = clientConfiguration.inlineCompressionMaxMessageSize;
+        this.payloadDeduplicationEnabled = clientConfiguration.payloadDeduplicationEnabled;
+        this.payloadDeduplicationCacheSize = clientConfiguration.payloadDeduplicationCacheSize;
+        this.orphanedPayloadCleanupEnabled = clientConfiguration.orphanedPayloadCleanupEnabled;
+        this.orphanedPayloadCleanupDelay = clientConfiguration.orphanedPayloadCleanupDelay;
+        this.orphanedPayloadCleanupQueueSize = clientConfiguration.orphanedPayloadCleanupQueueSize;
+        this.payloadKeyNamingStrategy = clientConfiguration.payloadKeyNamingStrategy;
+        this.stripedBucketNames = clientConfiguration.stripedBucketNames;
+        this.publishMetricsReporter = clientConfiguration.publishMetricsReporter;
+        this.adaptiveConcurrencyLimitEnabled = clientConfiguration.adaptiveConcurrencyLimitEnabled;
+        this.adaptiveConcurrencyInitialLimit = clientConfiguration.adaptiveConcurrencyInitialLimit;
+        this.adaptiveConcurrencyMaxLimit = clientConfiguration.adaptiveConcurrencyMaxLimit;
+        this.inFlightPayloadBytesLimit = clientConfiguration.inFlightPayloadBytesLimit;
+        this.inFlightBytesPolicy = clientConfiguration.inFlightBytesPolicy;
+        this.waitingPayloadBytesLimit = clientConfiguration.waitingPayloadBytesLimit;
+        this.publishPipelineConcurrency = clientConfiguration.publishPipelineConcurrency;
+        this.fifoGroupOrderingEnabled = clientConfiguration.fifoGroupOrderingEnabled;
+        this.fifoGroupFailurePolicy = clientConfiguration.fifoGroupFailurePolicy;
+        this.publishBufferingEnabled = clientConfiguration.publishBufferingEnabled;
+        this.publishBufferLinger = clientConfiguration.publishBufferLinger;
     }
 
     @Override
@@ -47,4 +128,678 @@ public class SNSExtendedAsyncClientConfiguration extends PayloadStorageAsyncConf
         this.setPayloadSupportDisabled();
         return this;
     }
+
+    public int getFailedBatchEntryRetries() {
+        return failedBatchEntryRetries;
+    }
+
+    /**
+     * Sets how many times entries of a PublishBatch request that failed on the service side are re-sent on their
+     * own. Entries rejected because of a sender fault are never retried.
+     *
+     * @param failedBatchEntryRetries the maximum number of retries for failed batch entries, 0 disables retries.
+     */
+    public void setFailedBatchEntryRetries(int failedBatchEntryRetries) {
+        if (failedBatchEntryRetries < 0) {
+            throw new IllegalArgumentException("failedBatchEntryRetries must not be negative.");
+        }
+        this.failedBatchEntryRetries = failedBatchEntryRetries;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withFailedBatchEntryRetries(int failedBatchEntryRetries) {
+        setFailedBatchEntryRetries(failedBatchEntryRetries);
+        return this;
+    }
+
+    public Duration getFailedBatchEntryRetryBaseDelay() {
+        return failedBatchEntryRetryBaseDelay;
+    }
+
+    /**
+     * Sets the delay before the first retry of failed batch entries. Each retry waits for a random delay of up to
+     * twice the previous maximum, starting from this delay and capped at five seconds, so that throttled entries are
+     * not re-sent right away.
+     *
+     * @param failedBatchEntryRetryBaseDelay the base delay, 100 milliseconds by default, or zero to retry right away.
+     */
+    public void setFailedBatchEntryRetryBaseDelay(Duration failedBatchEntryRetryBaseDelay) {
+        if (failedBatchEntryRetryBaseDelay == null || failedBatchEntryRetryBaseDelay.isNegative()) {
+            throw new IllegalArgumentException("failedBatchEntryRetryBaseDelay must not be null or negative.");
+        }
+        this.failedBatchEntryRetryBaseDelay = failedBatchEntryRetryBaseDelay;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withFailedBatchEntryRetryBaseDelay(Duration failedBatchEntryRetryBaseDelay) {
+        setFailedBatchEntryRetryBaseDelay(failedBatchEntryRetryBaseDelay);
+        return this;
+    }
+
+    public boolean isPublishBufferingEnabled() {
+        return publishBufferingEnabled;
+    }
+
+    /**
+     * Enables buffered publishing. Single publish calls to a topic are then collected and sent as PublishBatch
+     * requests once ten messages or the batch size limit are reached, or once the linger time has passed.
+     *
+     * @param publishBufferingEnabled true to buffer publish calls into batches.
+     */
+    public void setPublishBufferingEnabled(boolean publishBufferingEnabled) {
+        this.publishBufferingEnabled = publishBufferingEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPublishBufferingEnabled(boolean publishBufferingEnabled) {
+        setPublishBufferingEnabled(publishBufferingEnabled);
+        return this;
+    }
+
+    public Duration getPublishBufferLinger() {
+        return publishBufferLinger;
+    }
+
+    /**
+     * Sets how long a buffered message may wait for its batch to fill up before the batch is sent anyway.
+     *
+     * @param publishBufferLinger the maximum time a message stays in the buffer.
+     */
+    public void setPublishBufferLinger(Duration publishBufferLinger) {
+        if (publishBufferLinger == null || publishBufferLinger.isNegative()) {
+            throw new IllegalArgumentException("publishBufferLinger must not be null or negative.");
+        }
+        this.publishBufferLinger = publishBufferLinger;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPublishBufferLinger(Duration publishBufferLinger) {
+        setPublishBufferLinger(publishBufferLinger);
+        return this;
+    }
+
+    public PublishBatchPacking getPublishBatchPacking() {
+        return publishBatchPacking;
+    }
+
+    /**
+     * Sets how the entries of a PublishBatch request are packed into PublishBatch calls. With any strategy other
+     * than {@link PublishBatchPacking#NONE}, publishBatch accepts more than ten entries and splits them into as many
+     * calls as needed.
+     *
+     * @param publishBatchPacking the packing strategy.
+     */
+    public void setPublishBatchPacking(PublishBatchPacking publishBatchPacking) {
+        if (publishBatchPacking == null) {
+            throw new IllegalArgumentException("publishBatchPacking must not be null.");
+        }
+        this.publishBatchPacking = publishBatchPacking;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPublishBatchPacking(PublishBatchPacking publishBatchPacking) {
+        setPublishBatchPacking(publishBatchPacking);
+        return this;
+    }
+
+    public long getMultipartUploadThreshold() {
+        return multipartUploadThreshold;
+    }
+
+    /**
+     * Sets the payload size above which payloads are stored in S3 with a multipart upload instead of a single
+     * PutObject request. Multipart uploads are off by default: the threshold is {@link Long#MAX_VALUE}, so payloads
+     * of known length are uploaded in one request. Payloads of unknown length, and compressed payloads longer than
+     * 16 MiB, are always uploaded in parts.
+     *
+     * @param multipartUploadThreshold the largest payload size, in bytes, that is uploaded in one request.
+     */
+    public void setMultipartUploadThreshold(long multipartUploadThreshold) {
+        if (multipartUploadThreshold < 0) {
+            throw new IllegalArgumentException("multipartUploadThreshold must not be negative.");
+        }
+        this.multipartUploadThreshold = multipartUploadThreshold;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withMultipartUploadThreshold(long multipartUploadThreshold) {
+        setMultipartUploadThreshold(multipartUploadThreshold);
+        return this;
+    }
+
+    public int getMultipartUploadPartSize() {
+        return multipartUploadPartSize;
+    }
+
+    /**
+     * Sets the size of the parts of a multipart upload. Each part in flight is held in memory. The part size is
+     * raised when needed to keep a payload within the 10,000 parts S3 allows.
+     *
+     * @param multipartUploadPartSize the part size in bytes, at least 5 MiB.
+     */
+    public void setMultipartUploadPartSize(int multipartUploadPartSize) {
+        if (multipartUploadPartSize < MIN_MULTIPART_UPLOAD_PART_SIZE) {
+            throw new IllegalArgumentException("multipartUploadPartSize must be at least "
+                    + MIN_MULTIPART_UPLOAD_PART_SIZE + " bytes.");
+        }
+        this.multipartUploadPartSize = multipartUploadPartSize;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withMultipartUploadPartSize(int multipartUploadPartSize) {
+        setMultipartUploadPartSize(multipartUploadPartSize);
+        return this;
+    }
+
+    public int getMultipartUploadConcurrency() {
+        return multipartUploadConcurrency;
+    }
+
+    /**
+     * Sets how many parts of a single multipart upload are uploaded at the same time.
+     *
+     * @param multipartUploadConcurrency the maximum number of parts in flight per upload, at least 1.
+     */
+    public void setMultipartUploadConcurrency(int multipartUploadConcurrency) {
+        if (multipartUploadConcurrency < 1) {
+            throw new IllegalArgumentException("multipartUploadConcurrency must be at least 1.");
+        }
+        this.multipartUploadConcurrency = multipartUploadConcurrency;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withMultipartUploadConcurrency(int multipartUploadConcurrency) {
+        setMultipartUploadConcurrency(multipartUploadConcurrency);
+        return this;
+    }
+
+    public int getMultipartUploadPartRetries() {
+        return multipartUploadPartRetries;
+    }
+
+    /**
+     * Sets how many times a part of a multipart upload that failed with a retryable error is uploaded again, on top
+     * of the retries of the S3 client. The other parts are not uploaded again. When a part still fails, the
+     * multipart upload is aborted.
+     *
+     * @param multipartUploadPartRetries the maximum number of retries per part, 0 disables retries.
+     */
+    public void setMultipartUploadPartRetries(int multipartUploadPartRetries) {
+        if (multipartUploadPartRetries < 0) {
+            throw new IllegalArgumentException("multipartUploadPartRetries must not be negative.");
+        }
+        this.multipartUploadPartRetries = multipartUploadPartRetries;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withMultipartUploadPartRetries(int multipartUploadPartRetries) {
+        setMultipartUploadPartRetries(multipartUploadPartRetries);
+        return this;
+    }
+
+    public PayloadCompressionCodec getPayloadCompressionCodec() {
+        return payloadCompressionCodec;
+    }
+
+    /**
+     * Sets the codec payloads are compressed with before they are stored in S3, such as
+     * {@link GzipPayloadCompressionCodec}. The codec name is recorded as the content encoding of the S3 object and in
+     * the {@link SNSExtendedClientConstants#PAYLOAD_ENCODING_ATTRIBUTE_NAME} message attribute, which takes up one of
+     * the message attributes available to large-payload messages. Payloads stored through a custom payload store are
+     * not compressed.
+     *
+     * @param payloadCompressionCodec the compression codec, or null to store payloads uncompressed.
+     */
+    public void setPayloadCompressionCodec(PayloadCompressionCodec payloadCompressionCodec) {
+        this.payloadCompressionCodec = payloadCompressionCodec;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPayloadCompressionCodec(PayloadCompressionCodec payloadCompressionCodec) {
+        setPayloadCompressionCodec(payloadCompressionCodec);
+        return this;
+    }
+
+    public boolean isInlineCompressionEnabled() {
+        return inlineCompressionEnabled;
+    }
+
+    /**
+     * Sets whether messages above the payload size threshold are first compressed, to be published inline when the
+     * compressed message fits under the threshold. Such messages are not stored in S3; their body is the base64
+     * encoding of the deflated message, and they carry the
+     * {@link SNSExtendedClientConstants#INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME} attribute. Subscribers decode them
+     * with {@link InlinePayloadCompression#decompress(String, byte[])}. Has no effect when all messages are sent
+     * through S3. Disabled by default.
+     * <p>
+     * Messages are compressed on the thread that calls {@code publish}, which blocks until it is done. The size limit
+     * of {@link #setInlineCompressionMaxMessageSize(int)} keeps this short.
+     * </p>
+     */
+    public void setInlineCompressionEnabled(boolean inlineCompressionEnabled) {
+        this.inlineCompressionEnabled = inlineCompressionEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withInlineCompressionEnabled(boolean inlineCompressionEnabled) {
+        setInlineCompressionEnabled(inlineCompressionEnabled);
+        return this;
+    }
+
+    public byte[] getInlineCompressionDictionary() {
+        return (inlineCompressionDictionary != null) ? inlineCompressionDictionary.clone() : null;
+    }
+
+    /**
+     * Sets the preset dictionary messages are compressed inline with. A dictionary made of content that is common to
+     * the messages, such as field names, makes small messages compress much better. Subscribers must decode the
+     * messages with the same dictionary.
+     *
+     * @param inlineCompressionDictionary the dictionary, or null to compress without one.
+     */
+    public void setInlineCompressionDictionary(byte[] inlineCompressionDictionary) {
+        this.inlineCompressionDictionary = (inlineCompressionDictionary != null) ? inlineCompressionDictionary.clone() : null;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withInlineCompressionDictionary(byte[] inlineCompressionDictionary) {
+        setInlineCompressionDictionary(inlineCompressionDictionary);
+        return this;
+    }
+
+    public int getInlineCompressionMaxMessageSize() {
+        return inlineCompressionMaxMessageSize;
+    }
+
+    /**
+     * Sets the largest message body, in bytes, that is compressed to be published inline. Larger messages are
+     * offloaded to S3 without trying, since they are unlikely to compress under the payload size threshold and
+     * compressing them would only cost time. Defaults to four times the default payload size threshold, 1 MiB.
+     */
+    public void setInlineCompressionMaxMessageSize(int inlineCompressionMaxMessageSize) {
+        if (inlineCompressionMaxMessageSize <= 0) {
+            throw new IllegalArgumentException("inlineCompressionMaxMessageSize must be positive.");
+        }
+        this.inlineCompressionMaxMessageSize = inlineCompressionMaxMessageSize;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withInlineCompressionMaxMessageSize(int inlineCompressionMaxMessageSize) {
+        setInlineCompressionMaxMessageSize(inlineCompressionMaxMessageSize);
+        return this;
+    }
+
+    public boolean isPayloadDeduplicationEnabled() {
+        return payloadDeduplicationEnabled;
+    }
+
+    /**
+     * Sets whether payloads are stored under a key derived from the SHA-256 hash of their content, so that identical
+     * payloads are stored once. Payloads are uploaded only if no object exists under their key yet, and those this
+     * client already stored are not uploaded again. Payloads given as an input stream, payloads stored through a
+     * custom payload store and payloads published with an explicit S3 key are stored as usual.
+     * <p>
+     * A deduplicated payload may be referenced by several messages, so subscribers must not delete it once they have
+     * received one of them. Disabled by default.
+     * </p>
+     */
+    public void setPayloadDeduplicationEnabled(boolean payloadDeduplicationEnabled) {
+        this.payloadDeduplicationEnabled = payloadDeduplicationEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPayloadDeduplicationEnabled(boolean payloadDeduplicationEnabled) {
+        setPayloadDeduplicationEnabled(payloadDeduplicationEnabled);
+        return this;
+    }
+
+    public int getPayloadDeduplicationCacheSize() {
+        return payloadDeduplicationCacheSize;
+    }
+
+    /**
+     * Sets how many pointers of stored payloads are remembered, least recently used first out, when payload
+     * deduplication is enabled.
+     *
+     * @param payloadDeduplicationCacheSize the number of cached pointers, or 0 to check every payload with S3.
+     */
+    public void setPayloadDeduplicationCacheSize(int payloadDeduplicationCacheSize) {
+        if (payloadDeduplicationCacheSize < 0) {
+            throw new IllegalArgumentException("payloadDeduplicationCacheSize must not be negative.");
+        }
+        this.payloadDeduplicationCacheSize = payloadDeduplicationCacheSize;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPayloadDeduplicationCacheSize(int payloadDeduplicationCacheSize) {
+        setPayloadDeduplicationCacheSize(payloadDeduplicationCacheSize);
+        return this;
+    }
+
+    public long getInFlightPayloadBytesLimit() {
+        return inFlightPayloadBytesLimit;
+    }
+
+    /**
+     * Sets how many bytes of payloads may be held by the client at the same time while they are stored in S3, across
+     * all publishes. Publishes beyond the limit are handled according to {@link #getInFlightBytesPolicy()}. A
+     * payload larger than the limit is stored once no other payload is in flight.
+     *
+     * @param inFlightPayloadBytesLimit the limit in bytes, or 0 for no limit, which is the default.
+     */
+    public void setInFlightPayloadBytesLimit(long inFlightPayloadBytesLimit) {
+        if (inFlightPayloadBytesLimit < 0) {
+            throw new IllegalArgumentException("inFlightPayloadBytesLimit must not be negative.");
+        }
+        this.inFlightPayloadBytesLimit = inFlightPayloadBytesLimit;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withInFlightPayloadBytesLimit(long inFlightPayloadBytesLimit) {
+        setInFlightPayloadBytesLimit(inFlightPayloadBytesLimit);
+        return this;
+    }
+
+    public InFlightBytesPolicy getInFlightBytesPolicy() {
+        return inFlightBytesPolicy;
+    }
+
+    /**
+     * Sets what happens to a publish whose payload does not fit in the in-flight payload bytes limit.
+     *
+     * @param inFlightBytesPolicy the policy, {@link InFlightBytesPolicy#WAIT} by default.
+     */
+    public void setInFlightBytesPolicy(InFlightBytesPolicy inFlightBytesPolicy) {
+        if (inFlightBytesPolicy == null) {
+            throw new IllegalArgumentException("inFlightBytesPolicy must not be null.");
+        }
+        this.inFlightBytesPolicy = inFlightBytesPolicy;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withInFlightBytesPolicy(InFlightBytesPolicy inFlightBytesPolicy) {
+        setInFlightBytesPolicy(inFlightBytesPolicy);
+        return this;
+    }
+
+    public long getWaitingPayloadBytesLimit() {
+        return waitingPayloadBytesLimit;
+    }
+
+    /**
+     * Sets how many bytes of payloads may wait for the in-flight payload bytes limit with the
+     * {@link InFlightBytesPolicy#WAIT} policy. Waiting publishes hold their payload, so the client holds at most the
+     * sum of both limits. A publish that would go over this limit fails right away, as with
+     * {@link InFlightBytesPolicy#FAIL_FAST}. A payload larger than the limit may wait once no other payload does.
+     *
+     * @param waitingPayloadBytesLimit the limit in bytes, or 0 for the same limit as
+     *                                 {@link #getInFlightPayloadBytesLimit()}, which is the default.
+     */
+    public void setWaitingPayloadBytesLimit(long waitingPayloadBytesLimit) {
+        if (waitingPayloadBytesLimit < 0) {
+            throw new IllegalArgumentException("waitingPayloadBytesLimit must not be negative.");
+        }
+        this.waitingPayloadBytesLimit = waitingPayloadBytesLimit;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withWaitingPayloadBytesLimit(long waitingPayloadBytesLimit) {
+        setWaitingPayloadBytesLimit(waitingPayloadBytesLimit);
+        return this;
+    }
+
+    public int getPublishPipelineConcurrency() {
+        return publishPipelineConcurrency;
+    }
+
+    /**
+     * Sets how many messages of a stream published with
+     * {@link AmazonSNSExtendedAsyncClient#publishAll(org.reactivestreams.Publisher)} may be in flight at the same
+     * time, from the moment they are taken from the source until their response is emitted.
+     *
+     * @param publishPipelineConcurrency the number of messages in flight, 16 by default.
+     */
+    public void setPublishPipelineConcurrency(int publishPipelineConcurrency) {
+        if (publishPipelineConcurrency < 1) {
+            throw new IllegalArgumentException("publishPipelineConcurrency must be at least 1.");
+        }
+        this.publishPipelineConcurrency = publishPipelineConcurrency;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPublishPipelineConcurrency(int publishPipelineConcurrency) {
+        setPublishPipelineConcurrency(publishPipelineConcurrency);
+        return this;
+    }
+
+    public boolean isFifoGroupOrderingEnabled() {
+        return fifoGroupOrderingEnabled;
+    }
+
+    /**
+     * Sets whether concurrent publishes to a FIFO topic are sent to Amazon SNS in the order they were issued within
+     * each message group. Without it, a small message can overtake a larger one of the same group whose payload is
+     * still being stored in S3. Payloads are still stored in parallel, and message groups are published
+     * independently of each other. Buffered publishes already keep their order and are not affected. Disabled by
+     * default.
+     * <p>
+     * When a publish fails, the publishes of its group waiting for it fail as well without being sent, so that no
+     * message is published after an earlier message of its group that was not. Use
+     * {@link #setFifoGroupFailurePolicy(FifoGroupFailurePolicy)} to send them anyway.
+     * </p>
+     */
+    public void setFifoGroupOrderingEnabled(boolean fifoGroupOrderingEnabled) {
+        this.fifoGroupOrderingEnabled = fifoGroupOrderingEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withFifoGroupOrderingEnabled(boolean fifoGroupOrderingEnabled) {
+        setFifoGroupOrderingEnabled(fifoGroupOrderingEnabled);
+        return this;
+    }
+
+    public FifoGroupFailurePolicy getFifoGroupFailurePolicy() {
+        return fifoGroupFailurePolicy;
+    }
+
+    /**
+     * Sets what happens to the publishes of a message group waiting for a publish of the group that failed, when
+     * {@link #isFifoGroupOrderingEnabled() FIFO group ordering} is enabled.
+     *
+     * @param fifoGroupFailurePolicy the policy, {@link FifoGroupFailurePolicy#FAIL_GROUP} by default.
+     */
+    public void setFifoGroupFailurePolicy(FifoGroupFailurePolicy fifoGroupFailurePolicy) {
+        if (fifoGroupFailurePolicy == null) {
+            throw new IllegalArgumentException("fifoGroupFailurePolicy must not be null.");
+        }
+        this.fifoGroupFailurePolicy = fifoGroupFailurePolicy;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withFifoGroupFailurePolicy(
+            FifoGroupFailurePolicy fifoGroupFailurePolicy) {
+        setFifoGroupFailurePolicy(fifoGroupFailurePolicy);
+        return this;
+    }
+
+    public boolean isOrphanedPayloadCleanupEnabled() {
+        return orphanedPayloadCleanupEnabled;
+    }
+
+    /**
+     * Sets whether the payloads stored in S3 for messages that Amazon SNS then failed to publish are deleted in the
+     * background, in DeleteObjects requests, so that they do not stay in the bucket with nothing pointing to them.
+     * A payload is only deleted if Amazon SNS rejected its message with a client error, or if its message was never
+     * sent. After a timeout, another client-side failure or a server error the message may have been delivered, so its
+     * payload is left in place.
+     * Deduplicated payloads and payloads stored under an S3 key chosen by the caller are never deleted. The payloads of
+     * a custom payload store are deleted with the configured S3 client if its pointers name S3 objects, and left alone
+     * otherwise. Requires the s3:DeleteObject permission. Disabled by default.
+     */
+    public void setOrphanedPayloadCleanupEnabled(boolean orphanedPayloadCleanupEnabled) {
+        this.orphanedPayloadCleanupEnabled = orphanedPayloadCleanupEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withOrphanedPayloadCleanupEnabled(boolean orphanedPayloadCleanupEnabled) {
+        setOrphanedPayloadCleanupEnabled(orphanedPayloadCleanupEnabled);
+        return this;
+    }
+
+    public Duration getOrphanedPayloadCleanupDelay() {
+        return orphanedPayloadCleanupDelay;
+    }
+
+    /**
+     * Sets how long an orphaned payload stays in S3 before it is deleted. Payloads still pending when the client is
+     * closed are deleted right away.
+     *
+     * @param orphanedPayloadCleanupDelay the delay, one minute by default.
+     */
+    public void setOrphanedPayloadCleanupDelay(Duration orphanedPayloadCleanupDelay) {
+        if (orphanedPayloadCleanupDelay == null || orphanedPayloadCleanupDelay.isNegative()) {
+            throw new IllegalArgumentException("orphanedPayloadCleanupDelay must not be null or negative.");
+        }
+        this.orphanedPayloadCleanupDelay = orphanedPayloadCleanupDelay;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withOrphanedPayloadCleanupDelay(Duration orphanedPayloadCleanupDelay) {
+        setOrphanedPayloadCleanupDelay(orphanedPayloadCleanupDelay);
+        return this;
+    }
+
+    public int getOrphanedPayloadCleanupQueueSize() {
+        return orphanedPayloadCleanupQueueSize;
+    }
+
+    /**
+     * Sets how many orphaned payloads may wait for their deletion. Payloads that do not fit are left in S3.
+     *
+     * @param orphanedPayloadCleanupQueueSize the number of pending payloads, 10000 by default.
+     */
+    public void setOrphanedPayloadCleanupQueueSize(int orphanedPayloadCleanupQueueSize) {
+        if (orphanedPayloadCleanupQueueSize < 1) {
+            throw new IllegalArgumentException("orphanedPayloadCleanupQueueSize must be at least 1.");
+        }
+        this.orphanedPayloadCleanupQueueSize = orphanedPayloadCleanupQueueSize;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withOrphanedPayloadCleanupQueueSize(int orphanedPayloadCleanupQueueSize) {
+        setOrphanedPayloadCleanupQueueSize(orphanedPayloadCleanupQueueSize);
+        return this;
+    }
+
+    public PayloadKeyNamingStrategy getPayloadKeyNamingStrategy() {
+        return payloadKeyNamingStrategy;
+    }
+
+    /**
+     * Sets how the S3 keys of payloads are named, such as {@link HashedPrefixPayloadKeyNamingStrategy} to spread them
+     * over many S3 prefixes. Keys given in the S3 key message attribute are used as they are.
+     *
+     * @param payloadKeyNamingStrategy the naming strategy, or null to store payloads under flat random keys.
+     */
+    public void setPayloadKeyNamingStrategy(PayloadKeyNamingStrategy payloadKeyNamingStrategy) {
+        this.payloadKeyNamingStrategy = payloadKeyNamingStrategy;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPayloadKeyNamingStrategy(PayloadKeyNamingStrategy payloadKeyNamingStrategy) {
+        setPayloadKeyNamingStrategy(payloadKeyNamingStrategy);
+        return this;
+    }
+
+    public List<String> getStripedBucketNames() {
+        return stripedBucketNames;
+    }
+
+    /**
+     * Sets the buckets payloads are spread over, in place of the payload bucket. Each payload goes to the bucket
+     * chosen from a hash of its key, so that the same key always goes to the same bucket. The S3 client must be able
+     * to write to, and consumers to read from, every one of them.
+     *
+     * @param stripedBucketNames the bucket names, or null or an empty list to store every payload in the payload
+     *                           bucket, which is the default.
+     */
+    public void setStripedBucketNames(List<String> stripedBucketNames) {
+        if (stripedBucketNames == null) {
+            this.stripedBucketNames = Collections.emptyList();
+            return;
+        }
+        for (String stripedBucketName : stripedBucketNames) {
+            if (stripedBucketName == null || stripedBucketName.isEmpty()) {
+                throw new IllegalArgumentException("stripedBucketNames must not contain null or empty names.");
+            }
+        }
+        this.stripedBucketNames = Collections.unmodifiableList(new ArrayList<>(stripedBucketNames));
+    }
+
+    public SNSExtendedAsyncClientConfiguration withStripedBucketNames(List<String> stripedBucketNames) {
+        setStripedBucketNames(stripedBucketNames);
+        return this;
+    }
+
+    public boolean isAdaptiveConcurrencyLimitEnabled() {
+        return adaptiveConcurrencyLimitEnabled;
+    }
+
+    /**
+     * Enables adaptive limits on the number of payloads stored in S3 at once and on the number of requests sent to
+     * Amazon SNS at once. Each limit is halved when a request of its stage is throttled or its latency rises well above
+     * the baseline, and grows back by one for every limit's worth of requests served without throttling. Requests over
+     * a limit wait until others complete. The current limits are available through
+     * {@link AmazonSNSExtendedAsyncClient#getAdaptiveConcurrencyLimits()}.
+     * <p>
+     * Throttling is only seen once the SDK gives up retrying a request, so the SNS and S3 clients should be built with
+     * SDK retries turned off, for example with {@code RetryPolicy.none()}, for the limits to react to it directly.
+     *
+     * @param adaptiveConcurrencyLimitEnabled whether the limits are enabled, false by default.
+     */
+    public void setAdaptiveConcurrencyLimitEnabled(boolean adaptiveConcurrencyLimitEnabled) {
+        this.adaptiveConcurrencyLimitEnabled = adaptiveConcurrencyLimitEnabled;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withAdaptiveConcurrencyLimitEnabled(boolean adaptiveConcurrencyLimitEnabled) {
+        setAdaptiveConcurrencyLimitEnabled(adaptiveConcurrencyLimitEnabled);
+        return this;
+    }
+
+    public int getAdaptiveConcurrencyInitialLimit() {
+        return adaptiveConcurrencyInitialLimit;
+    }
+
+    /**
+     * @param adaptiveConcurrencyInitialLimit the limit of each stage when the client is created, 20 by default.
+     */
+    public void setAdaptiveConcurrencyInitialLimit(int adaptiveConcurrencyInitialLimit) {
+        if (adaptiveConcurrencyInitialLimit < 1) {
+            throw new IllegalArgumentException("adaptiveConcurrencyInitialLimit must be at least 1.");
+        }
+        this.adaptiveConcurrencyInitialLimit = adaptiveConcurrencyInitialLimit;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withAdaptiveConcurrencyInitialLimit(int adaptiveConcurrencyInitialLimit) {
+        setAdaptiveConcurrencyInitialLimit(adaptiveConcurrencyInitialLimit);
+        return this;
+    }
+
+    public int getAdaptiveConcurrencyMaxLimit() {
+        return adaptiveConcurrencyMaxLimit;
+    }
+
+    /**
+     * @param adaptiveConcurrencyMaxLimit the highest limit each stage may grow to, 1000 by default.
+     */
+    public void setAdaptiveConcurrencyMaxLimit(int adaptiveConcurrencyMaxLimit) {
+        if (adaptiveConcurrencyMaxLimit < 1) {
+            throw new IllegalArgumentException("adaptiveConcurrencyMaxLimit must be at least 1.");
+        }
+        this.adaptiveConcurrencyMaxLimit = adaptiveConcurrencyMaxLimit;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withAdaptiveConcurrencyMaxLimit(int adaptiveConcurrencyMaxLimit) {
+        setAdaptiveConcurrencyMaxLimit(adaptiveConcurrencyMaxLimit);
+        return this;
+    }
+
+    public PublishMetricsReporter getPublishMetricsReporter() {
+        return publishMetricsReporter;
+    }
+
+    /**
+     * Sets the reporter receiving the {@link PublishMetrics} of every message published with
+     * {@code publish}, {@code publishWithDetails} or {@code publishAll}, such as a
+     * {@link MetricPublisherPublishMetricsReporter}. Messages sent with {@code publishBatch} or
+     * {@code publishToTopics} are not measured, and emit no Java Flight Recorder events either.
+     *
+     * @param publishMetricsReporter the reporter, {@link PublishMetricsReporter#NO_OP} by default.
+     */
+    public void setPublishMetricsReporter(PublishMetricsReporter publishMetricsReporter) {
+        if (publishMetricsReporter == null) {
+            throw new IllegalArgumentException("publishMetricsReporter must not be null.");
+        }
+        this.publishMetricsReporter = publishMetricsReporter;
+    }
+
+    public SNSExtendedAsyncClientConfiguration withPublishMetricsReporter(PublishMetricsReporter publishMetricsReporter) {
+        setPublishMetricsReporter(publishMetricsReporter);
+        return this;
+    }
 }
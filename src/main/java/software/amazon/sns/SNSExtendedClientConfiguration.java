@@ -4,10 +4,48 @@ import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.payloadoffloading.PayloadStorageConfiguration;
 import software.amazon.payloadoffloading.ServerSideEncryptionStrategy;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_BULK_PUBLISH_PARALLELISM;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_FAILED_BATCH_ENTRY_RETRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_FAILED_BATCH_ENTRY_RETRY_BASE_DELAY_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_INLINE_COMPRESSION_MAX_MESSAGE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_CONCURRENCY;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_PART_RETRIES;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_PART_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ORPHANED_PAYLOAD_CLEANUP_DELAY_MILLIS;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_ORPHANED_PAYLOAD_CLEANUP_QUEUE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.DEFAULT_PAYLOAD_DEDUPLICATION_CACHE_SIZE;
+import static software.amazon.sns.SNSExtendedClientConstants.MIN_MULTIPART_UPLOAD_PART_SIZE;
 import static software.amazon.sns.SNSExtendedClientConstants.SNS_DEFAULT_MESSAGE_SIZE;
 
 public class SNSExtendedClientConfiguration extends PayloadStorageConfiguration {
 
+    private int failedBatchEntryRetries = DEFAULT_FAILED_BATCH_ENTRY_RETRIES;
+    private Duration failedBatchEntryRetryBaseDelay = Duration.ofMillis(DEFAULT_FAILED_BATCH_ENTRY_RETRY_BASE_DELAY_MILLIS);
+    private PublishBatchPacking publishBatchPacking = PublishBatchPacking.NONE;
+    private long multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+    private int multipartUploadPartSize = DEFAULT_MULTIPART_UPLOAD_PART_SIZE;
+    private int multipartUploadConcurrency = DEFAULT_MULTIPART_UPLOAD_CONCURRENCY;
+    private int multipartUploadPartRetries = DEFAULT_MULTIPART_UPLOAD_PART_RETRIES;
+    private PayloadCompressionCodec payloadCompressionCodec;
+    private boolean inlineCompressionEnabled;
+    private byte[] inlineCompressionDictionary;
+    private int inlineCompressionMaxMessageSize = DEFAULT_INLINE_COMPRESSION_MAX_MESSAGE_SIZE;
+    private boolean payloadDeduplicationEnabled;
+    private int payloadDeduplicationCacheSize = DEFAULT_PAYLOAD_DEDUPLICATION_CACHE_SIZE;
+    private boolean orphanedPayloadCleanupEnabled;
+    private Duration orphanedPayloadCleanupDelay = Duration.ofMillis(DEFAULT_ORPHANED_PAYLOAD_CLEANUP_DELAY_MILLIS);
+    private int orphanedPayloadCleanupQueueSize = DEFAULT_ORPHANED_PAYLOAD_CLEANUP_QUEUE_SIZE;
+    private PayloadKeyNamingStrategy payloadKeyNamingStrategy;
+    private List<String> stripedBucketNames = Collections.emptyList();
+    private PublishMetricsReporter publishMetricsReporter = PublishMetricsReporter.NO_OP;
+    private int bulkPublishParallelism = DEFAULT_BULK_PUBLISH_PARALLELISM;
+
     public SNSExtendedClientConfiguration() {
         super();
         setPayloadSizeThreshold(SNS_DEFAULT_MESSAGE_SIZE);
@@ -15,6 +53,26 @@ public class SNSExtendedClientConfiguration extends PayloadStorageConfiguration
 
     public SNSExtendedClientConfiguration(SNSExtendedClientConfiguration snsExtendedClientConfiguration) {
         super(snsExtendedClientConfiguration);
+        this.failedBatchEntryRetries = snsExtendedClientConfiguration.failedBatchEntryRetries;
+        this.failedBatchEntryRetryBaseDelay = snsExtendedClientConfiguration.failedBatchEntryRetryBaseDelay;
+        this.publishBatchPacking = snsExtendedClientConfiguration.publishBatchPacking;
+        this.multipartUploadThreshold = snsExtendedClientConfiguration.multipartUploadThreshold;
+        this.multipartUploadPartSize = snsExtendedClientConfiguration.multipartUploadPartSize;
+        this.multipartUploadConcurrency = snsExtendedClientConfiguration.multipartUploadConcurrency;
+        this.multipartUploadPartRetries = snsExtendedClientConfiguration.multipartUploadPartRetries;
+        this.payloadCompressionCodec = snsExtendedClientConfiguration.payloadCompressionCodec;
+        this.inlineCompressionEnabled = snsExtendedClientConfiguration.inlineCompressionEnabled;
+        this.inlineCompressionDictionary = snsExtendedClientConfiguration.inlineCompressionDictionary;
+        this.inlineCompressionMaxMessageSize = snsExtendedClientConfiguration.inlineCompressionMaxMessageSize;
+        this.payloadDeduplicationEnabled = snsExtendedClientConfiguration.payloadDeduplicationEnabled;
+        this.payloadDeduplicationCacheSize = snsExtendedClientConfiguration.payloadDeduplicationCacheSize;
+        this.orphanedPayloadCleanupEnabled = snsExtendedClientConfiguration.orphanedPayloadCleanupEnabled;
+        this.orphanedPayloadCleanupDelay = snsExtendedClientConfiguration.orphanedPayloadCleanupDelay;
+        this.orphanedPayloadCleanupQueueSize = snsExtendedClientConfiguration.orphanedPayloadCleanupQueueSize;
+        this.payloadKeyNamingStrategy = snsExtendedClientConfiguration.payloadKeyNamingStrategy;
+        this.stripedBucketNames = snsExtendedClientConfiguration.stripedBucketNames;
+        this.publishMetricsReporter = snsExtendedClientConfiguration.publishMetricsReporter;
+        this.bulkPublishParallelism = snsExtendedClientConfiguration.bulkPublishParallelism;
     }
 
     @Override
@@ -46,4 +104,453 @@ public class SNSExtendedClientConfiguration extends PayloadStorageConfiguration
         this.setPayloadSupportDisabled();
         return this;
     }
+
+    public int getFailedBatchEntryRetries() {
+        return failedBatchEntryRetries;
+    }
+
+    /**
+     * Sets how many times entries of a PublishBatch request that failed on the service side are re-sent on their
+     * own. Entries rejected because of a sender fault are never retried.
+     *
+     * @param failedBatchEntryRetries the maximum number of retries for failed batch entries, 0 disables retries.
+     */
+    public void setFailedBatchEntryRetries(int failedBatchEntryRetries) {
+        if (failedBatchEntryRetries < 0) {
+            throw new IllegalArgumentException("failedBatchEntryRetries must not be negative.");
+        }
+        this.failedBatchEntryRetries = failedBatchEntryRetries;
+    }
+
+    public SNSExtendedClientConfiguration withFailedBatchEntryRetries(int failedBatchEntryRetries) {
+        setFailedBatchEntryRetries(failedBatchEntryRetries);
+        return this;
+    }
+
+    public Duration getFailedBatchEntryRetryBaseDelay() {
+        return failedBatchEntryRetryBaseDelay;
+    }
+
+    /**
+     * Sets the delay before the first retry of failed batch entries. Each retry waits for a random delay of up to
+     * twice the previous maximum, starting from this delay and capped at five seconds, so that throttled entries are
+     * not re-sent right away.
+     *
+     * @param failedBatchEntryRetryBaseDelay the base delay, 100 milliseconds by default, or zero to retry right away.
+     */
+    public void setFailedBatchEntryRetryBaseDelay(Duration failedBatchEntryRetryBaseDelay) {
+        if (failedBatchEntryRetryBaseDelay == null || failedBatchEntryRetryBaseDelay.isNegative()) {
+            throw new IllegalArgumentException("failedBatchEntryRetryBaseDelay must not be null or negative.");
+        }
+        this.failedBatchEntryRetryBaseDelay = failedBatchEntryRetryBaseDelay;
+    }
+
+    public SNSExtendedClientConfiguration withFailedBatchEntryRetryBaseDelay(Duration failedBatchEntryRetryBaseDelay) {
+        setFailedBatchEntryRetryBaseDelay(failedBatchEntryRetryBaseDelay);
+        return this;
+    }
+
+    public PublishBatchPacking getPublishBatchPacking() {
+        return publishBatchPacking;
+    }
+
+    /**
+     * Sets how the entries of a PublishBatch request are packed into PublishBatch calls. With any strategy other
+     * than {@link PublishBatchPacking#NONE}, publishBatch accepts more than ten entries and splits them into as many
+     * calls as needed.
+     *
+     * @param publishBatchPacking the packing strategy.
+     */
+    public void setPublishBatchPacking(PublishBatchPacking publishBatchPacking) {
+        if (publishBatchPacking == null) {
+            throw new IllegalArgumentException("publishBatchPacking must not be null.");
+        }
+        this.publishBatchPacking = publishBatchPacking;
+    }
+
+    public SNSExtendedClientConfiguration withPublishBatchPacking(PublishBatchPacking publishBatchPacking) {
+        setPublishBatchPacking(publishBatchPacking);
+        return this;
+    }
+
+    public long getMultipartUploadThreshold() {
+        return multipartUploadThreshold;
+    }
+
+    /**
+     * Sets the payload size above which payloads are stored in S3 with a multipart upload instead of a single
+     * PutObject request. Multipart uploads are off by default: the threshold is {@link Long#MAX_VALUE}, so payloads
+     * of known length are uploaded in one request. Payloads of unknown length, and compressed payloads longer than
+     * 16 MiB, are always uploaded in parts.
+     *
+     * @param multipartUploadThreshold the largest payload size, in bytes, that is uploaded in one request.
+     */
+    public void setMultipartUploadThreshold(long multipartUploadThreshold) {
+        if (multipartUploadThreshold < 0) {
+            throw new IllegalArgumentException("multipartUploadThreshold must not be negative.");
+        }
+        this.multipartUploadThreshold = multipartUploadThreshold;
+    }
+
+    public SNSExtendedClientConfiguration withMultipartUploadThreshold(long multipartUploadThreshold) {
+        setMultipartUploadThreshold(multipartUploadThreshold);
+        return this;
+    }
+
+    public int getMultipartUploadPartSize() {
+        return multipartUploadPartSize;
+    }
+
+    /**
+     * Sets the size of the parts of a multipart upload. Each part in flight is held in memory. The part size is
+     * raised when needed to keep a payload within the 10,000 parts S3 allows.
+     *
+     * @param multipartUploadPartSize the part size in bytes, at least 5 MiB.
+     */
+    public void setMultipartUploadPartSize(int multipartUploadPartSize) {
+        if (multipartUploadPartSize < MIN_MULTIPART_UPLOAD_PART_SIZE) {
+            throw new IllegalArgumentException("multipartUploadPartSize must be at least "
+                    + MIN_MULTIPART_UPLOAD_PART_SIZE + " bytes.");
+        }
+        this.multipartUploadPartSize = multipartUploadPartSize;
+    }
+
+    public SNSExtendedClientConfiguration withMultipartUploadPartSize(int multipartUploadPartSize) {
+        setMultipartUploadPartSize(multipartUploadPartSize);
+        return this;
+    }
+
+    public int getMultipartUploadConcurrency() {
+        return multipartUploadConcurrency;
+    }
+
+    /**
+     * Sets how many parts of a single multipart upload are uploaded at the same time.
+     *
+     * @param multipartUploadConcurrency the maximum number of parts in flight per upload, at least 1.
+     */
+    public void setMultipartUploadConcurrency(int multipartUploadConcurrency) {
+        if (multipartUploadConcurrency < 1) {
+            throw new IllegalArgumentException("multipartUploadConcurrency must be at least 1.");
+        }
+        this.multipartUploadConcurrency = multipartUploadConcurrency;
+    }
+
+    public SNSExtendedClientConfiguration withMultipartUploadConcurrency(int multipartUploadConcurrency) {
+        setMultipartUploadConcurrency(multipartUploadConcurrency);
+        return this;
+    }
+
+    public int getMultipartUploadPartRetries() {
+        return multipartUploadPartRetries;
+    }
+
+    /**
+     * Sets how many times a part of a multipart upload that failed with a retryable error is uploaded again, on top
+     * of the retries of the S3 client. The other parts are not uploaded again. When a part still fails, the
+     * multipart upload is aborted.
+     *
+     * @param multipartUploadPartRetries the maximum number of retries per part, 0 disables retries.
+     */
+    public void setMultipartUploadPartRetries(int multipartUploadPartRetries) {
+        if (multipartUploadPartRetries < 0) {
+            throw new IllegalArgumentException("multipartUploadPartRetries must not be negative.");
+        }
+        this.multipartUploadPartRetries = multipartUploadPartRetries;
+    }
+
+    public SNSExtendedClientConfiguration withMultipartUploadPartRetries(int multipartUploadPartRetries) {
+        setMultipartUploadPartRetries(multipartUploadPartRetries);
+        return this;
+    }
+
+    public PayloadCompressionCodec getPayloadCompressionCodec() {
+        return payloadCompressionCodec;
+    }
+
+    /**
+     * Sets the codec payloads are compressed with before they are stored in S3, such as
+     * {@link GzipPayloadCompressionCodec}. The codec name is recorded as the content encoding of the S3 object and in
+     * the {@link SNSExtendedClientConstants#PAYLOAD_ENCODING_ATTRIBUTE_NAME} message attribute, which takes up one of
+     * the message attributes available to large-payload messages. Payloads stored through a custom payload store are
+     * not compressed.
+     *
+     * @param payloadCompressionCodec the compression codec, or null to store payloads uncompressed.
+     */
+    public void setPayloadCompressionCodec(PayloadCompressionCodec payloadCompressionCodec) {
+        this.payloadCompressionCodec = payloadCompressionCodec;
+    }
+
+    public SNSExtendedClientConfiguration withPayloadCompressionCodec(PayloadCompressionCodec payloadCompressionCodec) {
+        setPayloadCompressionCodec(payloadCompressionCodec);
+        return this;
+    }
+
+    public boolean isInlineCompressionEnabled() {
+        return inlineCompressionEnabled;
+    }
+
+    /**
+     * Sets whether messages above the payload size threshold are first compressed, to be published inline when the
+     * compressed message fits under the threshold. Such messages are not stored in S3; their body is the base64
+     * encoding of the deflated message, and they carry the
+     * {@link SNSExtendedClientConstants#INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME} attribute. Subscribers decode them
+     * with {@link InlinePayloadCompression#decompress(String, byte[])}. Has no effect when all messages are sent
+     * through S3. Disabled by default.
+     */
+    public void setInlineCompressionEnabled(boolean inlineCompressionEnabled) {
+        this.inlineCompressionEnabled = inlineCompressionEnabled;
+    }
+
+    public SNSExtendedClientConfiguration withInlineCompressionEnabled(boolean inlineCompressionEnabled) {
+        setInlineCompressionEnabled(inlineCompressionEnabled);
+        return this;
+    }
+
+    public byte[] getInlineCompressionDictionary() {
+        return (inlineCompressionDictionary != null) ? inlineCompressionDictionary.clone() : null;
+    }
+
+    /**
+     * Sets the preset dictionary messages are compressed inline with. A dictionary made of content that is common to
+     * the messages, such as field names, makes small messages compress much better. Subscribers must decode the
+     * messages with the same dictionary.
+     *
+     * @param inlineCompressionDictionary the dictionary, or null to compress without one.
+     */
+    public void setInlineCompressionDictionary(byte[] inlineCompressionDictionary) {
+        this.inlineCompressionDictionary = (inlineCompressionDictionary != null) ? inlineCompressionDictionary.clone() : null;
+    }
+
+    public SNSExtendedClientConfiguration withInlineCompressionDictionary(byte[] inlineCompressionDictionary) {
+        setInlineCompressionDictionary(inlineCompressionDictionary);
+        return this;
+    }
+
+    public int getInlineCompressionMaxMessageSize() {
+        return inlineCompressionMaxMessageSize;
+    }
+
+    /**
+     * Sets the largest message body, in bytes, that is compressed to be published inline. Larger messages are
+     * offloaded to S3 without trying, since they are unlikely to compress under the payload size threshold and
+     * compressing them would only cost time. Defaults to four times the default payload size threshold, 1 MiB.
+     */
+    public void setInlineCompressionMaxMessageSize(int inlineCompressionMaxMessageSize) {
+        if (inlineCompressionMaxMessageSize <= 0) {
+            throw new IllegalArgumentException("inlineCompressionMaxMessageSize must be positive.");
+        }
+        this.inlineCompressionMaxMessageSize = inlineCompressionMaxMessageSize;
+    }
+
+    public SNSExtendedClientConfiguration withInlineCompressionMaxMessageSize(int inlineCompressionMaxMessageSize) {
+        setInlineCompressionMaxMessageSize(inlineCompressionMaxMessageSize);
+        return this;
+    }
+
+    public boolean isPayloadDeduplicationEnabled() {
+        return payloadDeduplicationEnabled;
+    }
+
+    /**
+     * Sets whether payloads are stored under a key derived from the SHA-256 hash of their content, so that identical
+     * payloads are stored once. Payloads are uploaded only if no object exists under their key yet, and those this
+     * client already stored are not uploaded again. Payloads given as an input stream, payloads stored through a
+     * custom payload store and payloads published with an explicit S3 key are stored as usual.
+     * <p>
+     * A deduplicated payload may be referenced by several messages, so subscribers must not delete it once they have
+     * received one of them. Disabled by default.
+     * </p>
+     */
+    public void setPayloadDeduplicationEnabled(boolean payloadDeduplicationEnabled) {
+        this.payloadDeduplicationEnabled = payloadDeduplicationEnabled;
+    }
+
+    public SNSExtendedClientConfiguration withPayloadDeduplicationEnabled(boolean payloadDeduplicationEnabled) {
+        setPayloadDeduplicationEnabled(payloadDeduplicationEnabled);
+        return this;
+    }
+
+    public int getPayloadDeduplicationCacheSize() {
+        return payloadDeduplicationCacheSize;
+    }
+
+    /**
+     * Sets how many pointers of stored payloads are remembered, least recently used first out, when payload
+     * deduplication is enabled.
+     *
+     * @param payloadDeduplicationCacheSize the number of cached pointers, or 0 to check every payload with S3.
+     */
+    public void setPayloadDeduplicationCacheSize(int payloadDeduplicationCacheSize) {
+        if (payloadDeduplicationCacheSize < 0) {
+            throw new IllegalArgumentException("payloadDeduplicationCacheSize must not be negative.");
+        }
+        this.payloadDeduplicationCacheSize = payloadDeduplicationCacheSize;
+    }
+
+    public SNSExtendedClientConfiguration withPayloadDeduplicationCacheSize(int payloadDeduplicationCacheSize) {
+        setPayloadDeduplicationCacheSize(payloadDeduplicationCacheSize);
+        return this;
+    }
+
+    public int getBulkPublishParallelism() {
+        return bulkPublishParallelism;
+    }
+
+    /**
+     * Sets how many messages of a bulk publish are published at the same time, each of them blocking while its payload
+     * is stored in S3 and while it is published to Amazon SNS.
+     *
+     * @param bulkPublishParallelism the number of concurrent publishes, 16 by default.
+     */
+    public void setBulkPublishParallelism(int bulkPublishParallelism) {
+        if (bulkPublishParallelism < 1) {
+            throw new IllegalArgumentException("bulkPublishParallelism must be at least 1.");
+        }
+        this.bulkPublishParallelism = bulkPublishParallelism;
+    }
+
+    public SNSExtendedClientConfiguration withBulkPublishParallelism(int bulkPublishParallelism) {
+        setBulkPublishParallelism(bulkPublishParallelism);
+        return this;
+    }
+
+    public boolean isOrphanedPayloadCleanupEnabled() {
+        return orphanedPayloadCleanupEnabled;
+    }
+
+    /**
+     * Sets whether the payloads stored in S3 for messages that Amazon SNS then failed to publish are deleted in the
+     * background, in DeleteObjects requests, so that they do not stay in the bucket with nothing pointing to them.
+     * A payload is only deleted if Amazon SNS rejected its message with a client error, or if its message was never
+     * sent. After a timeout, another client-side failure or a server error the message may have been delivered, so its
+     * payload is left in place.
+     * Deduplicated payloads and payloads stored under an S3 key chosen by the caller are never deleted. The payloads of
+     * a custom payload store are deleted with the configured S3 client if its pointers name S3 objects, and left alone
+     * otherwise. Requires the s3:DeleteObject permission. Disabled by default.
+     */
+    public void setOrphanedPayloadCleanupEnabled(boolean orphanedPayloadCleanupEnabled) {
+        this.orphanedPayloadCleanupEnabled = orphanedPayloadCleanupEnabled;
+    }
+
+    public SNSExtendedClientConfiguration withOrphanedPayloadCleanupEnabled(boolean orphanedPayloadCleanupEnabled) {
+        setOrphanedPayloadCleanupEnabled(orphanedPayloadCleanupEnabled);
+        return this;
+    }
+
+    public Duration getOrphanedPayloadCleanupDelay() {
+        return orphanedPayloadCleanupDelay;
+    }
+
+    /**
+     * Sets how long an orphaned payload stays in S3 before it is deleted. Payloads still pending when the client is
+     * closed are deleted right away.
+     *
+     * @param orphanedPayloadCleanupDelay the delay, one minute by default.
+     */
+    public void setOrphanedPayloadCleanupDelay(Duration orphanedPayloadCleanupDelay) {
+        if (orphanedPayloadCleanupDelay == null || orphanedPayloadCleanupDelay.isNegative()) {
+            throw new IllegalArgumentException("orphanedPayloadCleanupDelay must not be null or negative.");
+        }
+        this.orphanedPayloadCleanupDelay = orphanedPayloadCleanupDelay;
+    }
+
+    public SNSExtendedClientConfiguration withOrphanedPayloadCleanupDelay(Duration orphanedPayloadCleanupDelay) {
+        setOrphanedPayloadCleanupDelay(orphanedPayloadCleanupDelay);
+        return this;
+    }
+
+    public int getOrphanedPayloadCleanupQueueSize() {
+        return orphanedPayloadCleanupQueueSize;
+    }
+
+    /**
+     * Sets how many orphaned payloads may wait for their deletion. Payloads that do not fit are left in S3.
+     *
+     * @param orphanedPayloadCleanupQueueSize the number of pending payloads, 10000 by default.
+     */
+    public void setOrphanedPayloadCleanupQueueSize(int orphanedPayloadCleanupQueueSize) {
+        if (orphanedPayloadCleanupQueueSize < 1) {
+            throw new IllegalArgumentException("orphanedPayloadCleanupQueueSize must be at least 1.");
+        }
+        this.orphanedPayloadCleanupQueueSize = orphanedPayloadCleanupQueueSize;
+    }
+
+    public SNSExtendedClientConfiguration withOrphanedPayloadCleanupQueueSize(int orphanedPayloadCleanupQueueSize) {
+        setOrphanedPayloadCleanupQueueSize(orphanedPayloadCleanupQueueSize);
+        return this;
+    }
+
+    public PayloadKeyNamingStrategy getPayloadKeyNamingStrategy() {
+        return payloadKeyNamingStrategy;
+    }
+
+    /**
+     * Sets how the S3 keys of payloads are named, such as {@link HashedPrefixPayloadKeyNamingStrategy} to spread them
+     * over many S3 prefixes. Keys given in the S3 key message attribute are used as they are.
+     *
+     * @param payloadKeyNamingStrategy the naming strategy, or null to store payloads under flat random keys.
+     */
+    public void setPayloadKeyNamingStrategy(PayloadKeyNamingStrategy payloadKeyNamingStrategy) {
+        this.payloadKeyNamingStrategy = payloadKeyNamingStrategy;
+    }
+
+    public SNSExtendedClientConfiguration withPayloadKeyNamingStrategy(PayloadKeyNamingStrategy payloadKeyNamingStrategy) {
+        setPayloadKeyNamingStrategy(payloadKeyNamingStrategy);
+        return this;
+    }
+
+    public List<String> getStripedBucketNames() {
+        return stripedBucketNames;
+    }
+
+    /**
+     * Sets the buckets payloads are spread over, in place of the payload bucket. Each payload goes to the bucket
+     * chosen from a hash of its key, so that the same key always goes to the same bucket. The S3 client must be able
+     * to write to, and consumers to read from, every one of them.
+     *
+     * @param stripedBucketNames the bucket names, or null or an empty list to store every payload in the payload
+     *                           bucket, which is the default.
+     */
+    public void setStripedBucketNames(List<String> stripedBucketNames) {
+        if (stripedBucketNames == null) {
+            this.stripedBucketNames = Collections.emptyList();
+            return;
+        }
+        for (String stripedBucketName : stripedBucketNames) {
+            if (stripedBucketName == null || stripedBucketName.isEmpty()) {
+                throw new IllegalArgumentException("stripedBucketNames must not contain null or empty names.");
+            }
+        }
+        this.stripedBucketNames = Collections.unmodifiableList(new ArrayList<>(stripedBucketNames));
+    }
+
+    public SNSExtendedClientConfiguration withStripedBucketNames(List<String> stripedBucketNames) {
+        setStripedBucketNames(stripedBucketNames);
+        return this;
+    }
+
+    public PublishMetricsReporter getPublishMetricsReporter() {
+        return publishMetricsReporter;
+    }
+
+    /**
+     * Sets the reporter receiving the {@link PublishMetrics} of every message published with
+     * {@code publish}, {@code publishWithDetails} or {@code publishAll}, such as a
+     * {@link MetricPublisherPublishMetricsReporter}. Messages sent with {@code publishBatch} or
+     * {@code publishToTopics} are not measured, and emit no Java Flight Recorder events either.
+     *
+     * @param publishMetricsReporter the reporter, {@link PublishMetricsReporter#NO_OP} by default.
+     */
+    public void setPublishMetricsReporter(PublishMetricsReporter publishMetricsReporter) {
+        if (publishMetricsReporter == null) {
+            throw new IllegalArgumentException("publishMetricsReporter must not be null.");
+        }
+        this.publishMetricsReporter = publishMetricsReporter;
+    }
+
+    public SNSExtendedClientConfiguration withPublishMetricsReporter(PublishMetricsReporter publishMetricsReporter) {
+        setPublishMetricsReporter(publishMetricsReporter);
+        return this;
+    }
 }
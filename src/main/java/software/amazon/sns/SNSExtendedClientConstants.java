@@ -5,4 +5,34 @@ public class SNSExtendedClientConstants {
     public static final int SNS_DEFAULT_MESSAGE_SIZE = 262144;
     public static final String MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE = "json";
     public static final String USER_AGENT_HEADER_NAME = "User-Agent";
+    public static final int SNS_MAX_BATCH_ENTRIES = 10;
+    public static final int SNS_MAX_BATCH_SIZE = 262144;
+    public static final int DEFAULT_FAILED_BATCH_ENTRY_RETRIES = 3;
+    public static final long DEFAULT_FAILED_BATCH_ENTRY_RETRY_BASE_DELAY_MILLIS = 100;
+    public static final long MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS = 5_000;
+    public static final long DEFAULT_PUBLISH_BUFFER_LINGER_MILLIS = 200;
+    // Upper bound of the size of an S3 pointer message, used to account for offloaded entries in a batch.
+    public static final int OFFLOADED_MESSAGE_SIZE_ESTIMATE = 1024;
+    // Multipart uploads are opt-in: by default every payload of known length is stored with one PutObject request.
+    public static final long DEFAULT_MULTIPART_UPLOAD_THRESHOLD = Long.MAX_VALUE;
+    // Largest compressed payload held in memory to learn its length. Longer ones are uploaded in parts.
+    public static final long MAX_BUFFERED_COMPRESSED_PAYLOAD_SIZE = 16L * 1024 * 1024;
+    public static final int DEFAULT_MULTIPART_UPLOAD_PART_SIZE = 8 * 1024 * 1024;
+    // Smallest part size accepted by S3 for every part but the last one.
+    public static final int MIN_MULTIPART_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+    public static final int MAX_MULTIPART_UPLOAD_PARTS = 10000;
+    public static final int DEFAULT_MULTIPART_UPLOAD_CONCURRENCY = 4;
+    public static final int DEFAULT_MULTIPART_UPLOAD_PART_RETRIES = 3;
+    // Names the codec of a compressed payload. Only set on messages whose payload is stored in S3 compressed.
+    public static final String PAYLOAD_ENCODING_ATTRIBUTE_NAME = "ExtendedPayloadEncoding";
+    // Marks a message whose body was compressed to be published inline rather than stored in S3.
+    public static final String INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME = "ExtendedPayloadInlineEncoding";
+    public static final int DEFAULT_INLINE_COMPRESSION_MAX_MESSAGE_SIZE = 4 * SNS_DEFAULT_MESSAGE_SIZE;
+    public static final int DEFAULT_PAYLOAD_DEDUPLICATION_CACHE_SIZE = 1024;
+    public static final int DEFAULT_PUBLISH_PIPELINE_CONCURRENCY = 16;
+    public static final int DEFAULT_BULK_PUBLISH_PARALLELISM = 16;
+    public static final long DEFAULT_ORPHANED_PAYLOAD_CLEANUP_DELAY_MILLIS = 60_000;
+    public static final int DEFAULT_ORPHANED_PAYLOAD_CLEANUP_QUEUE_SIZE = 10_000;
+    public static final int DEFAULT_ADAPTIVE_CONCURRENCY_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_ADAPTIVE_CONCURRENCY_MAX_LIMIT = 1000;
 }
@@ -0,0 +1,133 @@
+package software.amazon.sns;
+
+import java.security.MessageDigest;
+
+/**
+ * Counts the number of bytes of the UTF-8 encoding of a character sequence without encoding it.
+ * <p>
+ * The count gives the same result as {@code Util.getStringSizeInBytes}, including for malformed surrogates, which
+ * the encoder replaces with a single byte. Counting can stop as soon as a limit is crossed and be resumed later, so a
+ * message body is scanned at most once, whether it ends up inline or in S3.
+ * </p>
+ * <p>
+ * When given a message digest, the counter also feeds it the UTF-8 encoding as it counts, so that the body can be
+ * hashed without being encoded into a separate array.
+ * </p>
+ */
+final class Utf8SizeCounter {
+    private static final int DIGEST_BUFFER_SIZE = 4096;
+    // The character String.getBytes encodes in place of an unpaired surrogate.
+    private static final char REPLACEMENT_CHARACTER = '?';
+
+    private final CharSequence chars;
+    private final MessageDigest messageDigest;
+    private final byte[] digestBuffer;
+    private int digestBufferLength;
+    private int position;
+    private long size;
+
+    Utf8SizeCounter(CharSequence chars) {
+        this(chars, null);
+    }
+
+    /**
+     * @param messageDigest the digest to feed the UTF-8 encoding of {@code chars} to, or null.
+     */
+    Utf8SizeCounter(CharSequence chars, MessageDigest messageDigest) {
+        this.chars = chars;
+        this.messageDigest = messageDigest;
+        this.digestBuffer = messageDigest == null ? null : new byte[DIGEST_BUFFER_SIZE];
+    }
+
+    /**
+     * @return the number of bytes of the UTF-8 encoding of {@code chars}.
+     */
+    static long sizeOf(CharSequence chars) {
+        return new Utf8SizeCounter(chars).size();
+    }
+
+    /**
+     * Counts until more than {@code limit} bytes have been seen or the end of the sequence is reached.
+     *
+     * @return whether the encoded size is larger than {@code limit}.
+     */
+    boolean exceeds(long limit) {
+        advance(limit);
+        return size > limit;
+    }
+
+    /**
+     * @return the exact number of bytes of the UTF-8 encoding, counting whatever was not counted yet.
+     */
+    long size() {
+        advance(Long.MAX_VALUE);
+        return size;
+    }
+
+    /**
+     * @return the digest of the whole UTF-8 encoding, hashing whatever was not counted yet.
+     * @throws IllegalStateException if the counter was not given a message digest.
+     */
+    byte[] digest() {
+        if (messageDigest == null) {
+            throw new IllegalStateException("The counter does not hash the sequence.");
+        }
+        size();
+        messageDigest.update(digestBuffer, 0, digestBufferLength);
+        digestBufferLength = 0;
+        return messageDigest.digest();
+    }
+
+    private void advance(long limit) {
+        int length = chars.length();
+        while (position < length && size <= limit) {
+            int codePoint = chars.charAt(position++);
+            if (Character.isHighSurrogate((char) codePoint) && position < length
+                    && Character.isLowSurrogate(chars.charAt(position))) {
+                codePoint = Character.toCodePoint((char) codePoint, chars.charAt(position++));
+            } else if (Character.isSurrogate((char) codePoint)) {
+                // Unpaired surrogates are encoded as a single replacement byte.
+                codePoint = REPLACEMENT_CHARACTER;
+            }
+
+            if (codePoint < 0x80) {
+                size += 1;
+            } else if (codePoint < 0x800) {
+                size += 2;
+            } else if (codePoint < 0x10000) {
+                size += 3;
+            } else {
+                size += 4;
+            }
+            if (messageDigest != null) {
+                hash(codePoint);
+            }
+        }
+    }
+
+    private void hash(int codePoint) {
+        if (codePoint < 0x80) {
+            write(codePoint);
+        } else if (codePoint < 0x800) {
+            write(0xC0 | (codePoint >> 6));
+            write(0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            write(0xE0 | (codePoint >> 12));
+            write(0x80 | ((codePoint >> 6) & 0x3F));
+            write(0x80 | (codePoint & 0x3F));
+        } else {
+            write(0xF0 | (codePoint >> 18));
+            write(0x80 | ((codePoint >> 12) & 0x3F));
+            write(0x80 | ((codePoint >> 6) & 0x3F));
+            write(0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private void write(int b) {
+        if (digestBufferLength == digestBuffer.length) {
+            messageDigest.update(digestBuffer, 0, digestBufferLength);
+            digestBufferLength = 0;
+        }
+        digestBuffer[digestBufferLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,18 @@
+package software.amazon.sns;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor that runs the publishes of a bulk publish. On Java 21 and later every publish runs on its own
+ * virtual thread, so blocking on S3 and Amazon SNS does not hold a platform thread. The number of publishes in flight
+ * is still bounded by the bulk publish parallelism of the client.
+ */
+final class BulkPublishExecutors {
+    private BulkPublishExecutors() {
+    }
+
+    static ExecutorService create(int parallelism) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sns-extended-bulk-publish-", 0).factory());
+    }
+}
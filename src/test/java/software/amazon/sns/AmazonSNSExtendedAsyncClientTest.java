@@ -5,20 +5,60 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.NotFoundException;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.S3AsyncDao;
+import software.amazon.payloadoffloading.S3BackedPayloadStoreAsync;
 import software.amazon.payloadoffloading.Util;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -29,6 +69,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static software.amazon.sns.SNSExtendedClientConstants.MIN_MULTIPART_UPLOAD_PART_SIZE;
 import static software.amazon.sns.SNSExtendedClientConstants.MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE;
 import static software.amazon.sns.SNSExtendedClientConstants.SNS_DEFAULT_MESSAGE_SIZE;
 import static software.amazon.sns.SNSExtendedClientConstants.USER_AGENT_HEADER_NAME;
@@ -307,9 +348,950 @@ public class AmazonSNSExtendedAsyncClientTest {
         }
     }
 
+    @Test
+    public void testPublishFromInputStreamStoresPayloadInS3AndPublishesPointer() {
+        byte[] payload = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT).getBytes(StandardCharsets.UTF_8);
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+
+        PublishResponse response = ((AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig).publish(
+                PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), new ByteArrayInputStream(payload), payload.length).join();
+
+        Assert.assertEquals("m", response.messageId());
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        Assert.assertEquals(Long.valueOf(payload.length), putObjectRequestCaptor.getValue().contentLength());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(), pointer.getS3Key());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertEquals(payload.length, Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+    }
+
+    @Test
+    public void testPublishLargeMessageWithCompressionStoresGzippedPayload() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        SnsAsyncClient extendedSns = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPayloadCompressionCodec(new GzipPayloadCompressionCodec()));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build()).join();
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME, putObjectRequestCaptor.getValue().contentEncoding());
+        Assert.assertTrue(putObjectRequestCaptor.getValue().contentLength() < messageBody.length());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME,
+                attributes.get(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME).stringValue());
+        Assert.assertEquals(messageBody.length(), Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+    }
+
+    @Test
+    public void testPublishWithInlineCompressionPublishesCompressibleMessageWithoutS3() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        SnsAsyncClient extendedSns = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withInlineCompressionEnabled(true));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build()).join();
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        PublishRequest sentRequest = publishRequestCaptor.getValue();
+        Assert.assertEquals(InlinePayloadCompression.ENCODING, sentRequest.messageAttributes()
+                .get(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME).stringValue());
+        Assert.assertEquals(messageBody, InlinePayloadCompression.decompress(sentRequest.message(), null));
+    }
+
+    @Test
+    public void testPublishWithPayloadDeduplicationRetriesUploadThatConflictsWithAnotherOne() {
+        CompletableFuture<PutObjectResponse> conflictingUpload = new CompletableFuture<>();
+        conflictingUpload.completeExceptionally(S3Exception.builder().statusCode(409).message("ConditionalRequestConflict").build());
+        when(mockS3.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(conflictingUpload, CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        SnsAsyncClient extendedSns = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPayloadDeduplicationEnabled(true));
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN)
+                .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build()).join();
+
+        // The conflicting upload failed, so the retried upload stores the payload itself.
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(2)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(),
+                PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message()).getS3Key());
+    }
+
+    @Test
+    public void testPublishWithPayloadDeduplicationUploadsIdenticalPayloadOnce() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        SnsAsyncClient extendedSns = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPayloadDeduplicationEnabled(true));
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN)
+                .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+
+        extendedSns.publish(publishRequest).join();
+        extendedSns.publish(publishRequest).join();
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        Assert.assertTrue(putObjectRequestCaptor.getValue().key().startsWith(PayloadDeduplication.KEY_PREFIX));
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(2)).publish(publishRequestCaptor.capture());
+        for (PublishRequest sentRequest : publishRequestCaptor.getAllValues()) {
+            Assert.assertEquals(putObjectRequestCaptor.getValue().key(),
+                    PayloadS3Pointer.fromJson(sentRequest.message()).getS3Key());
+        }
+    }
+
+    @Test
+    public void testPublishToTopicsStoresPayloadOnceAndPublishesSamePointerToEveryTopic() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        List<String> topicArns = Arrays.asList("topic-1", "topic-2", "topic-3");
+
+        List<PublishOutcome> outcomes = ((AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig).publishToTopics(
+                PublishRequest.builder().message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build(),
+                topicArns).join();
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(3)).publish(publishRequestCaptor.capture());
+        Assert.assertEquals(1, publishRequestCaptor.getAllValues().stream().map(PublishRequest::message).distinct().count());
+        Assert.assertEquals(topicArns, outcomes.stream().map(PublishOutcome::getTopicArn).collect(Collectors.toList()));
+        Assert.assertTrue(outcomes.stream().allMatch(PublishOutcome::isSuccessful));
+    }
+
+    @Test
+    public void testPublishFromByteBufferThrowsWhenPayloadSupportIsDisabled() {
+        SNSExtendedAsyncClientConfiguration disabledConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportDisabled();
+        AmazonSNSExtendedAsyncClient client = new AmazonSNSExtendedAsyncClient(mockSnsBackend, disabledConfiguration);
+
+        try {
+            client.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), ByteBuffer.allocate(1));
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkClientException exception) {
+            Assert.assertTrue(exception.getMessage().contains("Payload support must be enabled"));
+        }
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void testPublishWithDefaultConfigUploadsLargePayloadInOneRequest() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+
+        AmazonSNSExtendedAsyncClient extendedSns = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME));
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+                ByteBuffer.allocate(4 * MIN_MULTIPART_UPLOAD_PART_SIZE)).join();
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(mockS3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testPublishAboveMultipartUploadThresholdUploadsPayloadInParts() {
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber()).build()));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("m").build()));
+        AmazonSNSExtendedAsyncClient extendedSns = createMultipartUploadClient(2);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+                ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1)).join();
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(mockS3, times(3)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeRequestCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(mockS3, times(1)).completeMultipartUpload(completeRequestCaptor.capture());
+        Assert.assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"), completeRequestCaptor.getValue().multipartUpload().parts()
+                .stream().map(CompletedPart::eTag).collect(Collectors.toList()));
+        verify(mockSnsBackend, times(1)).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishAbortsMultipartUploadWhenPartCannotBeUploaded() {
+        CompletableFuture<UploadPartResponse> failedUpload = new CompletableFuture<>();
+        failedUpload.completeExceptionally(AwsServiceException.builder().statusCode(403).message("Access Denied").build());
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenReturn(failedUpload);
+        when(mockS3.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+        AmazonSNSExtendedAsyncClient extendedSns = createMultipartUploadClient(2);
+
+        try {
+            extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+                    ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1)).join();
+            Assert.fail("An exception should have been thrown");
+
+        } catch (CompletionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof SdkException);
+            Assert.assertTrue(exception.getCause().getMessage().contains("Failed to store the message content in an S3 object."));
+        }
+
+        verify(mockS3, times(1)).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockSnsBackend, never()).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishBatchOffloadsOnlyLargeEntriesAndSendsSingleBatch() {
+        String largeMessageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        String smallMessageBody = generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(PublishBatchResponse.builder().build()));
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("large").message(largeMessageBody).build(),
+                PublishBatchRequestEntry.builder().id("small").message(smallMessageBody).build())
+            .build();
+        extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest).join();
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(1)).publishBatch(publishBatchRequestCaptor.capture());
+
+        List<PublishBatchRequestEntry> entries = publishBatchRequestCaptor.getValue().publishBatchRequestEntries();
+        Assert.assertEquals(2, entries.size());
+        Map<String, MessageAttributeValue> largeEntryAttributes = entries.get(0).messageAttributes();
+        Assert.assertEquals(largeMessageBody.length(), Integer.parseInt(largeEntryAttributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+        Assert.assertNotEquals(largeMessageBody, entries.get(0).message());
+        Assert.assertEquals(smallMessageBody, entries.get(1).message());
+        Assert.assertTrue(entries.get(1).messageAttributes().isEmpty());
+    }
+
+    @Test
+    public void testPublishBatchRetriesOnlyRetryableFailedEntries() {
+        BatchResultErrorEntry retryableError = BatchResultErrorEntry.builder().id("2").code("InternalError").senderFault(false).build();
+        BatchResultErrorEntry senderError = BatchResultErrorEntry.builder().id("3").code("InvalidParameter").senderFault(true).build();
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("1").messageId("m1").build())
+                .failed(retryableError, senderError)
+                .build()))
+            .thenReturn(CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("2").messageId("m2").build())
+                .build()));
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("1").message("one").build(),
+                PublishBatchRequestEntry.builder().id("2").message("two").build(),
+                PublishBatchRequestEntry.builder().id("3").message("three").build())
+            .build();
+        PublishBatchResponse response = extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest).join();
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(2)).publishBatch(publishBatchRequestCaptor.capture());
+        List<PublishBatchRequestEntry> retriedEntries = publishBatchRequestCaptor.getAllValues().get(1).publishBatchRequestEntries();
+        Assert.assertEquals(1, retriedEntries.size());
+        Assert.assertEquals("2", retriedEntries.get(0).id());
+
+        Assert.assertEquals(2, response.successful().size());
+        Assert.assertEquals(1, response.failed().size());
+        Assert.assertEquals("3", response.failed().get(0).id());
+    }
+
+    @Test
+    public void testPublishBatchWithSizeAwarePackingKeepsOrderOnFifoTopic() {
+        SNSExtendedAsyncClientConfiguration packingConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishBatchPacking(PublishBatchPacking.SIZE_AWARE);
+        AmazonSNSExtendedAsyncClient packingClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, packingConfiguration);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishBatchResponse.builder().build()));
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+                .topicArn(SNS_TOPIC_ARN + ".fifo")
+                .publishBatchRequestEntries(
+                        PublishBatchRequestEntry.builder().id("a").message(generateStringWithLength(150 * 1024)).messageGroupId("g").build(),
+                        PublishBatchRequestEntry.builder().id("b").message(generateStringWithLength(150 * 1024)).messageGroupId("g").build(),
+                        PublishBatchRequestEntry.builder().id("c").message(generateStringWithLength(100 * 1024)).messageGroupId("g").build(),
+                        PublishBatchRequestEntry.builder().id("d").message(generateStringWithLength(100 * 1024)).messageGroupId("g").build())
+                .build();
+        packingClient.publishBatch(publishBatchRequest).join();
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(3)).publishBatch(publishBatchRequestCaptor.capture());
+        List<String> sentIds = new ArrayList<>();
+        for (PublishBatchRequest sentRequest : publishBatchRequestCaptor.getAllValues()) {
+            for (PublishBatchRequestEntry entry : sentRequest.publishBatchRequestEntries()) {
+                sentIds.add(entry.id());
+            }
+        }
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), sentIds);
+    }
+
+    @Test
+    public void testBufferedPublishSendsFullBatchAndCompletesEachFuture() {
+        SNSExtendedAsyncClientConfiguration bufferedConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishBufferingEnabled(true)
+                .withPublishBufferLinger(Duration.ofMinutes(1));
+        AmazonSNSExtendedAsyncClient bufferedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, bufferedConfiguration);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            PublishBatchRequest request = invocation.getArgument(0);
+            PublishBatchResponse.Builder response = PublishBatchResponse.builder();
+            List<PublishBatchResultEntry> successful = new ArrayList<>();
+            for (PublishBatchRequestEntry entry : request.publishBatchRequestEntries()) {
+                successful.add(PublishBatchResultEntry.builder().id(entry.id()).messageId("message-" + entry.message()).build());
+            }
+            return CompletableFuture.completedFuture(response.successful(successful).build());
+        });
+
+        List<CompletableFuture<PublishResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < SNSExtendedClientConstants.SNS_MAX_BATCH_ENTRIES; i++) {
+            responses.add(bufferedClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("body" + i).build()));
+        }
+
+        verify(mockSnsBackend, never()).publish(any(PublishRequest.class));
+        verify(mockSnsBackend, times(1)).publishBatch(any(PublishBatchRequest.class));
+        for (int i = 0; i < responses.size(); i++) {
+            Assert.assertEquals("message-body" + i, responses.get(i).join().messageId());
+        }
+    }
+
+    @Test
+    public void testFlushWaitsForEveryBatchInFlight() {
+        SNSExtendedAsyncClientConfiguration bufferedConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishBufferingEnabled(true)
+                .withPublishBufferLinger(Duration.ofMinutes(1));
+        AmazonSNSExtendedAsyncClient bufferedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, bufferedConfiguration);
+        List<CompletableFuture<PublishBatchResponse>> pendingBatches = new ArrayList<>();
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            CompletableFuture<PublishBatchResponse> pendingBatch = new CompletableFuture<>();
+            pendingBatches.add(pendingBatch);
+            return pendingBatch;
+        });
+
+        for (int i = 0; i < 2 * SNSExtendedClientConstants.SNS_MAX_BATCH_ENTRIES; i++) {
+            bufferedClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("body" + i).build());
+        }
+        CompletableFuture<Void> flushed = bufferedClient.flush();
+
+        Assert.assertEquals(2, pendingBatches.size());
+        pendingBatches.get(1).complete(PublishBatchResponse.builder().build());
+        Assert.assertFalse(flushed.isDone());
+        pendingBatches.get(0).completeExceptionally(new RuntimeException("Failed to send the batch."));
+        Assert.assertTrue(flushed.isDone());
+        flushed.join();
+    }
+
+    @Test
+    public void testBufferedPublishIsSentWhenLingerTimeExpires() {
+        SNSExtendedAsyncClientConfiguration bufferedConfiguration = new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishBufferingEnabled(true)
+                .withPublishBufferLinger(Duration.ofMillis(10));
+        AmazonSNSExtendedAsyncClient bufferedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, bufferedConfiguration);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                PublishBatchResponse.builder().successful(PublishBatchResultEntry.builder().id("0").messageId("m0").build()).build()));
+
+        PublishResponse response = bufferedClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("body").build()).join();
+
+        Assert.assertEquals("m0", response.messageId());
+        verify(mockSnsBackend, times(1)).publishBatch(any(PublishBatchRequest.class));
+    }
+
+    @Test
+    public void testPublishFailsFastWhenInFlightPayloadBytesBudgetIsExhausted() {
+        AmazonSNSExtendedAsyncClient budgetedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withInFlightPayloadBytesLimit(MORE_THAN_SNS_SIZE_LIMIT)
+                .withInFlightBytesPolicy(InFlightBytesPolicy.FAIL_FAST));
+        CompletableFuture<Object> pendingUpload = new CompletableFuture<>();
+        when(mockS3.putObject(any(PutObjectRequest.class), isA(AsyncRequestBody.class))).thenReturn(
+                pendingUpload.thenApply(ignored -> null));
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN)
+                .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+
+        budgetedClient.publish(publishRequest);
+        CompletableFuture<PublishResponse> rejected = budgetedClient.publish(publishRequest);
+
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, budgetedClient.getInFlightPayloadBytes());
+        try {
+            rejected.join();
+            Assert.fail("Expected the publish to be rejected");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof SdkClientException);
+        }
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+
+        pendingUpload.complete(null);
+        Assert.assertEquals(0, budgetedClient.getInFlightPayloadBytes());
+    }
+
+    @Test
+    public void testPublishWaitsForInFlightPayloadBytesBudget() {
+        AmazonSNSExtendedAsyncClient budgetedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withInFlightPayloadBytesLimit(MORE_THAN_SNS_SIZE_LIMIT));
+        CompletableFuture<Object> pendingUpload = new CompletableFuture<>();
+        when(mockS3.putObject(any(PutObjectRequest.class), isA(AsyncRequestBody.class)))
+                .thenReturn(pendingUpload.thenApply(ignored -> null))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("message-id").build()));
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN)
+                .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+
+        CompletableFuture<PublishResponse> first = budgetedClient.publish(publishRequest);
+        CompletableFuture<PublishResponse> second = budgetedClient.publish(publishRequest);
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        Assert.assertFalse(second.isDone());
+
+        pendingUpload.complete(null);
+        Assert.assertEquals("message-id", first.join().messageId());
+        Assert.assertEquals("message-id", second.join().messageId());
+        verify(mockS3, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        Assert.assertEquals(0, budgetedClient.getInFlightPayloadBytes());
+    }
+
+    @Test
+    public void testPublishFailsWhenTooManyPayloadBytesWaitForTheBudget() {
+        AmazonSNSExtendedAsyncClient budgetedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withInFlightPayloadBytesLimit(MORE_THAN_SNS_SIZE_LIMIT)
+                .withWaitingPayloadBytesLimit(MORE_THAN_SNS_SIZE_LIMIT));
+        CompletableFuture<Object> pendingUpload = new CompletableFuture<>();
+        when(mockS3.putObject(any(PutObjectRequest.class), isA(AsyncRequestBody.class)))
+                .thenReturn(pendingUpload.thenApply(ignored -> null))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().messageId("message-id").build()));
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN)
+                .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+
+        CompletableFuture<PublishResponse> inFlight = budgetedClient.publish(publishRequest);
+        CompletableFuture<PublishResponse> waiting = budgetedClient.publish(publishRequest);
+        CompletableFuture<PublishResponse> rejected = budgetedClient.publish(publishRequest);
+
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, budgetedClient.getWaitingPayloadBytes());
+        try {
+            rejected.join();
+            Assert.fail("An exception should have been thrown");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof SdkClientException);
+        }
+
+        pendingUpload.complete(null);
+        Assert.assertEquals("message-id", inFlight.join().messageId());
+        Assert.assertEquals("message-id", waiting.join().messageId());
+        Assert.assertEquals(0, budgetedClient.getWaitingPayloadBytes());
+        verify(mockS3, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void testPublishAllEmitsResponsesInOrderWithBoundedConcurrency() {
+        AmazonSNSExtendedAsyncClient pipelineClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishPipelineConcurrency(2));
+        List<CompletableFuture<PublishResponse>> pendingPublishes = new ArrayList<>();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            CompletableFuture<PublishResponse> pendingPublish = new CompletableFuture<>();
+            pendingPublishes.add(pendingPublish);
+            return pendingPublish;
+        });
+        ListPublisher source = new ListPublisher(Arrays.asList("m0", "m1", "m2", "m3"));
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        pipelineClient.publishAll(source).subscribe(subscriber);
+
+        Assert.assertEquals(2, pendingPublishes.size());
+        pendingPublishes.get(1).complete(PublishResponse.builder().messageId("m1").build());
+        Assert.assertTrue(subscriber.messageIds.isEmpty());
+        Assert.assertEquals(2, pendingPublishes.size());
+
+        pendingPublishes.get(0).complete(PublishResponse.builder().messageId("m0").build());
+        Assert.assertEquals(Arrays.asList("m0", "m1"), subscriber.messageIds);
+        Assert.assertEquals(4, pendingPublishes.size());
+
+        pendingPublishes.get(2).complete(PublishResponse.builder().messageId("m2").build());
+        pendingPublishes.get(3).complete(PublishResponse.builder().messageId("m3").build());
+        Assert.assertEquals(Arrays.asList("m0", "m1", "m2", "m3"), subscriber.messageIds);
+        Assert.assertTrue(subscriber.completed);
+        Assert.assertNull(subscriber.failure);
+    }
+
+    @Test
+    public void testPublishAllTakesNoMoreMessagesThanTheSubscriberRequested() {
+        AmazonSNSExtendedAsyncClient pipelineClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withPublishPipelineConcurrency(2));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                PublishResponse.builder().messageId(invocation.<PublishRequest>getArgument(0).message()).build()));
+        ListPublisher source = new ListPublisher(Arrays.asList("m0", "m1", "m2", "m3", "m4"));
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+        pipelineClient.publishAll(source).subscribe(subscriber);
+
+        Assert.assertEquals(Collections.singletonList("m0"), subscriber.messageIds);
+        Assert.assertEquals(3, source.next);
+
+        subscriber.subscription.request(2);
+        Assert.assertEquals(Arrays.asList("m0", "m1", "m2"), subscriber.messageIds);
+        Assert.assertEquals(5, source.next);
+        Assert.assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(Arrays.asList("m0", "m1", "m2", "m3", "m4"), subscriber.messageIds);
+        Assert.assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testPublishAllFailsAndCancelsTheSourceWhenAPublishFails() {
+        SdkException failure = SdkClientException.create("publish failed");
+        CompletableFuture<PublishResponse> failedPublish = new CompletableFuture<>();
+        failedPublish.completeExceptionally(failure);
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(failedPublish);
+        ListPublisher source = new ListPublisher(Arrays.asList("m0", "m1", "m2"));
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        ((AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig).publishAll(source).subscribe(subscriber);
+
+        Assert.assertSame(failure, subscriber.failure);
+        Assert.assertTrue(source.cancelled);
+        Assert.assertTrue(subscriber.messageIds.isEmpty());
+        Assert.assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testFifoGroupOrderingPublishesMessagesOfAGroupInOrder() {
+        AmazonSNSExtendedAsyncClient orderingClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withFifoGroupOrderingEnabled(true));
+        CompletableFuture<Object> pendingUpload = new CompletableFuture<>();
+        when(mockS3.putObject(any(PutObjectRequest.class), isA(AsyncRequestBody.class))).thenReturn(
+                pendingUpload.thenApply(ignored -> null));
+        List<String> sentMessages = new ArrayList<>();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            PublishRequest request = invocation.getArgument(0);
+            boolean offloaded = request.messageAttributes().containsKey(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME);
+            sentMessages.add(request.messageGroupId() + (offloaded ? ":offloaded" : ":inline"));
+            return CompletableFuture.completedFuture(PublishResponse.builder().messageId("message-id").build());
+        });
+        String fifoTopicArn = "test-topic-arn.fifo";
+
+        CompletableFuture<PublishResponse> large = orderingClient.publish(PublishRequest.builder().topicArn(fifoTopicArn)
+                .messageGroupId("a").message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+        CompletableFuture<PublishResponse> small = orderingClient.publish(PublishRequest.builder().topicArn(fifoTopicArn)
+                .messageGroupId("a").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+        CompletableFuture<PublishResponse> otherGroup = orderingClient.publish(PublishRequest.builder().topicArn(fifoTopicArn)
+                .messageGroupId("b").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+
+        Assert.assertTrue(otherGroup.isDone());
+        Assert.assertFalse(small.isDone());
+        Assert.assertEquals(Collections.singletonList("b:inline"), sentMessages);
+
+        pendingUpload.complete(null);
+        large.join();
+        small.join();
+        Assert.assertEquals(Arrays.asList("b:inline", "a:offloaded", "a:inline"), sentMessages);
+    }
+
+    @Test
+    public void testFifoGroupOrderingSendsTheRestOfTheGroupAfterAFailedPublish() {
+        FifoGroupScheduler scheduler = new FifoGroupScheduler(FifoGroupFailurePolicy.CONTINUE);
+        CompletableFuture<String> failedSend = new CompletableFuture<>();
+
+        CompletableFuture<String> first = scheduler.sendInOrder("topic.fifo", "a", () -> failedSend);
+        CompletableFuture<String> second = scheduler.sendInOrder("topic.fifo", "a", () -> CompletableFuture.completedFuture("sent"));
+
+        Assert.assertFalse(second.isDone());
+        failedSend.completeExceptionally(SdkClientException.create("publish failed"));
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertEquals("sent", second.join());
+        Assert.assertEquals(0, scheduler.getPendingGroupCount());
+    }
+
+    @Test
+    public void testFifoGroupOrderingFailsTheRestOfTheGroupAfterAFailedPublishByDefault() {
+        AmazonSNSExtendedAsyncClient orderingClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withFifoGroupOrderingEnabled(true));
+        CompletableFuture<PublishResponse> failedPublish = new CompletableFuture<>();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(failedPublish);
+        String fifoTopicArn = "test-topic-arn.fifo";
+
+        CompletableFuture<PublishResponse> first = orderingClient.publish(PublishRequest.builder().topicArn(fifoTopicArn)
+                .messageGroupId("a").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+        CompletableFuture<PublishResponse> second = orderingClient.publish(PublishRequest.builder().topicArn(fifoTopicArn)
+                .messageGroupId("a").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+
+        NotFoundException failure = (NotFoundException) NotFoundException.builder().statusCode(404).message("no topic").build();
+        failedPublish.completeExceptionally(failure);
+
+        Assert.assertTrue(first.isCompletedExceptionally());
+        try {
+            second.join();
+            Assert.fail("The second message of the group should not be published.");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof SdkClientException);
+            Assert.assertSame(failure, e.getCause().getCause());
+        }
+        verify(mockSnsBackend, times(1)).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testOffloadedMessageToFifoTopicGetsDeduplicationIdFromPayload() throws Exception {
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSnsWithDefaultConfig.publish(PublishRequest.builder().topicArn("test-topic-arn.fifo").messageGroupId("g")
+                .message(messageBody).build());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(messageBody.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(BinaryUtils.toHex(hash), publishRequestCaptor.getValue().messageDeduplicationId());
+    }
+
+    @Test
+    public void testFailedPublishDeletesOrphanedPayloadOnClose() {
+        AmazonSNSExtendedAsyncClient cleanupClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withOrphanedPayloadCleanupEnabled(true)
+                        .withOrphanedPayloadCleanupDelay(Duration.ofHours(1)));
+        CompletableFuture<PublishResponse> failedPublish = new CompletableFuture<>();
+        failedPublish.completeExceptionally(NotFoundException.builder().statusCode(404).message("no topic").build());
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(failedPublish);
+        when(mockS3.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+
+        PublishRequest publishRequest = PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(CompletionException.class, () -> cleanupClient.publish(publishRequest).join());
+        Assert.assertEquals(1, cleanupClient.getOrphanedPayloadCleanupMetrics().getPendingPayloads());
+
+        cleanupClient.close();
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        ArgumentCaptor<DeleteObjectsRequest> deleteObjectsRequestCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(mockS3).deleteObjects(deleteObjectsRequestCaptor.capture());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(),
+                deleteObjectsRequestCaptor.getValue().delete().objects().get(0).key());
+        Assert.assertEquals(1, cleanupClient.getOrphanedPayloadCleanupMetrics().getDeletedPayloads());
+    }
+
+    @Test
+    public void testTimedOutPublishLeavesPayloadInPlace() {
+        AmazonSNSExtendedAsyncClient cleanupClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withOrphanedPayloadCleanupEnabled(true)
+                        .withOrphanedPayloadCleanupDelay(Duration.ZERO));
+        CompletableFuture<PublishResponse> timedOutPublish = new CompletableFuture<>();
+        timedOutPublish.completeExceptionally(ApiCallTimeoutException.create(1000));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(timedOutPublish);
+
+        PublishRequest publishRequest = PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(CompletionException.class, () -> cleanupClient.publish(publishRequest).join());
+        cleanupClient.close();
+
+        // The message may have been published before the call timed out, so subscribers may still read the payload.
+        verify(mockS3, never()).deleteObjects(any(DeleteObjectsRequest.class));
+        Assert.assertEquals(0, cleanupClient.getOrphanedPayloadCleanupMetrics().getQueuedPayloads());
+    }
+
+    @Test
+    public void testClientWithCustomPayloadStoreCleansUpOrphanedPayloadsAndSendsNoEncodingAttribute() {
+        AmazonSNSExtendedAsyncClient customStoreClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withPayloadCompressionCodec(new GzipPayloadCompressionCodec())
+                        .withOrphanedPayloadCleanupEnabled(true)
+                        .withOrphanedPayloadCleanupDelay(Duration.ofHours(1)),
+                new S3BackedPayloadStoreAsync(new S3AsyncDao(mockS3), S3_BUCKET_NAME));
+        CompletableFuture<PublishResponse> failedPublish = new CompletableFuture<>();
+        failedPublish.completeExceptionally(NotFoundException.builder().statusCode(404).message("no topic").build());
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(failedPublish);
+        when(mockS3.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+
+        PublishRequest publishRequest = PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(CompletionException.class, () -> customStoreClient.publish(publishRequest).join());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend).publish(publishRequestCaptor.capture());
+        Assert.assertFalse(publishRequestCaptor.getValue().messageAttributes().containsKey(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME));
+        Assert.assertEquals(1, customStoreClient.getOrphanedPayloadCleanupMetrics().getPendingPayloads());
+
+        customStoreClient.close();
+
+        verify(mockS3).deleteObjects(any(DeleteObjectsRequest.class));
+        Assert.assertEquals(1, customStoreClient.getOrphanedPayloadCleanupMetrics().getDeletedPayloads());
+    }
+
+    @Test
+    public void testPayloadsAreStripedOverBucketsUnderHashedPrefixes() {
+        List<String> stripedBucketNames = Arrays.asList("bucket-a", "bucket-b");
+        AmazonSNSExtendedAsyncClient stripingClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withPayloadKeyNamingStrategy(new HashedPrefixPayloadKeyNamingStrategy())
+                        .withStripedBucketNames(stripedBucketNames));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(PublishResponse.builder().build()));
+
+        for (int i = 0; i < 20; i++) {
+            stripingClient.publish(PublishRequest.builder()
+                    .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build()).join();
+        }
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(20)).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(20)).publish(publishRequestCaptor.capture());
+        for (int i = 0; i < 20; i++) {
+            PutObjectRequest putObjectRequest = putObjectRequestCaptor.getAllValues().get(i);
+            Assert.assertTrue(putObjectRequest.key().matches("[0-9a-f]{2}/[0-9a-f-]{36}"));
+            Assert.assertTrue(stripedBucketNames.contains(putObjectRequest.bucket()));
+
+            PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishRequestCaptor.getAllValues().get(i).message());
+            Assert.assertEquals(putObjectRequest.bucket(), pointer.getS3BucketName());
+            Assert.assertEquals(putObjectRequest.key(), pointer.getS3Key());
+        }
+    }
+
+    @Test
+    public void testThrottledPublishesHalveThePublishConcurrencyLimit() {
+        AmazonSNSExtendedAsyncClient limitedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withAdaptiveConcurrencyLimitEnabled(true)
+                        .withAdaptiveConcurrencyInitialLimit(16));
+        Assert.assertNull(((AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig).getAdaptiveConcurrencyLimits());
+        CompletableFuture<PublishResponse> throttledPublish = new CompletableFuture<>();
+        throttledPublish.completeExceptionally(AwsServiceException.builder().statusCode(429).message("Rate exceeded").build());
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(throttledPublish);
+
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("message").build();
+        Assert.assertThrows(CompletionException.class, () -> limitedClient.publish(publishRequest).join());
+        Assert.assertThrows(CompletionException.class, () -> limitedClient.publish(publishRequest).join());
+
+        AdaptiveConcurrencyLimits limits = limitedClient.getAdaptiveConcurrencyLimits();
+        Assert.assertEquals(4, limits.getPublishLimit());
+        Assert.assertEquals(0, limits.getPublishesInFlight());
+        Assert.assertEquals(16, limits.getPayloadUploadLimit());
+    }
+
+    @Test
+    public void testPublishesOverTheConcurrencyLimitWait() {
+        AmazonSNSExtendedAsyncClient limitedClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withAdaptiveConcurrencyLimitEnabled(true)
+                        .withAdaptiveConcurrencyInitialLimit(1)
+                        .withAdaptiveConcurrencyMaxLimit(1));
+        CompletableFuture<PublishResponse> firstResponse = new CompletableFuture<>();
+        when(mockSnsBackend.publish(any(PublishRequest.class)))
+                .thenReturn(firstResponse)
+                .thenReturn(CompletableFuture.completedFuture(PublishResponse.builder().messageId("second").build()));
+
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("message").build();
+        CompletableFuture<PublishResponse> first = limitedClient.publish(publishRequest);
+        CompletableFuture<PublishResponse> second = limitedClient.publish(publishRequest);
+
+        verify(mockSnsBackend, times(1)).publish(any(PublishRequest.class));
+        Assert.assertEquals(1, limitedClient.getAdaptiveConcurrencyLimits().getPublishesInFlight());
+        firstResponse.complete(PublishResponse.builder().messageId("first").build());
+
+        Assert.assertEquals("first", first.join().messageId());
+        Assert.assertEquals("second", second.join().messageId());
+        verify(mockSnsBackend, times(2)).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishMetricsAreReportedWhenTheOffloadedPublishCompletes() {
+        List<PublishMetrics> reportedMetrics = Collections.synchronizedList(new ArrayList<>());
+        AmazonSNSExtendedAsyncClient metricsClient = new AmazonSNSExtendedAsyncClient(mockSnsBackend,
+                new SNSExtendedAsyncClientConfiguration()
+                        .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                        .withPublishMetricsReporter(reportedMetrics::add));
+        CompletableFuture<PublishResponse> publishResponse = new CompletableFuture<>();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(publishResponse);
+
+        CompletableFuture<PublishResponse> publish = metricsClient.publish(PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+        Assert.assertTrue(reportedMetrics.isEmpty());
+        publishResponse.complete(PublishResponse.builder().build());
+        publish.join();
+
+        Assert.assertEquals(1, reportedMetrics.size());
+        PublishMetrics publishMetrics = reportedMetrics.get(0);
+        Assert.assertEquals(SNS_TOPIC_ARN, publishMetrics.getTopicArn());
+        Assert.assertTrue(publishMetrics.isOffloaded());
+        Assert.assertTrue(publishMetrics.isSuccessful());
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, publishMetrics.getPayloadSize());
+        Assert.assertTrue(publishMetrics.getSnsPublishNanos() > 0);
+    }
+
+    @Test
+    public void testPublishWithDetailsCompletesWithThePointerOrTheFailure() {
+        AmazonSNSExtendedAsyncClient extendedSns = (AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig;
+        PublishResponse snsResponse = PublishResponse.builder().messageId("message-id").build();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(CompletableFuture.completedFuture(snsResponse));
+
+        ExtendedPublishResponse offloaded = extendedSns.publishWithDetails(PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build()).join();
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3).putObject(putObjectRequestCaptor.capture(), any(AsyncRequestBody.class));
+        Assert.assertSame(snsResponse, offloaded.getResponse());
+        Assert.assertTrue(offloaded.isOffloaded());
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, offloaded.getPayloadSize());
+        Assert.assertEquals(S3_BUCKET_NAME, offloaded.getPayloadS3Pointer().getS3BucketName());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(), offloaded.getPayloadS3Pointer().getS3Key());
+
+        CompletableFuture<PublishResponse> failedPublish = new CompletableFuture<>();
+        failedPublish.completeExceptionally(NotFoundException.builder().statusCode(404).message("no topic").build());
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(failedPublish);
+
+        CompletableFuture<ExtendedPublishResponse> failed = extendedSns.publishWithDetails(
+                PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("small").build());
+
+        CompletionException completionException = Assert.assertThrows(CompletionException.class, failed::join);
+        Assert.assertTrue(completionException.getCause() instanceof NotFoundException);
+    }
+
+    @Test
+    public void testPublishWithDetailsSendsRequestsWithoutMessageAsTheyAre() {
+        AmazonSNSExtendedAsyncClient extendedSns = (AmazonSNSExtendedAsyncClient) extendedSnsWithDefaultConfig;
+        PublishResponse snsResponse = PublishResponse.builder().messageId("message-id").build();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(CompletableFuture.completedFuture(snsResponse));
+        PublishRequest withoutMessage = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build();
+        PublishRequest withEmptyMessage = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("").build();
+
+        for (PublishRequest publishRequest : Arrays.asList(withoutMessage, withEmptyMessage)) {
+            ExtendedPublishResponse response = extendedSns.publishWithDetails(publishRequest).join();
+
+            verify(mockSnsBackend).publish(publishRequest);
+            Assert.assertSame(snsResponse, response.getResponse());
+            Assert.assertFalse(response.isOffloaded());
+            Assert.assertNull(response.getPayloadS3Pointer());
+        }
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    private AmazonSNSExtendedAsyncClient createMultipartUploadClient(int concurrency) {
+        when(mockS3.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-id").build()));
+        when(mockS3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        return new AmazonSNSExtendedAsyncClient(mockSnsBackend, new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+                .withMultipartUploadThreshold(MIN_MULTIPART_UPLOAD_PART_SIZE)
+                .withMultipartUploadPartSize(MIN_MULTIPART_UPLOAD_PART_SIZE)
+                .withMultipartUploadConcurrency(concurrency));
+    }
+
     private String generateStringWithLength(int messageLength) {
         char[] charArray = new char[messageLength];
         Arrays.fill(charArray, 'x');
         return new String(charArray);
     }
+
+    /**
+     * Emits a publish request for each message body, as requested.
+     */
+    private static class ListPublisher implements Publisher<PublishRequest> {
+        private final List<String> messages;
+        private int next;
+        private long requested;
+        private boolean cancelled;
+        private boolean completed;
+
+        private ListPublisher(List<String> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super PublishRequest> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    while (requested > 0 && next < messages.size() && !cancelled) {
+                        requested--;
+                        subscriber.onNext(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messages.get(next++)).build());
+                    }
+                    if (next == messages.size() && !cancelled && !completed) {
+                        completed = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<PublishResponse> {
+        private final long initialRequest;
+        private final List<String> messageIds = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable failure;
+        private boolean completed;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(PublishResponse publishResponse) {
+            messageIds.add(publishResponse.messageId());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
 }
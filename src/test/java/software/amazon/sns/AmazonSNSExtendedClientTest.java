@@ -1,25 +1,79 @@
 package software.amazon.sns;
 
 import com.amazon.sqs.javamessaging.SQSExtendedClientConstants;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.NotFoundException;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.utils.BinaryUtils;
+import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.S3BackedPayloadStore;
+import software.amazon.payloadoffloading.S3Dao;
 import software.amazon.payloadoffloading.Util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -29,6 +83,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static software.amazon.sns.SNSExtendedClientConstants.MIN_MULTIPART_UPLOAD_PART_SIZE;
 import static software.amazon.sns.SNSExtendedClientConstants.MULTIPLE_PROTOCOL_MESSAGE_STRUCTURE;
 import static software.amazon.sns.SNSExtendedClientConstants.SNS_DEFAULT_MESSAGE_SIZE;
 import static software.amazon.sns.SNSExtendedClientConstants.USER_AGENT_HEADER_NAME;
@@ -340,6 +395,1137 @@ public class AmazonSNSExtendedClientTest {
         }
     }
 
+    @Test
+    public void testPublishDoesNotUploadWhenReservedAttributeWouldExceedThreshold() {
+        String messageBody = generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT * 10);
+        String attributeKey = generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT);
+        // Leaves room for the message attributes themselves, but not for the reserved payload size attribute.
+        String attributeValue = generateStringWithLength(SNS_DEFAULT_MESSAGE_SIZE - LESS_THAN_SNS_SIZE_LIMIT * 2);
+
+        HashMap<String, MessageAttributeValue> attrs = new HashMap<>();
+        attrs.put(attributeKey, MessageAttributeValue.builder().stringValue(attributeValue).build());
+        PublishRequest publishRequest = PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .message(messageBody)
+            .messageAttributes(attrs)
+            .build();
+
+        try {
+            extendedSnsWithDefaultConfig.publish(publishRequest);
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkClientException exception) {
+            Assert.assertTrue(exception.getMessage().contains("Total size of Message attributes is "));
+        }
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockSnsBackend, never()).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishLargeMessageCopiesPayloadOnlyForTheUpload() {
+        // Before Java 9, strings take two bytes per char and String.getBytes allocates three bytes per char before
+        // trimming, so encoding the body alone allocates several times its length.
+        Assume.assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled());
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        String messageBody = generateStringWithLength(4 * 1024 * 1024);
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build();
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME));
+        // Warm up, so class loading and lazy initialization are not counted.
+        extendedSns.publish(publishRequest);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        extendedSns.publish(publishRequest);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Encoding the payload for the S3 upload is the only copy of the message body that should be made.
+        Assert.assertTrue("Publishing allocated " + allocated + " bytes", allocated < messageBody.length() * 3L / 2);
+    }
+
+    @Test
+    public void testPublishFromInputStreamStoresPayloadInS3AndPublishesPointer() {
+        byte[] payload = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT).getBytes(StandardCharsets.UTF_8);
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build();
+
+        ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publish(publishRequest,
+            new ByteArrayInputStream(payload), payload.length);
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        Assert.assertEquals(S3_BUCKET_NAME, putObjectRequestCaptor.getValue().bucket());
+        Assert.assertEquals(Long.valueOf(payload.length), putObjectRequestCaptor.getValue().contentLength());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message());
+        Assert.assertEquals(S3_BUCKET_NAME, pointer.getS3BucketName());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(), pointer.getS3Key());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertEquals(payload.length, Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+    }
+
+    @Test
+    public void testPublishFromByteBufferUploadsRemainingBytesWithoutMovingTheBuffer() throws IOException {
+        ByteBuffer payload = ByteBuffer.wrap("headerbody".getBytes(StandardCharsets.UTF_8));
+        payload.position("header".length());
+
+        ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publish(
+            PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), payload);
+
+        ArgumentCaptor<RequestBody> requestBodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), requestBodyCaptor.capture());
+        Assert.assertEquals("body", IoUtils.toUtf8String(requestBodyCaptor.getValue().contentStreamProvider().newStream()));
+        Assert.assertEquals("header".length(), payload.position());
+    }
+
+    @Test
+    public void testPublishFromPathUploadsFileContent() throws IOException {
+        Path payload = Files.createTempFile("sns-extended-client", ".txt");
+        try {
+            Files.write(payload, "file content".getBytes(StandardCharsets.UTF_8));
+
+            ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publish(
+                PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), payload);
+
+            ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+            verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+            Assert.assertEquals(Long.valueOf("file content".length()), putObjectRequestCaptor.getValue().contentLength());
+            verify(mockSnsBackend, times(1)).publish(any(PublishRequest.class));
+        } finally {
+            Files.delete(payload);
+        }
+    }
+
+    @Test
+    public void testPublishFromInputStreamRejectsRequestWithMessage() {
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("message").build();
+
+        try {
+            ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publish(publishRequest,
+                new ByteArrayInputStream(new byte[1]), 1);
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkClientException exception) {
+            Assert.assertTrue(exception.getMessage().contains("must not be set when the message body is given separately"));
+        }
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockSnsBackend, never()).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishAboveMultipartUploadThresholdUploadsPayloadInParts() {
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation ->
+            UploadPartResponse.builder().eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber()).build());
+        AmazonSNSExtendedClient extendedSns = createMultipartUploadClient(2, 0);
+        ByteBuffer payload = ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), payload);
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CreateMultipartUploadRequest> createRequestCaptor = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(mockS3, times(1)).createMultipartUpload(createRequestCaptor.capture());
+        ArgumentCaptor<UploadPartRequest> uploadPartRequestCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(mockS3, times(3)).uploadPart(uploadPartRequestCaptor.capture(), any(RequestBody.class));
+        Map<Integer, Long> partSizes = uploadPartRequestCaptor.getAllValues().stream()
+            .collect(Collectors.toMap(UploadPartRequest::partNumber, UploadPartRequest::contentLength));
+        Assert.assertEquals(Long.valueOf(MIN_MULTIPART_UPLOAD_PART_SIZE), partSizes.get(1));
+        Assert.assertEquals(Long.valueOf(MIN_MULTIPART_UPLOAD_PART_SIZE), partSizes.get(2));
+        Assert.assertEquals(Long.valueOf(1), partSizes.get(3));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeRequestCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(mockS3, times(1)).completeMultipartUpload(completeRequestCaptor.capture());
+        Assert.assertEquals("upload-id", completeRequestCaptor.getValue().uploadId());
+        Assert.assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"), completeRequestCaptor.getValue().multipartUpload().parts()
+            .stream().map(CompletedPart::eTag).collect(Collectors.toList()));
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message());
+        Assert.assertEquals(createRequestCaptor.getValue().key(), pointer.getS3Key());
+    }
+
+    @Test
+    public void testPublishRetriesOnlyTheFailedPartOfMultipartUpload() {
+        AtomicInteger secondPartAttempts = new AtomicInteger();
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            int partNumber = invocation.<UploadPartRequest>getArgument(0).partNumber();
+            if (partNumber == 2 && secondPartAttempts.incrementAndGet() == 1) {
+                throw SdkClientException.create("Connection reset");
+            }
+            return UploadPartResponse.builder().eTag("etag-" + partNumber).build();
+        });
+        AmazonSNSExtendedClient extendedSns = createMultipartUploadClient(1, 1);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+            ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1));
+
+        verify(mockS3, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        Assert.assertEquals(2, secondPartAttempts.get());
+        verify(mockS3, times(1)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockS3, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockSnsBackend, times(1)).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishAbortsMultipartUploadWhenPartCannotBeUploaded() {
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+            .thenThrow(AwsServiceException.builder().statusCode(403).message("Access Denied").build());
+        AmazonSNSExtendedClient extendedSns = createMultipartUploadClient(2, 3);
+
+        try {
+            extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+                ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1));
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkException exception) {
+            Assert.assertTrue(exception.getMessage().contains("Failed to store the message content in an S3 object."));
+        }
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abortRequestCaptor = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(mockS3, times(1)).abortMultipartUpload(abortRequestCaptor.capture());
+        Assert.assertEquals("upload-id", abortRequestCaptor.getValue().uploadId());
+        verify(mockS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(mockSnsBackend, never()).publish(any(PublishRequest.class));
+    }
+
+    @Test
+    public void testPublishWrapsNonSdkMultipartUploadFailureInSdkException() {
+        IllegalStateException partFailure = new IllegalStateException("Part upload failed");
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenThrow(partFailure);
+        AmazonSNSExtendedClient extendedSns = createMultipartUploadClient(2, 0);
+
+        try {
+            extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+                ByteBuffer.allocate(2 * MIN_MULTIPART_UPLOAD_PART_SIZE + 1));
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkException exception) {
+            Assert.assertTrue(exception.getMessage().contains("Failed to store the message content in an S3 object."));
+            Assert.assertSame(partFailure, exception.getCause());
+        }
+        verify(mockS3, times(1)).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testPublishWithDefaultConfigUploadsLargePayloadInOneRequest() {
+        AmazonSNSExtendedClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME));
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(),
+            ByteBuffer.allocate(4 * MIN_MULTIPART_UPLOAD_PART_SIZE));
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockS3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testPublishLargeMessageWithCompressionStoresGzippedPayload() throws IOException {
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadCompressionCodec(new GzipPayloadCompressionCodec()));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> requestBodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), requestBodyCaptor.capture());
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME, putObjectRequestCaptor.getValue().contentEncoding());
+        Assert.assertTrue(putObjectRequestCaptor.getValue().contentLength() < messageBody.length());
+        String storedPayload = IoUtils.toUtf8String(PayloadCompression.decompress(
+            requestBodyCaptor.getValue().contentStreamProvider().newStream(),
+            putObjectRequestCaptor.getValue().contentEncoding()));
+        Assert.assertEquals(messageBody, storedPayload);
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME,
+            attributes.get(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME).stringValue());
+        Assert.assertEquals(messageBody.length(), Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+    }
+
+    @Test
+    public void testGetOriginalPayloadDecompressesCompressedPayload() throws IOException {
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        ByteArrayOutputStream compressedPayload = new ByteArrayOutputStream();
+        try (OutputStream compressingStream = new GzipPayloadCompressionCodec().compress(compressedPayload)) {
+            compressingStream.write(messageBody.getBytes(StandardCharsets.UTF_8));
+        }
+        when(mockS3.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+            GetObjectResponse.builder().contentEncoding(GzipPayloadCompressionCodec.NAME).build(),
+            AbortableInputStream.create(new ByteArrayInputStream(compressedPayload.toByteArray()))));
+        ExtendedPayloadStore payloadStore = ExtendedPayloadStore.create(new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME), null);
+
+        String payload = payloadStore.getOriginalPayload(new PayloadS3Pointer(S3_BUCKET_NAME, "key").toJson());
+
+        Assert.assertEquals(messageBody, payload);
+    }
+
+    @Test
+    public void testPublishWithCompressionUploadsIncompressiblePayloadInParts() {
+        when(mockS3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation ->
+            UploadPartResponse.builder().eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber()).build());
+        when(mockS3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+        AmazonSNSExtendedClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withMultipartUploadThreshold(MIN_MULTIPART_UPLOAD_PART_SIZE)
+            .withMultipartUploadPartSize(MIN_MULTIPART_UPLOAD_PART_SIZE)
+            .withPayloadCompressionCodec(new GzipPayloadCompressionCodec()));
+        byte[] payload = new byte[MIN_MULTIPART_UPLOAD_PART_SIZE + 1024];
+        new Random(42).nextBytes(payload);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build(), ByteBuffer.wrap(payload));
+
+        // Random bytes do not shrink, so the compressed payload outgrows the buffer and is streamed in parts.
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CreateMultipartUploadRequest> createRequestCaptor = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(mockS3, times(1)).createMultipartUpload(createRequestCaptor.capture());
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME, createRequestCaptor.getValue().contentEncoding());
+        verify(mockS3, times(2)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(mockS3, times(1)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertEquals(payload.length, Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+        Assert.assertEquals(GzipPayloadCompressionCodec.NAME,
+            attributes.get(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME).stringValue());
+    }
+
+    @Test
+    public void testPublishWithInlineCompressionPublishesCompressibleMessageWithoutS3() {
+        byte[] dictionary = "{\"field\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withInlineCompressionEnabled(true)
+            .withInlineCompressionDictionary(dictionary));
+        String messageBody = generateStringWithLength(2 * SNS_DEFAULT_MESSAGE_SIZE);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        PublishRequest sentRequest = publishRequestCaptor.getValue();
+        Assert.assertTrue(sentRequest.message().length() < SNS_DEFAULT_MESSAGE_SIZE);
+        Assert.assertEquals(InlinePayloadCompression.ENCODING, sentRequest.messageAttributes()
+            .get(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME).stringValue());
+        Assert.assertFalse(sentRequest.messageAttributes().containsKey(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME));
+        Assert.assertEquals(messageBody, InlinePayloadCompression.decompress(sentRequest.message(), dictionary));
+    }
+
+    @Test
+    public void testPublishWithInlineCompressionOffloadsMessageThatDoesNotFitCompressed() {
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withInlineCompressionEnabled(true));
+        byte[] randomBytes = new byte[MORE_THAN_SNS_SIZE_LIMIT];
+        new Random(42).nextBytes(randomBytes);
+        String messageBody = Base64.getEncoder().encodeToString(randomBytes);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Map<String, MessageAttributeValue> attributes = publishRequestCaptor.getValue().messageAttributes();
+        Assert.assertFalse(attributes.containsKey(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME));
+        Assert.assertEquals(messageBody.length(), Integer.parseInt(attributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+    }
+
+    @Test
+    public void testPublishWithInlineCompressionOffloadsMessageAboveTheMaxMessageSizeWithoutCompressingIt() {
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withInlineCompressionEnabled(true)
+            .withInlineCompressionMaxMessageSize(2 * SNS_DEFAULT_MESSAGE_SIZE));
+        String messageBody = generateStringWithLength(2 * SNS_DEFAULT_MESSAGE_SIZE + 1);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Assert.assertFalse(publishRequestCaptor.getValue().messageAttributes()
+            .containsKey(SNSExtendedClientConstants.INLINE_PAYLOAD_ENCODING_ATTRIBUTE_NAME));
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> new SNSExtendedClientConfiguration().setInlineCompressionMaxMessageSize(0));
+    }
+
+    @Test
+    public void testInlineCompressionRoundTripsMultiByteCharactersAcrossChunks() {
+        StringBuilder messageBody = new StringBuilder();
+        while (messageBody.length() < 3 * 8192) {
+            // Two, three and four byte characters, so that some straddle the chunks the message is encoded in.
+            messageBody.append("\u00e9\u20ac\ud83d\ude00x");
+        }
+        // A lone surrogate is encoded as '?', like String.getBytes does.
+        messageBody.append('\ud83d');
+
+        String compressed = InlinePayloadCompression.compress(messageBody.toString(), null, SNS_DEFAULT_MESSAGE_SIZE);
+
+        Assert.assertEquals(messageBody.substring(0, messageBody.length() - 1) + "?",
+            InlinePayloadCompression.decompress(compressed, null));
+    }
+
+    @Test
+    public void testPublishWithPayloadDeduplicationUploadsIdenticalPayloadOnce() {
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadDeduplicationEnabled(true));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        PublishRequest publishRequest = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build();
+
+        extendedSns.publish(publishRequest);
+        extendedSns.publish(publishRequest);
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(1)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        PutObjectRequest putObjectRequest = putObjectRequestCaptor.getValue();
+        Assert.assertEquals(PayloadDeduplication.KEY_PREFIX + BinaryUtils.toHex(sha256(messageBody)),
+            putObjectRequest.key());
+        Assert.assertEquals(Collections.singletonList("*"),
+            putObjectRequest.overrideConfiguration().get().headers().get("If-None-Match"));
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(2)).publish(publishRequestCaptor.capture());
+        for (PublishRequest sentRequest : publishRequestCaptor.getAllValues()) {
+            Assert.assertEquals(putObjectRequest.key(), PayloadS3Pointer.fromJson(sentRequest.message()).getS3Key());
+        }
+    }
+
+    @Test
+    public void testPublishWithPayloadDeduplicationPublishesPointerWhenPayloadIsAlreadyStored() {
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenThrow(
+            S3Exception.builder().statusCode(412).message("At least one of the pre-conditions you specified did not hold").build());
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadDeduplicationEnabled(true));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Assert.assertEquals(PayloadDeduplication.KEY_PREFIX + BinaryUtils.toHex(sha256(messageBody)),
+            PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message()).getS3Key());
+    }
+
+    @Test
+    public void testPublishWithPayloadDeduplicationRetriesUploadThatConflictsWithAnotherOne() {
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenThrow(S3Exception.builder().statusCode(409).message("ConditionalRequestConflict").build())
+            .thenThrow(S3Exception.builder().statusCode(412).message("At least one of the pre-conditions you specified did not hold").build());
+        SnsClient extendedSns = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadDeduplicationEnabled(true));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        extendedSns.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        // The conflicting upload stored the payload, which the retried upload finds under the key.
+        verify(mockS3, times(2)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(1)).publish(publishRequestCaptor.capture());
+        Assert.assertEquals(PayloadDeduplication.KEY_PREFIX + BinaryUtils.toHex(sha256(messageBody)),
+            PayloadS3Pointer.fromJson(publishRequestCaptor.getValue().message()).getS3Key());
+    }
+
+    @Test
+    public void testPublishToTopicsStoresPayloadOnceAndPublishesSamePointerToEveryTopic() {
+        List<String> topicArns = Arrays.asList("topic-1", "topic-2", "topic-3");
+        Map<String, Map<String, MessageAttributeValue>> topicMessageAttributes = new HashMap<>();
+        topicMessageAttributes.put("topic-2", Collections.singletonMap("region",
+            MessageAttributeValue.builder().dataType("String").stringValue("eu").build()));
+        PublishRequest publishRequest = PublishRequest.builder()
+            .message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+
+        List<PublishOutcome> outcomes = ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publishToTopics(
+            publishRequest, topicArns, topicMessageAttributes);
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(3)).publish(publishRequestCaptor.capture());
+        Map<String, PublishRequest> sentRequests = publishRequestCaptor.getAllValues().stream()
+            .collect(Collectors.toMap(PublishRequest::topicArn, request -> request));
+        Assert.assertEquals(new HashSet<>(topicArns), sentRequests.keySet());
+        Assert.assertEquals(1, sentRequests.values().stream().map(PublishRequest::message).distinct().count());
+        Assert.assertEquals("eu", sentRequests.get("topic-2").messageAttributes().get("region").stringValue());
+        Assert.assertFalse(sentRequests.get("topic-1").messageAttributes().containsKey("region"));
+
+        Assert.assertEquals(topicArns, outcomes.stream().map(PublishOutcome::getTopicArn).collect(Collectors.toList()));
+        Assert.assertTrue(outcomes.stream().allMatch(PublishOutcome::isSuccessful));
+    }
+
+    @Test
+    public void testPublishToTopicsReportsFailureOfOneTopicAndPublishesToTheOthers() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            if ("topic-2".equals(invocation.<PublishRequest>getArgument(0).topicArn())) {
+                throw NotFoundException.builder().message("Topic does not exist").build();
+            }
+            return PublishResponse.builder().messageId("m").build();
+        });
+
+        List<PublishOutcome> outcomes = ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publishToTopics(
+            PublishRequest.builder().message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build(),
+            Arrays.asList("topic-1", "topic-2", "topic-3"));
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        Assert.assertEquals("m", outcomes.get(0).getResponse().messageId());
+        Assert.assertFalse(outcomes.get(1).isSuccessful());
+        Assert.assertTrue(outcomes.get(1).getFailure() instanceof NotFoundException);
+        Assert.assertEquals("m", outcomes.get(2).getResponse().messageId());
+    }
+
+    @Test
+    public void testPublishAllReturnsOutcomesInOrderAndReportsFailures() {
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            PublishRequest request = invocation.getArgument(0);
+            if ("topic-2".equals(request.topicArn())) {
+                throw NotFoundException.builder().message("Topic does not exist").build();
+            }
+            return PublishResponse.builder().messageId("message-" + request.topicArn()).build();
+        });
+        List<PublishRequest> publishRequests = Arrays.asList(
+            PublishRequest.builder().topicArn("topic-1").message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build(),
+            PublishRequest.builder().topicArn("topic-2").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build(),
+            PublishRequest.builder().topicArn("topic-3").message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+
+        List<PublishOutcome> outcomes = ((AmazonSNSExtendedClient) extendedSnsWithDefaultConfig).publishAll(
+            publishRequests.stream());
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        Assert.assertEquals(Arrays.asList("topic-1", "topic-2", "topic-3"),
+            outcomes.stream().map(PublishOutcome::getTopicArn).collect(Collectors.toList()));
+        Assert.assertEquals("message-topic-1", outcomes.get(0).getResponse().messageId());
+        Assert.assertTrue(outcomes.get(1).getFailure() instanceof NotFoundException);
+        Assert.assertEquals("message-topic-3", outcomes.get(2).getResponse().messageId());
+    }
+
+    @Test
+    public void testPublishAllPublishesNoMoreMessagesAtOnceThanTheParallelism() {
+        AmazonSNSExtendedClient bulkClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withBulkPublishParallelism(3));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return PublishResponse.builder().messageId(invocation.<PublishRequest>getArgument(0).message()).build();
+        });
+        List<PublishRequest> publishRequests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            publishRequests.add(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("message-" + i).build());
+        }
+
+        List<PublishOutcome> outcomes = bulkClient.publishAll(publishRequests);
+
+        Assert.assertEquals(publishRequests.stream().map(PublishRequest::message).collect(Collectors.toList()),
+            outcomes.stream().map(outcome -> outcome.getResponse().messageId()).collect(Collectors.toList()));
+        Assert.assertTrue(maxInFlight.get() <= 3);
+        bulkClient.close();
+    }
+
+    @Test
+    public void testPublishAllPublishesTheMessagesOfAFifoGroupInOrder() {
+        AmazonSNSExtendedClient bulkClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withBulkPublishParallelism(8));
+        List<String> sentMessages = Collections.synchronizedList(new ArrayList<>());
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenAnswer(invocation -> {
+            PublishRequest request = invocation.getArgument(0);
+            // Earlier messages take longer, so that later ones of the same group would overtake them if they could.
+            Thread.sleep(12 - Integer.parseInt(request.message().substring(2)));
+            sentMessages.add(request.message());
+            return PublishResponse.builder().messageId(request.message()).build();
+        });
+        List<PublishRequest> publishRequests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            for (String group : Arrays.asList("a", "b")) {
+                publishRequests.add(PublishRequest.builder().topicArn("test-topic-arn.fifo").messageGroupId(group)
+                    .messageDeduplicationId(group + i).message(group + "-" + i).build());
+            }
+        }
+
+        List<PublishOutcome> outcomes = bulkClient.publishAll(publishRequests);
+
+        Assert.assertTrue(outcomes.stream().allMatch(PublishOutcome::isSuccessful));
+        for (String group : Arrays.asList("a", "b")) {
+            Assert.assertEquals(publishRequests.stream().map(PublishRequest::message)
+                    .filter(message -> message.startsWith(group)).collect(Collectors.toList()),
+                sentMessages.stream().filter(message -> message.startsWith(group)).collect(Collectors.toList()));
+        }
+        bulkClient.close();
+    }
+
+    @Test
+    public void testOffloadedMessageToFifoTopicGetsDeduplicationIdFromPayload() {
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        String fifoTopicArn = "test-topic-arn.fifo";
+
+        extendedSnsWithDefaultConfig.publish(PublishRequest.builder().topicArn(fifoTopicArn).messageGroupId("g")
+            .message(messageBody).build());
+        extendedSnsWithDefaultConfig.publish(PublishRequest.builder().topicArn(fifoTopicArn).messageGroupId("g")
+            .messageDeduplicationId("caller-id").message(messageBody).build());
+        extendedSnsWithDefaultConfig.publish(PublishRequest.builder().topicArn(fifoTopicArn).messageGroupId("g")
+            .message(generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT)).build());
+        extendedSnsWithDefaultConfig.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(4)).publish(publishRequestCaptor.capture());
+        List<PublishRequest> sentRequests = publishRequestCaptor.getAllValues();
+        Assert.assertEquals(BinaryUtils.toHex(sha256(messageBody)), sentRequests.get(0).messageDeduplicationId());
+        Assert.assertEquals("caller-id", sentRequests.get(1).messageDeduplicationId());
+        Assert.assertNull(sentRequests.get(2).messageDeduplicationId());
+        Assert.assertNull(sentRequests.get(3).messageDeduplicationId());
+    }
+
+    @Test
+    public void testOffloadedBatchEntryToFifoTopicGetsDeduplicationIdFromPayload() {
+        String largeMessageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder().build());
+
+        extendedSnsWithDefaultConfig.publishBatch(PublishBatchRequest.builder()
+            .topicArn("test-topic-arn.fifo")
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("large").messageGroupId("g").message(largeMessageBody).build(),
+                PublishBatchRequestEntry.builder().id("small").messageGroupId("g").message("small").build())
+            .build());
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(1)).publishBatch(publishBatchRequestCaptor.capture());
+        List<PublishBatchRequestEntry> entries = publishBatchRequestCaptor.getValue().publishBatchRequestEntries();
+        Assert.assertEquals(BinaryUtils.toHex(sha256(largeMessageBody)), entries.get(0).messageDeduplicationId());
+        Assert.assertNull(entries.get(1).messageDeduplicationId());
+    }
+
+    @Test
+    public void testPublishBatchOffloadsOnlyLargeEntriesAndSendsSingleBatch() {
+        String largeMessageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        String smallMessageBody = generateStringWithLength(LESS_THAN_SNS_SIZE_LIMIT);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder().build());
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("large").message(largeMessageBody).build(),
+                PublishBatchRequestEntry.builder().id("small").message(smallMessageBody).build())
+            .build();
+        extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest);
+
+        verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(1)).publishBatch(publishBatchRequestCaptor.capture());
+
+        List<PublishBatchRequestEntry> entries = publishBatchRequestCaptor.getValue().publishBatchRequestEntries();
+        Assert.assertEquals(2, entries.size());
+        Map<String, MessageAttributeValue> largeEntryAttributes = entries.get(0).messageAttributes();
+        Assert.assertEquals(largeMessageBody.length(), Integer.parseInt(largeEntryAttributes.get(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME).stringValue()));
+        Assert.assertNotEquals(largeMessageBody, entries.get(0).message());
+        Assert.assertEquals(smallMessageBody, entries.get(1).message());
+        Assert.assertTrue(entries.get(1).messageAttributes().isEmpty());
+    }
+
+    @Test
+    public void testPublishBatchRetriesOnlyRetryableFailedEntries() {
+        BatchResultErrorEntry retryableError = BatchResultErrorEntry.builder().id("2").code("InternalError").senderFault(false).build();
+        BatchResultErrorEntry senderError = BatchResultErrorEntry.builder().id("3").code("InvalidParameter").senderFault(true).build();
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class)))
+            .thenReturn(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("1").messageId("m1").build())
+                .failed(retryableError, senderError)
+                .build())
+            .thenReturn(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("2").messageId("m2").build())
+                .build());
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("1").message("one").build(),
+                PublishBatchRequestEntry.builder().id("2").message("two").build(),
+                PublishBatchRequestEntry.builder().id("3").message("three").build())
+            .build();
+        PublishBatchResponse response = extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest);
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(2)).publishBatch(publishBatchRequestCaptor.capture());
+        List<PublishBatchRequestEntry> retriedEntries = publishBatchRequestCaptor.getAllValues().get(1).publishBatchRequestEntries();
+        Assert.assertEquals(1, retriedEntries.size());
+        Assert.assertEquals("2", retriedEntries.get(0).id());
+
+        Assert.assertEquals(2, response.successful().size());
+        Assert.assertEquals(1, response.failed().size());
+        Assert.assertEquals("3", response.failed().get(0).id());
+    }
+
+    @Test
+    public void testPublishBatchToFifoTopicDoesNotRetryEntriesOvertakenInTheirGroup() {
+        BatchResultErrorEntry.Builder throttled = BatchResultErrorEntry.builder().code("Throttling").senderFault(false);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class)))
+            .thenReturn(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("a2").messageId("m-a2").build())
+                .failed(throttled.id("a1").build(), throttled.id("b1").build(), throttled.id("b2").build())
+                .build())
+            .thenReturn(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("b1").messageId("m-b1").build(),
+                    PublishBatchResultEntry.builder().id("b2").messageId("m-b2").build())
+                .build());
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn("test-topic-arn.fifo")
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("a1").messageGroupId("a").message("a1").build(),
+                PublishBatchRequestEntry.builder().id("b1").messageGroupId("b").message("b1").build(),
+                PublishBatchRequestEntry.builder().id("a2").messageGroupId("a").message("a2").build(),
+                PublishBatchRequestEntry.builder().id("b2").messageGroupId("b").message("b2").build())
+            .build();
+        PublishBatchResponse response = extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest);
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(2)).publishBatch(publishBatchRequestCaptor.capture());
+        // a1 would now come after a2, so only the whole of group b is retried, in order.
+        Assert.assertEquals(Arrays.asList("b1", "b2"), publishBatchRequestCaptor.getAllValues().get(1)
+            .publishBatchRequestEntries().stream().map(PublishBatchRequestEntry::id).collect(Collectors.toList()));
+        Assert.assertEquals(3, response.successful().size());
+        Assert.assertEquals("a1", response.failed().get(0).id());
+    }
+
+    @Test
+    public void testFailedBatchEntryRetryDelayGrowsUpToTheMaximum() {
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis(Duration.ofMillis(100), 0) <= 100);
+            Assert.assertTrue(AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis(Duration.ofMillis(100), 2) <= 400);
+            Assert.assertTrue(AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis(Duration.ofMillis(100), 40)
+                <= SNSExtendedClientConstants.MAX_FAILED_BATCH_ENTRY_RETRY_DELAY_MILLIS);
+        }
+        Assert.assertEquals(0, AmazonSNSExtendedClientUtil.getFailedBatchEntryRetryDelayMillis(Duration.ZERO, 3));
+    }
+
+    @Test
+    public void testPublishBatchDoesNotUploadWhenAnEntryIsRejected() {
+        String largeMessageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+        HashMap<String, MessageAttributeValue> attrs = new HashMap<>();
+        attrs.put(SQSExtendedClientConstants.RESERVED_ATTRIBUTE_NAME, MessageAttributeValue.builder().dataType("Number").stringValue("1").build());
+
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("valid").message(largeMessageBody).build(),
+                PublishBatchRequestEntry.builder().id("invalid").message(largeMessageBody).messageAttributes(attrs).build())
+            .build();
+
+        try {
+            extendedSnsWithDefaultConfig.publishBatch(publishBatchRequest);
+            Assert.fail("An exception should have been thrown");
+
+        } catch (SdkClientException exception) {
+            Assert.assertTrue(exception.getMessage().contains("is reserved for use by SNS extended client."));
+        }
+
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(mockSnsBackend, never()).publishBatch(any(PublishBatchRequest.class));
+    }
+
+    @Test
+    public void testPublishBatchWithOrderedPackingSplitsEntriesIntoBatchesOfTen() {
+        SNSExtendedClientConfiguration packingConfiguration = new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPublishBatchPacking(PublishBatchPacking.ORDERED);
+        SnsClient packingClient = new AmazonSNSExtendedClient(mockSnsBackend, packingConfiguration);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            PublishBatchRequest request = invocation.getArgument(0);
+            PublishBatchResponse.Builder response = PublishBatchResponse.builder();
+            List<PublishBatchResultEntry> successful = new ArrayList<>();
+            for (PublishBatchRequestEntry entry : request.publishBatchRequestEntries()) {
+                successful.add(PublishBatchResultEntry.builder().id(entry.id()).messageId("m" + entry.id()).build());
+            }
+            return response.successful(successful).build();
+        });
+
+        List<PublishBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            entries.add(PublishBatchRequestEntry.builder().id(Integer.toString(i)).message("message-body" + i).build());
+        }
+        PublishBatchResponse response = packingClient.publishBatch(
+            PublishBatchRequest.builder().topicArn(SNS_TOPIC_ARN).publishBatchRequestEntries(entries).build());
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(3)).publishBatch(publishBatchRequestCaptor.capture());
+        List<PublishBatchRequest> sentRequests = publishBatchRequestCaptor.getAllValues();
+        Assert.assertEquals(10, sentRequests.get(0).publishBatchRequestEntries().size());
+        Assert.assertEquals(10, sentRequests.get(1).publishBatchRequestEntries().size());
+        Assert.assertEquals(5, sentRequests.get(2).publishBatchRequestEntries().size());
+        Assert.assertEquals("20", sentRequests.get(2).publishBatchRequestEntries().get(0).id());
+        Assert.assertEquals(25, response.successful().size());
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    public void testPublishBatchWithSizeAwarePackingUsesFewerBatchesThanOrderedPacking() {
+        SNSExtendedClientConfiguration packingConfiguration = new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPublishBatchPacking(PublishBatchPacking.SIZE_AWARE);
+        SnsClient packingClient = new AmazonSNSExtendedClient(mockSnsBackend, packingConfiguration);
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder().build());
+
+        // In their original order these entries need three batches, paired by size they fit in two.
+        PublishBatchRequest publishBatchRequest = PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("a").message(generateStringWithLength(150 * 1024)).build(),
+                PublishBatchRequestEntry.builder().id("b").message(generateStringWithLength(150 * 1024)).build(),
+                PublishBatchRequestEntry.builder().id("c").message(generateStringWithLength(100 * 1024)).build(),
+                PublishBatchRequestEntry.builder().id("d").message(generateStringWithLength(100 * 1024)).build())
+            .build();
+        packingClient.publishBatch(publishBatchRequest);
+
+        ArgumentCaptor<PublishBatchRequest> publishBatchRequestCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(mockSnsBackend, times(2)).publishBatch(publishBatchRequestCaptor.capture());
+        for (PublishBatchRequest sentRequest : publishBatchRequestCaptor.getAllValues()) {
+            Assert.assertEquals(2, sentRequest.publishBatchRequestEntries().size());
+        }
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    public void testFailedPublishDeletesOrphanedPayloadOnClose() {
+        AmazonSNSExtendedClient cleanupClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withOrphanedPayloadCleanupEnabled(true)
+            .withOrphanedPayloadCleanupDelay(Duration.ofHours(1)));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenThrow(NotFoundException.builder().statusCode(404).message("no topic").build());
+        when(mockS3.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        PublishRequest publishRequest = PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(NotFoundException.class, () -> cleanupClient.publish(publishRequest));
+        Assert.assertEquals(1, cleanupClient.getOrphanedPayloadCleanupMetrics().getPendingPayloads());
+        verify(mockS3, never()).deleteObjects(any(DeleteObjectsRequest.class));
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        cleanupClient.close();
+
+        ArgumentCaptor<DeleteObjectsRequest> deleteObjectsRequestCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(mockS3).deleteObjects(deleteObjectsRequestCaptor.capture());
+        Assert.assertEquals(S3_BUCKET_NAME, deleteObjectsRequestCaptor.getValue().bucket());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(),
+            deleteObjectsRequestCaptor.getValue().delete().objects().get(0).key());
+        OrphanedPayloadCleanupMetrics metrics = cleanupClient.getOrphanedPayloadCleanupMetrics();
+        Assert.assertEquals(1, metrics.getDeletedPayloads());
+        Assert.assertEquals(0, metrics.getPendingPayloads());
+    }
+
+    @Test
+    public void testTimedOutPublishLeavesPayloadInPlace() {
+        AmazonSNSExtendedClient cleanupClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withOrphanedPayloadCleanupEnabled(true)
+            .withOrphanedPayloadCleanupDelay(Duration.ZERO));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenThrow(ApiCallTimeoutException.create(1000));
+
+        PublishRequest publishRequest = PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(ApiCallTimeoutException.class, () -> cleanupClient.publish(publishRequest));
+        cleanupClient.close();
+
+        // The message may have been published before the call timed out, so subscribers may still read the payload.
+        verify(mockS3, never()).deleteObjects(any(DeleteObjectsRequest.class));
+        Assert.assertEquals(0, cleanupClient.getOrphanedPayloadCleanupMetrics().getQueuedPayloads());
+    }
+
+    @Test
+    public void testClientWithCustomPayloadStoreCleansUpOrphanedPayloadsAndSendsNoEncodingAttribute() {
+        AmazonSNSExtendedClient customStoreClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadCompressionCodec(new GzipPayloadCompressionCodec())
+            .withOrphanedPayloadCleanupEnabled(true)
+            .withOrphanedPayloadCleanupDelay(Duration.ofHours(1)),
+            new S3BackedPayloadStore(new S3Dao(mockS3), S3_BUCKET_NAME));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenThrow(NotFoundException.builder().statusCode(404).message("no topic").build());
+        when(mockS3.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        PublishRequest publishRequest = PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build();
+        Assert.assertThrows(NotFoundException.class, () -> customStoreClient.publish(publishRequest));
+
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend).publish(publishRequestCaptor.capture());
+        Assert.assertFalse(publishRequestCaptor.getValue().messageAttributes().containsKey(SNSExtendedClientConstants.PAYLOAD_ENCODING_ATTRIBUTE_NAME));
+        Assert.assertEquals(1, customStoreClient.getOrphanedPayloadCleanupMetrics().getPendingPayloads());
+
+        customStoreClient.close();
+
+        verify(mockS3).deleteObjects(any(DeleteObjectsRequest.class));
+        Assert.assertEquals(1, customStoreClient.getOrphanedPayloadCleanupMetrics().getDeletedPayloads());
+    }
+
+    @Test
+    public void testFailedBatchEntriesAreCleanedUpExceptExplicitKeys() {
+        AmazonSNSExtendedClient cleanupClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withOrphanedPayloadCleanupEnabled(true)
+            .withOrphanedPayloadCleanupDelay(Duration.ZERO)
+            .withFailedBatchEntryRetries(0));
+        when(mockSnsBackend.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder()
+            .successful(PublishBatchResultEntry.builder().id("published").build())
+            .failed(BatchResultErrorEntry.builder().id("failed").code("InternalError").senderFault(false).build(),
+                BatchResultErrorEntry.builder().id("failed-with-key").code("InternalError").senderFault(false).build())
+            .build());
+        when(mockS3.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        Map<String, MessageAttributeValue> s3KeyAttribute = Collections.singletonMap("S3Key",
+            MessageAttributeValue.builder().dataType("String").stringValue("caller-chosen-key").build());
+        cleanupClient.publishBatch(PublishBatchRequest.builder()
+            .topicArn(SNS_TOPIC_ARN)
+            .publishBatchRequestEntries(
+                PublishBatchRequestEntry.builder().id("published").message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build(),
+                PublishBatchRequestEntry.builder().id("failed").message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build(),
+                PublishBatchRequestEntry.builder().id("failed-with-key").message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT))
+                    .messageAttributes(s3KeyAttribute).build())
+            .build());
+        cleanupClient.close();
+
+        ArgumentCaptor<DeleteObjectsRequest> deleteObjectsRequestCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(mockS3).deleteObjects(deleteObjectsRequestCaptor.capture());
+        List<ObjectIdentifier> deletedObjects = deleteObjectsRequestCaptor.getValue().delete().objects();
+        Assert.assertEquals(1, deletedObjects.size());
+        Assert.assertNotEquals("caller-chosen-key", deletedObjects.get(0).key());
+        Assert.assertEquals(1, cleanupClient.getOrphanedPayloadCleanupMetrics().getQueuedPayloads());
+    }
+
+    @Test
+    public void testPayloadsAreStripedOverBucketsUnderHashedPrefixes() {
+        List<String> stripedBucketNames = Arrays.asList("bucket-a", "bucket-b", "bucket-c");
+        AmazonSNSExtendedClient stripingClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadKeyNamingStrategy(new HashedPrefixPayloadKeyNamingStrategy(3))
+            .withStripedBucketNames(stripedBucketNames));
+
+        for (int i = 0; i < 30; i++) {
+            stripingClient.publish(PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+        }
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(30)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        ArgumentCaptor<PublishRequest> publishRequestCaptor = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(mockSnsBackend, times(30)).publish(publishRequestCaptor.capture());
+
+        HashSet<String> usedBuckets = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            PutObjectRequest putObjectRequest = putObjectRequestCaptor.getAllValues().get(i);
+            Assert.assertTrue(putObjectRequest.key(), putObjectRequest.key().matches("[0-9a-f]{3}/[0-9a-f-]{36}"));
+            Assert.assertTrue(stripedBucketNames.contains(putObjectRequest.bucket()));
+            usedBuckets.add(putObjectRequest.bucket());
+
+            PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishRequestCaptor.getAllValues().get(i).message());
+            Assert.assertEquals(putObjectRequest.bucket(), pointer.getS3BucketName());
+            Assert.assertEquals(putObjectRequest.key(), pointer.getS3Key());
+        }
+        Assert.assertEquals(3, usedBuckets.size());
+    }
+
+    @Test
+    public void testDeduplicatedPayloadKeepsItsBucketAndPrefixedKey() {
+        AmazonSNSExtendedClient stripingClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadDeduplicationEnabled(true)
+            .withPayloadKeyNamingStrategy(new HashedPrefixPayloadKeyNamingStrategy())
+            .withStripedBucketNames(Arrays.asList("bucket-a", "bucket-b")));
+        String messageBody = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        AmazonSNSExtendedClient otherClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPayloadDeduplicationEnabled(true)
+            .withPayloadKeyNamingStrategy(new HashedPrefixPayloadKeyNamingStrategy())
+            .withStripedBucketNames(Arrays.asList("bucket-a", "bucket-b")));
+        stripingClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+        otherClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message(messageBody).build());
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3, times(2)).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        PutObjectRequest first = putObjectRequestCaptor.getAllValues().get(0);
+        PutObjectRequest second = putObjectRequestCaptor.getAllValues().get(1);
+        Assert.assertEquals(first.bucket(), second.bucket());
+        Assert.assertEquals(first.key(), second.key());
+        Assert.assertTrue(first.key().matches("[0-9a-f]{2}/" + PayloadDeduplication.KEY_PREFIX + "[0-9a-f]{64}"));
+        Assert.assertTrue(PayloadDeduplication.isDeduplicatedKey(first.key()));
+    }
+
+    @Test
+    public void testPublishMetricsAreReportedForInlineAndOffloadedMessages() {
+        List<PublishMetrics> reportedMetrics = Collections.synchronizedList(new ArrayList<>());
+        AmazonSNSExtendedClient metricsClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPublishMetricsReporter(reportedMetrics::add));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(PublishResponse.builder().build());
+
+        metricsClient.publish(PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("small").build());
+        metricsClient.publish(PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+
+        Assert.assertEquals(2, reportedMetrics.size());
+        PublishMetrics inline = reportedMetrics.get(0);
+        Assert.assertEquals(SNS_TOPIC_ARN, inline.getTopicArn());
+        Assert.assertFalse(inline.isOffloaded());
+        Assert.assertEquals(5, inline.getPayloadSize());
+        Assert.assertEquals(0, inline.getS3UploadNanos());
+        Assert.assertTrue(inline.isSuccessful());
+
+        PublishMetrics offloaded = reportedMetrics.get(1);
+        Assert.assertTrue(offloaded.isOffloaded());
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, offloaded.getPayloadSize());
+        Assert.assertTrue(offloaded.getTotalNanos() >= offloaded.getSizeCheckNanos() + offloaded.getS3UploadNanos()
+            + offloaded.getSnsPublishNanos());
+    }
+
+    @Test
+    public void testFailedPublishIsReportedToTheSdkMetricPublisher() {
+        MetricPublisher metricPublisher = mock(MetricPublisher.class);
+        AmazonSNSExtendedClient metricsClient = new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withPublishMetricsReporter(new MetricPublisherPublishMetricsReporter(metricPublisher)));
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenThrow(NotFoundException.builder().statusCode(404).message("no topic").build());
+
+        Assert.assertThrows(NotFoundException.class, () -> metricsClient.publish(PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build()));
+
+        ArgumentCaptor<MetricCollection> metricCollectionCaptor = ArgumentCaptor.forClass(MetricCollection.class);
+        verify(metricPublisher).publish(metricCollectionCaptor.capture());
+        MetricCollection metricCollection = metricCollectionCaptor.getValue();
+        Assert.assertEquals(MetricPublisherPublishMetricsReporter.COLLECTION_NAME, metricCollection.name());
+        Assert.assertEquals(Collections.singletonList(SNS_TOPIC_ARN),
+            metricCollection.metricValues(MetricPublisherPublishMetricsReporter.TOPIC_ARN));
+        Assert.assertEquals(Collections.singletonList(true),
+            metricCollection.metricValues(MetricPublisherPublishMetricsReporter.OFFLOADED));
+        Assert.assertEquals(Collections.singletonList((long) MORE_THAN_SNS_SIZE_LIMIT),
+            metricCollection.metricValues(MetricPublisherPublishMetricsReporter.PAYLOAD_SIZE));
+        Assert.assertEquals(Collections.singletonList(false),
+            metricCollection.metricValues(MetricPublisherPublishMetricsReporter.SUCCESSFUL));
+        Assert.assertEquals(1, metricCollection.metricValues(MetricPublisherPublishMetricsReporter.S3_UPLOAD_DURATION).size());
+    }
+
+    @Test
+    public void testPublishWithDetailsReturnsThePointerOfAnOffloadedPayload() {
+        AmazonSNSExtendedClient extendedSns = (AmazonSNSExtendedClient) extendedSnsWithDefaultConfig;
+        PublishResponse snsResponse = PublishResponse.builder().messageId("message-id").build();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(snsResponse);
+
+        ExtendedPublishResponse offloaded = extendedSns.publishWithDetails(PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        Assert.assertSame(snsResponse, offloaded.getResponse());
+        Assert.assertTrue(offloaded.isOffloaded());
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT, offloaded.getPayloadSize());
+        Assert.assertEquals(S3_BUCKET_NAME, offloaded.getPayloadS3Pointer().getS3BucketName());
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(), offloaded.getPayloadS3Pointer().getS3Key());
+        Assert.assertTrue(offloaded.getPublishMetrics().getS3UploadNanos() > 0);
+        Assert.assertTrue(offloaded.getPublishMetrics().getSnsPublishNanos() > 0);
+
+        ExtendedPublishResponse inline = extendedSns.publishWithDetails(PublishRequest.builder()
+            .topicArn(SNS_TOPIC_ARN).message("small").build());
+
+        Assert.assertFalse(inline.isOffloaded());
+        Assert.assertNull(inline.getPayloadS3Pointer());
+        Assert.assertEquals(5, inline.getPayloadSize());
+        Assert.assertEquals(0, inline.getPublishMetrics().getS3UploadNanos());
+    }
+
+    @Test
+    public void testPublishWithDetailsSendsRequestsWithoutMessageAsTheyAre() {
+        AmazonSNSExtendedClient extendedSns = (AmazonSNSExtendedClient) extendedSnsWithDefaultConfig;
+        PublishResponse snsResponse = PublishResponse.builder().messageId("message-id").build();
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(snsResponse);
+        PublishRequest withoutMessage = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).build();
+        PublishRequest withEmptyMessage = PublishRequest.builder().topicArn(SNS_TOPIC_ARN).message("").build();
+
+        for (PublishRequest publishRequest : Arrays.asList(withoutMessage, withEmptyMessage)) {
+            ExtendedPublishResponse response = extendedSns.publishWithDetails(publishRequest);
+
+            verify(mockSnsBackend).publish(publishRequest);
+            Assert.assertSame(snsResponse, response.getResponse());
+            Assert.assertFalse(response.isOffloaded());
+            Assert.assertNull(response.getPayloadS3Pointer());
+        }
+        verify(mockS3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    public void testPublishStagesAreRecordedAsFlightRecorderEvents() throws IOException {
+        Assert.assertTrue(PublishTracer.get() instanceof JfrPublishTracer);
+        when(mockSnsBackend.publish(any(PublishRequest.class))).thenReturn(PublishResponse.builder().build());
+        Path recordingFile = Files.createTempFile("sns-extended", ".jfr");
+        List<RecordedEvent> recordedEvents;
+        try (Recording recording = new Recording()) {
+            recording.enable("software.amazon.sns.SizeComputation");
+            recording.enable("software.amazon.sns.OffloadDecision");
+            recording.enable("software.amazon.sns.S3Upload");
+            recording.enable("software.amazon.sns.SnsPublish");
+            recording.start();
+            extendedSnsWithDefaultConfig.publish(PublishRequest.builder()
+                .topicArn(SNS_TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT)).build());
+            recording.stop();
+            recording.dump(recordingFile);
+            recordedEvents = RecordingFile.readAllEvents(recordingFile);
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+
+        Map<String, RecordedEvent> eventsByName = recordedEvents.stream()
+            .collect(Collectors.toMap(event -> event.getEventType().getName(), event -> event));
+        Assert.assertEquals(4, eventsByName.size());
+        Assert.assertEquals(MORE_THAN_SNS_SIZE_LIMIT,
+            eventsByName.get("software.amazon.sns.SizeComputation").getLong("payloadSize"));
+        Assert.assertTrue(eventsByName.get("software.amazon.sns.OffloadDecision").getBoolean("offloaded"));
+
+        ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(mockS3).putObject(putObjectRequestCaptor.capture(), any(RequestBody.class));
+        RecordedEvent s3UploadEvent = eventsByName.get("software.amazon.sns.S3Upload");
+        Assert.assertEquals(S3_BUCKET_NAME, s3UploadEvent.getString("bucketName"));
+        Assert.assertEquals(putObjectRequestCaptor.getValue().key(), s3UploadEvent.getString("key"));
+        Assert.assertTrue(s3UploadEvent.getBoolean("successful"));
+
+        RecordedEvent snsPublishEvent = eventsByName.get("software.amazon.sns.SnsPublish");
+        Assert.assertEquals(SNS_TOPIC_ARN, snsPublishEvent.getString("topicArn"));
+        Assert.assertTrue(snsPublishEvent.getBoolean("successful"));
+    }
+
+    private AmazonSNSExtendedClient createMultipartUploadClient(int concurrency, int partRetries) {
+        when(mockS3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+
+        return new AmazonSNSExtendedClient(mockSnsBackend, new SNSExtendedClientConfiguration()
+            .withPayloadSupportEnabled(mockS3, S3_BUCKET_NAME)
+            .withMultipartUploadThreshold(MIN_MULTIPART_UPLOAD_PART_SIZE)
+            .withMultipartUploadPartSize(MIN_MULTIPART_UPLOAD_PART_SIZE)
+            .withMultipartUploadConcurrency(concurrency)
+            .withMultipartUploadPartRetries(partRetries));
+    }
+
+    private static byte[] sha256(String payload) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private String generateStringWithLength(int messageLength) {
         char[] charArray = new char[messageLength];
         Arrays.fill(charArray, 'x');
@@ -0,0 +1,112 @@
+package software.amazon.sns;
+
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.payloadoffloading.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+public class Utf8SizeCounterTest {
+
+    @Test
+    public void testSizeMatchesEncodedLength() {
+        String[] samples = {
+            "",
+            "plain ascii",
+            "café naïve",
+            "日本語",
+            "emoji 😀 and 🎉",
+            "lone high \ud83d at the end \ud83d",
+            "lone low \ude00 in the middle",
+            "reversed pair \ude00\ud83d"
+        };
+
+        for (String sample : samples) {
+            Assert.assertEquals(sample, Util.getStringSizeInBytes(sample), Utf8SizeCounter.sizeOf(sample));
+        }
+    }
+
+    @Test
+    public void testExceedsStopsCountingOnceLimitIsCrossed() {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        CountingCharSequence body = new CountingCharSequence(new String(chars));
+        Utf8SizeCounter counter = new Utf8SizeCounter(body);
+
+        Assert.assertTrue(counter.exceeds(10));
+        Assert.assertEquals(11, body.charsRead);
+
+        Assert.assertEquals(1000, counter.size());
+        Assert.assertEquals(1000, body.charsRead);
+    }
+
+    @Test
+    public void testExceedsReturnsFalseWhenSizeIsWithinLimit() {
+        Utf8SizeCounter counter = new Utf8SizeCounter("😀é");
+
+        Assert.assertFalse(counter.exceeds(6));
+        Assert.assertTrue(new Utf8SizeCounter("😀é").exceeds(5));
+        Assert.assertEquals(6, counter.size());
+    }
+
+    @Test
+    public void testDigestMatchesHashOfEncodedBytes() throws Exception {
+        String[] samples = {
+            "",
+            "café naïve 日本語 emoji 😀",
+            "lone high \ud83d at the end \ud83d",
+            "reversed pair \ude00\ud83d"
+        };
+
+        for (String sample : samples) {
+            Utf8SizeCounter counter = new Utf8SizeCounter(sample, MessageDigest.getInstance("SHA-256"));
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(sample.getBytes(StandardCharsets.UTF_8));
+            Assert.assertArrayEquals(sample, expected, counter.digest());
+        }
+    }
+
+    @Test
+    public void testDigestCoversTheWholeSequenceAfterExceeds() throws Exception {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'é');
+        String body = new String(chars);
+        Utf8SizeCounter counter = new Utf8SizeCounter(body, MessageDigest.getInstance("SHA-256"));
+
+        Assert.assertTrue(counter.exceeds(100));
+        Assert.assertEquals(20000, counter.size());
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)),
+            counter.digest());
+    }
+
+    private static final class CountingCharSequence implements CharSequence {
+        private final String delegate;
+        private int charsRead;
+
+        private CountingCharSequence(String delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int length() {
+            return delegate.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            charsRead++;
+            return delegate.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return delegate.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package software.amazon.sns.testing;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads the whole content of an {@link AsyncRequestBody}, as a service would receive it.
+ */
+final class AsyncRequestBodyCollector implements Subscriber<ByteBuffer> {
+    private final CompletableFuture<byte[]> content = new CompletableFuture<>();
+    private final ByteArrayOutputStream buffer;
+
+    private AsyncRequestBodyCollector(long contentLength) {
+        this.buffer = new ByteArrayOutputStream((int) Math.min(Math.max(contentLength, 32), Integer.MAX_VALUE - 8));
+    }
+
+    static CompletableFuture<byte[]> collect(AsyncRequestBody requestBody) {
+        AsyncRequestBodyCollector collector = new AsyncRequestBodyCollector(requestBody.contentLength().orElse(0L));
+        requestBody.subscribe(collector);
+        return collector.content;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray()) {
+            buffer.write(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
+        } else {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get(bytes);
+            buffer.write(bytes, 0, bytes.length);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        content.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        content.complete(buffer.toByteArray());
+    }
+}
@@ -0,0 +1,342 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A simulated Amazon S3 that keeps the objects stored in it in memory, shared by the {@link InMemoryS3Client} and
+ * {@link InMemoryS3AsyncClient} created for it.
+ * <p>
+ * Objects can be put, read, deleted and uploaded in parts. Every part of a multipart upload but the last must be at
+ * least 5 MiB, and a put or a multipart upload completed with an {@code If-None-Match: *} header fails with status
+ * code 412 if an object already exists under its key. Buckets do not need to be created.
+ * </p>
+ */
+public final class InMemoryS3 {
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final String SERVICE_NAME = "S3";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private final ServiceSimulator simulator;
+    private final ConcurrentMap<String, ConcurrentMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MultipartUpload> multipartUploads = new ConcurrentHashMap<>();
+    private final AtomicLong eTagSequence = new AtomicLong();
+
+    public InMemoryS3() {
+        this(new ServiceConditions());
+    }
+
+    public InMemoryS3(ServiceConditions conditions) {
+        this.simulator = new ServiceSimulator("s3", conditions,
+                () -> s3Exception(503, "SlowDown", "Please reduce your request rate."),
+                () -> s3Exception(500, "InternalError", "We encountered an internal error. Please try again."));
+    }
+
+    public ServiceConditions getConditions() {
+        return simulator.getConditions();
+    }
+
+    /**
+     * @return a copy of the content of the object, or null if there is no object under the key.
+     */
+    public byte[] getObjectContent(String bucketName, String key) {
+        StoredObject storedObject = lookUp(bucketName, key);
+        return (storedObject != null) ? storedObject.content.clone() : null;
+    }
+
+    /**
+     * @return the keys of the objects in the bucket, in lexicographical order.
+     */
+    public List<String> getKeys(String bucketName) {
+        ConcurrentMap<String, StoredObject> bucket = buckets.get(bucketName);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>(bucket.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    public long getObjectCount() {
+        long objectCount = 0;
+        for (ConcurrentMap<String, StoredObject> bucket : buckets.values()) {
+            objectCount += bucket.size();
+        }
+        return objectCount;
+    }
+
+    /**
+     * @return the total size of the objects, in bytes.
+     */
+    public long getStoredBytes() {
+        long storedBytes = 0;
+        for (ConcurrentMap<String, StoredObject> bucket : buckets.values()) {
+            for (StoredObject storedObject : bucket.values()) {
+                storedBytes += storedObject.content.length;
+            }
+        }
+        return storedBytes;
+    }
+
+    /**
+     * @return the number of multipart uploads that were neither completed nor aborted.
+     */
+    public int getMultipartUploadCount() {
+        return multipartUploads.size();
+    }
+
+    /**
+     * @return the number of requests received, including the throttled and failed ones.
+     */
+    public long getRequestCount() {
+        return simulator.getRequestCount();
+    }
+
+    public long getThrottledRequestCount() {
+        return simulator.getThrottledRequestCount();
+    }
+
+    public long getFailedRequestCount() {
+        return simulator.getFailedRequestCount();
+    }
+
+    /**
+     * Deletes every object. The multipart uploads in progress are kept, so that they can still complete.
+     */
+    public void clear() {
+        buckets.clear();
+    }
+
+    ServiceSimulator getSimulator() {
+        return simulator;
+    }
+
+    PutObjectResponse putObject(PutObjectRequest putObjectRequest, byte[] content) {
+        StoredObject storedObject = new StoredObject(content, putObjectRequest.contentType(),
+                putObjectRequest.contentEncoding(), putObjectRequest.metadata(), nextETag());
+        store(putObjectRequest.bucket(), putObjectRequest.key(), storedObject, isIfNoneMatch(putObjectRequest));
+        return PutObjectResponse.builder().eTag(storedObject.eTag).build();
+    }
+
+    StoredObject getObject(String bucketName, String key) {
+        StoredObject storedObject = lookUp(bucketName, key);
+        if (storedObject == null) {
+            throw NoSuchKeyException.builder()
+                    .message("The specified key does not exist.")
+                    .statusCode(404)
+                    .awsErrorDetails(errorDetails("NoSuchKey", "The specified key does not exist."))
+                    .build();
+        }
+        return storedObject;
+    }
+
+    /**
+     * @return the size of the object, or 0 if there is no object under the key, to simulate the transfer of a read.
+     */
+    long sizeOf(String bucketName, String key) {
+        StoredObject storedObject = lookUp(bucketName, key);
+        return (storedObject != null) ? storedObject.content.length : 0;
+    }
+
+    HeadObjectResponse headObject(HeadObjectRequest headObjectRequest) {
+        return getObject(headObjectRequest.bucket(), headObjectRequest.key()).toHeadObjectResponse();
+    }
+
+    DeleteObjectResponse deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        delete(deleteObjectRequest.bucket(), deleteObjectRequest.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    DeleteObjectsResponse deleteObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        List<DeletedObject> deleted = new ArrayList<>();
+        for (ObjectIdentifier objectIdentifier : deleteObjectsRequest.delete().objects()) {
+            delete(deleteObjectsRequest.bucket(), objectIdentifier.key());
+            deleted.add(DeletedObject.builder().key(objectIdentifier.key()).build());
+        }
+        return DeleteObjectsResponse.builder().deleted(deleted).build();
+    }
+
+    CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest createMultipartUploadRequest) {
+        String uploadId = UUID.randomUUID().toString();
+        multipartUploads.put(uploadId, new MultipartUpload(createMultipartUploadRequest));
+        return CreateMultipartUploadResponse.builder()
+                .bucket(createMultipartUploadRequest.bucket())
+                .key(createMultipartUploadRequest.key())
+                .uploadId(uploadId)
+                .build();
+    }
+
+    UploadPartResponse uploadPart(UploadPartRequest uploadPartRequest, byte[] content) {
+        MultipartUpload multipartUpload = getMultipartUpload(uploadPartRequest.uploadId());
+        String eTag = nextETag();
+        multipartUpload.parts.put(uploadPartRequest.partNumber(), new Part(content, eTag));
+        return UploadPartResponse.builder().eTag(eTag).build();
+    }
+
+    CompleteMultipartUploadResponse completeMultipartUpload(
+            CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        MultipartUpload multipartUpload = getMultipartUpload(completeMultipartUploadRequest.uploadId());
+        List<CompletedPart> completedParts = completeMultipartUploadRequest.multipartUpload().parts();
+        List<byte[]> contents = new ArrayList<>(completedParts.size());
+        int size = 0;
+        int previousPartNumber = 0;
+        for (int i = 0; i < completedParts.size(); i++) {
+            CompletedPart completedPart = completedParts.get(i);
+            Part part = multipartUpload.parts.get(completedPart.partNumber());
+            if (completedPart.partNumber() <= previousPartNumber) {
+                throw s3Exception(400, "InvalidPartOrder", "The list of parts was not in ascending order.");
+            }
+            if (part == null || !part.eTag.equals(completedPart.eTag())) {
+                throw s3Exception(400, "InvalidPart", "One or more of the specified parts could not be found.");
+            }
+            if (i < completedParts.size() - 1 && part.content.length < MIN_PART_SIZE) {
+                throw s3Exception(400, "EntityTooSmall",
+                        "Your proposed upload is smaller than the minimum allowed object size.");
+            }
+            contents.add(part.content);
+            size += part.content.length;
+            previousPartNumber = completedPart.partNumber();
+        }
+
+        byte[] content = new byte[size];
+        int position = 0;
+        for (byte[] partContent : contents) {
+            System.arraycopy(partContent, 0, content, position, partContent.length);
+            position += partContent.length;
+        }
+        CreateMultipartUploadRequest createRequest = multipartUpload.createRequest;
+        StoredObject storedObject = new StoredObject(content, createRequest.contentType(),
+                createRequest.contentEncoding(), createRequest.metadata(), nextETag());
+        store(createRequest.bucket(), createRequest.key(), storedObject, isIfNoneMatch(completeMultipartUploadRequest));
+        multipartUploads.remove(completeMultipartUploadRequest.uploadId());
+        return CompleteMultipartUploadResponse.builder()
+                .bucket(createRequest.bucket())
+                .key(createRequest.key())
+                .eTag(storedObject.eTag)
+                .build();
+    }
+
+    AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        if (multipartUploads.remove(abortMultipartUploadRequest.uploadId()) == null) {
+            throw noSuchUpload();
+        }
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    private void store(String bucketName, String key, StoredObject storedObject, boolean ifNoneMatch) {
+        ConcurrentMap<String, StoredObject> bucket = buckets.computeIfAbsent(bucketName,
+                name -> new ConcurrentSkipListMap<>());
+        if (!ifNoneMatch) {
+            bucket.put(key, storedObject);
+        } else if (bucket.putIfAbsent(key, storedObject) != null) {
+            throw s3Exception(412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold");
+        }
+    }
+
+    private void delete(String bucketName, String key) {
+        ConcurrentMap<String, StoredObject> bucket = buckets.get(bucketName);
+        if (bucket != null) {
+            bucket.remove(key);
+        }
+    }
+
+    private StoredObject lookUp(String bucketName, String key) {
+        ConcurrentMap<String, StoredObject> bucket = buckets.get(bucketName);
+        return (bucket != null) ? bucket.get(key) : null;
+    }
+
+    private MultipartUpload getMultipartUpload(String uploadId) {
+        MultipartUpload multipartUpload = multipartUploads.get(uploadId);
+        if (multipartUpload == null) {
+            throw noSuchUpload();
+        }
+        return multipartUpload;
+    }
+
+    private String nextETag() {
+        return "\"" + Long.toHexString(eTagSequence.incrementAndGet()) + "\"";
+    }
+
+    private static boolean isIfNoneMatch(AwsRequest request) {
+        return request.overrideConfiguration()
+                .map(overrideConfiguration -> overrideConfiguration.headers().get(IF_NONE_MATCH_HEADER))
+                .map(values -> values.contains("*"))
+                .orElse(false);
+    }
+
+    private static NoSuchUploadException noSuchUpload() {
+        String message = "The specified multipart upload does not exist.";
+        return NoSuchUploadException.builder()
+                .message(message)
+                .statusCode(404)
+                .awsErrorDetails(errorDetails("NoSuchUpload", message))
+                .build();
+    }
+
+    private static S3Exception s3Exception(int statusCode, String errorCode, String message) {
+        return (S3Exception) S3Exception.builder()
+                .message(message)
+                .statusCode(statusCode)
+                .awsErrorDetails(errorDetails(errorCode, message))
+                .build();
+    }
+
+    private static AwsErrorDetails errorDetails(String errorCode, String errorMessage) {
+        return AwsErrorDetails.builder()
+                .serviceName(SERVICE_NAME)
+                .errorCode(errorCode)
+                .errorMessage(errorMessage)
+                .build();
+    }
+
+    private static final class MultipartUpload {
+        private final CreateMultipartUploadRequest createRequest;
+        private final Map<Integer, Part> parts = new ConcurrentHashMap<>();
+
+        private MultipartUpload(CreateMultipartUploadRequest createRequest) {
+            this.createRequest = createRequest;
+        }
+    }
+
+    private static final class Part {
+        private final byte[] content;
+        private final String eTag;
+
+        private Part(byte[] content, String eTag) {
+            this.content = content;
+            this.eTag = eTag;
+        }
+    }
+}
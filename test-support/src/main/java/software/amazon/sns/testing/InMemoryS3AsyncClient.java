@@ -0,0 +1,122 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link S3AsyncClient} that stores objects in an {@link InMemoryS3}. Requests with a simulated delay complete on
+ * a thread of the simulated service, and the others complete on the thread that provides their last byte. The
+ * operations of {@link InMemoryS3Client} are supported.
+ */
+public class InMemoryS3AsyncClient implements S3AsyncClient {
+    private final InMemoryS3 s3;
+
+    public InMemoryS3AsyncClient() {
+        this(new InMemoryS3());
+    }
+
+    public InMemoryS3AsyncClient(InMemoryS3 s3) {
+        this.s3 = s3;
+    }
+
+    public InMemoryS3 getS3() {
+        return s3;
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest putObjectRequest,
+                                                          AsyncRequestBody requestBody) {
+        return AsyncRequestBodyCollector.collect(requestBody)
+                .thenCompose(content -> s3.getSimulator().callAsync(content.length, false,
+                        () -> s3.putObject(putObjectRequest, content)));
+    }
+
+    @Override
+    public <ReturnT> CompletableFuture<ReturnT> getObject(
+            GetObjectRequest getObjectRequest, AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        CompletableFuture<ReturnT> result = responseTransformer.prepare();
+        s3.getSimulator().callAsync(s3.sizeOf(getObjectRequest.bucket(), getObjectRequest.key()), false,
+                        () -> s3.getObject(getObjectRequest.bucket(), getObjectRequest.key()))
+                .whenComplete((storedObject, throwable) -> {
+                    if (throwable != null) {
+                        responseTransformer.exceptionOccurred(throwable);
+                    } else {
+                        responseTransformer.onResponse(storedObject.toGetObjectResponse());
+                        responseTransformer.onStream(AsyncRequestBody.fromBytes(storedObject.content));
+                    }
+                });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest headObjectRequest) {
+        return s3.getSimulator().callAsync(0, false, () -> s3.headObject(headObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        return s3.getSimulator().callAsync(0, false, () -> s3.deleteObject(deleteObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        return s3.getSimulator().callAsync(0, false, () -> s3.deleteObjects(deleteObjectsRequest));
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(
+            CreateMultipartUploadRequest createMultipartUploadRequest) {
+        return s3.getSimulator().callAsync(0, false, () -> s3.createMultipartUpload(createMultipartUploadRequest));
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest uploadPartRequest,
+                                                            AsyncRequestBody requestBody) {
+        return AsyncRequestBodyCollector.collect(requestBody)
+                .thenCompose(content -> s3.getSimulator().callAsync(content.length, false,
+                        () -> s3.uploadPart(uploadPartRequest, content)));
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+            CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        return s3.getSimulator().callAsync(0, false,
+                () -> s3.completeMultipartUpload(completeMultipartUploadRequest));
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(
+            AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        return s3.getSimulator().callAsync(0, false, () -> s3.abortMultipartUpload(abortMultipartUploadRequest));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,128 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.utils.IoUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link S3Client} that stores objects in an {@link InMemoryS3}. Requests block the calling thread for their
+ * simulated latency and transfer. The operations the extended clients use are supported: PutObject, GetObject,
+ * HeadObject, DeleteObject, DeleteObjects and the multipart upload operations.
+ */
+public class InMemoryS3Client implements S3Client {
+    private final InMemoryS3 s3;
+
+    public InMemoryS3Client() {
+        this(new InMemoryS3());
+    }
+
+    public InMemoryS3Client(InMemoryS3 s3) {
+        this.s3 = s3;
+    }
+
+    public InMemoryS3 getS3() {
+        return s3;
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest putObjectRequest, RequestBody requestBody) {
+        byte[] content = toByteArray(requestBody);
+        return s3.getSimulator().call(content.length, false, () -> s3.putObject(putObjectRequest, content));
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest getObjectRequest,
+                                       ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+        StoredObject storedObject = s3.getSimulator().call(
+                s3.sizeOf(getObjectRequest.bucket(), getObjectRequest.key()), false,
+                () -> s3.getObject(getObjectRequest.bucket(), getObjectRequest.key()));
+        try {
+            return responseTransformer.transform(storedObject.toGetObjectResponse(),
+                    AbortableInputStream.create(new ByteArrayInputStream(storedObject.content)));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw SdkClientException.create("Failed to transform the GetObject response.", e);
+        }
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest headObjectRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.headObject(headObjectRequest));
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.deleteObject(deleteObjectRequest));
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.deleteObjects(deleteObjectsRequest));
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(
+            CreateMultipartUploadRequest createMultipartUploadRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.createMultipartUpload(createMultipartUploadRequest));
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest uploadPartRequest, RequestBody requestBody) {
+        byte[] content = toByteArray(requestBody);
+        return s3.getSimulator().call(content.length, false, () -> s3.uploadPart(uploadPartRequest, content));
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(
+            CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.completeMultipartUpload(completeMultipartUploadRequest));
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        return s3.getSimulator().call(0, false, () -> s3.abortMultipartUpload(abortMultipartUploadRequest));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static byte[] toByteArray(RequestBody requestBody) {
+        try (InputStream content = requestBody.contentStreamProvider().newStream()) {
+            return IoUtils.toByteArray(content);
+        } catch (IOException e) {
+            throw SdkClientException.create("Failed to read the request body.", e);
+        }
+    }
+}
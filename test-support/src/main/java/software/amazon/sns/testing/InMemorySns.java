@@ -0,0 +1,287 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sns.model.BatchEntryIdsNotDistinctException;
+import software.amazon.awssdk.services.sns.model.BatchRequestTooLongException;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.EmptyBatchRequestException;
+import software.amazon.awssdk.services.sns.model.InternalErrorException;
+import software.amazon.awssdk.services.sns.model.InvalidParameterException;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.ThrottledException;
+import software.amazon.awssdk.services.sns.model.TooManyEntriesInBatchRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A simulated Amazon SNS that keeps the messages published to it in memory, shared by the {@link InMemorySnsClient}
+ * and {@link InMemorySnsAsyncClient} created for it.
+ * <p>
+ * Publish requests are validated against the limits of Amazon SNS: a message and its attributes must not exceed
+ * 256 KB, a batch must hold between 1 and 10 entries with distinct ids and must not exceed 256 KB in total, and a
+ * message published to a FIFO topic needs a message group id. Topics do not need to be created.
+ * </p>
+ */
+public final class InMemorySns {
+    static final int MAX_MESSAGE_SIZE = 262144;
+    static final int MAX_BATCH_ENTRIES = 10;
+    private static final String SERVICE_NAME = "Sns";
+    private static final String FIFO_TOPIC_SUFFIX = ".fifo";
+
+    private final ServiceSimulator simulator;
+    private final Map<String, Queue<PublishedMessage>> messagesByDestination = new ConcurrentHashMap<>();
+    private final LongAdder publishedMessageCount = new LongAdder();
+    private final AtomicLong sequenceNumber = new AtomicLong();
+
+    public InMemorySns() {
+        this(new ServiceConditions());
+    }
+
+    public InMemorySns(ServiceConditions conditions) {
+        this.simulator = new ServiceSimulator("sns", conditions,
+                () -> ThrottledException.builder()
+                        .message("Rate exceeded")
+                        .statusCode(400)
+                        .awsErrorDetails(errorDetails("Throttling", "Rate exceeded"))
+                        .build(),
+                () -> InternalErrorException.builder()
+                        .message("Internal error")
+                        .statusCode(500)
+                        .awsErrorDetails(errorDetails("InternalError", "Internal error"))
+                        .build());
+    }
+
+    public ServiceConditions getConditions() {
+        return simulator.getConditions();
+    }
+
+    /**
+     * @param destination a topic ARN, target ARN or phone number.
+     * @return the messages published to the destination, in the order they were published.
+     */
+    public List<PublishedMessage> getPublishedMessages(String destination) {
+        Queue<PublishedMessage> messages = messagesByDestination.get(destination);
+        return (messages != null) ? new ArrayList<>(messages) : Collections.emptyList();
+    }
+
+    public long getPublishedMessageCount() {
+        return publishedMessageCount.sum();
+    }
+
+    /**
+     * @return the number of Publish and PublishBatch requests received, including the throttled and failed ones.
+     */
+    public long getRequestCount() {
+        return simulator.getRequestCount();
+    }
+
+    public long getThrottledRequestCount() {
+        return simulator.getThrottledRequestCount();
+    }
+
+    /**
+     * @return the number of requests and batch entries that failed with an injected internal error.
+     */
+    public long getFailedRequestCount() {
+        return simulator.getFailedRequestCount();
+    }
+
+    /**
+     * Forgets the published messages.
+     */
+    public void clear() {
+        messagesByDestination.clear();
+        publishedMessageCount.reset();
+    }
+
+    ServiceSimulator getSimulator() {
+        return simulator;
+    }
+
+    PublishResponse publish(PublishRequest publishRequest) {
+        String destination = destinationOf(publishRequest);
+        String error = validate(destination, publishRequest.message(), sizeOf(publishRequest),
+                publishRequest.messageGroupId());
+        if (error != null) {
+            throw invalidParameter(error);
+        }
+
+        PublishedMessage publishedMessage = store(destination, publishRequest.message(), publishRequest.subject(),
+                publishRequest.messageStructure(), publishRequest.messageAttributes(), publishRequest.messageGroupId(),
+                publishRequest.messageDeduplicationId());
+        return PublishResponse.builder()
+                .messageId(publishedMessage.getMessageId())
+                .sequenceNumber(publishedMessage.getSequenceNumber())
+                .build();
+    }
+
+    PublishBatchResponse publishBatch(PublishBatchRequest publishBatchRequest) {
+        List<PublishBatchRequestEntry> entries = publishBatchRequest.publishBatchRequestEntries();
+        if (entries.isEmpty()) {
+            String message = "The batch request doesn't contain any entries.";
+            throw EmptyBatchRequestException.builder()
+                    .message(message)
+                    .statusCode(400)
+                    .awsErrorDetails(errorDetails("EmptyBatchRequest", message))
+                    .build();
+        }
+        if (entries.size() > MAX_BATCH_ENTRIES) {
+            String message = "The batch request contains more entries than permissible.";
+            throw TooManyEntriesInBatchRequestException.builder()
+                    .message(message)
+                    .statusCode(400)
+                    .awsErrorDetails(errorDetails("TooManyEntriesInBatchRequest", message))
+                    .build();
+        }
+        Set<String> ids = new HashSet<>();
+        for (PublishBatchRequestEntry entry : entries) {
+            if (!ids.add(entry.id())) {
+                String message = "Two or more batch entries in the request have the same Id.";
+                throw BatchEntryIdsNotDistinctException.builder()
+                        .message(message)
+                        .statusCode(400)
+                        .awsErrorDetails(errorDetails("BatchEntryIdsNotDistinct", message))
+                        .build();
+            }
+        }
+        if (sizeOf(publishBatchRequest) > MAX_MESSAGE_SIZE) {
+            String message = "The length of all the messages put together is more than the limit.";
+            throw BatchRequestTooLongException.builder()
+                    .message(message)
+                    .statusCode(400)
+                    .awsErrorDetails(errorDetails("BatchRequestTooLong", message))
+                    .build();
+        }
+
+        String topicArn = publishBatchRequest.topicArn();
+        List<PublishBatchResultEntry> successful = new ArrayList<>(entries.size());
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (PublishBatchRequestEntry entry : entries) {
+            String error = validate(topicArn, entry.message(), sizeOf(entry.message(), entry.messageAttributes()),
+                    entry.messageGroupId());
+            if (error != null) {
+                failed.add(BatchResultErrorEntry.builder()
+                        .id(entry.id()).code("InvalidParameter").message(error).senderFault(true).build());
+            } else if (simulator.nextEntryFails()) {
+                failed.add(BatchResultErrorEntry.builder()
+                        .id(entry.id()).code("InternalError").message("Internal error").senderFault(false).build());
+            } else {
+                PublishedMessage publishedMessage = store(topicArn, entry.message(), entry.subject(),
+                        entry.messageStructure(), entry.messageAttributes(), entry.messageGroupId(),
+                        entry.messageDeduplicationId());
+                successful.add(PublishBatchResultEntry.builder()
+                        .id(entry.id())
+                        .messageId(publishedMessage.getMessageId())
+                        .sequenceNumber(publishedMessage.getSequenceNumber())
+                        .build());
+            }
+        }
+        return PublishBatchResponse.builder().successful(successful).failed(failed).build();
+    }
+
+    private PublishedMessage store(String destination, String message, String subject, String messageStructure,
+                                   Map<String, MessageAttributeValue> messageAttributes, String messageGroupId,
+                                   String messageDeduplicationId) {
+        String messageSequenceNumber = destination.endsWith(FIFO_TOPIC_SUFFIX)
+                ? String.format("%020d", sequenceNumber.incrementAndGet())
+                : null;
+        PublishedMessage publishedMessage = new PublishedMessage(destination, UUID.randomUUID().toString(),
+                messageSequenceNumber, message, subject, messageStructure, messageAttributes, messageGroupId,
+                messageDeduplicationId);
+        messagesByDestination.computeIfAbsent(destination, key -> new ConcurrentLinkedQueue<>()).add(publishedMessage);
+        publishedMessageCount.increment();
+        return publishedMessage;
+    }
+
+    /**
+     * @return the reason Amazon SNS would reject the message, or null if it is valid.
+     */
+    private static String validate(String destination, String message, long size, String messageGroupId) {
+        if (destination == null) {
+            return "Invalid parameter: TopicArn or TargetArn Reason: no value for required parameter";
+        }
+        if (message == null || message.isEmpty()) {
+            return "Invalid parameter: Empty message";
+        }
+        if (size > MAX_MESSAGE_SIZE) {
+            return "Invalid parameter: Message too long";
+        }
+        if (destination.endsWith(FIFO_TOPIC_SUFFIX) && messageGroupId == null) {
+            return "Invalid parameter: The MessageGroupId parameter is required for FIFO topics";
+        }
+        return null;
+    }
+
+    private static String destinationOf(PublishRequest publishRequest) {
+        if (publishRequest.topicArn() != null) {
+            return publishRequest.topicArn();
+        }
+        return (publishRequest.targetArn() != null) ? publishRequest.targetArn() : publishRequest.phoneNumber();
+    }
+
+    static long sizeOf(PublishRequest publishRequest) {
+        return sizeOf(publishRequest.message(), publishRequest.messageAttributes());
+    }
+
+    static long sizeOf(PublishBatchRequest publishBatchRequest) {
+        long size = 0;
+        for (PublishBatchRequestEntry entry : publishBatchRequest.publishBatchRequestEntries()) {
+            size += sizeOf(entry.message(), entry.messageAttributes());
+        }
+        return size;
+    }
+
+    /**
+     * @return the size Amazon SNS counts against its limit: the message and the names, types and values of its
+     * attributes.
+     */
+    private static long sizeOf(String message, Map<String, MessageAttributeValue> messageAttributes) {
+        long size = utf8Length(message);
+        for (Map.Entry<String, MessageAttributeValue> attribute : messageAttributes.entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += utf8Length(attribute.getKey()) + utf8Length(value.dataType()) + utf8Length(value.stringValue());
+            if (value.binaryValue() != null) {
+                size += value.binaryValue().asByteBuffer().remaining();
+            }
+        }
+        return size;
+    }
+
+    private static long utf8Length(String value) {
+        return (value != null) ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    private static InvalidParameterException invalidParameter(String message) {
+        return InvalidParameterException.builder()
+                .message(message)
+                .statusCode(400)
+                .awsErrorDetails(errorDetails("InvalidParameter", message))
+                .build();
+    }
+
+    private static AwsErrorDetails errorDetails(String errorCode, String errorMessage) {
+        return AwsErrorDetails.builder()
+                .serviceName(SERVICE_NAME)
+                .errorCode(errorCode)
+                .errorMessage(errorMessage)
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link SnsAsyncClient} that publishes to an {@link InMemorySns}. Requests with a simulated latency complete on
+ * a thread of the simulated service, and the others complete on the calling thread. Only Publish and PublishBatch are
+ * supported.
+ */
+public class InMemorySnsAsyncClient implements SnsAsyncClient {
+    private final InMemorySns sns;
+
+    public InMemorySnsAsyncClient() {
+        this(new InMemorySns());
+    }
+
+    public InMemorySnsAsyncClient(InMemorySns sns) {
+        this.sns = sns;
+    }
+
+    public InMemorySns getSns() {
+        return sns;
+    }
+
+    @Override
+    public CompletableFuture<PublishResponse> publish(PublishRequest publishRequest) {
+        return sns.getSimulator().callAsync(InMemorySns.sizeOf(publishRequest), false,
+                () -> sns.publish(publishRequest));
+    }
+
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest publishBatchRequest) {
+        return sns.getSimulator().callAsync(InMemorySns.sizeOf(publishBatchRequest), true,
+                () -> sns.publishBatch(publishBatchRequest));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,47 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+
+/**
+ * An {@link SnsClient} that publishes to an {@link InMemorySns}. Requests block the calling thread for their simulated
+ * latency. Only Publish and PublishBatch are supported.
+ */
+public class InMemorySnsClient implements SnsClient {
+    private final InMemorySns sns;
+
+    public InMemorySnsClient() {
+        this(new InMemorySns());
+    }
+
+    public InMemorySnsClient(InMemorySns sns) {
+        this.sns = sns;
+    }
+
+    public InMemorySns getSns() {
+        return sns;
+    }
+
+    @Override
+    public PublishResponse publish(PublishRequest publishRequest) {
+        return sns.getSimulator().call(InMemorySns.sizeOf(publishRequest), false, () -> sns.publish(publishRequest));
+    }
+
+    @Override
+    public PublishBatchResponse publishBatch(PublishBatchRequest publishBatchRequest) {
+        return sns.getSimulator().call(InMemorySns.sizeOf(publishBatchRequest), true,
+                () -> sns.publishBatch(publishBatchRequest));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
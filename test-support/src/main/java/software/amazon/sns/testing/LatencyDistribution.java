@@ -0,0 +1,76 @@
+package software.amazon.sns.testing;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distribution of the latency a simulated service adds to each request, on top of the time it takes to transfer
+ * the request over its simulated bandwidth.
+ * <p>
+ * Implementations are called concurrently by every request to the service, and may for example replay a latency
+ * histogram recorded in production.
+ * </p>
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+    /**
+     * A distribution where requests complete without any latency.
+     */
+    LatencyDistribution NONE = () -> 0;
+
+    /**
+     * @return the latency of the next request, in nanoseconds.
+     */
+    long nextLatencyNanos();
+
+    /**
+     * @return a distribution where every request takes the same time.
+     */
+    static LatencyDistribution fixed(Duration latency) {
+        long latencyNanos = ServiceConditions.checkNotNegative("latency", latency).toNanos();
+        return () -> latencyNanos;
+    }
+
+    /**
+     * @return a distribution where the latency of requests is uniformly distributed between a minimum and a maximum.
+     */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = ServiceConditions.checkNotNegative("min", min).toNanos();
+        long maxNanos = ServiceConditions.checkNotNegative("max", max).toNanos();
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("max must not be less than min.");
+        }
+        return () -> minNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxNanos - minNanos));
+    }
+
+    /**
+     * Returns a log-normal distribution, whose long tail resembles the latency of network services.
+     *
+     * @param median the latency half of the requests complete within.
+     * @param p99    the latency 99% of the requests complete within, which must not be less than the median.
+     * @return the distribution.
+     */
+    static LatencyDistribution logNormal(Duration median, Duration p99) {
+        double medianNanos = ServiceConditions.checkNotNegative("median", median).toNanos();
+        double p99Nanos = ServiceConditions.checkNotNegative("p99", p99).toNanos();
+        if (medianNanos == 0 || p99Nanos < medianNanos) {
+            throw new IllegalArgumentException("median must be positive and p99 must not be less than median.");
+        }
+        // 2.326 is the 99th percentile of the standard normal distribution.
+        double sigma = Math.log(p99Nanos / medianNanos) / 2.326;
+        return () -> (long) (medianNanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * @return a distribution that adds a latency spike to a fraction of the requests, such as the pauses of a service
+     * under a garbage collection or a failover.
+     */
+    static LatencyDistribution withSpikes(LatencyDistribution distribution, double spikeRate, Duration spike) {
+        if (!(spikeRate >= 0 && spikeRate <= 1)) {
+            throw new IllegalArgumentException("spikeRate must be between 0 and 1.");
+        }
+        long spikeNanos = ServiceConditions.checkNotNegative("spike", spike).toNanos();
+        return () -> distribution.nextLatencyNanos()
+                + (ThreadLocalRandom.current().nextDouble() < spikeRate ? spikeNanos : 0);
+    }
+}
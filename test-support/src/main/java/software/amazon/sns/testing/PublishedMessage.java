@@ -0,0 +1,82 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+
+import java.util.Map;
+
+/**
+ * A message published to an {@link InMemorySns}.
+ */
+public final class PublishedMessage {
+    private final String destination;
+    private final String messageId;
+    private final String sequenceNumber;
+    private final String message;
+    private final String subject;
+    private final String messageStructure;
+    private final Map<String, MessageAttributeValue> messageAttributes;
+    private final String messageGroupId;
+    private final String messageDeduplicationId;
+
+    PublishedMessage(String destination, String messageId, String sequenceNumber, String message, String subject,
+                     String messageStructure, Map<String, MessageAttributeValue> messageAttributes,
+                     String messageGroupId, String messageDeduplicationId) {
+        this.destination = destination;
+        this.messageId = messageId;
+        this.sequenceNumber = sequenceNumber;
+        this.message = message;
+        this.subject = subject;
+        this.messageStructure = messageStructure;
+        this.messageAttributes = messageAttributes;
+        this.messageGroupId = messageGroupId;
+        this.messageDeduplicationId = messageDeduplicationId;
+    }
+
+    /**
+     * @return the topic ARN, target ARN or phone number the message was published to.
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return the sequence number of a message published to a FIFO topic, or null for a standard topic.
+     */
+    public String getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getMessageStructure() {
+        return messageStructure;
+    }
+
+    public Map<String, MessageAttributeValue> getMessageAttributes() {
+        return messageAttributes;
+    }
+
+    public String getMessageGroupId() {
+        return messageGroupId;
+    }
+
+    public String getMessageDeduplicationId() {
+        return messageDeduplicationId;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishedMessage{destination=" + destination + ", messageId=" + messageId + ", messageAttributes="
+                + messageAttributes.keySet() + ", messageLength=" + message.length() + "}";
+    }
+}
@@ -0,0 +1,118 @@
+package software.amazon.sns.testing;
+
+import java.time.Duration;
+
+/**
+ * The conditions a simulated service runs under: the latency of its requests, the bandwidth its requests share, and
+ * the rates at which it throttles or fails requests.
+ * <p>
+ * The conditions can be changed while the service is in use, for example to start throttling in the middle of a load
+ * test and replay an incident.
+ * </p>
+ */
+public class ServiceConditions {
+    private volatile LatencyDistribution latencyDistribution = LatencyDistribution.NONE;
+    private volatile long bandwidthBytesPerSecond;
+    private volatile double throttlingRate;
+    private volatile double errorRate;
+
+    public LatencyDistribution getLatencyDistribution() {
+        return latencyDistribution;
+    }
+
+    /**
+     * Sets the latency added to each request, on top of the time it takes to transfer the request. No latency is
+     * added by default.
+     *
+     * @param latencyDistribution the distribution of the latency of requests.
+     */
+    public void setLatencyDistribution(LatencyDistribution latencyDistribution) {
+        if (latencyDistribution == null) {
+            throw new IllegalArgumentException("latencyDistribution must not be null.");
+        }
+        this.latencyDistribution = latencyDistribution;
+    }
+
+    public ServiceConditions withLatencyDistribution(LatencyDistribution latencyDistribution) {
+        setLatencyDistribution(latencyDistribution);
+        return this;
+    }
+
+    /**
+     * @return the bandwidth the requests to the service share, in bytes per second, or 0 if it is unlimited.
+     */
+    public long getBandwidthBytesPerSecond() {
+        return bandwidthBytesPerSecond;
+    }
+
+    /**
+     * Sets the bandwidth the requests to the service share. The bytes of each request are transferred after the bytes
+     * of the requests sent before it, so concurrent requests queue up once the bandwidth is saturated. The bandwidth
+     * is unlimited by default.
+     *
+     * @param bandwidthBytesPerSecond the bandwidth in bytes per second, or 0 for an unlimited bandwidth.
+     */
+    public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        if (bandwidthBytesPerSecond < 0) {
+            throw new IllegalArgumentException("bandwidthBytesPerSecond must not be negative.");
+        }
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+
+    public ServiceConditions withBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        setBandwidthBytesPerSecond(bandwidthBytesPerSecond);
+        return this;
+    }
+
+    public double getThrottlingRate() {
+        return throttlingRate;
+    }
+
+    /**
+     * Sets the fraction of the requests that are rejected with the throttling error of the service. No request is
+     * throttled by default.
+     *
+     * @param throttlingRate the fraction of throttled requests, between 0 and 1.
+     */
+    public void setThrottlingRate(double throttlingRate) {
+        this.throttlingRate = checkRate("throttlingRate", throttlingRate);
+    }
+
+    public ServiceConditions withThrottlingRate(double throttlingRate) {
+        setThrottlingRate(throttlingRate);
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Sets the fraction of the requests that fail with an internal error of the service. The entries of a batch
+     * request fail individually at this rate. No request fails by default.
+     *
+     * @param errorRate the fraction of failed requests, between 0 and 1.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = checkRate("errorRate", errorRate);
+    }
+
+    public ServiceConditions withErrorRate(double errorRate) {
+        setErrorRate(errorRate);
+        return this;
+    }
+
+    private static double checkRate(String name, double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1.");
+        }
+        return rate;
+    }
+
+    static Duration checkNotNegative(String name, Duration duration) {
+        if (duration == null || duration.isNegative()) {
+            throw new IllegalArgumentException(name + " must not be null or negative.");
+        }
+        return duration;
+    }
+}
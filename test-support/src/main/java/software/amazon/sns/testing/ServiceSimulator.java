@@ -0,0 +1,179 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.core.exception.AbortedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Applies the {@link ServiceConditions} of a simulated service to its requests: delays them by their latency and the
+ * transfer of their bytes, and throttles or fails them at the configured rates.
+ */
+final class ServiceSimulator {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String serviceName;
+    private final ServiceConditions conditions;
+    private final Supplier<RuntimeException> throttlingException;
+    private final Supplier<RuntimeException> internalErrorException;
+    // The time the bytes of the requests sent so far will have been transferred at, which the next request waits for.
+    private final AtomicLong transfersEndNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder throttledRequestCount = new LongAdder();
+    private final LongAdder failedRequestCount = new LongAdder();
+    private volatile ScheduledExecutorService scheduler;
+
+    ServiceSimulator(String serviceName, ServiceConditions conditions, Supplier<RuntimeException> throttlingException,
+                     Supplier<RuntimeException> internalErrorException) {
+        if (conditions == null) {
+            throw new IllegalArgumentException("conditions must not be null.");
+        }
+        this.serviceName = serviceName;
+        this.conditions = conditions;
+        this.throttlingException = throttlingException;
+        this.internalErrorException = internalErrorException;
+    }
+
+    ServiceConditions getConditions() {
+        return conditions;
+    }
+
+    long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    long getThrottledRequestCount() {
+        return throttledRequestCount.sum();
+    }
+
+    long getFailedRequestCount() {
+        return failedRequestCount.sum();
+    }
+
+    /**
+     * Runs a request on the calling thread, once its delay has elapsed.
+     *
+     * @param bytes     the number of bytes the request transfers.
+     * @param batch     whether the request is a batch request, whose entries fail individually rather than as a whole.
+     * @param operation the request, which only runs if it is neither throttled nor failed.
+     */
+    <T> T call(long bytes, boolean batch, Supplier<T> operation) {
+        RuntimeException fault = nextFault(batch);
+        sleep(nextDelayNanos(bytes));
+        if (fault != null) {
+            throw fault;
+        }
+        return operation.get();
+    }
+
+    /**
+     * Runs a request once its delay has elapsed, on a thread of the simulator unless the request has no delay.
+     * See {@link #call(long, boolean, Supplier)}.
+     */
+    <T> CompletableFuture<T> callAsync(long bytes, boolean batch, Supplier<T> operation) {
+        RuntimeException fault = nextFault(batch);
+        long delayNanos = nextDelayNanos(bytes);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable completion = () -> {
+            try {
+                if (fault != null) {
+                    throw fault;
+                }
+                result.complete(operation.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        if (delayNanos > 0) {
+            scheduler().schedule(completion, delayNanos, TimeUnit.NANOSECONDS);
+        } else {
+            completion.run();
+        }
+        return result;
+    }
+
+    /**
+     * @return whether an entry of a batch request fails, at the error rate of the service.
+     */
+    boolean nextEntryFails() {
+        if (ThreadLocalRandom.current().nextDouble() < conditions.getErrorRate()) {
+            failedRequestCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private RuntimeException nextFault(boolean batch) {
+        requestCount.increment();
+        double random = ThreadLocalRandom.current().nextDouble();
+        double throttlingRate = conditions.getThrottlingRate();
+        if (random < throttlingRate) {
+            throttledRequestCount.increment();
+            return throttlingException.get();
+        }
+        if (!batch && random < throttlingRate + conditions.getErrorRate()) {
+            failedRequestCount.increment();
+            return internalErrorException.get();
+        }
+        return null;
+    }
+
+    private long nextDelayNanos(long bytes) {
+        long latencyNanos = Math.max(0, conditions.getLatencyDistribution().nextLatencyNanos());
+        long bandwidthBytesPerSecond = conditions.getBandwidthBytesPerSecond();
+        if (bandwidthBytesPerSecond == 0 || bytes == 0) {
+            return latencyNanos;
+        }
+
+        long transferNanos = (long) ((double) bytes * NANOS_PER_SECOND / bandwidthBytesPerSecond);
+        long nowNanos = System.nanoTime();
+        while (true) {
+            long previousEndNanos = transfersEndNanos.get();
+            long endNanos = Math.max(nowNanos, previousEndNanos) + transferNanos;
+            if (transfersEndNanos.compareAndSet(previousEndNanos, endNanos)) {
+                return latencyNanos + (endNanos - nowNanos);
+            }
+        }
+    }
+
+    private static void sleep(long delayNanos) {
+        long deadlineNanos = System.nanoTime() + delayNanos;
+        for (long remainingNanos = delayNanos; remainingNanos > 0; remainingNanos = deadlineNanos - System.nanoTime()) {
+            LockSupport.parkNanos(remainingNanos);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw AbortedException.create("Interrupted while waiting for the simulated request to complete.");
+            }
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService current = scheduler;
+        if (current == null) {
+            synchronized (this) {
+                current = scheduler;
+                if (current == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                            Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                                Thread thread = new Thread(runnable,
+                                        "in-memory-" + serviceName + "-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = current = executor;
+                }
+            }
+        }
+        return current;
+    }
+}
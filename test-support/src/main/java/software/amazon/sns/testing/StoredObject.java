@@ -0,0 +1,46 @@
+package software.amazon.sns.testing;
+
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.util.Map;
+
+/**
+ * An object stored in an {@link InMemoryS3}. Its content is never modified once stored.
+ */
+final class StoredObject {
+    final byte[] content;
+    final String contentType;
+    final String contentEncoding;
+    final Map<String, String> metadata;
+    final String eTag;
+
+    StoredObject(byte[] content, String contentType, String contentEncoding, Map<String, String> metadata,
+                 String eTag) {
+        this.content = content;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.metadata = metadata;
+        this.eTag = eTag;
+    }
+
+    GetObjectResponse toGetObjectResponse() {
+        return GetObjectResponse.builder()
+                .contentLength((long) content.length)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(metadata)
+                .eTag(eTag)
+                .build();
+    }
+
+    HeadObjectResponse toHeadObjectResponse() {
+        return HeadObjectResponse.builder()
+                .contentLength((long) content.length)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(metadata)
+                .eTag(eTag)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package software.amazon.sns.testing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.TooManyEntriesInBatchRequestException;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.sns.AmazonSNSExtendedAsyncClient;
+import software.amazon.sns.AmazonSNSExtendedClient;
+import software.amazon.sns.SNSExtendedAsyncClientConfiguration;
+import software.amazon.sns.SNSExtendedClientConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class InMemoryClientsTest {
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:123456789012:topic";
+    private static final String BUCKET_NAME = "payload-bucket";
+    private static final int MORE_THAN_SNS_SIZE_LIMIT = 256 * 1024 + 1;
+
+    @Test
+    public void testOffloadedPublishStoresThePayloadAndPublishesItsPointer() {
+        InMemorySns sns = new InMemorySns();
+        InMemoryS3 s3 = new InMemoryS3();
+        AmazonSNSExtendedClient snsExtendedClient = new AmazonSNSExtendedClient(new InMemorySnsClient(sns),
+                new SNSExtendedClientConfiguration().withPayloadSupportEnabled(new InMemoryS3Client(s3), BUCKET_NAME));
+        String body = generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT);
+
+        snsExtendedClient.publish(PublishRequest.builder().topicArn(TOPIC_ARN).message(body).build());
+
+        List<PublishedMessage> publishedMessages = sns.getPublishedMessages(TOPIC_ARN);
+        Assert.assertEquals(1, publishedMessages.size());
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(publishedMessages.get(0).getMessage());
+        Assert.assertEquals(BUCKET_NAME, pointer.getS3BucketName());
+        Assert.assertEquals(body, new String(s3.getObjectContent(BUCKET_NAME, pointer.getS3Key()), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, s3.getObjectCount());
+    }
+
+    @Test
+    public void testThrottledRequestsFailWithAThrottlingException() {
+        InMemorySns sns = new InMemorySns(new ServiceConditions().withThrottlingRate(1));
+        InMemorySnsClient snsClient = new InMemorySnsClient(sns);
+
+        AwsServiceException exception = Assert.assertThrows(AwsServiceException.class,
+                () -> snsClient.publish(PublishRequest.builder().topicArn(TOPIC_ARN).message("message").build()));
+
+        Assert.assertTrue(exception.isThrottlingException());
+        Assert.assertEquals(0, sns.getPublishedMessageCount());
+        Assert.assertEquals(1, sns.getThrottledRequestCount());
+
+        sns.getConditions().setThrottlingRate(0);
+        snsClient.publish(PublishRequest.builder().topicArn(TOPIC_ARN).message("message").build());
+        Assert.assertEquals(1, sns.getPublishedMessageCount());
+    }
+
+    @Test
+    public void testBatchEntriesFailIndividuallyAtTheErrorRate() {
+        InMemorySnsClient snsClient = new InMemorySnsClient(new InMemorySns(new ServiceConditions().withErrorRate(1)));
+        List<PublishBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < InMemorySns.MAX_BATCH_ENTRIES; i++) {
+            entries.add(PublishBatchRequestEntry.builder().id(Integer.toString(i)).message("message").build());
+        }
+
+        PublishBatchResponse response = snsClient.publishBatch(PublishBatchRequest.builder()
+                .topicArn(TOPIC_ARN).publishBatchRequestEntries(entries).build());
+
+        Assert.assertEquals(InMemorySns.MAX_BATCH_ENTRIES, response.failed().size());
+        Assert.assertFalse(response.failed().get(0).senderFault());
+
+        entries.add(PublishBatchRequestEntry.builder().id("too-many").message("message").build());
+        Assert.assertThrows(TooManyEntriesInBatchRequestException.class, () -> snsClient.publishBatch(
+                PublishBatchRequest.builder().topicArn(TOPIC_ARN).publishBatchRequestEntries(entries).build()));
+    }
+
+    @Test
+    public void testConcurrentUploadsShareTheBandwidth() {
+        InMemoryS3 s3 = new InMemoryS3(new ServiceConditions().withBandwidthBytesPerSecond(10 * 1024 * 1024));
+        InMemoryS3Client s3Client = new InMemoryS3Client(s3);
+        byte[] content = new byte[512 * 1024];
+
+        long startNanos = System.nanoTime();
+        s3Client.putObject(PutObjectRequest.builder().bucket(BUCKET_NAME).key("first").build(), RequestBody.fromBytes(content));
+        s3Client.putObject(PutObjectRequest.builder().bucket(BUCKET_NAME).key("second").build(), RequestBody.fromBytes(content));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        // Two uploads of 512 KiB over 10 MiB/s take at least 100 ms.
+        Assert.assertTrue(elapsedMillis >= 95);
+        Assert.assertEquals(Arrays.asList("first", "second"), s3.getKeys(BUCKET_NAME));
+        Assert.assertEquals(2L * content.length, s3.getStoredBytes());
+    }
+
+    @Test
+    public void testAsyncMultipartUploadCompletesAfterTheSimulatedLatency() {
+        InMemorySns sns = new InMemorySns(new ServiceConditions()
+                .withLatencyDistribution(LatencyDistribution.fixed(Duration.ofMillis(20))));
+        InMemoryS3 s3 = new InMemoryS3(new ServiceConditions()
+                .withLatencyDistribution(LatencyDistribution.logNormal(Duration.ofMillis(5), Duration.ofMillis(20))));
+        int partSize = (int) InMemoryS3.MIN_PART_SIZE;
+        AmazonSNSExtendedAsyncClient snsExtendedClient = new AmazonSNSExtendedAsyncClient(
+                new InMemorySnsAsyncClient(sns), new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(new InMemoryS3AsyncClient(s3), BUCKET_NAME)
+                .withMultipartUploadThreshold(partSize)
+                .withMultipartUploadPartSize(partSize));
+        String body = generateStringWithLength(2 * partSize + 1);
+
+        long startNanos = System.nanoTime();
+        snsExtendedClient.publish(PublishRequest.builder().topicArn(TOPIC_ARN).message(body).build()).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        Assert.assertTrue(elapsedMillis >= 20);
+        PayloadS3Pointer pointer = PayloadS3Pointer.fromJson(sns.getPublishedMessages(TOPIC_ARN).get(0).getMessage());
+        Assert.assertEquals(body, new String(s3.getObjectContent(BUCKET_NAME, pointer.getS3Key()), StandardCharsets.UTF_8));
+        Assert.assertEquals(0, s3.getMultipartUploadCount());
+    }
+
+    @Test
+    public void testAsyncUploadFailsWithAnInternalErrorAtTheErrorRate() {
+        InMemoryS3 s3 = new InMemoryS3(new ServiceConditions().withErrorRate(1));
+        InMemorySns sns = new InMemorySns();
+        AmazonSNSExtendedAsyncClient snsExtendedClient = new AmazonSNSExtendedAsyncClient(
+                new InMemorySnsAsyncClient(sns), new SNSExtendedAsyncClientConfiguration()
+                .withPayloadSupportEnabled(new InMemoryS3AsyncClient(s3), BUCKET_NAME));
+
+        CompletionException exception = Assert.assertThrows(CompletionException.class, () -> snsExtendedClient.publish(
+                PublishRequest.builder().topicArn(TOPIC_ARN).message(generateStringWithLength(MORE_THAN_SNS_SIZE_LIMIT))
+                        .build()).join());
+
+        Assert.assertNotNull(exception.getCause());
+        Assert.assertEquals(1, s3.getFailedRequestCount());
+        Assert.assertEquals(0, s3.getObjectCount());
+        Assert.assertEquals(0, sns.getPublishedMessageCount());
+    }
+
+    private static String generateStringWithLength(int messageLength) {
+        char[] charArray = new char[messageLength];
+        Arrays.fill(charArray, 'x');
+        return new String(charArray);
+    }
+}